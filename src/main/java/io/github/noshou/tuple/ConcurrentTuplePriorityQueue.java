@@ -0,0 +1,146 @@
+package io.github.noshou.tuple;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent priority queue of numeric tuples with relaxed ordering, in the
+ * style of a MultiQueue.
+ * <p>
+ * The queue is spread over several {@link TuplePriorityQueue}s, each guarded by
+ * its own lock. {@link #offer(Tuple)} adds to a random unlocked heap;
+ * {@link #poll()} looks at the smallest first elements of two random heaps and
+ * takes from the smaller one. Threads thus rarely contend on a lock, at the cost
+ * of exact ordering: a poll returns a tuple close to, but not necessarily, the
+ * smallest one, and two polls are not ordered with respect to each other. This
+ * suits work scheduling, where throughput across worker threads matters more
+ * than strict priority.
+ * <p>
+ * Handles, and therefore decrease-key and removal, are only offered by the
+ * sequential {@link TuplePriorityQueue}.
+ *
+ * @param <T> the type of the queued tuples
+ */
+public final class ConcurrentTuplePriorityQueue<T extends Tuple<? extends Number>> {
+
+    private final TuplePriorityQueue<T>[] heaps;
+    private final ReentrantLock[] locks;
+    // the first element of each heap's smallest tuple, read without locking
+    private final long[] tops;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Constructs a queue with two heaps per available processor.
+     *
+     * @param arity the size of the queued tuples
+     */
+    public ConcurrentTuplePriorityQueue(int arity) {
+        this(arity, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a queue with the given number of heaps. More heaps reduce
+     * contention and loosen the ordering.
+     *
+     * @param arity the size of the queued tuples
+     * @param heaps the number of heaps, at least 2
+     * @throws IllegalArgumentException if {@code heaps} is less than 2
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentTuplePriorityQueue(int arity, int heaps) {
+        if (heaps < 2) {
+            throw new IllegalArgumentException("A concurrent queue needs at least 2 heaps!");
+        }
+        this.heaps = (TuplePriorityQueue<T>[]) new TuplePriorityQueue[heaps];
+        this.locks = new ReentrantLock[heaps];
+        this.tops = new long[heaps];
+        for (int i = 0; i < heaps; i++) {
+            this.heaps[i] = new TuplePriorityQueue<>(arity);
+            this.locks[i] = new ReentrantLock();
+            this.tops[i] = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Adds a tuple to the queue.
+     *
+     * @param tuple the tuple to add
+     * @throws IllegalArgumentException if the tuple is not of the queue's size
+     */
+    public void offer(T tuple) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            int i = random.nextInt(this.heaps.length);
+            ReentrantLock lock = this.locks[i];
+            if (lock.tryLock()) {
+                try {
+                    this.heaps[i].offer(tuple);
+                    publish(i);
+                } finally {
+                    lock.unlock();
+                }
+                this.size.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes and returns a tuple that is among the smallest in the queue.
+     *
+     * @return a small tuple, or {@code null} if the queue is empty
+     */
+    public T poll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (this.size.get() > 0) {
+            int a = random.nextInt(this.heaps.length);
+            int b = random.nextInt(this.heaps.length);
+            int i = (this.tops[b] < this.tops[a]) ? b : a;
+            ReentrantLock lock = this.locks[i];
+            if (lock.tryLock()) {
+                T tuple;
+                try {
+                    tuple = this.heaps[i].poll();
+                    publish(i);
+                } finally {
+                    lock.unlock();
+                }
+                if (tuple != null) {
+                    this.size.decrementAndGet();
+                    return tuple;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of queued tuples. The count is exact only when no
+     * other thread is modifying the queue.
+     *
+     * @return the number of tuples
+     */
+    public int size() {
+        return this.size.get();
+    }
+
+    /**
+     * Returns True if no tuple is queued
+     *
+     * @return True if empty, else False
+     */
+    public boolean isEmpty() {
+        return this.size.get() == 0;
+    }
+
+    /**
+     * Records the first element of heap {@code i}'s smallest tuple; called
+     * with the heap's lock held. Racy reads of this hint only affect which heap
+     * a poll picks, never correctness.
+     */
+    private void publish(int i) {
+        TuplePriorityQueue<T> heap = this.heaps[i];
+        this.tops[i] = heap.isEmpty() || heap.peek().fetchSize() == 0 ? Long.MAX_VALUE : heap.peekKey(0);
+    }
+}
@@ -36,6 +36,16 @@ public class Decad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Decad} over an array of 10 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Decad(I[] items) {
+        super(10, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 9)) {
@@ -0,0 +1,228 @@
+package io.github.noshou.tuple;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@code DictionaryTuple} is a tuple of {@link String}s stored as the
+ * int codes of a shared {@link TupleDictionary}.
+ * <p>
+ * {@link #fetch(int)} decodes back to the original String, while
+ * {@link #compareTo(Tuple)}, {@link #equals(Object)} and {@link #hashCode()}
+ * work on the codes whenever both tuples share the same dictionary.
+ * Instances are created through {@link TupleDictionary#encode(Tuple)}.
+ */
+public final class DictionaryTuple extends Tuple<String> {
+
+    private final TupleDictionary dictionary;
+    private final int[] codes;
+    private int hash;
+
+    DictionaryTuple(TupleDictionary dictionary, int[] codes) {
+        super(codes.length);
+        this.dictionary = dictionary;
+        this.codes = codes;
+    }
+
+    /**
+     * Returns the String at the specified position in this tuple.
+     *
+     * @param idx the index of the element to return (0-based)
+     * @return the decoded String at the specified position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    @Override
+    public String fetch(int idx) {
+        return this.dictionary.decode(checkIndex(idx), this.codes[idx]);
+    }
+
+    /**
+     * Returns the dictionary code at the specified position in this tuple.
+     *
+     * @param idx the index of the code to return (0-based)
+     * @return the code at the specified position
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int fetchCode(int idx) {
+        return this.codes[checkIndex(idx)];
+    }
+
+    /**
+     * Returns the dictionary this tuple is encoded against.
+     *
+     * @return the shared dictionary
+     */
+    public TupleDictionary fetchDictionary() {
+        return this.dictionary;
+    }
+
+    /**
+     * Finds and returns the smallest String in the tuple according
+     * to their natural ordering.
+     *
+     * @return the smallest String in the tuple, or {@code null} if the tuple is empty
+     */
+    @Override
+    public String fetchSmallest() {
+        if (this.codes.length == 0) {
+            return null;
+        }
+        String smallest = fetch(0);
+        for (int i = 1; i < this.codes.length; i++) {
+            String item = fetch(i);
+            if (item.compareTo(smallest) < 0) {
+                smallest = item;
+            }
+        }
+        return smallest;
+    }
+
+    /**
+     * Finds and returns the largest String in the tuple according
+     * to their natural ordering.
+     *
+     * @return the largest String in the tuple, or {@code null} if the tuple is empty
+     */
+    @Override
+    public String fetchLargest() {
+        if (this.codes.length == 0) {
+            return null;
+        }
+        String largest = fetch(0);
+        for (int i = 1; i < this.codes.length; i++) {
+            String item = fetch(i);
+            if (item.compareTo(largest) > 0) {
+                largest = item;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Not supported: every position has its own dictionary, so codes cannot
+     * move between positions.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void sortNatural() {
+        throw new UnsupportedOperationException("A dictionary tuple cannot be reordered!");
+    }
+
+    /**
+     * Not supported: every position has its own dictionary, so codes cannot
+     * move between positions.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void sortReverseNatural() {
+        throw new UnsupportedOperationException("A dictionary tuple cannot be reordered!");
+    }
+
+    /**
+     * Compares this tuple to another lexicographically. When both tuples share
+     * a dictionary only the codes are compared; otherwise the decoded Strings are.
+     *
+     * @param other the other {@code Tuple} to compare to
+     * @return {@code -1}, {@code 0} or {@code 1} as for {@link Tuple#compareTo(Tuple)}
+     */
+    @Override
+    public int compareTo(Tuple<String> other) {
+        if (!(other instanceof DictionaryTuple that) || that.dictionary != this.dictionary) {
+            return super.compareTo(other);
+        }
+        if (TupleMetrics.ENABLED) {
+            TupleMetrics.compared();
+        }
+        int n = Math.min(this.codes.length, that.codes.length);
+        for (int i = 0; i < n; i++) {
+            if (this.codes[i] != that.codes[i]) {
+                return this.codes[i] < that.codes[i] ? -1 : 1;
+            }
+        }
+        return Integer.signum(this.codes.length - that.codes.length);
+    }
+
+    /**
+     * Returns an iterator over the decoded Strings of this tuple.
+     *
+     * @return an {@link Iterator} over the items of the tuple
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int idx;
+
+            @Override
+            public boolean hasNext() {
+                return idx < codes.length;
+            }
+
+            @Override
+            public String next() {
+                if (idx >= codes.length) {
+                    throw new NoSuchElementException();
+                }
+                return fetch(idx++);
+            }
+        };
+    }
+
+    /**
+     * Computes the hash code for this tuple from the precomputed hashes of
+     * its Strings, so equal tuples hash alike even across dictionaries.
+     *
+     * @return the hash code value for this tuple
+     */
+    @Override
+    public int hashCode() {
+        int h = this.hash;
+        if (h == 0) {
+            if (TupleMetrics.ENABLED) {
+                TupleMetrics.hashed();
+            }
+            h = 1;
+            for (int i = 0; i < this.codes.length; i++) {
+                h = 31 * h + this.dictionary.hash(i, this.codes[i]);
+            }
+            this.hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Compares this tuple to the specified object for equality. Two dictionary
+     * tuples are equal if they hold the same Strings in the same order; with a
+     * shared dictionary this is a comparison of codes.
+     *
+     * @param obj the object to compare to
+     * @return {@code true} if the specified object is equal to this tuple;
+     *         {@code false} otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof DictionaryTuple other)) return false;
+        if (other.dictionary == this.dictionary) {
+            return Arrays.equals(this.codes, other.codes);
+        }
+        if (other.codes.length != this.codes.length || other.hashCode() != this.hashCode()) {
+            return false;
+        }
+        for (int i = 0; i < this.codes.length; i++) {
+            if (!fetch(i).equals(other.fetch(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int checkIndex(int idx) {
+        if (idx < 0 || idx >= this.codes.length) {
+            throw new IndexOutOfBoundsException("DictionaryTuple indexed out of bounds!");
+        }
+        return idx;
+    }
+}
@@ -40,6 +40,16 @@ public class Dodecad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Dodecad} over an array of 12 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Dodecad(I[] items) {
+        super(12, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 11)) {
@@ -20,6 +20,16 @@ public class Dyad<I extends Comparable<I>> extends Tuple<I>  {
                 }
         );
     }
+
+    /**
+     * Constructs a {@code Dyad} over an array of 2 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Dyad(I[] items) {
+        super(2, items);
+    }
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 1)) {
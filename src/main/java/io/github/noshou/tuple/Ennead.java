@@ -34,6 +34,16 @@ public class Ennead<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Ennead} over an array of 9 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Ennead(I[] items) {
+        super(9, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 8)) {
@@ -54,6 +54,16 @@ public class Enneakaidecad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Enneakaidecad} over an array of 19 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Enneakaidecad(I[] items) {
+        super(19, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 18)) {
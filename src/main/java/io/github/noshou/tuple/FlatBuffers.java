@@ -0,0 +1,354 @@
+package io.github.noshou.tuple;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A minimal FlatBuffers encoder and decoder, enough for the metadata of the
+ * Arrow IPC format written and read by {@link TupleArrow}.
+ * <p>
+ * Unlike the official builders, which write back to front, the encoder lays a
+ * tree of nodes out front to back: every object is written before the objects
+ * it refers to, so all offsets point forward as the format requires. Every
+ * scalar is aligned to its size relative to the start of the buffer.
+ */
+final class FlatBuffers {
+
+    private FlatBuffers() {
+    }
+
+    /**
+     * Encodes a tree of nodes into a buffer whose length is a multiple of 8.
+     *
+     * @param root the root table
+     * @return the encoded buffer
+     */
+    static byte[] encode(Table root) {
+        Output out = new Output();
+        out.putInt(0);
+        out.patch(0, root.write(out));
+        out.align(8);
+        return Arrays.copyOf(out.bytes, out.size);
+    }
+
+    /**
+     * An object of the tree being encoded.
+     */
+    abstract static class Node {
+        /**
+         * Appends this object and everything it refers to.
+         *
+         * @return the position that offsets to this object point at
+         */
+        abstract int write(Output out);
+    }
+
+    /**
+     * A table: scalar and offset fields addressed through a vtable.
+     */
+    static final class Table extends Node {
+        private final List<long[]> scalars = new ArrayList<>();  // {slot, size, value}
+        private final List<Object[]> children = new ArrayList<>(); // {slot, node}
+
+        Table put(int slot, int size, long value) {
+            this.scalars.add(new long[]{slot, size, value});
+            return this;
+        }
+
+        Table putByte(int slot, int value) {
+            return put(slot, 1, value);
+        }
+
+        Table putBoolean(int slot, boolean value) {
+            return put(slot, 1, value ? 1 : 0);
+        }
+
+        Table putShort(int slot, int value) {
+            return put(slot, 2, value);
+        }
+
+        Table putInt(int slot, int value) {
+            return put(slot, 4, value);
+        }
+
+        Table putLong(int slot, long value) {
+            return put(slot, 8, value);
+        }
+
+        Table putNode(int slot, Node child) {
+            this.children.add(new Object[]{slot, child});
+            return this;
+        }
+
+        Table putString(int slot, String value) {
+            return putNode(slot, new Str(value));
+        }
+
+        @Override
+        int write(Output out) {
+            int slots = 0;
+            for (long[] s : this.scalars) {
+                slots = Math.max(slots, (int) s[0] + 1);
+            }
+            for (Object[] c : this.children) {
+                slots = Math.max(slots, (int) c[0] + 1);
+            }
+
+            // inline layout: the vtable offset, then the fields by decreasing size
+            List<long[]> fields = new ArrayList<>(this.scalars);
+            for (Object[] c : this.children) {
+                fields.add(new long[]{(int) c[0], 4, -1});
+            }
+            fields.sort(Comparator.comparingLong((long[] f) -> -f[1]));
+            int[] fieldOffsets = new int[slots];
+            int cursor = 4;
+            for (long[] f : fields) {
+                int size = (int) f[1];
+                cursor = (cursor + size - 1) / size * size;
+                fieldOffsets[(int) f[0]] = cursor;
+                cursor += size;
+            }
+            int inline = cursor;
+
+            out.align(2);
+            int vtable = out.size;
+            out.putShort(4 + 2 * slots);
+            out.putShort(inline);
+            for (int offset : fieldOffsets) {
+                out.putShort(offset);
+            }
+            out.align(8);
+            int table = out.size;
+            out.reserve(inline);
+            out.putInt(table, table - vtable);
+            for (long[] s : this.scalars) {
+                out.put(table + fieldOffsets[(int) s[0]], (int) s[1], s[2]);
+            }
+            for (Object[] c : this.children) {
+                int at = table + fieldOffsets[(int) c[0]];
+                out.patch(at, ((Node) c[1]).write(out));
+            }
+            return table;
+        }
+    }
+
+    /**
+     * A vector of offsets to tables or strings.
+     */
+    static final class Vector extends Node {
+        private final List<? extends Node> items;
+
+        Vector(List<? extends Node> items) {
+            this.items = items;
+        }
+
+        @Override
+        int write(Output out) {
+            out.align(4);
+            int vector = out.size;
+            out.putInt(this.items.size());
+            out.reserve(4 * this.items.size());
+            for (int i = 0; i < this.items.size(); i++) {
+                int at = vector + 4 + 4 * i;
+                out.patch(at, this.items.get(i).write(out));
+            }
+            return vector;
+        }
+    }
+
+    /**
+     * A vector of structs of 8-byte aligned, little-endian {@code long}s, each
+     * struct being {@code width} consecutive values.
+     */
+    static final class StructVector extends Node {
+        private final long[] values;
+        private final int width;
+
+        StructVector(long[] values, int width) {
+            this.values = values;
+            this.width = width;
+        }
+
+        @Override
+        int write(Output out) {
+            while ((out.size + 4) % 8 != 0) {
+                out.putByte(0);
+            }
+            int vector = out.size;
+            out.putInt(this.values.length / this.width);
+            for (long v : this.values) {
+                out.reserve(8);
+                out.put(out.size - 8, 8, v);
+            }
+            return vector;
+        }
+    }
+
+    /**
+     * A UTF-8 string.
+     */
+    static final class Str extends Node {
+        private final byte[] utf8;
+
+        Str(String value) {
+            this.utf8 = value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        int write(Output out) {
+            out.align(4);
+            int string = out.size;
+            out.putInt(this.utf8.length);
+            for (byte b : this.utf8) {
+                out.putByte(b);
+            }
+            out.putByte(0);
+            return string;
+        }
+    }
+
+    /**
+     * A growable little-endian byte array.
+     */
+    static final class Output {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void reserve(int n) {
+            if (this.size + n > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(this.size + n, 2 * this.bytes.length));
+            }
+            this.size += n;
+        }
+
+        void align(int alignment) {
+            while (this.size % alignment != 0) {
+                putByte(0);
+            }
+        }
+
+        void put(int at, int width, long value) {
+            for (int i = 0; i < width; i++) {
+                this.bytes[at + i] = (byte) (value >>> (8 * i));
+            }
+        }
+
+        void putByte(int value) {
+            reserve(1);
+            this.bytes[this.size - 1] = (byte) value;
+        }
+
+        void putShort(int value) {
+            reserve(2);
+            put(this.size - 2, 2, value);
+        }
+
+        void putInt(int value) {
+            reserve(4);
+            put(this.size - 4, 4, value);
+        }
+
+        void putInt(int at, int value) {
+            put(at, 4, value);
+        }
+
+        int size() {
+            return this.size;
+        }
+
+        void writeTo(OutputStream stream) throws IOException {
+            stream.write(this.bytes, 0, this.size);
+        }
+
+        /** Stores at {@code at} the forward offset to {@code target}. */
+        void patch(int at, int target) {
+            put(at, 4, target - at);
+        }
+    }
+
+    // decoding; positions are absolute indices into a little-endian buffer
+
+    static ByteBuffer order(ByteBuffer buffer) {
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the position of the root table of the buffer starting at {@code start}.
+     */
+    static int root(ByteBuffer b, int start) {
+        return start + b.getInt(start);
+    }
+
+    /**
+     * Returns the offset of a field within its table, {@code 0} if absent.
+     */
+    static int field(ByteBuffer b, int table, int slot) {
+        int vtable = table - b.getInt(table);
+        int vtableSize = Short.toUnsignedInt(b.getShort(vtable));
+        int entry = 4 + 2 * slot;
+        return entry < vtableSize ? Short.toUnsignedInt(b.getShort(vtable + entry)) : 0;
+    }
+
+    static long readLong(ByteBuffer b, int table, int slot, long missing) {
+        int field = field(b, table, slot);
+        return field == 0 ? missing : b.getLong(table + field);
+    }
+
+    static int readInt(ByteBuffer b, int table, int slot, int missing) {
+        int field = field(b, table, slot);
+        return field == 0 ? missing : b.getInt(table + field);
+    }
+
+    static int readShort(ByteBuffer b, int table, int slot, int missing) {
+        int field = field(b, table, slot);
+        return field == 0 ? missing : b.getShort(table + field);
+    }
+
+    static int readByte(ByteBuffer b, int table, int slot, int missing) {
+        int field = field(b, table, slot);
+        return field == 0 ? missing : Byte.toUnsignedInt(b.get(table + field));
+    }
+
+    /**
+     * Follows an offset field to the table, vector or string it refers to.
+     *
+     * @return the referenced position, {@code -1} if the field is absent
+     */
+    static int reference(ByteBuffer b, int table, int slot) {
+        int field = field(b, table, slot);
+        if (field == 0) {
+            return -1;
+        }
+        int at = table + field;
+        return at + b.getInt(at);
+    }
+
+    static int length(ByteBuffer b, int vector) {
+        return vector < 0 ? 0 : b.getInt(vector);
+    }
+
+    /**
+     * Returns element {@code i} of a vector of tables.
+     */
+    static int element(ByteBuffer b, int vector, int i) {
+        int at = vector + 4 + 4 * i;
+        return at + b.getInt(at);
+    }
+
+    static String string(ByteBuffer b, int table, int slot) {
+        int string = reference(b, table, slot);
+        if (string < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[b.getInt(string)];
+        b.get(string + 4, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,249 @@
+package io.github.noshou.tuple;
+
+import java.util.Objects;
+
+/**
+ * Package-private hashing helpers shared by the tuple collections and operators.
+ * <p>
+ * Unlike {@link Tuple#hashCode()}, these read the elements straight through
+ * {@link Tuple#fetch(int)} and never walk the backing map.
+ */
+final class Hashing {
+
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+    private static final long INTEGER_TAG = 0x49L << 56; // 'I'
+    private static final long DOUBLE_TAG = 0x44L << 56; // 'D'
+
+    private Hashing() {
+    }
+
+    /**
+     * Finalization step of MurmurHash3; spreads entropy into every bit
+     * so that both the high bits (partitions) and low bits (buckets) are usable.
+     *
+     * @param h the hash to mix
+     * @return the mixed hash
+     */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Hashes the elements of a tuple at the given positions.
+     *
+     * @param tuple the tuple to hash
+     * @param positions the positions to hash, in order
+     * @return a well-mixed hash of the selected elements
+     */
+    static int hash(Tuple<?> tuple, int[] positions) {
+        int h = 1;
+        for (int position : positions) {
+            h = 31 * h + Objects.hashCode(tuple.fetch(position));
+        }
+        return mix(h);
+    }
+
+    /**
+     * Finalization step of MurmurHash3, 64-bit variant.
+     *
+     * @param h the hash to mix
+     * @return the mixed hash
+     */
+    static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Returns the bits of an element fed into the 64-bit hashes. Integral and
+     * floating point boxes contribute their full value instead of their folded
+     * {@code hashCode()}.
+     *
+     * @param item the element, possibly {@code null}
+     * @return the element bits
+     */
+    static long bits(Object item) {
+        if (item instanceof Long l) {
+            return l;
+        } else if (item instanceof Integer i) {
+            return i;
+        } else if (item instanceof Double d) {
+            return Double.doubleToLongBits(d);
+        }
+        return Objects.hashCode(item);
+    }
+
+    /**
+     * Folds one more element into a running 64-bit hash.
+     *
+     * @param h the running hash, {@link #seed64(long)} for the first element
+     * @param item the next element
+     * @return the updated hash
+     */
+    static long step64(long h, Object item) {
+        return mix64(h ^ (bits(item) + GOLDEN)) * GOLDEN;
+    }
+
+    /**
+     * Like {@link #bits(Object)}, but hashes strings over their contents
+     * instead of taking their 32-bit {@code hashCode()}, for sketches that
+     * must tell apart more than {@code 2^32} distinct strings. Integers and
+     * doubles are mixed with a tag of their type, so that they no longer share
+     * the bits of the equal {@code Long} value, which they never equal.
+     *
+     * @param item the element, possibly {@code null}
+     * @return the element bits
+     */
+    static long wideBits(Object item) {
+        if (item instanceof Long l) {
+            return l;
+        } else if (item instanceof Integer i) {
+            return mix64(i ^ INTEGER_TAG);
+        } else if (item instanceof Double d) {
+            return mix64(Double.doubleToLongBits(d) ^ DOUBLE_TAG);
+        } else if (item instanceof String s) {
+            int n = s.length();
+            long h = mix64(n + GOLDEN);
+            int i = 0;
+            for (; i + 4 <= n; i += 4) {
+                long w = s.charAt(i) | (long) s.charAt(i + 1) << 16
+                        | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48;
+                h = mix64(h ^ w) * GOLDEN;
+            }
+            long w = 0;
+            for (; i < n; i++) {
+                w = w << 16 | s.charAt(i);
+            }
+            return mix64(h ^ w);
+        }
+        return bits(item);
+    }
+
+    /**
+     * Folds one more element into a running 64-bit hash, as
+     * {@link #step64(long, Object)} over {@link #wideBits(Object)}.
+     *
+     * @param h the running hash, {@link #seed64(long)} for the first element
+     * @param item the next element
+     * @return the updated hash
+     */
+    static long wideStep64(long h, Object item) {
+        return mix64(h ^ (wideBits(item) + GOLDEN)) * GOLDEN;
+    }
+
+    /**
+     * Returns the initial value of a running 64-bit hash.
+     *
+     * @param seed the hash seed
+     * @return the initial hash
+     */
+    static long seed64(long seed) {
+        return mix64(seed + GOLDEN);
+    }
+
+    /**
+     * Completes a running 64-bit hash over {@code length} elements.
+     *
+     * @param h the running hash
+     * @param length the number of elements folded in
+     * @return the final hash
+     */
+    static long finish64(long h, int length) {
+        return mix64(h ^ length);
+    }
+
+    /**
+     * Hashes every element of a tuple into 64 bits. Equal to
+     * {@link #hash64(long, Object[])} over the same elements.
+     *
+     * @param seed the hash seed
+     * @param tuple the tuple to hash
+     * @return the 64-bit hash
+     */
+    static long hash64(long seed, Tuple<?> tuple) {
+        int n = tuple.fetchSize();
+        long h = seed64(seed);
+        for (int i = 0; i < n; i++) {
+            h = step64(h, tuple.fetch(i));
+        }
+        return finish64(h, n);
+    }
+
+    /**
+     * Hashes raw element values into 64 bits, as if they were a tuple.
+     *
+     * @param seed the hash seed
+     * @param items the elements to hash, in order
+     * @return the 64-bit hash
+     */
+    static long hash64(long seed, Object... items) {
+        long h = seed64(seed);
+        for (Object item : items) {
+            h = step64(h, item);
+        }
+        return finish64(h, items.length);
+    }
+
+    /**
+     * Tests whether two tuples hold equal elements in the same order, whatever
+     * their classes; the equality consistent with {@link #hash64(long, Tuple)}.
+     *
+     * @param a a tuple
+     * @param b another tuple
+     * @return {@code true} if the elements are equal
+     */
+    static boolean sameItems(Tuple<?> a, Tuple<?> b) {
+        int n = a.fetchSize();
+        if (n != b.fetchSize()) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (!Objects.equals(a.fetch(i), b.fetch(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes every element of a tuple into 64 bits, as
+     * {@link #hash64(long, Tuple)} over {@link #wideBits(Object)}.
+     *
+     * @param seed the hash seed
+     * @param tuple the tuple to hash
+     * @return the 64-bit hash
+     */
+    static long wideHash64(long seed, Tuple<?> tuple) {
+        int n = tuple.fetchSize();
+        long h = seed64(seed);
+        for (int i = 0; i < n; i++) {
+            h = wideStep64(h, tuple.fetch(i));
+        }
+        return finish64(h, n);
+    }
+
+    /**
+     * Hashes raw element values into 64 bits, as
+     * {@link #hash64(long, Object[])} over {@link #wideBits(Object)}.
+     *
+     * @param seed the hash seed
+     * @param items the elements to hash, in order
+     * @return the 64-bit hash
+     */
+    static long wideHash64(long seed, Object... items) {
+        long h = seed64(seed);
+        for (Object item : items) {
+            h = wideStep64(h, item);
+        }
+        return finish64(h, items.length);
+    }
+}
@@ -38,6 +38,16 @@ public class Hendecad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Hendecad} over an array of 11 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Hendecad(I[] items) {
+        super(11, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 10)) {
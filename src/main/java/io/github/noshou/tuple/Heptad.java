@@ -30,6 +30,16 @@ public class Heptad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Heptad} over an array of 7 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Heptad(I[] items) {
+        super(7, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 6)) {
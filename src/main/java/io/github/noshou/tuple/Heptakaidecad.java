@@ -50,6 +50,16 @@ public class Heptakaidecad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Heptakaidecad} over an array of 17 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Heptakaidecad(I[] items) {
+        super(17, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 16)) {
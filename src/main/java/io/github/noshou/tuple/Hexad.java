@@ -28,6 +28,16 @@ public class Hexad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Hexad} over an array of 6 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Hexad(I[] items) {
+        super(6, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 5)) {
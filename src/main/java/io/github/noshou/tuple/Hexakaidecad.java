@@ -48,6 +48,16 @@ public class Hexakaidecad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Hexakaidecad} over an array of 16 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Hexakaidecad(I[] items) {
+        super(16, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 15)) {
@@ -56,6 +56,16 @@ public class Icosad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Icosad} over an array of 20 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Icosad(I[] items) {
+        super(20, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 19)) {
@@ -0,0 +1,118 @@
+package io.github.noshou.tuple;
+
+import java.util.Arrays;
+
+/**
+ * Scalar implementations of the primitive kernels behind {@link TupleVectors}.
+ * <p>
+ * {@link VectorKernels} overrides them with {@code jdk.incubator.vector}
+ * implementations; {@link #load()} picks that subclass only when it was built
+ * (the {@code vector} Maven profile) and the incubator module is present, so
+ * this class must never refer to it directly.
+ */
+class Kernels {
+
+    /**
+     * Returns the vectorized kernels if the incubator module was resolved at
+     * startup ({@code --add-modules jdk.incubator.vector}) and not disabled
+     * through the {@code io.github.noshou.tuple.scalar} system property, the
+     * scalar kernels otherwise.
+     *
+     * @return the kernels to use
+     */
+    static Kernels load() {
+        if (!Boolean.getBoolean("io.github.noshou.tuple.scalar")
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Kernels) Class.forName("io.github.noshou.tuple.VectorKernels")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall through to the scalar kernels
+            }
+        }
+        return new Kernels();
+    }
+
+    boolean accelerated() {
+        return false;
+    }
+
+    int indexOfMin(long[] a, int from, int to) {
+        int best = from < to ? from : -1;
+        for (int i = from + 1; i < to; i++) {
+            if (a[i] < a[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    int indexOfMax(long[] a, int from, int to) {
+        int best = from < to ? from : -1;
+        for (int i = from + 1; i < to; i++) {
+            if (a[i] > a[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    int indexOfMin(int[] a, int from, int to) {
+        int best = from < to ? from : -1;
+        for (int i = from + 1; i < to; i++) {
+            if (a[i] < a[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    int indexOfMax(int[] a, int from, int to) {
+        int best = from < to ? from : -1;
+        for (int i = from + 1; i < to; i++) {
+            if (a[i] > a[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    int indexOfMin(double[] a, int from, int to) {
+        int best = from < to ? from : -1;
+        for (int i = from + 1; i < to; i++) {
+            if (Double.compare(a[i], a[best]) < 0) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    int indexOfMax(double[] a, int from, int to) {
+        int best = from < to ? from : -1;
+        for (int i = from + 1; i < to; i++) {
+            if (Double.compare(a[i], a[best]) > 0) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    int mismatch(long[] a, long[] b, int length) {
+        return Arrays.mismatch(a, 0, length, b, 0, length);
+    }
+
+    int mismatch(int[] a, int[] b, int length) {
+        return Arrays.mismatch(a, 0, length, b, 0, length);
+    }
+
+    void compareAll(long[][] columns, int from, int to, long[] probe, int[] out) {
+        for (int i = from; i < to; i++) {
+            int cmp = 0;
+            for (int c = 0; c < columns.length && cmp == 0; c++) {
+                cmp = Long.compare(columns[c][i], probe[c]);
+            }
+            out[i] = Integer.signum(cmp);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.github.noshou.tuple;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A tuple whose elements are computed on first {@link #fetch(int) fetch}.
+ * <p>
+ * Each position holds a {@link Supplier} that is called at most once; its
+ * result is remembered and the supplier released. Because
+ * {@link #compareTo(Tuple)}, {@link #equals(Object)} and {@link #iterator()}
+ * fetch positions in order and stop at the first difference, expensive
+ * trailing elements of a sort key are only computed when the leading ones tie:
+ * <pre>{@code
+ * LazyTuple<String> key = LazyTuple.of(
+ *         () -> customer.region(),
+ *         () -> normalize(customer.name()));   // only called on a region tie
+ * }</pre>
+ * {@link #hashCode()}, {@link #toString()} and the {@code fetchSmallest} and
+ * {@code fetchLargest} queries need every element and compute them all;
+ * {@link #forceAll()} does so eagerly, e.g. before handing the tuple to
+ * another thread that should not pay for it.
+ * <p>
+ * A lazy tuple is safe to share between threads: a supplier runs under the
+ * tuple's lock, and a computed element is published so that later fetches
+ * read it without locking. A supplier that throws leaves its position
+ * uncomputed, so the next fetch calls it again. Lazy tuples are equal only to
+ * other lazy tuples, and cannot be {@link #sortNatural() sorted}.
+ *
+ * @param <I> the type of the elements
+ */
+public final class LazyTuple<I extends Comparable<I>> extends TupleView<I> {
+
+    private static final Object UNSET = new Object();
+    private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private final Supplier<? extends I>[] suppliers;
+    private final Object[] values;
+
+    private LazyTuple(Supplier<? extends I>[] suppliers) {
+        super(suppliers.length);
+        for (Supplier<? extends I> supplier : suppliers) {
+            Objects.requireNonNull(supplier, "Supplier cannot be null!");
+        }
+        this.suppliers = suppliers;
+        this.values = new Object[suppliers.length];
+        Arrays.fill(this.values, UNSET);
+    }
+
+    /**
+     * Returns a tuple whose elements are computed by the given suppliers.
+     *
+     * @param suppliers one supplier per position, in order
+     * @param <I> the type of the elements
+     * @return a new lazy tuple
+     * @throws NullPointerException if a supplier is {@code null}
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") // only a copy of suppliers is kept
+    public static <I extends Comparable<I>> LazyTuple<I> of(Supplier<? extends I>... suppliers) {
+        return new LazyTuple<>(suppliers.clone());
+    }
+
+    /**
+     * Returns a tuple whose elements are computed by the given suppliers.
+     *
+     * @param suppliers one supplier per position, in order
+     * @param <I> the type of the elements
+     * @return a new lazy tuple
+     * @throws NullPointerException if a supplier is {@code null}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <I extends Comparable<I>> LazyTuple<I> of(List<? extends Supplier<? extends I>> suppliers) {
+        return new LazyTuple<>(suppliers.toArray(new Supplier[0]));
+    }
+
+    /**
+     * Returns the element at the given position, computing it if needed.
+     *
+     * @param idx the index of the element to return (0-based)
+     * @return the element
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public I fetch(int idx) {
+        if (idx < 0 || idx >= this.values.length) {
+            throw new IndexOutOfBoundsException("Lazy tuple indexed out of bounds!");
+        }
+        Object value = VALUES.getAcquire(this.values, idx);
+        return (I) (value != UNSET ? value : compute(idx));
+    }
+
+    private synchronized Object compute(int idx) {
+        Object value = this.values[idx];
+        if (value == UNSET) {
+            value = this.suppliers[idx].get();
+            VALUES.setRelease(this.values, idx, value);
+            // drop the supplier and whatever it captured
+            this.suppliers[idx] = null;
+        }
+        return value;
+    }
+
+    /**
+     * Returns whether the element at the given position has been computed.
+     *
+     * @param idx the index of the element (0-based)
+     * @return {@code true} if fetching it will not call its supplier
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public boolean isComputed(int idx) {
+        if (idx < 0 || idx >= this.values.length) {
+            throw new IndexOutOfBoundsException("Lazy tuple indexed out of bounds!");
+        }
+        return VALUES.getAcquire(this.values, idx) != UNSET;
+    }
+
+    /**
+     * Computes every element that has not been computed yet.
+     *
+     * @return this tuple
+     */
+    public LazyTuple<I> forceAll() {
+        for (int i = 0; i < this.values.length; i++) {
+            fetch(i);
+        }
+        return this;
+    }
+}
@@ -19,4 +19,20 @@ public class Monad<I extends Comparable<I>> extends Tuple<I> {
         }
         return tuple.get(idx);
     }
+
+    /**
+     * Does nothing: a single element is always in order. Leaving the tuple untouched
+     * keeps shared instances, such as those of {@link Tuples#of(Comparable)}, safe to use
+     * from any thread.
+     */
+    @Override
+    public void sortNatural() {
+    }
+
+    /**
+     * Does nothing: a single element is always in order.
+     */
+    @Override
+    public void sortReverseNatural() {
+    }
 }
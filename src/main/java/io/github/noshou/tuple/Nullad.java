@@ -17,4 +17,20 @@ public class Nullad<I extends Comparable<I>> extends Tuple<I> {
     public I fetch(int idx) {
         throw new IndexOutOfBoundsException("A nullad contains no elements!");
     }
+
+    /**
+     * Does nothing: an empty tuple is always in order. Leaving the tuple untouched
+     * keeps shared instances, such as those of {@link Tuples#of()}, safe to use
+     * from any thread.
+     */
+    @Override
+    public void sortNatural() {
+    }
+
+    /**
+     * Does nothing: an empty tuple is always in order.
+     */
+    @Override
+    public void sortReverseNatural() {
+    }
 }
@@ -32,6 +32,16 @@ public class Octad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Octad} over an array of 8 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Octad(I[] items) {
+        super(8, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 7)) {
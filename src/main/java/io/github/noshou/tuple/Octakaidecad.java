@@ -52,6 +52,16 @@ public class Octakaidecad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Octakaidecad} over an array of 18 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Octakaidecad(I[] items) {
+        super(18, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 17)) {
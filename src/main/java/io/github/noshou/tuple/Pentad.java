@@ -26,6 +26,16 @@ public class Pentad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Pentad} over an array of 5 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Pentad(I[] items) {
+        super(5, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 4)) {
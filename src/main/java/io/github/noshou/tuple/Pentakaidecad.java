@@ -46,6 +46,16 @@ public class Pentakaidecad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Pentakaidecad} over an array of 15 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Pentakaidecad(I[] items) {
+        super(15, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 14)) {
@@ -1,11 +1,26 @@
 package io.github.noshou.tuple;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+
 /**
  * A {@code Polyad} is a fixed-size tuple of n {@link Comparable} elements.
+ * <p>
+ * A Polyad built by its constructor copies the elements. One obtained from
+ * {@link #wrap(Comparable[])} reads them straight from the caller's array
+ * instead; both kinds are equal when they hold equal elements.
  *
  * @param <I> the type of the element in this tuple; must implement {@link Comparable}
  */
 public class Polyad<I extends Comparable<I>> extends Tuple<I> {
 
+    /**
+     * The elements of a wrapped Polyad, or {@code null} if they are kept in {@link #tuple}.
+     */
+    private final I[] items;
+
     /**
      * Constructs a {@code Polyad} from an array of elements.
      *
@@ -14,6 +29,28 @@ public class Polyad<I extends Comparable<I>> extends Tuple<I> {
     @SuppressWarnings("unchecked")
     public Polyad(I[] items) {
         super(items.length, items);
+        this.items = null;
+    }
+
+    /**
+     * Constructs a {@code Polyad} backed by the given array; see {@link #wrap(Comparable[])}.
+     */
+    private Polyad(int size, I[] items) {
+        super(size);
+        this.items = items;
+    }
+
+    /**
+     * Returns a {@code Polyad} backed by the given array, without copying it.
+     * The caller hands the array over and must not modify it afterwards;
+     * {@link #sortNatural()} and {@link #sortReverseNatural()} reorder it in place.
+     *
+     * @param items the elements, owned by the returned tuple from now on
+     * @param <I> the type of the elements
+     * @return a Polyad over {@code items}
+     */
+    public static <I extends Comparable<I>> Polyad<I> wrap(I[] items) {
+        return new Polyad<>(items.length, items);
     }
 
     /**
@@ -28,6 +65,101 @@ public class Polyad<I extends Comparable<I>> extends Tuple<I> {
         if (idx < 0 || idx >= super.fetchSize()) {
             throw new IndexOutOfBoundsException("Polyad indexed out of bounds!");
         }
-        return tuple.get(idx);
+        return this.items != null ? this.items[idx] : tuple.get(idx);
+    }
+
+    @Override
+    public I fetchSmallest() {
+        if (this.items == null) {
+            return super.fetchSmallest();
+        }
+        I smallest = this.items.length > 0 ? this.items[0] : null;
+        for (int i = 1; i < this.items.length; i++) {
+            if (this.items[i].compareTo(smallest) < 0) {
+                smallest = this.items[i];
+            }
+        }
+        return smallest;
+    }
+
+    @Override
+    public I fetchLargest() {
+        if (this.items == null) {
+            return super.fetchLargest();
+        }
+        I largest = this.items.length > 0 ? this.items[0] : null;
+        for (int i = 1; i < this.items.length; i++) {
+            if (this.items[i].compareTo(largest) > 0) {
+                largest = this.items[i];
+            }
+        }
+        return largest;
+    }
+
+    @Override
+    public void sortNatural() {
+        if (this.items == null) {
+            super.sortNatural();
+            return;
+        }
+        TupleMetrics.SortEvent event = TupleMetrics.ENABLED ? TupleMetrics.beginSort() : null;
+        Arrays.sort(this.items);
+        if (event != null) {
+            TupleMetrics.endSort(event, this, false);
+        }
+    }
+
+    @Override
+    public void sortReverseNatural() {
+        if (this.items == null) {
+            super.sortReverseNatural();
+            return;
+        }
+        TupleMetrics.SortEvent event = TupleMetrics.ENABLED ? TupleMetrics.beginSort() : null;
+        Arrays.sort(this.items, Collections.reverseOrder());
+        if (event != null) {
+            TupleMetrics.endSort(event, this, true);
+        }
+    }
+
+    @Override
+    public Iterator<I> iterator() {
+        if (this.items == null) {
+            return super.iterator();
+        }
+        return Collections.unmodifiableList(Arrays.asList(this.items)).iterator();
+    }
+
+    @Override
+    public int hashCode() {
+        if (this.items == null) {
+            return super.hashCode();
+        }
+        if (TupleMetrics.ENABLED) {
+            TupleMetrics.hashed();
+        }
+        // the hash of the equivalent position-keyed map, as computed by Tuple
+        int h = 0;
+        for (int i = 0; i < this.items.length; i++) {
+            h += i ^ Objects.hashCode(this.items[i]);
+        }
+        return 31 + h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        Polyad<?> other = (Polyad<?>) obj;
+        if (this.items == null && other.items == null) {
+            return super.equals(obj);
+        }
+        if (other.fetchSize() != fetchSize()) return false;
+        for (int i = 0; i < fetchSize(); i++) {
+            if (!Objects.equals(fetch(i), other.fetch(i))) {
+                return false;
+            }
+        }
+        return true;
     }
 }
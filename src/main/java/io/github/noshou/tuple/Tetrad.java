@@ -25,6 +25,16 @@ public class Tetrad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Tetrad} over an array of 4 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Tetrad(I[] items) {
+        super(4, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 3)) {
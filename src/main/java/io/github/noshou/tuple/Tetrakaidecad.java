@@ -44,6 +44,16 @@ public class Tetrakaidecad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Tetrakaidecad} over an array of 14 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Tetrakaidecad(I[] items) {
+        super(14, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 13)) {
@@ -22,6 +22,16 @@ public class Triad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Triad} over an array of 3 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Triad(I[] items) {
+        super(3, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 2)) {
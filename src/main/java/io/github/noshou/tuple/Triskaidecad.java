@@ -42,6 +42,16 @@ public class Triskaidecad<I extends Comparable<I>> extends Tuple<I> {
         );
     }
 
+    /**
+     * Constructs a {@code Triskaidecad} over an array of 13 elements, without the
+     * intermediate array of the public constructor; for {@link Tuples#of(Comparable[])}.
+     *
+     * @param items the elements, read but not retained
+     */
+    Triskaidecad(I[] items) {
+        super(13, items);
+    }
+
     @Override
     public I fetch(int idx) {
         if ((idx < 0) || (idx > 12)) {
@@ -1,4 +1,5 @@
 package io.github.noshou.tuple;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -26,13 +27,38 @@ public abstract class Tuple<I extends Comparable<? super I>>
         if (items.length != size) {
             throw new IndexOutOfBoundsException();
         }
-        this.tuple = new LinkedHashMap<>();
+        // sized up front so that wide tuples are not rehashed while filled
+        this.tuple = LinkedHashMap.newLinkedHashMap(size);
         int incr = 0;
         for (I item : items) {
             this.tuple.put(incr, item);
             incr++;
         }
         this.size = size;
+        if (TupleMetrics.ENABLED) {
+            TupleMetrics.allocated(size);
+        }
+    }
+
+    /**
+     * Constructs a Tuple of the given size whose items are not kept in the
+     * backing map but supplied by the subclass through {@link #fetch(int)}.
+     * Such subclasses must override the methods that read {@link #tuple}
+     * directly: {@link #fetchSmallest()}, {@link #fetchLargest()},
+     * {@link #sortNatural()}, {@link #sortReverseNatural()},
+     * {@link #iterator()}, {@link #hashCode()} and {@link #equals(Object)}.
+     *
+     * @param size the size of the tuple
+     */
+    protected Tuple(int size) {
+        if (size < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.tuple = Collections.emptyMap();
+        this.size = size;
+        if (TupleMetrics.ENABLED) {
+            TupleMetrics.allocated(size);
+        }
     }
 
 
@@ -70,10 +96,13 @@ public abstract class Tuple<I extends Comparable<? super I>>
      * @return the smallest item in the tuple
      */
     public I fetchSmallest() {
-        I smallest = this.tuple.get(0);
-        for (int i = 1; i < this.fetchSize(); i++) {
-            if (this.tuple.get(i).compareTo(smallest) < 0) {
-                smallest = this.tuple.get(i);
+        // walk the values in order rather than looking up each boxed index
+        Iterator<I> items = this.tuple.values().iterator();
+        I smallest = items.hasNext() ? items.next() : null;
+        while (items.hasNext()) {
+            I item = items.next();
+            if (item.compareTo(smallest) < 0) {
+                smallest = item;
             }
         }
         return smallest;
@@ -86,10 +115,12 @@ public abstract class Tuple<I extends Comparable<? super I>>
      * @return the largest item in the tuple
      */
     public I fetchLargest() {
-        I largest = this.tuple.get(0);
-        for (int i = 1; i < this.fetchSize(); i++) {
-            if (this.tuple.get(i).compareTo(largest) > 0) {
-                largest = this.tuple.get(i);
+        Iterator<I> items = this.tuple.values().iterator();
+        I largest = items.hasNext() ? items.next() : null;
+        while (items.hasNext()) {
+            I item = items.next();
+            if (item.compareTo(largest) > 0) {
+                largest = item;
             }
         }
         return largest;
@@ -100,6 +131,7 @@ public abstract class Tuple<I extends Comparable<? super I>>
      * Reassigns the keys to match the new order (0-based).
      */
     public void sortNatural() {
+        TupleMetrics.SortEvent event = TupleMetrics.ENABLED ? TupleMetrics.beginSort() : null;
         List<Map.Entry<Integer, I>> entries = new ArrayList<>(this.tuple.entrySet());
         entries.sort(Map.Entry.comparingByValue());
         this.tuple.clear();
@@ -108,6 +140,9 @@ public abstract class Tuple<I extends Comparable<? super I>>
             this.tuple.put(idx, entry.getValue());
             idx++;
         }
+        if (event != null) {
+            TupleMetrics.endSort(event, this, false);
+        }
     }
 
     /**
@@ -115,6 +150,7 @@ public abstract class Tuple<I extends Comparable<? super I>>
      * Reassigns the keys to match the new order (0-based).
      */
     public void sortReverseNatural() {
+        TupleMetrics.SortEvent event = TupleMetrics.ENABLED ? TupleMetrics.beginSort() : null;
         List<Map.Entry<Integer, I>> entries = new ArrayList<>(this.tuple.entrySet());
         entries.sort(Comparator.comparing(Map.Entry<Integer, I>::getValue).reversed());
         this.tuple.clear();
@@ -123,6 +159,9 @@ public abstract class Tuple<I extends Comparable<? super I>>
             this.tuple.put(idx, entry.getValue());
             idx++;
         }
+        if (event != null) {
+            TupleMetrics.endSort(event, this, true);
+        }
     }
 
     /**
@@ -132,7 +171,7 @@ public abstract class Tuple<I extends Comparable<? super I>>
      */
     public I[] toList() {
         // Warning: this will need to be fixed because of type erasure issues
-        I[] list = (I[]) new Comparable[this.tuple.size()];
+        I[] list = (I[]) new Comparable[this.fetchSize()];
         for (int i = 0; i < this.fetchSize(); i++) {
             list[i] = this.fetch(i);
         }
@@ -155,6 +194,16 @@ public abstract class Tuple<I extends Comparable<? super I>>
      */
     @Override
     public int compareTo(Tuple<I> other) {
+        if (TupleMetrics.ENABLED) {
+            TupleMetrics.CompareEvent event = TupleMetrics.beginCompare(this.fetchSize(), other.fetchSize());
+            int result = compareItems(other);
+            TupleMetrics.endCompare(event, this, other.fetchSize(), result);
+            return result;
+        }
+        return compareItems(other);
+    }
+
+    private int compareItems(Tuple<I> other) {
 
         // get sizes
         int this_size = this.fetchSize();
@@ -226,19 +275,61 @@ public abstract class Tuple<I extends Comparable<? super I>>
      */
     @Override
     public String toString() {
-        StringBuilder tupleStr = new StringBuilder();
-        tupleStr.append("⟨");
-        List<Map.Entry<Integer, I>> entries = new ArrayList<>(this.tuple.entrySet());
+        return appendTo(new StringBuilder()).toString();
+    }
 
-        for (int i = 0; i < entries.size(); i++) {
-            tupleStr.append(entries.get(i).getValue().toString());
-            if (i < entries.size() - 1) {
-                tupleStr.append(", ");
+    /**
+     * Appends the string representation of this tuple, as returned by
+     * {@link #toString()}, to a {@link StringBuilder}. The elements are appended
+     * one by one; {@code long}, {@code int} and {@code double} elements are
+     * appended without creating their String.
+     *
+     * @param out the builder to append to
+     * @return {@code out}
+     */
+    public StringBuilder appendTo(StringBuilder out) {
+        out.append('⟨');
+        Iterator<I> items = this.iterator();
+        while (items.hasNext()) {
+            I item = items.next();
+            if (item instanceof Long l) {
+                out.append(l.longValue());
+            } else if (item instanceof Integer n) {
+                out.append(n.intValue());
+            } else if (item instanceof Double d) {
+                out.append(d.doubleValue());
+            } else {
+                out.append(item);
+            }
+            if (items.hasNext()) {
+                out.append(", ");
             }
         }
+        return out.append('⟩');
+    }
 
-        tupleStr.append("⟩");
-        return tupleStr.toString();
+    /**
+     * Appends the string representation of this tuple, as returned by
+     * {@link #toString()}, to an {@link Appendable} such as a {@link java.io.Writer},
+     * element by element and without building the whole String first.
+     *
+     * @param out the destination
+     * @return {@code out}
+     * @throws IOException if {@code out} fails
+     */
+    public Appendable appendTo(Appendable out) throws IOException {
+        if (out instanceof StringBuilder sb) {
+            return appendTo(sb);
+        }
+        out.append('⟨');
+        Iterator<I> items = this.iterator();
+        while (items.hasNext()) {
+            out.append(String.valueOf(items.next()));
+            if (items.hasNext()) {
+                out.append(", ");
+            }
+        }
+        return out.append('⟩');
     }
 
     /**
@@ -260,6 +351,9 @@ public abstract class Tuple<I extends Comparable<? super I>>
      */
     @Override
     public int hashCode() {
+        if (TupleMetrics.ENABLED) {
+            TupleMetrics.hashed();
+        }
         return Objects.hash(tuple);
     }
 
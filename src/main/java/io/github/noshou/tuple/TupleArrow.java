@@ -0,0 +1,857 @@
+package io.github.noshou.tuple;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Writes and reads collections of same-size tuples as
+ * <a href="https://arrow.apache.org/docs/format/Columnar.html">Apache Arrow</a>
+ * IPC files, without depending on the Arrow libraries.
+ * <p>
+ * Each position becomes a nullable column: {@code Long}s are stored as
+ * {@code Int64}, {@code Integer}s as {@code Int32}, {@code Double}s as
+ * {@code Float64} and {@code String}s as dictionary-encoded {@code Utf8} with
+ * {@code Int32} indices. Rows are split into record batches, and {@code null}
+ * elements are recorded in validity bitmaps. The files can be opened by Arrow
+ * tools such as pyarrow's {@code pyarrow.ipc.open_file}.
+ * <p>
+ * {@link #read(Path)} memory-maps a file and returns a {@link Table} whose rows
+ * are views decoding their elements straight from the mapping. Besides the
+ * files written here, it reads Arrow files holding uncompressed columns of the
+ * types above, {@code Utf8} columns without a dictionary, and dictionaries
+ * with {@code Int64} indices.
+ */
+public final class TupleArrow {
+
+    /**
+     * The number of rows per record batch used when none is given.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1 << 16;
+
+    private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    private static final int CONTINUATION = -1;
+    private static final int VERSION = 4; // MetadataVersion.V5
+
+    // MessageHeader union
+    private static final int SCHEMA = 1;
+    private static final int DICTIONARY_BATCH = 2;
+    private static final int RECORD_BATCH = 3;
+
+    // Type union
+    private static final int INT = 2;
+    private static final int FLOATING_POINT = 3;
+    private static final int UTF8 = 5;
+    private static final int DOUBLE_PRECISION = 2;
+
+    // column kinds
+    private static final int LONG = 0;
+    private static final int INTEGER = 1;
+    private static final int DOUBLE = 2;
+    private static final int STRING = 3;
+
+    private TupleArrow() {
+    }
+
+    /**
+     * Writes tuples to an Arrow IPC file, naming the columns {@code f0},
+     * {@code f1}, ... and using {@link #DEFAULT_BATCH_SIZE} rows per batch.
+     *
+     * @param file the file to create or replace
+     * @param tuples the tuples; all of the same size
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if the tuples differ in size, or a
+     *         position holds elements of different or unsupported types
+     */
+    public static void write(Path file, Collection<? extends Tuple<?>> tuples) throws IOException {
+        write(file, tuples, null, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Writes tuples to an Arrow IPC file.
+     *
+     * @param file the file to create or replace
+     * @param tuples the tuples; all of the same size
+     * @param names the column names, one per position, or {@code null} for
+     *              {@code f0}, {@code f1}, ...
+     * @param batchSize the number of rows per record batch
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if the tuples differ in size, a position
+     *         holds elements of different or unsupported types, the number of
+     *         names does not match, or the batch size is not positive
+     */
+    public static void write(Path file, Collection<? extends Tuple<?>> tuples, List<String> names, int batchSize)
+            throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive!");
+        }
+        int arity = tuples.isEmpty() ? 0 : tuples.iterator().next().fetchSize();
+        if (names == null) {
+            String[] generated = new String[arity];
+            Arrays.setAll(generated, pos -> "f" + pos);
+            names = List.of(generated);
+        } else if (names.size() != arity) {
+            throw new IllegalArgumentException("Expected " + arity + " column names!");
+        }
+
+        // pass 1: column kinds and string dictionaries
+        int[] kinds = new int[arity];
+        Arrays.fill(kinds, -1);
+        List<Map<String, Integer>> dictionaries = new ArrayList<>(arity);
+        for (int pos = 0; pos < arity; pos++) {
+            dictionaries.add(null);
+        }
+        for (Tuple<?> t : tuples) {
+            if (t.fetchSize() != arity) {
+                throw new IllegalArgumentException("All tuples in a file must be of the same size!");
+            }
+            for (int pos = 0; pos < arity; pos++) {
+                Object item = t.fetch(pos);
+                if (item == null) {
+                    continue;
+                }
+                int kind = kindOf(item);
+                if (kinds[pos] < 0) {
+                    kinds[pos] = kind;
+                    if (kind == STRING) {
+                        dictionaries.set(pos, new LinkedHashMap<>());
+                    }
+                } else if (kinds[pos] != kind) {
+                    throw new IllegalArgumentException("Position " + pos + " holds elements of different types!");
+                }
+                if (kind == STRING) {
+                    dictionaries.get(pos).putIfAbsent((String) item, dictionaries.get(pos).size());
+                }
+            }
+        }
+        for (int pos = 0; pos < arity; pos++) {
+            if (kinds[pos] < 0) {
+                kinds[pos] = LONG; // only nulls
+            }
+        }
+
+        // pass 2: the file itself
+        try (Sink out = new Sink(Files.newOutputStream(file))) {
+            out.write(MAGIC);
+            out.pad();
+            FlatBuffers.Table schema = schema(names, kinds);
+            out.message(SCHEMA, schema, null);
+
+            List<long[]> dictionaryBlocks = new ArrayList<>();
+            for (int pos = 0; pos < arity; pos++) {
+                if (kinds[pos] == STRING) {
+                    FlatBuffers.Output body = new FlatBuffers.Output();
+                    FlatBuffers.Table data = dictionaryData(dictionaries.get(pos).keySet(), body);
+                    FlatBuffers.Table batch = new FlatBuffers.Table()
+                            .putLong(0, pos)
+                            .putNode(1, data)
+                            .putBoolean(2, false);
+                    dictionaryBlocks.add(out.message(DICTIONARY_BATCH, batch, body));
+                }
+            }
+
+            List<long[]> recordBlocks = new ArrayList<>();
+            List<Tuple<?>> rows = new ArrayList<>(Math.min(batchSize, tuples.size()));
+            Iterator<? extends Tuple<?>> it = tuples.iterator();
+            while (it.hasNext()) {
+                rows.clear();
+                while (it.hasNext() && rows.size() < batchSize) {
+                    rows.add(it.next());
+                }
+                FlatBuffers.Output body = new FlatBuffers.Output();
+                FlatBuffers.Table batch = recordBatch(rows, kinds, dictionaries, body);
+                recordBlocks.add(out.message(RECORD_BATCH, batch, body));
+            }
+
+            // end of stream, then the footer
+            out.writeInt(CONTINUATION);
+            out.writeInt(0);
+            byte[] footer = FlatBuffers.encode(new FlatBuffers.Table()
+                    .putShort(0, VERSION)
+                    .putNode(1, schema(names, kinds))
+                    .putNode(2, blocks(dictionaryBlocks))
+                    .putNode(3, blocks(recordBlocks)));
+            out.write(footer);
+            out.writeInt(footer.length);
+            out.write(MAGIC);
+        }
+    }
+
+    private static int kindOf(Object item) {
+        if (item instanceof Long) {
+            return LONG;
+        } else if (item instanceof Integer) {
+            return INTEGER;
+        } else if (item instanceof Double) {
+            return DOUBLE;
+        } else if (item instanceof String) {
+            return STRING;
+        }
+        throw new IllegalArgumentException("Unsupported element type " + item.getClass().getName() + "!");
+    }
+
+    private static FlatBuffers.Table schema(List<String> names, int[] kinds) {
+        List<FlatBuffers.Table> fields = new ArrayList<>(kinds.length);
+        for (int pos = 0; pos < kinds.length; pos++) {
+            FlatBuffers.Table field = new FlatBuffers.Table()
+                    .putString(0, names.get(pos))
+                    .putBoolean(1, true)
+                    .putNode(5, new FlatBuffers.Vector(List.of()));
+            switch (kinds[pos]) {
+                case LONG -> field.putByte(2, INT).putNode(3, intType(64));
+                case INTEGER -> field.putByte(2, INT).putNode(3, intType(32));
+                case DOUBLE -> field.putByte(2, FLOATING_POINT)
+                        .putNode(3, new FlatBuffers.Table().putShort(0, DOUBLE_PRECISION));
+                default -> field.putByte(2, UTF8)
+                        .putNode(3, new FlatBuffers.Table())
+                        .putNode(4, new FlatBuffers.Table()
+                                .putLong(0, pos)
+                                .putNode(1, intType(32))
+                                .putBoolean(2, false));
+            }
+            fields.add(field);
+        }
+        return new FlatBuffers.Table()
+                .putShort(0, 0) // little endian
+                .putNode(1, new FlatBuffers.Vector(fields));
+    }
+
+    private static FlatBuffers.Table intType(int bitWidth) {
+        return new FlatBuffers.Table().putInt(0, bitWidth).putBoolean(1, true);
+    }
+
+    private static FlatBuffers.StructVector blocks(List<long[]> blocks) {
+        long[] values = new long[3 * blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            System.arraycopy(blocks.get(i), 0, values, 3 * i, 3);
+        }
+        return new FlatBuffers.StructVector(values, 3);
+    }
+
+    /**
+     * Appends the offsets and bytes of a dictionary's Strings to {@code body}
+     * and returns the record batch describing them.
+     */
+    private static FlatBuffers.Table dictionaryData(Collection<String> values, FlatBuffers.Output body) {
+        List<byte[]> utf8 = new ArrayList<>(values.size());
+        for (String value : values) {
+            utf8.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        long[] buffers = new long[6];
+        buffers[0] = 0; // no validity bitmap
+        buffers[1] = 0;
+        buffers[2] = body.size();
+        int offset = 0;
+        body.putInt(offset);
+        for (byte[] bytes : utf8) {
+            offset += bytes.length;
+            body.putInt(offset);
+        }
+        buffers[3] = body.size() - buffers[2];
+        body.align(8);
+        buffers[4] = body.size();
+        for (byte[] bytes : utf8) {
+            for (byte b : bytes) {
+                body.putByte(b);
+            }
+        }
+        buffers[5] = body.size() - buffers[4];
+        body.align(8);
+        return new FlatBuffers.Table()
+                .putLong(0, values.size())
+                .putNode(1, new FlatBuffers.StructVector(new long[]{values.size(), 0}, 2))
+                .putNode(2, new FlatBuffers.StructVector(buffers, 2));
+    }
+
+    private static FlatBuffers.Table recordBatch(List<Tuple<?>> rows, int[] kinds,
+                                                 List<Map<String, Integer>> dictionaries, FlatBuffers.Output body) {
+        int n = rows.size();
+        long[] nodes = new long[2 * kinds.length];
+        long[] buffers = new long[4 * kinds.length];
+        for (int pos = 0; pos < kinds.length; pos++) {
+            int nulls = 0;
+            for (Tuple<?> row : rows) {
+                if (row.fetch(pos) == null) {
+                    nulls++;
+                }
+            }
+            nodes[2 * pos] = n;
+            nodes[2 * pos + 1] = nulls;
+
+            // validity bitmap, least significant bit first, omitted without nulls
+            int validity = body.size();
+            if (nulls > 0) {
+                for (int i = 0; i < n; i += 8) {
+                    int bits = 0;
+                    for (int j = i; j < Math.min(i + 8, n); j++) {
+                        if (rows.get(j).fetch(pos) != null) {
+                            bits |= 1 << (j - i);
+                        }
+                    }
+                    body.putByte(bits);
+                }
+            }
+            buffers[4 * pos] = validity;
+            buffers[4 * pos + 1] = body.size() - validity;
+            body.align(8);
+
+            int data = body.size();
+            Map<String, Integer> dictionary = dictionaries.get(pos);
+            for (Tuple<?> row : rows) {
+                Object item = row.fetch(pos);
+                switch (kinds[pos]) {
+                    case LONG -> {
+                        body.reserve(8);
+                        body.put(body.size() - 8, 8, item == null ? 0 : (Long) item);
+                    }
+                    case INTEGER -> body.putInt(item == null ? 0 : (Integer) item);
+                    case DOUBLE -> {
+                        body.reserve(8);
+                        body.put(body.size() - 8, 8, Double.doubleToRawLongBits(item == null ? 0 : (Double) item));
+                    }
+                    default -> body.putInt(item == null ? 0 : dictionary.get(item));
+                }
+            }
+            buffers[4 * pos + 2] = data;
+            buffers[4 * pos + 3] = body.size() - data;
+            body.align(8);
+        }
+        return new FlatBuffers.Table()
+                .putLong(0, n)
+                .putNode(1, new FlatBuffers.StructVector(nodes, 2))
+                .putNode(2, new FlatBuffers.StructVector(buffers, 2));
+    }
+
+    /**
+     * Writes the encapsulated messages of the file and keeps track of their
+     * positions.
+     */
+    private static final class Sink implements AutoCloseable {
+        private final OutputStream out;
+        private long position;
+
+        Sink(OutputStream out) {
+            this.out = new BufferedOutputStream(out, 1 << 16);
+        }
+
+        void write(byte[] bytes) throws IOException {
+            this.out.write(bytes);
+            this.position += bytes.length;
+        }
+
+        void writeInt(int value) throws IOException {
+            write(new byte[]{(byte) value, (byte) (value >>> 8), (byte) (value >>> 16), (byte) (value >>> 24)});
+        }
+
+        void pad() throws IOException {
+            while (this.position % 8 != 0) {
+                this.out.write(0);
+                this.position++;
+            }
+        }
+
+        /**
+         * Writes a message and its body.
+         *
+         * @return the file block of the message: offset, metadata length, body length
+         */
+        long[] message(int type, FlatBuffers.Table header, FlatBuffers.Output body) throws IOException {
+            long offset = this.position;
+            long bodyLength = body == null ? 0 : body.size();
+            byte[] metadata = FlatBuffers.encode(new FlatBuffers.Table()
+                    .putShort(0, VERSION)
+                    .putByte(1, type)
+                    .putNode(2, header)
+                    .putLong(3, bodyLength));
+            writeInt(CONTINUATION);
+            writeInt(metadata.length);
+            write(metadata);
+            if (body != null) {
+                body.writeTo(this.out);
+                this.position += bodyLength;
+            }
+            return new long[]{offset, 8 + metadata.length, bodyLength};
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.close();
+        }
+    }
+
+    /**
+     * Memory-maps an Arrow IPC file.
+     *
+     * @param file the file
+     * @param <I> the type of the elements, as far as the caller knows it
+     * @return the rows of the file
+     * @throws IOException if the file cannot be read or is larger than 2 GiB
+     * @throws IllegalArgumentException if the file is not an Arrow IPC file or
+     *         uses a type, compression or dictionary delta that is not supported
+     */
+    public static <I extends Comparable<I>> Table<I> read(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Arrow files larger than 2 GiB cannot be mapped!");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return new Table<>(FlatBuffers.order(mapped));
+    }
+
+    /**
+     * The rows of a memory-mapped Arrow IPC file.
+     * <p>
+     * {@link #get(int)} returns a view whose elements are decoded from the
+     * mapping on each {@link Tuple#fetch(int)}; Strings of a dictionary are
+     * decoded once and shared. The table is read-only and safe for concurrent
+     * reads.
+     *
+     * @param <I> the type of the elements
+     */
+    public static final class Table<I extends Comparable<I>> extends AbstractList<Tuple<I>> implements RandomAccess {
+        private final ByteBuffer buffer;
+        private final String[] names;
+        private final int[] kinds;
+        private final long[] dictionaryIds;
+        private final int[] indexWidths;
+        private final Map<Long, Dictionary> dictionaries = new HashMap<>();
+        private final List<Batch> batches = new ArrayList<>();
+        private final int[] starts;
+        private final int size;
+
+        private Table(ByteBuffer buffer) {
+            this.buffer = buffer;
+            int length = buffer.capacity();
+            if (length < 2 * MAGIC.length + 4 || !magicAt(0) || !magicAt(length - MAGIC.length)) {
+                throw new IllegalArgumentException("Not an Arrow IPC file!");
+            }
+            int footerLength = buffer.getInt(length - MAGIC.length - 4);
+            int footer = FlatBuffers.root(buffer, length - MAGIC.length - 4 - footerLength);
+
+            int schema = FlatBuffers.reference(buffer, footer, 1);
+            int fields = FlatBuffers.reference(buffer, schema, 1);
+            int arity = FlatBuffers.length(buffer, fields);
+            this.names = new String[arity];
+            this.kinds = new int[arity];
+            this.dictionaryIds = new long[arity];
+            this.indexWidths = new int[arity];
+            for (int pos = 0; pos < arity; pos++) {
+                readField(pos, FlatBuffers.element(buffer, fields, pos));
+            }
+
+            int dictionaryBlocks = FlatBuffers.reference(buffer, footer, 2);
+            for (int i = 0; i < FlatBuffers.length(buffer, dictionaryBlocks); i++) {
+                readDictionary(dictionaryBlocks + 4 + 24 * i);
+            }
+            int recordBlocks = FlatBuffers.reference(buffer, footer, 3);
+            int count = FlatBuffers.length(buffer, recordBlocks);
+            this.starts = new int[count];
+            long rows = 0;
+            for (int i = 0; i < count; i++) {
+                this.starts[i] = (int) rows;
+                Batch batch = readBatch(recordBlocks + 4 + 24 * i);
+                this.batches.add(batch);
+                rows += batch.rows;
+            }
+            if (rows > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many rows in Arrow file!");
+            }
+            this.size = (int) rows;
+        }
+
+        private boolean magicAt(int at) {
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (this.buffer.get(at + i) != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void readField(int pos, int field) {
+            ByteBuffer b = this.buffer;
+            String name = FlatBuffers.string(b, field, 0);
+            this.names[pos] = name == null ? "" : name;
+            int type = FlatBuffers.reference(b, field, 3);
+            int kind = switch (FlatBuffers.readByte(b, field, 2, 0)) {
+                case INT -> {
+                    int bitWidth = FlatBuffers.readInt(b, type, 0, 0);
+                    if (FlatBuffers.readByte(b, type, 1, 0) == 0 || (bitWidth != 32 && bitWidth != 64)) {
+                        throw unsupported(name, "only signed 32 and 64 bit integers");
+                    }
+                    yield bitWidth == 64 ? LONG : INTEGER;
+                }
+                case FLOATING_POINT -> {
+                    if (FlatBuffers.readShort(b, type, 0, 0) != DOUBLE_PRECISION) {
+                        throw unsupported(name, "only double precision floating point");
+                    }
+                    yield DOUBLE;
+                }
+                case UTF8 -> STRING;
+                default -> throw unsupported(name, "type " + FlatBuffers.readByte(b, field, 2, 0));
+            };
+            int dictionary = FlatBuffers.reference(b, field, 4);
+            if (dictionary >= 0) {
+                if (kind != STRING) {
+                    throw unsupported(name, "only dictionaries of Strings");
+                }
+                int indexType = FlatBuffers.reference(b, dictionary, 1);
+                int width = indexType < 0 ? 32 : FlatBuffers.readInt(b, indexType, 0, 0);
+                if (width != 32 && width != 64) {
+                    throw unsupported(name, "only 32 and 64 bit dictionary indices");
+                }
+                this.dictionaryIds[pos] = FlatBuffers.readLong(b, dictionary, 0, 0);
+                this.indexWidths[pos] = width;
+            }
+            this.kinds[pos] = kind;
+        }
+
+        private static IllegalArgumentException unsupported(String column, String detail) {
+            return new IllegalArgumentException("Column " + column + " is not supported: " + detail + "!");
+        }
+
+        /**
+         * Resolves the message of a file block.
+         *
+         * @return {header type, header table, body position}
+         */
+        private int[] message(int block) {
+            ByteBuffer b = this.buffer;
+            int offset = (int) b.getLong(block);
+            int metadataLength = b.getInt(block + 8);
+            int metadata = b.getInt(offset) == CONTINUATION ? offset + 8 : offset + 4;
+            int message = FlatBuffers.root(b, metadata);
+            return new int[]{
+                    FlatBuffers.readByte(b, message, 1, 0),
+                    FlatBuffers.reference(b, message, 2),
+                    offset + metadataLength
+            };
+        }
+
+        private void readDictionary(int block) {
+            ByteBuffer b = this.buffer;
+            int[] message = message(block);
+            if (message[0] != DICTIONARY_BATCH) {
+                throw new IllegalArgumentException("Malformed Arrow file: expected a dictionary batch!");
+            }
+            int header = message[1];
+            if (FlatBuffers.readByte(b, header, 2, 0) != 0) {
+                throw new IllegalArgumentException("Dictionary deltas are not supported!");
+            }
+            int data = FlatBuffers.reference(b, header, 1);
+            checkUncompressed(data);
+            int buffers = FlatBuffers.reference(b, data, 2);
+            Dictionary dictionary = new Dictionary(
+                    (int) FlatBuffers.readLong(b, data, 0, 0),
+                    message[2] + (int) b.getLong(buffers + 4 + 16),
+                    message[2] + (int) b.getLong(buffers + 4 + 32));
+            this.dictionaries.put(FlatBuffers.readLong(b, header, 0, 0), dictionary);
+        }
+
+        private void checkUncompressed(int recordBatch) {
+            if (FlatBuffers.reference(this.buffer, recordBatch, 3) >= 0) {
+                throw new IllegalArgumentException("Compressed Arrow files are not supported!");
+            }
+        }
+
+        private Batch readBatch(int block) {
+            ByteBuffer b = this.buffer;
+            int[] message = message(block);
+            if (message[0] != RECORD_BATCH) {
+                throw new IllegalArgumentException("Malformed Arrow file: expected a record batch!");
+            }
+            int header = message[1];
+            checkUncompressed(header);
+            int nodes = FlatBuffers.reference(b, header, 1) + 4;
+            int buffers = FlatBuffers.reference(b, header, 2) + 4;
+            int arity = this.kinds.length;
+            Batch batch = new Batch((int) FlatBuffers.readLong(b, header, 0, 0), arity);
+            int buffer = 0;
+            for (int pos = 0; pos < arity; pos++) {
+                long nulls = b.getLong(nodes + 16 * pos + 8);
+                int validity = message[2] + (int) b.getLong(buffers + 16 * buffer);
+                batch.validity[pos] = nulls == 0 ? -1 : validity;
+                if (this.kinds[pos] == STRING && this.indexWidths[pos] == 0) {
+                    batch.offsets[pos] = message[2] + (int) b.getLong(buffers + 16 * (buffer + 1));
+                    batch.data[pos] = message[2] + (int) b.getLong(buffers + 16 * (buffer + 2));
+                    buffer += 3;
+                } else {
+                    batch.data[pos] = message[2] + (int) b.getLong(buffers + 16 * (buffer + 1));
+                    buffer += 2;
+                }
+            }
+            return batch;
+        }
+
+        /**
+         * Returns the number of positions of the rows.
+         *
+         * @return the number of columns
+         */
+        public int arity() {
+            return this.kinds.length;
+        }
+
+        /**
+         * Returns the name of a column.
+         *
+         * @param pos the position
+         * @return the column name
+         */
+        public String columnName(int pos) {
+            return this.names[pos];
+        }
+
+        /**
+         * Returns the type of the elements of a column.
+         *
+         * @param pos the position
+         * @return {@code long.class}, {@code int.class}, {@code double.class} or {@code String.class}
+         */
+        public Class<?> columnType(int pos) {
+            return switch (this.kinds[pos]) {
+                case LONG -> long.class;
+                case INTEGER -> int.class;
+                case DOUBLE -> double.class;
+                default -> String.class;
+            };
+        }
+
+        /**
+         * Returns the number of record batches in the file.
+         *
+         * @return the number of batches
+         */
+        public int batchCount() {
+            return this.batches.size();
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Returns a view of a row.
+         *
+         * @param index the row
+         * @return a tuple decoding its elements from the file
+         * @throws IndexOutOfBoundsException if {@code index} is out of range
+         */
+        @Override
+        public Tuple<I> get(int index) {
+            Objects.checkIndex(index, this.size);
+            int batch = batchOf(index);
+            return new Row(this.batches.get(batch), index - this.starts[batch]);
+        }
+
+        /**
+         * Returns whether an element is {@code null}.
+         *
+         * @param index the row
+         * @param pos the position
+         * @return {@code true} if the element is null
+         */
+        public boolean isNull(int index, int pos) {
+            Objects.checkIndex(index, this.size);
+            int batch = batchOf(index);
+            return isNull(this.batches.get(batch), index - this.starts[batch], pos);
+        }
+
+        /**
+         * Returns one element.
+         *
+         * @param index the row
+         * @param pos the position
+         * @return the element, or {@code null}
+         */
+        public I fetch(int index, int pos) {
+            Objects.checkIndex(index, this.size);
+            int batch = batchOf(index);
+            return value(this.batches.get(batch), index - this.starts[batch], pos);
+        }
+
+        /**
+         * Returns an element of an {@code Int64} column without boxing it.
+         *
+         * @param index the row
+         * @param pos the position
+         * @return the element; {@code 0} if it is null
+         * @throws IllegalStateException if the column does not hold {@code long}s
+         */
+        public long fetchLong(int index, int pos) {
+            return this.buffer.getLong(position(index, pos, LONG));
+        }
+
+        /**
+         * Returns an element of an {@code Int32} column without boxing it.
+         *
+         * @param index the row
+         * @param pos the position
+         * @return the element; {@code 0} if it is null
+         * @throws IllegalStateException if the column does not hold {@code int}s
+         */
+        public int fetchInt(int index, int pos) {
+            return this.buffer.getInt(position(index, pos, INTEGER));
+        }
+
+        /**
+         * Returns an element of a {@code Float64} column without boxing it.
+         *
+         * @param index the row
+         * @param pos the position
+         * @return the element; {@code 0} if it is null
+         * @throws IllegalStateException if the column does not hold {@code double}s
+         */
+        public double fetchDouble(int index, int pos) {
+            return this.buffer.getDouble(position(index, pos, DOUBLE));
+        }
+
+        private int position(int index, int pos, int kind) {
+            if (this.kinds[pos] != kind) {
+                throw new IllegalStateException("Column " + this.names[pos] + " is a " + columnType(pos) + " column!");
+            }
+            Objects.checkIndex(index, this.size);
+            int batch = batchOf(index);
+            int width = kind == INTEGER ? 4 : 8;
+            return this.batches.get(batch).data[pos] + width * (index - this.starts[batch]);
+        }
+
+        private int batchOf(int index) {
+            int batch = Arrays.binarySearch(this.starts, index);
+            if (batch < 0) {
+                return -batch - 2;
+            }
+            // skip empty batches starting at the same row
+            while (batch + 1 < this.starts.length && this.starts[batch + 1] == index) {
+                batch++;
+            }
+            return batch;
+        }
+
+        private boolean isNull(Batch batch, int row, int pos) {
+            int validity = batch.validity[pos];
+            return validity >= 0 && (this.buffer.get(validity + (row >>> 3)) & (1 << (row & 7))) == 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private I value(Batch batch, int row, int pos) {
+            if (isNull(batch, row, pos)) {
+                return null;
+            }
+            ByteBuffer b = this.buffer;
+            int data = batch.data[pos];
+            Object value = switch (this.kinds[pos]) {
+                case LONG -> b.getLong(data + 8 * row);
+                case INTEGER -> b.getInt(data + 4 * row);
+                case DOUBLE -> b.getDouble(data + 8 * row);
+                default -> {
+                    if (this.indexWidths[pos] == 0) {
+                        int from = b.getInt(batch.offsets[pos] + 4 * row);
+                        int to = b.getInt(batch.offsets[pos] + 4 * row + 4);
+                        yield utf8(data + from, to - from);
+                    }
+                    long code = this.indexWidths[pos] == 32 ? b.getInt(data + 4 * row) : b.getLong(data + 8 * row);
+                    Dictionary dictionary = this.dictionaries.get(this.dictionaryIds[pos]);
+                    if (dictionary == null) {
+                        throw new IllegalArgumentException("Missing dictionary for column " + this.names[pos] + "!");
+                    }
+                    yield dictionary.get((int) code);
+                }
+            };
+            return (I) value;
+        }
+
+        private String utf8(int at, int length) {
+            byte[] bytes = new byte[length];
+            this.buffer.get(at, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * The positions of the buffers of one record batch.
+         */
+        private static final class Batch {
+            final int rows;
+            final int[] validity;
+            final int[] data;
+            final int[] offsets;
+
+            Batch(int rows, int arity) {
+                this.rows = rows;
+                this.validity = new int[arity];
+                this.data = new int[arity];
+                this.offsets = new int[arity];
+            }
+        }
+
+        /**
+         * The Strings of a dictionary batch, decoded on first use.
+         */
+        private final class Dictionary {
+            private final int offsets;
+            private final int data;
+            private final String[] decoded;
+
+            Dictionary(int size, int offsets, int data) {
+                this.offsets = offsets;
+                this.data = data;
+                this.decoded = new String[size];
+            }
+
+            String get(int code) {
+                // racy but benign: every thread decodes the same immutable String
+                String value = this.decoded[code];
+                if (value == null) {
+                    int from = Table.this.buffer.getInt(this.offsets + 4 * code);
+                    int to = Table.this.buffer.getInt(this.offsets + 4 * code + 4);
+                    value = utf8(this.data + from, to - from);
+                    this.decoded[code] = value;
+                }
+                return value;
+            }
+        }
+
+        /**
+         * A view of one row.
+         */
+        private final class Row extends TupleView<I> {
+            private final Batch batch;
+            private final int row;
+
+            Row(Batch batch, int row) {
+                super(Table.this.kinds.length);
+                this.batch = batch;
+                this.row = row;
+            }
+
+            @Override
+            public I fetch(int idx) {
+                if (idx < 0 || idx >= fetchSize()) {
+                    throw new IndexOutOfBoundsException("Row of an Arrow table indexed out of bounds!");
+                }
+                return value(this.batch, this.row, idx);
+            }
+        }
+    }
+}
@@ -0,0 +1,646 @@
+package io.github.noshou.tuple;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A compressed set of non-negative {@code int}s, such as tuple ordinals, in
+ * the layout of a Roaring bitmap.
+ * <p>
+ * Values are grouped by their upper 16 bits. Each group is stored in a
+ * container chosen by its density: a sorted {@code char[]} of at most 4096
+ * values, or a 65536-bit bitmap beyond that. Both take at most 8 KiB, so a
+ * sparse set costs about two bytes per value and a dense one an eighth of a
+ * byte. {@link #and}, {@link #or} and {@link #andNot} work container by
+ * container, with word-wide loops between bitmap containers, and process
+ * the containers of large operands in parallel.
+ * <p>
+ * A bitmap is immutable once published: operations return new bitmaps. The
+ * bitmaps handed out by {@link TuplePositionIndex#matching(int, Object)}
+ * are the exception, as they keep growing with appends to their index.
+ */
+public final class TupleBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+    private static final int PARALLEL_CONTAINERS = 64;
+    private static final TupleBitmap EMPTY = new TupleBitmap(new char[0], new Container[0], 0);
+
+    private static final int AND = 0;
+    private static final int OR = 1;
+    private static final int AND_NOT = 2;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    private TupleBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * Creates an empty bitmap to be filled by {@link #add(int)}.
+     */
+    TupleBitmap() {
+        this(new char[4], new Container[4], 0);
+    }
+
+    /**
+     * Returns the empty bitmap.
+     *
+     * @return a bitmap without values
+     */
+    public static TupleBitmap empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns a bitmap of the given values.
+     *
+     * @param values non-negative values, in any order
+     * @return a new bitmap
+     * @throws IllegalArgumentException if a value is negative
+     */
+    public static TupleBitmap of(int... values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        TupleBitmap bitmap = new TupleBitmap();
+        for (int value : sorted) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns a bitmap of the values from {@code from} inclusive to
+     * {@code to} exclusive.
+     *
+     * @param from the first value
+     * @param to the value after the last
+     * @return a new bitmap
+     * @throws IllegalArgumentException if {@code from} is negative or greater than {@code to}
+     */
+    public static TupleBitmap range(int from, int to) {
+        if (from < 0 || from > to) {
+            throw new IllegalArgumentException("Invalid range [" + from + ", " + to + ")!");
+        }
+        if (from == to) {
+            return EMPTY;
+        }
+        int firstKey = from >>> 16;
+        int lastKey = (to - 1) >>> 16;
+        int n = lastKey - firstKey + 1;
+        char[] keys = new char[n];
+        Container[] containers = new Container[n];
+        for (int i = 0; i < n; i++) {
+            int key = firstKey + i;
+            int lo = key == firstKey ? from & 0xFFFF : 0;
+            int hi = key == lastKey ? ((to - 1) & 0xFFFF) + 1 : 1 << 16;
+            keys[i] = (char) key;
+            containers[i] = BitmapContainer.range(lo, hi).optimize();
+        }
+        return new TupleBitmap(keys, containers, n);
+    }
+
+    /**
+     * Adds a value. Appending values in ascending order is fastest.
+     * Only called while the bitmap is private to its builder.
+     */
+    void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Bitmap values cannot be negative!");
+        }
+        char key = (char) (value >>> 16);
+        int i;
+        if (this.size > 0 && this.keys[this.size - 1] == key) {
+            i = this.size - 1;
+        } else {
+            i = Arrays.binarySearch(this.keys, 0, this.size, key);
+            if (i < 0) {
+                i = -i - 1;
+                if (this.size == this.keys.length) {
+                    this.keys = Arrays.copyOf(this.keys, this.size * 2);
+                    this.containers = Arrays.copyOf(this.containers, this.size * 2);
+                }
+                System.arraycopy(this.keys, i, this.keys, i + 1, this.size - i);
+                System.arraycopy(this.containers, i, this.containers, i + 1, this.size - i);
+                this.keys[i] = key;
+                this.containers[i] = new ArrayContainer(new char[4], 0);
+                this.size++;
+            }
+        }
+        this.containers[i] = this.containers[i].add((char) value);
+    }
+
+    /**
+     * Returns whether the bitmap holds a value.
+     *
+     * @param value the value
+     * @return {@code true} if present
+     */
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int i = Arrays.binarySearch(this.keys, 0, this.size, (char) (value >>> 16));
+        return i >= 0 && this.containers[i].contains((char) value);
+    }
+
+    /**
+     * Returns the number of values.
+     *
+     * @return the cardinality of the set
+     */
+    public int cardinality() {
+        int n = 0;
+        for (int i = 0; i < this.size; i++) {
+            n += this.containers[i].cardinality();
+        }
+        return n;
+    }
+
+    /**
+     * Returns whether the bitmap holds no value.
+     *
+     * @return {@code true} if empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Returns the values held by both bitmaps.
+     *
+     * @param other the other bitmap
+     * @return a new bitmap of the intersection
+     */
+    public TupleBitmap and(TupleBitmap other) {
+        return combine(this, other, AND);
+    }
+
+    /**
+     * Returns the values held by either bitmap.
+     *
+     * @param other the other bitmap
+     * @return a new bitmap of the union
+     */
+    public TupleBitmap or(TupleBitmap other) {
+        return combine(this, other, OR);
+    }
+
+    /**
+     * Returns the values of this bitmap not held by the other.
+     *
+     * @param other the values to remove
+     * @return a new bitmap of the difference
+     */
+    public TupleBitmap andNot(TupleBitmap other) {
+        return combine(this, other, AND_NOT);
+    }
+
+    /**
+     * Returns the union of many bitmaps, merged pairwise in parallel.
+     *
+     * @param bitmaps the bitmaps
+     * @return a new bitmap of the union
+     */
+    public static TupleBitmap or(Collection<TupleBitmap> bitmaps) {
+        return bitmaps.parallelStream().reduce(EMPTY, TupleBitmap::or);
+    }
+
+    /**
+     * Returns the intersection of many bitmaps, starting from the smallest.
+     *
+     * @param bitmaps the bitmaps
+     * @return a new bitmap of the intersection, empty if there are no bitmaps
+     */
+    public static TupleBitmap and(Collection<TupleBitmap> bitmaps) {
+        TupleBitmap[] sorted = bitmaps.toArray(new TupleBitmap[0]);
+        if (sorted.length == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(sorted, (a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+        TupleBitmap result = sorted[0];
+        for (int i = 1; i < sorted.length && !result.isEmpty(); i++) {
+            result = result.and(sorted[i]);
+        }
+        return result == sorted[0] ? combine(result, result, AND) : result;
+    }
+
+    private static TupleBitmap combine(TupleBitmap a, TupleBitmap b, int op) {
+        // align the containers of both operands by key
+        int capacity = op == OR ? a.size + b.size : a.size;
+        char[] keys = new char[capacity];
+        Container[] left = new Container[capacity];
+        Container[] right = new Container[capacity];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.size || j < b.size) {
+            int ka = i < a.size ? a.keys[i] : Integer.MAX_VALUE;
+            int kb = j < b.size ? b.keys[j] : Integer.MAX_VALUE;
+            if (ka == kb) {
+                keys[n] = (char) ka;
+                left[n] = a.containers[i++];
+                right[n++] = b.containers[j++];
+            } else if (ka < kb) {
+                if (op != AND) {
+                    keys[n] = (char) ka;
+                    left[n++] = a.containers[i];
+                }
+                i++;
+            } else {
+                if (op == OR) {
+                    keys[n] = (char) kb;
+                    right[n++] = b.containers[j];
+                } else if (i >= a.size) {
+                    break;
+                }
+                j++;
+            }
+        }
+        Container[] out = new Container[n];
+        IntStream slots = IntStream.range(0, n);
+        if (n >= PARALLEL_CONTAINERS) {
+            slots = slots.parallel();
+        }
+        slots.forEach(k -> out[k] = apply(op, left[k], right[k]));
+        int m = 0;
+        for (int k = 0; k < n; k++) {
+            if (out[k].cardinality() > 0) {
+                keys[m] = keys[k];
+                out[m++] = out[k];
+            }
+        }
+        return new TupleBitmap(keys, out, m);
+    }
+
+    private static Container apply(int op, Container left, Container right) {
+        // containers of a bitmap still being built may grow, so unpaired ones are copied
+        if (left == null) {
+            return right.copy();
+        }
+        if (right == null) {
+            return left.copy();
+        }
+        return switch (op) {
+            case AND -> left.and(right);
+            case OR -> left.or(right);
+            default -> left.andNot(right);
+        };
+    }
+
+    /**
+     * Calls the action on every value, in ascending order.
+     *
+     * @param action the action
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < this.size; i++) {
+            this.containers[i].forEach(this.keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * Returns the values in ascending order.
+     *
+     * @return a new array of the values
+     */
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] n = {0};
+        forEach(v -> values[n[0]++] = v);
+        return values;
+    }
+
+    /**
+     * Returns the values in ascending order.
+     *
+     * @return a sequential stream of the values
+     */
+    public IntStream stream() {
+        return IntStream.of(toArray());
+    }
+
+    /**
+     * Returns the estimated memory taken by the containers.
+     *
+     * @return the size in bytes
+     */
+    public long sizeInBytes() {
+        long bytes = 3L * this.size;
+        for (int i = 0; i < this.size; i++) {
+            bytes += this.containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach(v -> sb.append(sb.length() > 1 ? ", " : "").append(v));
+        return sb.append('}').toString();
+    }
+
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        /**
+         * Adds a value, returning the container that now holds the values,
+         * which is this one unless it had to change its representation.
+         */
+        abstract Container add(char value);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract void forEach(int high, IntConsumer action);
+
+        abstract Container copy();
+
+        abstract long sizeInBytes();
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(new long[BITMAP_WORDS], 0);
+            forEach(0, v -> bitmap.set(v));
+            return bitmap;
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return this.cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(this.values, 0, this.cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int i = this.cardinality > 0 && this.values[this.cardinality - 1] < value
+                    ? -this.cardinality - 1
+                    : Arrays.binarySearch(this.values, 0, this.cardinality, value);
+            if (i >= 0) {
+                return this;
+            }
+            if (this.cardinality == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            i = -i - 1;
+            if (this.cardinality == this.values.length) {
+                this.values = Arrays.copyOf(this.values, Math.min(ARRAY_MAX, this.cardinality * 2));
+            }
+            System.arraycopy(this.values, i, this.values, i + 1, this.cardinality - i);
+            this.values[i] = value;
+            this.cardinality++;
+            return this;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] out = new char[Math.min(this.cardinality, other.cardinality())];
+            int n = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0;
+                int j = 0;
+                while (i < this.cardinality && j < array.cardinality) {
+                    char a = this.values[i];
+                    char b = array.values[j];
+                    if (a == b) {
+                        out[n++] = a;
+                        i++;
+                        j++;
+                    } else if (a < b) {
+                        i++;
+                    } else {
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < this.cardinality; i++) {
+                    if (other.contains(this.values[i])) {
+                        out[n++] = this.values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                return bitmap.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            if (this.cardinality + array.cardinality > ARRAY_MAX) {
+                return toBitmap().orInPlace(array).optimize();
+            }
+            char[] out = new char[this.cardinality + array.cardinality];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < this.cardinality || j < array.cardinality) {
+                int a = i < this.cardinality ? this.values[i] : Integer.MAX_VALUE;
+                int b = j < array.cardinality ? array.values[j] : Integer.MAX_VALUE;
+                if (a <= b) {
+                    out[n++] = (char) a;
+                    i++;
+                    if (a == b) {
+                        j++;
+                    }
+                } else {
+                    out[n++] = (char) b;
+                    j++;
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] out = new char[this.cardinality];
+            int n = 0;
+            for (int i = 0; i < this.cardinality; i++) {
+                if (!other.contains(this.values[i])) {
+                    out[n++] = this.values[i];
+                }
+            }
+            return new ArrayContainer(out, n);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < this.cardinality; i++) {
+                action.accept(high | this.values[i]);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(this.values, this.cardinality), this.cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 2L * this.values.length + 16;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static BitmapContainer range(int from, int to) {
+            long[] words = new long[BITMAP_WORDS];
+            for (int v = from; v < to; ) {
+                int w = v >>> 6;
+                int end = Math.min(to, (w + 1) << 6);
+                long mask = (end - v == 64 ? -1L : ((1L << (end - v)) - 1)) << (v & 63);
+                words[w] |= mask;
+                v = end;
+            }
+            return new BitmapContainer(words, to - from);
+        }
+
+        void set(int value) {
+            long bit = 1L << value;
+            int w = value >>> 6;
+            if ((this.words[w] & bit) == 0) {
+                this.words[w] |= bit;
+                this.cardinality++;
+            }
+        }
+
+        @Override
+        int cardinality() {
+            return this.cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (this.words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            set(value);
+            return this;
+        }
+
+        /**
+         * Returns an array container if the values fit in one.
+         */
+        Container optimize() {
+            if (this.cardinality > ARRAY_MAX) {
+                return this;
+            }
+            char[] values = new char[this.cardinality];
+            int[] n = {0};
+            forEach(0, v -> values[n[0]++] = (char) v);
+            return new ArrayContainer(values, this.cardinality);
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer array) {
+                return array.and(this);
+            }
+            long[] w = ((BitmapContainer) other).words;
+            long[] out = new long[BITMAP_WORDS];
+            int cardinality = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                out[i] = this.words[i] & w[i];
+                cardinality += Long.bitCount(out[i]);
+            }
+            return new BitmapContainer(out, cardinality).optimize();
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer copy = new BitmapContainer(this.words.clone(), this.cardinality);
+            return copy.orInPlace(other);
+        }
+
+        BitmapContainer orInPlace(Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                int cardinality = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    this.words[i] |= bitmap.words[i];
+                    cardinality += Long.bitCount(this.words[i]);
+                }
+                this.cardinality = cardinality;
+            } else {
+                other.forEach(0, this::set);
+            }
+            return this;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            BitmapContainer copy = new BitmapContainer(this.words.clone(), this.cardinality);
+            if (other instanceof BitmapContainer bitmap) {
+                int cardinality = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    copy.words[i] &= ~bitmap.words[i];
+                    cardinality += Long.bitCount(copy.words[i]);
+                }
+                copy.cardinality = cardinality;
+            } else {
+                other.forEach(0, v -> {
+                    long bit = 1L << v;
+                    if ((copy.words[v >>> 6] & bit) != 0) {
+                        copy.words[v >>> 6] &= ~bit;
+                        copy.cardinality--;
+                    }
+                });
+            }
+            return copy.optimize();
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = this.words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(this.words.clone(), this.cardinality);
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 8L * BITMAP_WORDS + 16;
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package io.github.noshou.tuple;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * An immutable, prefix-compressed block of sorted tuples of the same size.
+ * <p>
+ * Consecutive tuples of a sorted run usually share a long common prefix, so a
+ * {@code TupleBlock} stores, for every tuple, only the positions following the
+ * prefix it shares with the previous tuple. Each position is kept in its own
+ * column: {@link Long} and {@link Integer} columns are frame-of-reference encoded
+ * and bit-packed to the width of their value range, any other type is kept as
+ * references. Every {@code restartInterval}-th tuple is stored in full, which
+ * lets {@link Cursor#seek(Tuple)} binary search the block before scanning.
+ * <pre>{@code
+ * TupleBlock<Long> block = TupleBlock.of(sortedTetrads);
+ * TupleBlock<Long>.Cursor cursor = block.cursor();
+ * while (cursor.next()) {
+ *     long last = cursor.fetchLong(3);
+ * }
+ * }</pre>
+ * Blocks of {@code Long}, {@code Integer} and {@code String} columns can be
+ * written with {@link #writeTo(DataOutput)} and read back with {@link #readFrom(DataInput)}.
+ *
+ * @param <I> the type of items in the tuples; must implement {@link Comparable}
+ */
+public final class TupleBlock<I extends Comparable<I>> implements Iterable<Polyad<I>> {
+
+    private static final int MAGIC = 0x54424C4B; // "TBLK"
+    private static final byte VERSION = 1;
+    private static final byte LONG = 0;
+    private static final byte INT = 1;
+    private static final byte OBJECT = 2;
+
+    /**
+     * The number of tuples between two fully stored tuples, by default.
+     */
+    public static final int DEFAULT_RESTART_INTERVAL = 16;
+
+    private final int arity;
+    private final int count;
+    private final int restartInterval;
+    private final byte[] prefix;
+    private final byte[] kinds;
+    private final long[] bases;
+    private final int[] widths;
+    private final long[][] packed;
+    private final Object[][] objects;
+    private final int[][] restarts;
+
+    private TupleBlock(int arity, int count, int restartInterval, byte[] prefix, byte[] kinds,
+                       long[] bases, int[] widths, long[][] packed, Object[][] objects) {
+        this.arity = arity;
+        this.count = count;
+        this.restartInterval = restartInterval;
+        this.prefix = prefix;
+        this.kinds = kinds;
+        this.bases = bases;
+        this.widths = widths;
+        this.packed = packed;
+        this.objects = objects;
+
+        // column offsets of every restart tuple, derived from the prefix lengths
+        this.restarts = new int[(count + restartInterval - 1) / restartInterval][arity];
+        int[] idx = new int[arity];
+        for (int row = 0; row < count; row++) {
+            if (row % restartInterval == 0) {
+                System.arraycopy(idx, 0, this.restarts[row / restartInterval], 0, arity);
+            }
+            for (int pos = prefix[row] & 0xFF; pos < arity; pos++) {
+                idx[pos]++;
+            }
+        }
+    }
+
+    /**
+     * Compresses a sorted list of tuples with the default restart interval.
+     *
+     * @param sorted the tuples, in ascending {@link Tuple#compareTo(Tuple)} order
+     * @param <I> the type of items in the tuples
+     * @return the compressed block
+     * @throws IllegalArgumentException if the tuples are not sorted or differ in size
+     */
+    public static <I extends Comparable<I>> TupleBlock<I> of(List<? extends Tuple<I>> sorted) {
+        return of(sorted, DEFAULT_RESTART_INTERVAL);
+    }
+
+    /**
+     * Compresses a sorted list of tuples.
+     *
+     * @param sorted the tuples, in ascending {@link Tuple#compareTo(Tuple)} order
+     * @param restartInterval the number of tuples between two fully stored tuples
+     * @param <I> the type of items in the tuples
+     * @return the compressed block
+     * @throws IllegalArgumentException if the tuples are not sorted, differ in size,
+     *         have more than 255 elements, or the restart interval is not positive
+     * @throws NullPointerException if a tuple contains {@code null}
+     */
+    public static <I extends Comparable<I>> TupleBlock<I> of(List<? extends Tuple<I>> sorted, int restartInterval) {
+        if (restartInterval < 1) {
+            throw new IllegalArgumentException("Restart interval must be positive!");
+        }
+        TupleMetrics.BulkBuildEvent event = TupleMetrics.ENABLED ? TupleMetrics.beginBuild() : null;
+        int count = sorted.size();
+        int arity = count == 0 ? 0 : sorted.get(0).fetchSize();
+        if (arity > 255) {
+            throw new IllegalArgumentException("A block holds tuples of at most 255 elements!");
+        }
+
+        // pass 1: shared prefixes and per column kinds, sizes and value ranges
+        byte[] prefix = new byte[count];
+        byte[] kinds = new byte[arity];
+        int[] sizes = new int[arity];
+        long[] min = new long[arity];
+        long[] max = new long[arity];
+        Arrays.fill(min, Long.MAX_VALUE);
+        Arrays.fill(max, Long.MIN_VALUE);
+        Tuple<I> previous = null;
+        for (int row = 0; row < count; row++) {
+            Tuple<I> t = sorted.get(row);
+            if (t.fetchSize() != arity) {
+                throw new IllegalArgumentException("All tuples in a block must be of the same size!");
+            }
+            if (previous != null && previous.compareTo(t) > 0) {
+                throw new IllegalArgumentException("Tuples must be sorted in ascending order!");
+            }
+            int shared = 0;
+            if (previous != null && row % restartInterval != 0) {
+                while (shared < arity && t.fetch(shared).compareTo(previous.fetch(shared)) == 0) {
+                    shared++;
+                }
+            }
+            prefix[row] = (byte) shared;
+            for (int pos = shared; pos < arity; pos++) {
+                I item = Objects.requireNonNull(t.fetch(pos));
+                byte kind = item instanceof Long ? LONG : item instanceof Integer ? INT : OBJECT;
+                if (sizes[pos] == 0) {
+                    kinds[pos] = kind;
+                } else if (kinds[pos] != kind) {
+                    kinds[pos] = OBJECT;
+                }
+                if (kind != OBJECT) {
+                    long v = ((Number) item).longValue();
+                    min[pos] = Math.min(min[pos], v);
+                    max[pos] = Math.max(max[pos], v);
+                }
+                sizes[pos]++;
+            }
+            previous = t;
+        }
+
+        // pass 2: fill the columns
+        long[] bases = new long[arity];
+        int[] widths = new int[arity];
+        long[][] packed = new long[arity][];
+        Object[][] objects = new Object[arity][];
+        for (int pos = 0; pos < arity; pos++) {
+            if (kinds[pos] == OBJECT) {
+                objects[pos] = new Object[sizes[pos]];
+            } else {
+                bases[pos] = sizes[pos] == 0 ? 0 : min[pos];
+                widths[pos] = sizes[pos] == 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(max[pos] - min[pos]);
+                packed[pos] = new long[(int) (((long) sizes[pos] * widths[pos] + 63) >>> 6)];
+            }
+        }
+        int[] idx = new int[arity];
+        for (int row = 0; row < count; row++) {
+            Tuple<I> t = sorted.get(row);
+            for (int pos = prefix[row] & 0xFF; pos < arity; pos++) {
+                I item = t.fetch(pos);
+                if (kinds[pos] == OBJECT) {
+                    objects[pos][idx[pos]] = item;
+                } else {
+                    pack(packed[pos], widths[pos], idx[pos], ((Number) item).longValue() - bases[pos]);
+                }
+                idx[pos]++;
+            }
+        }
+        if (event != null) {
+            TupleMetrics.endBuild(event, "TupleBlock", count);
+        }
+        return new TupleBlock<>(arity, count, restartInterval, prefix, kinds, bases, widths, packed, objects);
+    }
+
+    /**
+     * Returns the number of tuples in this block.
+     *
+     * @return the number of tuples
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Returns the number of elements of every tuple in this block.
+     *
+     * @return the tuple size
+     */
+    public int arity() {
+        return this.arity;
+    }
+
+    /**
+     * Returns a new cursor positioned before the first tuple.
+     *
+     * @return a new cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Returns an iterator materializing every tuple of the block as a
+     * {@link Polyad}. Prefer {@link #cursor()} for allocation-free scans.
+     *
+     * @return an {@link Iterator} over the tuples of the block
+     */
+    @Override
+    public Iterator<Polyad<I>> iterator() {
+        Cursor cursor = cursor();
+        return new Iterator<>() {
+            private boolean ready;
+            private boolean more;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    more = cursor.next();
+                    ready = true;
+                }
+                return more;
+            }
+
+            @Override
+            public Polyad<I> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return cursor.toTuple();
+            }
+        };
+    }
+
+    /**
+     * Writes this block in its compressed form. Only {@code Long},
+     * {@code Integer} and {@code String} columns can be written.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     * @throws IllegalStateException if a column holds another type
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(this.arity);
+        out.writeInt(this.count);
+        out.writeInt(this.restartInterval);
+        out.write(this.prefix);
+        for (int pos = 0; pos < this.arity; pos++) {
+            out.writeByte(this.kinds[pos]);
+            if (this.kinds[pos] == OBJECT) {
+                out.writeInt(this.objects[pos].length);
+                for (Object item : this.objects[pos]) {
+                    if (!(item instanceof String s)) {
+                        throw new IllegalStateException("Only Long, Integer and String columns can be written!");
+                    }
+                    byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                }
+            } else {
+                out.writeLong(this.bases[pos]);
+                out.writeByte(this.widths[pos]);
+                out.writeInt(this.packed[pos].length);
+                for (long word : this.packed[pos]) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a block written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @param <I> the type of items in the tuples
+     * @return the block
+     * @throws IOException if reading fails or the input is not a tuple block
+     */
+    public static <I extends Comparable<I>> TupleBlock<I> readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a tuple block!");
+        }
+        int arity = in.readUnsignedByte();
+        int count = in.readInt();
+        int restartInterval = in.readInt();
+        byte[] prefix = new byte[count];
+        in.readFully(prefix);
+        byte[] kinds = new byte[arity];
+        long[] bases = new long[arity];
+        int[] widths = new int[arity];
+        long[][] packed = new long[arity][];
+        Object[][] objects = new Object[arity][];
+        for (int pos = 0; pos < arity; pos++) {
+            kinds[pos] = in.readByte();
+            if (kinds[pos] == OBJECT) {
+                objects[pos] = new Object[in.readInt()];
+                for (int i = 0; i < objects[pos].length; i++) {
+                    byte[] utf8 = new byte[in.readInt()];
+                    in.readFully(utf8);
+                    objects[pos][i] = new String(utf8, StandardCharsets.UTF_8);
+                }
+            } else {
+                bases[pos] = in.readLong();
+                widths[pos] = in.readUnsignedByte();
+                packed[pos] = new long[in.readInt()];
+                for (int i = 0; i < packed[pos].length; i++) {
+                    packed[pos][i] = in.readLong();
+                }
+            }
+        }
+        return new TupleBlock<>(arity, count, restartInterval, prefix, kinds, bases, widths, packed, objects);
+    }
+
+    private static void pack(long[] words, int width, int idx, long value) {
+        if (width == 0) {
+            return;
+        }
+        long bit = (long) idx * width;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        words[word] |= value << offset;
+        if (offset + width > 64) {
+            words[word + 1] |= value >>> (64 - offset);
+        }
+    }
+
+    private static long unpack(long[] words, int width, int idx) {
+        if (width == 0) {
+            return 0;
+        }
+        long bit = (long) idx * width;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        long value = words[word] >>> offset;
+        if (offset + width > 64) {
+            value |= words[word + 1] << (64 - offset);
+        }
+        return width == 64 ? value : value & ((1L << width) - 1);
+    }
+
+    private long numberAt(int pos, int idx) {
+        return this.bases[pos] + unpack(this.packed[pos], this.widths[pos], idx);
+    }
+
+    /**
+     * A reusable, allocation-free decoder over the tuples of a block.
+     * <p>
+     * {@link #next()} only decodes the positions that changed from the previous
+     * tuple; the others keep their values. A cursor is not thread-safe, but any
+     * number of cursors may read the same block concurrently.
+     */
+    public final class Cursor {
+        private final int[] idx = new int[arity];
+        private final long[] numbers = new long[arity];
+        private final Object[] items = new Object[arity];
+        private int row = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Advances to the next tuple.
+         *
+         * @return {@code true} if the cursor is on a tuple, {@code false} if the block is exhausted
+         */
+        public boolean next() {
+            if (row + 1 >= count) {
+                row = count;
+                return false;
+            }
+            row++;
+            for (int pos = prefix[row] & 0xFF; pos < arity; pos++) {
+                if (kinds[pos] == OBJECT) {
+                    items[pos] = objects[pos][idx[pos]];
+                } else {
+                    numbers[pos] = numberAt(pos, idx[pos]);
+                }
+                idx[pos]++;
+            }
+            return true;
+        }
+
+        /**
+         * Moves back before the first tuple.
+         */
+        public void reset() {
+            Arrays.fill(idx, 0);
+            row = -1;
+        }
+
+        /**
+         * Moves to the first tuple greater than or equal to {@code key}, binary
+         * searching the restart points before scanning forward.
+         *
+         * @param key the tuple to search for; may be shorter than the block's tuples
+         * @return {@code true} if such a tuple exists, {@code false} if the block is exhausted
+         */
+        public boolean seek(Tuple<I> key) {
+            int lo = 0;
+            int hi = restarts.length - 1;
+            int start = 0;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compareRestart(mid, key) < 0) {
+                    start = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            if (restarts.length > 0) {
+                System.arraycopy(restarts[start], 0, idx, 0, arity);
+            }
+            row = start * restartInterval - 1;
+            while (next()) {
+                if (compareCurrent(key) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the index of the current tuple within the block.
+         *
+         * @return the current row, {@code -1} before the first call to {@link #next()}
+         */
+        public int row() {
+            return row;
+        }
+
+        /**
+         * Returns how many leading positions the current tuple shares with the previous one.
+         *
+         * @return the length of the shared prefix
+         */
+        public int sharedPrefix() {
+            checkRow();
+            return prefix[row] & 0xFF;
+        }
+
+        /**
+         * Returns the element at the given position of the current tuple.
+         * Numeric columns are boxed; use {@link #fetchLong(int)} to avoid it.
+         *
+         * @param pos the index of the element to return (0-based)
+         * @return the element at the specified position
+         * @throws IndexOutOfBoundsException if the index is out of range
+         */
+        @SuppressWarnings("unchecked")
+        public I fetch(int pos) {
+            checkRow();
+            return switch (kinds[pos]) {
+                case LONG -> (I) (Long) numbers[pos];
+                case INT -> (I) (Integer) (int) numbers[pos];
+                default -> (I) items[pos];
+            };
+        }
+
+        /**
+         * Returns the number of elements of the tuples.
+         */
+        int arity() {
+            return arity;
+        }
+
+        /**
+         * Returns whether a position can be read by {@link #fetchLong(int)}.
+         */
+        boolean isNumeric(int pos) {
+            return kinds[pos] != OBJECT;
+        }
+
+        /**
+         * Returns the element at the given position of the current tuple as a
+         * primitive, without allocating.
+         *
+         * @param pos the index of the element to return (0-based)
+         * @return the numeric element at the specified position
+         * @throws IllegalStateException if the position is not a numeric column
+         */
+        public long fetchLong(int pos) {
+            checkRow();
+            if (kinds[pos] == OBJECT) {
+                throw new IllegalStateException("Position " + pos + " is not a numeric column!");
+            }
+            return numbers[pos];
+        }
+
+        /**
+         * Materializes the current tuple.
+         *
+         * @return a new {@link Polyad} holding the current tuple
+         */
+        @SuppressWarnings("unchecked")
+        public Polyad<I> toTuple() {
+            I[] row = (I[]) new Comparable[arity];
+            for (int pos = 0; pos < arity; pos++) {
+                row[pos] = fetch(pos);
+            }
+            return new Polyad<>(row);
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compareCurrent(Tuple<I> key) {
+            int n = Math.min(arity, key.fetchSize());
+            for (int pos = 0; pos < n; pos++) {
+                I k = key.fetch(pos);
+                int cmp = kinds[pos] == OBJECT
+                        ? ((I) items[pos]).compareTo(k)
+                        : Long.compare(numbers[pos], ((Number) k).longValue());
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return key.fetchSize() > arity ? -1 : 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compareRestart(int restart, Tuple<I> key) {
+            int n = Math.min(arity, key.fetchSize());
+            for (int pos = 0; pos < n; pos++) {
+                I k = key.fetch(pos);
+                int at = restarts[restart][pos];
+                int cmp = kinds[pos] == OBJECT
+                        ? ((I) objects[pos][at]).compareTo(k)
+                        : Long.compare(numberAt(pos, at), ((Number) k).longValue());
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return key.fetchSize() > arity ? -1 : 0;
+        }
+
+        private void checkRow() {
+            if (row < 0 || row >= count) {
+                throw new NoSuchElementException("The cursor is not on a tuple!");
+            }
+        }
+    }
+}
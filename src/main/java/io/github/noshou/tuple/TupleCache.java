@@ -0,0 +1,614 @@
+package io.github.noshou.tuple;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A bounded, concurrent memoization cache keyed by tuples of arguments.
+ * <p>
+ * Keys are compared element by element, so a lookup can take the argument
+ * values directly and never allocates a key on a hit:
+ * <pre>{@code
+ * TupleCache<Double> cache = TupleCache.ofSize(10_000);
+ * double d = cache.computeIfAbsent(from, to, (a, b) -> distance(a, b));
+ * }</pre>
+ * A key given as raw values is equal to a {@link Tuple} key holding the same
+ * elements in the same order. Elements are compared with {@link Object#equals(Object)}.
+ * <p>
+ * The cache is split into independently locked segments. Each segment evicts
+ * with a segmented LRU policy: new entries enter a probationary segment and are
+ * promoted to a protected segment on their second access, so a burst of one-off
+ * keys cannot flush the frequently used ones. The bound is either a number of
+ * entries ({@link #ofSize(long)}) or a total weight ({@link #ofWeight(long, ToLongFunction)}).
+ * <p>
+ * {@code computeIfAbsent} calls the loader outside of any lock, so concurrent
+ * misses on the same key may compute it more than once; the first value stored wins.
+ *
+ * @param <V> the type of cached values
+ */
+public final class TupleCache<V> {
+
+    private static final long SEED = 0x7475706c65L;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private final Segment<V>[] segments;
+    private final int segmentShift;
+    private final ToLongFunction<? super V> weigher;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder evictedWeight = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    private TupleCache(long maximumWeight, ToLongFunction<? super V> weigher) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("Maximum weight cannot be negative!");
+        }
+        // a power of two number of segments, each holding at least 16 units of weight
+        int wanted = Runtime.getRuntime().availableProcessors() * 4;
+        int count = Integer.highestOneBit((int) Math.max(1, Math.min(wanted, maximumWeight / 16)));
+        this.segments = (Segment<V>[]) new Segment[count];
+        for (int i = 0; i < count; i++) {
+            long share = maximumWeight / count + (i < maximumWeight % count ? 1 : 0);
+            this.segments[i] = new Segment<>(share);
+        }
+        this.segmentShift = Long.SIZE - Integer.numberOfTrailingZeros(count);
+        this.weigher = weigher;
+    }
+
+    /**
+     * Creates a cache holding at most {@code maximumSize} entries.
+     *
+     * @param maximumSize the maximum number of entries
+     * @param <V> the type of cached values
+     * @return a new, empty cache
+     * @throws IllegalArgumentException if {@code maximumSize} is negative
+     */
+    public static <V> TupleCache<V> ofSize(long maximumSize) {
+        return new TupleCache<>(maximumSize, v -> 1L);
+    }
+
+    /**
+     * Creates a cache whose entries weigh at most {@code maximumWeight} in total.
+     *
+     * @param maximumWeight the maximum total weight
+     * @param weigher computes the non-negative weight of a value when it is stored
+     * @param <V> the type of cached values
+     * @return a new, empty cache
+     * @throws IllegalArgumentException if {@code maximumWeight} is negative
+     */
+    public static <V> TupleCache<V> ofWeight(long maximumWeight, ToLongFunction<? super V> weigher) {
+        return new TupleCache<>(maximumWeight, Objects.requireNonNull(weigher));
+    }
+
+    /**
+     * Returns the value cached for a tuple key.
+     *
+     * @param key the key
+     * @return the cached value, or {@code null} if there is none
+     */
+    public V get(Tuple<?> key) {
+        long h = Hashing.hash64(SEED, key);
+        return record(segment(h).get(h, key, null, null, null, 0));
+    }
+
+    /**
+     * Returns the value cached for the one-element key {@code item1}.
+     *
+     * @param item1 the key element
+     * @return the cached value, or {@code null} if there is none
+     */
+    public V get(Object item1) {
+        long h = hash(1, item1, null, null);
+        return record(segment(h).get(h, null, item1, null, null, 1));
+    }
+
+    /**
+     * Returns the value cached for the two-element key {@code (item1, item2)}.
+     *
+     * @param item1 the first key element
+     * @param item2 the second key element
+     * @return the cached value, or {@code null} if there is none
+     */
+    public V get(Object item1, Object item2) {
+        long h = hash(2, item1, item2, null);
+        return record(segment(h).get(h, null, item1, item2, null, 2));
+    }
+
+    /**
+     * Returns the value cached for the three-element key {@code (item1, item2, item3)}.
+     *
+     * @param item1 the first key element
+     * @param item2 the second key element
+     * @param item3 the third key element
+     * @return the cached value, or {@code null} if there is none
+     */
+    public V get(Object item1, Object item2, Object item3) {
+        long h = hash(3, item1, item2, item3);
+        return record(segment(h).get(h, null, item1, item2, item3, 3));
+    }
+
+    /**
+     * Caches a value under a tuple key, replacing any previous value.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public void put(Tuple<?> key, V value) {
+        Object[] items = new Object[key.fetchSize()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = key.fetch(i);
+        }
+        store(Hashing.hash64(SEED, key), items, value, true);
+    }
+
+    /**
+     * Caches a value under the key made of the given raw element values,
+     * replacing any previous value.
+     *
+     * @param value the value
+     * @param key the key elements, in order
+     */
+    public void put(V value, Object... key) {
+        store(Hashing.hash64(SEED, key), key.clone(), value, true);
+    }
+
+    /**
+     * Returns the value cached for a tuple key, computing and caching it on a miss.
+     *
+     * @param key the key
+     * @param loader computes the value on a miss; a {@code null} result is not cached
+     * @return the cached or computed value
+     */
+    public V computeIfAbsent(Tuple<?> key, Function<? super Tuple<?>, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                Object[] items = new Object[key.fetchSize()];
+                for (int i = 0; i < items.length; i++) {
+                    items[i] = key.fetch(i);
+                }
+                value = store(Hashing.hash64(SEED, key), items, value, false);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value cached for the key {@code item1}, computing and caching it on a miss.
+     *
+     * @param item1 the key element
+     * @param loader computes the value on a miss; a {@code null} result is not cached
+     * @param <A> the type of the key element
+     * @return the cached or computed value
+     */
+    public <A> V computeIfAbsent(A item1, Function<? super A, ? extends V> loader) {
+        V value = get(item1);
+        if (value == null) {
+            value = loader.apply(item1);
+            if (value != null) {
+                value = store(hash(1, item1, null, null), new Object[]{item1}, value, false);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value cached for the key {@code (item1, item2)}, computing and caching it on a miss.
+     *
+     * @param item1 the first key element
+     * @param item2 the second key element
+     * @param loader computes the value on a miss; a {@code null} result is not cached
+     * @param <A> the type of the first key element
+     * @param <B> the type of the second key element
+     * @return the cached or computed value
+     */
+    public <A, B> V computeIfAbsent(A item1, B item2, BiFunction<? super A, ? super B, ? extends V> loader) {
+        V value = get(item1, item2);
+        if (value == null) {
+            value = loader.apply(item1, item2);
+            if (value != null) {
+                value = store(hash(2, item1, item2, null), new Object[]{item1, item2}, value, false);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the value cached for the key {@code (item1, item2, item3)}, computing and caching it on a miss.
+     *
+     * @param item1 the first key element
+     * @param item2 the second key element
+     * @param item3 the third key element
+     * @param loader computes the value on a miss; a {@code null} result is not cached
+     * @param <A> the type of the first key element
+     * @param <B> the type of the second key element
+     * @param <C> the type of the third key element
+     * @return the cached or computed value
+     */
+    public <A, B, C> V computeIfAbsent(A item1, B item2, C item3, TriFunction<? super A, ? super B, ? super C, ? extends V> loader) {
+        V value = get(item1, item2, item3);
+        if (value == null) {
+            value = loader.apply(item1, item2, item3);
+            if (value != null) {
+                value = store(hash(3, item1, item2, item3), new Object[]{item1, item2, item3}, value, false);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Removes the value cached for a tuple key.
+     *
+     * @param key the key
+     * @return the removed value, or {@code null} if there was none
+     */
+    public V invalidate(Tuple<?> key) {
+        long h = Hashing.hash64(SEED, key);
+        return segment(h).remove(h, key);
+    }
+
+    /**
+     * Removes every cached value. Statistics are kept.
+     */
+    public void invalidateAll() {
+        for (Segment<V> segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns the number of cached values.
+     *
+     * @return the number of entries
+     */
+    public long size() {
+        long size = 0;
+        for (Segment<V> segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the total weight of the cached values; for a cache created with
+     * {@link #ofSize(long)} this is the number of entries.
+     *
+     * @return the total weight
+     */
+    public long weight() {
+        long weight = 0;
+        for (Segment<V> segment : this.segments) {
+            weight += segment.weight();
+        }
+        return weight;
+    }
+
+    /**
+     * Returns a snapshot of the hit, miss and eviction counters.
+     *
+     * @return the cache statistics
+     */
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), evictedWeight.sum());
+    }
+
+    private V record(V value) {
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    private V store(long hash, Object[] key, V value, boolean replace) {
+        long w = weigher.applyAsLong(value);
+        if (w < 0) {
+            throw new IllegalArgumentException("Weights cannot be negative!");
+        }
+        return segment(hash).put(hash, key, value, w, replace, this);
+    }
+
+    private Segment<V> segment(long hash) {
+        return this.segments.length == 1 ? this.segments[0] : this.segments[(int) (hash >>> this.segmentShift)];
+    }
+
+    private static long hash(int n, Object item1, Object item2, Object item3) {
+        long h = Hashing.step64(Hashing.seed64(SEED), item1);
+        if (n > 1) {
+            h = Hashing.step64(h, item2);
+        }
+        if (n > 2) {
+            h = Hashing.step64(h, item3);
+        }
+        return Hashing.finish64(h, n);
+    }
+
+    /**
+     * A function of three arguments, used to load values for three-element keys.
+     *
+     * @param <A> the type of the first argument
+     * @param <B> the type of the second argument
+     * @param <C> the type of the third argument
+     * @param <R> the type of the result
+     */
+    @FunctionalInterface
+    public interface TriFunction<A, B, C, R> {
+
+        /**
+         * Applies this function to the given arguments.
+         *
+         * @param a the first argument
+         * @param b the second argument
+         * @param c the third argument
+         * @return the function result
+         */
+        R apply(A a, B b, C c);
+    }
+
+    /**
+     * A snapshot of cache statistics.
+     *
+     * @param hitCount the number of lookups that found a value
+     * @param missCount the number of lookups that found none
+     * @param evictionCount the number of entries evicted to respect the bound
+     * @param evictionWeight the total weight of the evicted entries
+     */
+    public record Stats(long hitCount, long missCount, long evictionCount, long evictionWeight) {
+
+        /**
+         * Returns the fraction of lookups that found a value.
+         *
+         * @return the hit rate, {@code 1.0} if there were no lookups
+         */
+        public double hitRate() {
+            long total = hitCount + missCount;
+            return total == 0 ? 1.0 : (double) hitCount / total;
+        }
+    }
+
+    /**
+     * One lock stripe: a chained hash table whose entries are also linked into
+     * a probationary and a protected LRU list.
+     */
+    private static final class Segment<V> {
+        private final long maxWeight;
+        private final long maxProtected;
+        private Node<V>[] table;
+        private int size;
+        private long weight;
+        private long protectedWeight;
+        private final Node<V> probation = Node.sentinel();
+        private final Node<V> protect = Node.sentinel();
+
+        @SuppressWarnings("unchecked")
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.maxProtected = (long) (maxWeight * PROTECTED_SHARE);
+            this.table = (Node<V>[]) new Node[16];
+        }
+
+        synchronized V get(long hash, Tuple<?> key, Object item1, Object item2, Object item3, int n) {
+            Node<V> node = find(hash, key, item1, item2, item3, n);
+            if (node == null) {
+                return null;
+            }
+            touch(node);
+            return node.value;
+        }
+
+        synchronized V put(long hash, Object[] key, V value, long w, boolean replace, TupleCache<V> cache) {
+            Node<V> node = find(hash, key);
+            if (node != null) {
+                if (!replace) {
+                    touch(node);
+                    return node.value;
+                }
+                weight += w - node.weight;
+                if (node.isProtected) {
+                    protectedWeight += w - node.weight;
+                }
+                node.value = value;
+                node.weight = w;
+                touch(node);
+            } else {
+                if (w > maxWeight) {
+                    return value;
+                }
+                node = new Node<>(hash, key, value, w);
+                int b = bucket(hash);
+                node.next = table[b];
+                table[b] = node;
+                node.linkBefore(probation);
+                size++;
+                weight += w;
+                if (size > table.length * 3 / 4) {
+                    resize();
+                }
+            }
+            evict(cache);
+            return value;
+        }
+
+        synchronized V remove(long hash, Tuple<?> key) {
+            Node<V> node = find(hash, key, null, null, null, 0);
+            if (node == null) {
+                return null;
+            }
+            unlink(node);
+            return node.value;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(table, null);
+            probation.before = probation.after = probation;
+            protect.before = protect.after = protect;
+            size = 0;
+            weight = 0;
+            protectedWeight = 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long weight() {
+            return weight;
+        }
+
+        private void touch(Node<V> node) {
+            node.unlinkList();
+            if (!node.isProtected) {
+                // second access: promote, demoting the least recent protected entries if needed
+                node.isProtected = true;
+                protectedWeight += node.weight;
+                while (protectedWeight > maxProtected && protect.after != protect) {
+                    Node<V> demoted = protect.after;
+                    demoted.unlinkList();
+                    demoted.isProtected = false;
+                    protectedWeight -= demoted.weight;
+                    demoted.linkBefore(probation);
+                }
+            }
+            node.linkBefore(protect);
+        }
+
+        private void evict(TupleCache<V> cache) {
+            while (weight > maxWeight) {
+                Node<V> victim = probation.after != probation ? probation.after : protect.after;
+                unlink(victim);
+                cache.evictions.increment();
+                cache.evictedWeight.add(victim.weight);
+            }
+        }
+
+        private void unlink(Node<V> node) {
+            int b = bucket(node.hash);
+            Node<V> prev = null;
+            for (Node<V> n = table[b]; n != null; prev = n, n = n.next) {
+                if (n == node) {
+                    if (prev == null) {
+                        table[b] = n.next;
+                    } else {
+                        prev.next = n.next;
+                    }
+                    break;
+                }
+            }
+            node.unlinkList();
+            if (node.isProtected) {
+                protectedWeight -= node.weight;
+            }
+            size--;
+            weight -= node.weight;
+        }
+
+        private Node<V> find(long hash, Tuple<?> key, Object item1, Object item2, Object item3, int n) {
+            for (Node<V> node = table[bucket(hash)]; node != null; node = node.next) {
+                if (node.hash != hash) {
+                    continue;
+                }
+                Object[] k = node.key;
+                if (key != null) {
+                    if (k.length == key.fetchSize() && matches(k, key)) {
+                        return node;
+                    }
+                } else if (k.length == n
+                        && Objects.equals(k[0], item1)
+                        && (n < 2 || Objects.equals(k[1], item2))
+                        && (n < 3 || Objects.equals(k[2], item3))) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        private Node<V> find(long hash, Object[] key) {
+            for (Node<V> node = table[bucket(hash)]; node != null; node = node.next) {
+                if (node.hash == hash && Arrays.equals(node.key, key)) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        private static boolean matches(Object[] k, Tuple<?> key) {
+            for (int i = 0; i < k.length; i++) {
+                if (!Objects.equals(k[i], key.fetch(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void resize() {
+            Node<V>[] old = table;
+            table = (Node<V>[]) new Node[old.length * 2];
+            for (Node<V> head : old) {
+                for (Node<V> node = head; node != null; ) {
+                    Node<V> next = node.next;
+                    int b = bucket(node.hash);
+                    node.next = table[b];
+                    table[b] = node;
+                    node = next;
+                }
+            }
+        }
+
+        private int bucket(long hash) {
+            return (int) hash & (table.length - 1);
+        }
+    }
+
+    /**
+     * A cache entry, chained in its bucket and doubly linked in its LRU list.
+     */
+    private static final class Node<V> {
+        final long hash;
+        final Object[] key;
+        V value;
+        long weight;
+        boolean isProtected;
+        Node<V> next;
+        Node<V> before;
+        Node<V> after;
+
+        Node(long hash, Object[] key, V value, long weight) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+
+        static <V> Node<V> sentinel() {
+            Node<V> node = new Node<>(0, null, null, 0);
+            node.before = node;
+            node.after = node;
+            return node;
+        }
+
+        /**
+         * Links this node as the most recent entry of the list headed by {@code head}.
+         */
+        void linkBefore(Node<V> head) {
+            this.after = head;
+            this.before = head.before;
+            head.before.after = this;
+            head.before = this;
+        }
+
+        void unlinkList() {
+            this.before.after = this.after;
+            this.after.before = this.before;
+            this.before = null;
+            this.after = null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.noshou.tuple;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Package-private binary encoding of single tuples, shared by the
+ * serializable sketches and stores.
+ * <p>
+ * A tuple is written as its size followed by each element as a one byte tag
+ * and its value. {@code null}, {@code Long}, {@code Integer}, {@code Double}
+ * and {@code String} elements are supported; tuples are read back as
+ * {@link Polyad}s.
+ */
+final class TupleCodec {
+
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte INT = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte STRING = 4;
+
+    private TupleCodec() {
+    }
+
+    /**
+     * Writes a tuple.
+     *
+     * @param out the output to write to
+     * @param tuple the tuple
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if an element is of an unsupported type
+     */
+    static void write(DataOutput out, Tuple<?> tuple) throws IOException {
+        int n = tuple.fetchSize();
+        out.writeInt(n);
+        for (int i = 0; i < n; i++) {
+            writeElement(out, tuple.fetch(i));
+        }
+    }
+
+    /**
+     * Writes one element with its tag.
+     *
+     * @param out the output to write to
+     * @param item the element
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if the element is of an unsupported type
+     */
+    static void writeElement(DataOutput out, Object item) throws IOException {
+        if (item == null) {
+            out.writeByte(NULL);
+        } else if (item instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        } else if (item instanceof Integer i) {
+            out.writeByte(INT);
+            out.writeInt(i);
+        } else if (item instanceof Double d) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(d);
+        } else if (item instanceof String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STRING);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        } else {
+            throw new IllegalArgumentException("Only Long, Integer, Double and String elements can be written!");
+        }
+    }
+
+    /**
+     * Reads a tuple written by {@link #write(DataOutput, Tuple)}.
+     *
+     * @param in the input to read from
+     * @param <I> the type of the elements
+     * @return the tuple
+     * @throws IOException if reading fails or the input is corrupt
+     */
+    @SuppressWarnings("unchecked")
+    static <I extends Comparable<I>> Polyad<I> read(DataInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            throw new IOException("Corrupt tuple!");
+        }
+        I[] items = (I[]) new Comparable[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = (I) readElement(in);
+        }
+        return new Polyad<>(items);
+    }
+
+    /**
+     * Reads one element written by {@link #writeElement(DataOutput, Object)}.
+     *
+     * @param in the input to read from
+     * @return the element
+     * @throws IOException if reading fails or the input is corrupt
+     */
+    static Object readElement(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case LONG:
+                return in.readLong();
+            case INT:
+                return in.readInt();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                int length = in.readInt();
+                if (length < 0) {
+                    throw new IOException("Corrupt tuple element!");
+                }
+                byte[] utf8 = new byte[length];
+                in.readFully(utf8);
+                return new String(utf8, StandardCharsets.UTF_8);
+            default:
+                throw new IOException("Unknown tuple element tag " + tag + "!");
+        }
+    }
+}
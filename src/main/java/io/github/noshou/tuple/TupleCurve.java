@@ -0,0 +1,445 @@
+package io.github.noshou.tuple;
+
+import java.util.*;
+
+/**
+ * A space-filling curve over the integer grid, used to order numeric tuples
+ * so that tuples close in every dimension are also close in the order.
+ * <p>
+ * {@link Tuple#compareTo(Tuple)} clusters tuples on position 0 only. A
+ * {@code TupleCurve} instead maps a tuple of {@code n} numbers to a position
+ * on a Z-order (Morton) or Hilbert curve through the n-dimensional grid and
+ * orders tuples by that position:
+ * <pre>{@code
+ * TupleCurve curve = TupleCurve.hilbert(16);
+ * points.sort(curve);
+ * List<TupleCurve.Range> scan = curve.ranges(new Dyad<>(10L, 10L), new Dyad<>(20L, 40L), 64);
+ * }</pre>
+ * Each element is read as a signed integer of {@code bitsPerDimension} bits.
+ * For fixed-point data, {@code fractionBits} scales every element by
+ * {@code 2^fractionBits} and rounds it first, so e.g. {@code Double}s keep
+ * {@code fractionBits} binary digits after the point. Elements outside the
+ * representable range are rejected with {@link IllegalArgumentException}.
+ * <p>
+ * Curves are immutable and thread-safe.
+ */
+public final class TupleCurve implements Comparator<Tuple<? extends Number>> {
+
+    private final boolean hilbert;
+    private final int bits;
+    private final int fractionBits;
+
+    private TupleCurve(boolean hilbert, int bits, int fractionBits) {
+        if (bits < 1 || bits > 63) {
+            throw new IllegalArgumentException("Bits per dimension must be between 1 and 63!");
+        }
+        if (fractionBits < 0 || fractionBits >= bits) {
+            throw new IllegalArgumentException("Fraction bits must be between 0 and the bits per dimension!");
+        }
+        this.hilbert = hilbert;
+        this.bits = bits;
+        this.fractionBits = fractionBits;
+    }
+
+    /**
+     * Returns the Z-order curve over integers of {@code bitsPerDimension} bits.
+     *
+     * @param bitsPerDimension the bits of every element, between {@code 1} and {@code 63}
+     * @return the curve
+     */
+    public static TupleCurve zOrder(int bitsPerDimension) {
+        return new TupleCurve(false, bitsPerDimension, 0);
+    }
+
+    /**
+     * Returns the Z-order curve over fixed-point numbers of
+     * {@code bitsPerDimension} bits, {@code fractionBits} of which follow the point.
+     *
+     * @param bitsPerDimension the bits of every element, between {@code 1} and {@code 63}
+     * @param fractionBits the bits after the point
+     * @return the curve
+     */
+    public static TupleCurve zOrder(int bitsPerDimension, int fractionBits) {
+        return new TupleCurve(false, bitsPerDimension, fractionBits);
+    }
+
+    /**
+     * Returns the Hilbert curve over integers of {@code bitsPerDimension} bits.
+     *
+     * @param bitsPerDimension the bits of every element, between {@code 1} and {@code 63}
+     * @return the curve
+     */
+    public static TupleCurve hilbert(int bitsPerDimension) {
+        return new TupleCurve(true, bitsPerDimension, 0);
+    }
+
+    /**
+     * Returns the Hilbert curve over fixed-point numbers of
+     * {@code bitsPerDimension} bits, {@code fractionBits} of which follow the point.
+     *
+     * @param bitsPerDimension the bits of every element, between {@code 1} and {@code 63}
+     * @param fractionBits the bits after the point
+     * @return the curve
+     */
+    public static TupleCurve hilbert(int bitsPerDimension, int fractionBits) {
+        return new TupleCurve(true, bitsPerDimension, fractionBits);
+    }
+
+    /**
+     * Returns the position of a tuple on this curve.
+     *
+     * @param tuple the tuple, whose elements are its coordinates
+     * @return the curve key, of {@code fetchSize() * bitsPerDimension} bits
+     * @throws IllegalArgumentException if an element is out of range
+     */
+    public Key key(Tuple<? extends Number> tuple) {
+        long[] x = new long[tuple.fetchSize()];
+        for (int d = 0; d < x.length; d++) {
+            x[d] = coordinate(tuple.fetch(d));
+        }
+        return encode(x);
+    }
+
+    /**
+     * Orders two tuples by their position on this curve. For the Z-order curve
+     * no key is materialized; tuples of different sizes are ordered by size first.
+     *
+     * @param a the first tuple
+     * @param b the second tuple
+     * @return a negative integer, zero, or a positive integer as {@code a}
+     *         comes before, at, or after {@code b} on the curve
+     */
+    @Override
+    public int compare(Tuple<? extends Number> a, Tuple<? extends Number> b) {
+        int n = a.fetchSize();
+        if (n != b.fetchSize()) {
+            return Integer.compare(n, b.fetchSize());
+        }
+        if (hilbert) {
+            return key(a).compareTo(key(b));
+        }
+        // the dimension holding the most significant differing bit decides;
+        // on a tie the earlier dimension wins, as it is interleaved first
+        int top = -1;
+        long topXor = 0;
+        long topA = 0;
+        long topB = 0;
+        for (int d = 0; d < n; d++) {
+            long xa = coordinate(a.fetch(d));
+            long xb = coordinate(b.fetch(d));
+            long xor = xa ^ xb;
+            if (topXor < xor && topXor < (topXor ^ xor)) {
+                top = d;
+                topXor = xor;
+                topA = xa;
+                topB = xb;
+            }
+        }
+        return top < 0 ? 0 : Long.compare(topA, topB);
+    }
+
+    /**
+     * Splits an axis-aligned box into ranges of curve keys. Every tuple inside
+     * the box has a key inside one of the ranges, so a structure sorted by this
+     * curve can answer the box query by scanning only those ranges.
+     * <p>
+     * The box is refined along the aligned cells of the grid until
+     * {@code maxRanges} would be exceeded; cells that are then only partially
+     * covered are returned whole, so the ranges may also contain keys of tuples
+     * outside the box and scanned tuples should still be checked.
+     *
+     * @param min the lower corner of the box, inclusive
+     * @param max the upper corner of the box, inclusive
+     * @param maxRanges the maximum number of ranges to return before merging
+     * @return the ranges, sorted and with adjacent ranges merged
+     * @throws IllegalArgumentException if the corners differ in size or
+     *         {@code min} exceeds {@code max} in some dimension
+     */
+    public List<Range> ranges(Tuple<? extends Number> min, Tuple<? extends Number> max, int maxRanges) {
+        int n = min.fetchSize();
+        if (n != max.fetchSize() || n == 0) {
+            throw new IllegalArgumentException("Box corners must be non-empty and of the same size!");
+        }
+        long[] lo = new long[n];
+        long[] hi = new long[n];
+        for (int d = 0; d < n; d++) {
+            lo[d] = coordinate(min.fetch(d));
+            hi[d] = coordinate(max.fetch(d));
+            if (lo[d] > hi[d]) {
+                throw new IllegalArgumentException("The lower corner of a box cannot exceed the upper corner!");
+            }
+        }
+
+        List<Range> ranges = new ArrayList<>();
+        List<long[]> cells = new ArrayList<>();
+        cells.add(new long[n]);
+        for (int side = bits; side >= 0 && !cells.isEmpty(); side--) {
+            List<long[]> next = new ArrayList<>();
+            for (int c = 0; c < cells.size(); c++) {
+                long[] origin = cells.get(c);
+                long extent = side == 0 ? 0 : (1L << side) - 1;
+                boolean inside = true;
+                long children = 1;
+                for (int d = 0; d < n && inside; d++) {
+                    inside = lo[d] <= origin[d] && origin[d] + extent <= hi[d];
+                }
+                if (!inside && side > 0) {
+                    long half = 1L << (side - 1);
+                    for (int d = 0; d < n && children <= maxRanges; d++) {
+                        boolean low = lo[d] < origin[d] + half;
+                        boolean high = hi[d] >= origin[d] + half;
+                        children *= (low && high) ? 2 : 1;
+                    }
+                }
+                int open = ranges.size() + next.size() + (cells.size() - c);
+                if (inside || side == 0 || open - 1 + children > maxRanges) {
+                    ranges.add(cellRange(origin, side));
+                } else {
+                    split(origin, side - 1, lo, hi, 0, next);
+                }
+            }
+            cells = next;
+        }
+
+        // sort and coalesce touching ranges
+        ranges.sort(Comparator.comparing(Range::from));
+        List<Range> merged = new ArrayList<>();
+        for (Range r : ranges) {
+            if (!merged.isEmpty()) {
+                Range last = merged.get(merged.size() - 1);
+                if (last.to().compareTo(r.from()) >= 0 || last.to().increment().equals(r.from())) {
+                    if (r.to().compareTo(last.to()) > 0) {
+                        merged.set(merged.size() - 1, new Range(last.from(), r.to()));
+                    }
+                    continue;
+                }
+            }
+            merged.add(r);
+        }
+        return merged;
+    }
+
+    /**
+     * Adds the children of a cell that intersect the box, one dimension at a time.
+     */
+    private void split(long[] origin, int side, long[] lo, long[] hi, int d, List<long[]> out) {
+        if (d == origin.length) {
+            out.add(origin);
+            return;
+        }
+        long half = 1L << side;
+        if (lo[d] < origin[d] + half) {
+            split(origin.clone(), side, lo, hi, d + 1, out);
+        }
+        if (hi[d] >= origin[d] + half) {
+            long[] upper = origin.clone();
+            upper[d] += half;
+            split(upper, side, lo, hi, d + 1, out);
+        }
+    }
+
+    /**
+     * All keys of an aligned cell share their leading bits, so the cell is one
+     * contiguous range on both curves.
+     */
+    private Range cellRange(long[] origin, int side) {
+        Key key = encode(origin);
+        int low = origin.length * side;
+        return new Range(key.withLowBits(low, false), key.withLowBits(low, true));
+    }
+
+    /**
+     * Converts an element to an unsigned grid coordinate, preserving order.
+     */
+    private long coordinate(Number item) {
+        long v;
+        if (item instanceof Long || item instanceof Integer || item instanceof Short || item instanceof Byte) {
+            v = item.longValue();
+            if (fractionBits > 0) {
+                if (v != (v << fractionBits) >> fractionBits) {
+                    throw new IllegalArgumentException(item + " is out of range for this curve!");
+                }
+                v <<= fractionBits;
+            }
+        } else {
+            double scaled = Math.scalb(item.doubleValue(), fractionBits);
+            if (Double.isNaN(scaled) || Math.abs(scaled) >= 0x1p62) {
+                throw new IllegalArgumentException(item + " is out of range for this curve!");
+            }
+            v = Math.round(scaled);
+        }
+        long bound = 1L << (bits - 1);
+        if (v < -bound || v >= bound) {
+            throw new IllegalArgumentException(item + " is out of range for this curve!");
+        }
+        return v + bound;
+    }
+
+    private Key encode(long[] coordinates) {
+        int n = coordinates.length;
+        long[] x = coordinates;
+        if (hilbert && n > 1) {
+            x = coordinates.clone();
+            transpose(x);
+        }
+        long[] words = new long[Math.max(1, (n * bits + 63) >>> 6)];
+        for (int level = 0; level < bits; level++) {
+            for (int d = 0; d < n; d++) {
+                if (((x[d] >>> level) & 1) != 0) {
+                    int bit = level * n + (n - 1 - d);
+                    words[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+        return new Key(words, n * bits);
+    }
+
+    /**
+     * Skilling's transform from grid coordinates to the transposed Hilbert index
+     * ("Programming the Hilbert curve", AIP Conf. Proc. 707, 2004).
+     */
+    private void transpose(long[] x) {
+        int n = x.length;
+        long m = 1L << (bits - 1);
+        for (long q = m; q > 1; q >>>= 1) {
+            long p = q - 1;
+            for (int i = 0; i < n; i++) {
+                if ((x[i] & q) != 0) {
+                    x[0] ^= p;
+                } else {
+                    long t = (x[0] ^ x[i]) & p;
+                    x[0] ^= t;
+                    x[i] ^= t;
+                }
+            }
+        }
+        for (int i = 1; i < n; i++) {
+            x[i] ^= x[i - 1];
+        }
+        long t = 0;
+        for (long q = m; q > 1; q >>>= 1) {
+            if ((x[n - 1] & q) != 0) {
+                t ^= q - 1;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            x[i] ^= t;
+        }
+    }
+
+    /**
+     * A position on a space-filling curve: an unsigned integer of
+     * {@link #bitLength()} bits. Keys of the same curve and tuple size compare
+     * in curve order.
+     */
+    public static final class Key implements Comparable<Key> {
+        private final long[] words;
+        private final int bitLength;
+
+        private Key(long[] words, int bitLength) {
+            this.words = words;
+            this.bitLength = bitLength;
+        }
+
+        /**
+         * Returns the number of bits of this key.
+         *
+         * @return the key width
+         */
+        public int bitLength() {
+            return this.bitLength;
+        }
+
+        /**
+         * Returns the low 64 bits of this key; the whole key if {@link #bitLength()} is at most 64.
+         *
+         * @return the low 64 bits
+         */
+        public long longValue() {
+            return this.words[0];
+        }
+
+        /**
+         * Returns the bits of this key, least significant word first.
+         *
+         * @return a copy of the key words
+         */
+        public long[] toWords() {
+            return this.words.clone();
+        }
+
+        Key withLowBits(int count, boolean ones) {
+            long[] w = this.words.clone();
+            for (int i = 0; i < w.length && count > 0; i++, count -= 64) {
+                long mask = count >= 64 ? -1L : (1L << count) - 1;
+                w[i] = ones ? w[i] | mask : w[i] & ~mask;
+            }
+            return new Key(w, this.bitLength);
+        }
+
+        Key increment() {
+            long[] w = this.words.clone();
+            for (int i = 0; i < w.length && ++w[i] == 0; i++) {
+                // carry into the next word
+            }
+            return new Key(w, this.bitLength);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            if (this.words.length != other.words.length) {
+                return Integer.compare(this.words.length, other.words.length);
+            }
+            for (int i = this.words.length - 1; i >= 0; i--) {
+                int cmp = Long.compareUnsigned(this.words[i], other.words[i]);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key other && Arrays.equals(this.words, other.words);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.words);
+        }
+
+        /**
+         * Returns the key as a hexadecimal number.
+         *
+         * @return the hexadecimal digits of the key
+         */
+        @Override
+        public String toString() {
+            StringBuilder hex = new StringBuilder();
+            for (int i = this.words.length - 1; i >= 0; i--) {
+                hex.append(String.format("%016x", this.words[i]));
+            }
+            return hex.toString();
+        }
+    }
+
+    /**
+     * An inclusive range of curve keys.
+     *
+     * @param from the first key of the range
+     * @param to the last key of the range
+     */
+    public record Range(Key from, Key to) {
+
+        /**
+         * Returns whether a key lies inside this range.
+         *
+         * @param key the key
+         * @return {@code true} if {@code from <= key <= to}
+         */
+        public boolean contains(Key key) {
+            return this.from.compareTo(key) <= 0 && key.compareTo(this.to) <= 0;
+        }
+    }
+}
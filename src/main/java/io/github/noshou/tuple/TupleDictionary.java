@@ -0,0 +1,305 @@
+package io.github.noshou.tuple;
+
+import java.util.*;
+
+/**
+ * An order-preserving dictionary encoding for tuples of {@link String}s.
+ * <p>
+ * Each position of the tuple has its own dictionary, mapping every distinct
+ * String seen at that position to a dense {@code int} code. Codes are assigned
+ * in the natural order of the Strings, so comparing two codes of the same
+ * position gives the same result as comparing the Strings themselves. Tuples
+ * encoded against the same dictionary ({@link DictionaryTuple}) therefore
+ * compare, hash and test for equality on ints alone.
+ * <pre>{@code
+ * TupleDictionary dict = TupleDictionary.build(rows);
+ * List<DictionaryTuple> encoded = dict.encodeAll(rows);
+ * System.out.println(dict.memoryReport(rows));
+ * }</pre>
+ * A dictionary is immutable and thread-safe, and is meant to be shared by
+ * every tuple of a collection. Encoding a String that was not present when the
+ * dictionary was built throws {@link IllegalArgumentException}; build a new
+ * dictionary over the extended vocabulary instead.
+ */
+public final class TupleDictionary {
+
+    // estimated object sizes, assuming a 64-bit JVM with compressed oops
+    private static final int HEADER = 12;
+    private static final int REF = 4;
+    private static final int ARRAY_HEADER = 16;
+    private static final int LINKED_ENTRY = 40;
+    private static final int HASH_ENTRY = 32;
+    private static final int BOXED = 16;
+    private static final int HASH_MAP = 48;
+    private static final int LINKED_MAP = 56;
+    private static final int STRING = 24;
+
+    private final String[][] values;
+    private final int[][] hashes;
+    private final Map<String, Integer>[] codes;
+
+    @SuppressWarnings("unchecked")
+    private TupleDictionary(List<SortedSet<String>> vocabulary) {
+        int arity = vocabulary.size();
+        this.values = new String[arity][];
+        this.hashes = new int[arity][];
+        this.codes = (Map<String, Integer>[]) new Map[arity];
+        for (int pos = 0; pos < arity; pos++) {
+            String[] sorted = vocabulary.get(pos).toArray(new String[0]);
+            int[] hash = new int[sorted.length];
+            Map<String, Integer> code = new HashMap<>(sorted.length * 2);
+            for (int c = 0; c < sorted.length; c++) {
+                hash[c] = sorted[c].hashCode();
+                code.put(sorted[c], c);
+            }
+            this.values[pos] = sorted;
+            this.hashes[pos] = hash;
+            this.codes[pos] = code;
+        }
+    }
+
+    /**
+     * Builds a dictionary over the distinct Strings found at each position of
+     * the given tuples.
+     *
+     * @param tuples the tuples providing the vocabulary; all of the same size
+     * @return a new dictionary
+     * @throws IllegalArgumentException if the tuples differ in size
+     * @throws NullPointerException if a tuple contains {@code null}
+     */
+    public static TupleDictionary build(Iterable<? extends Tuple<String>> tuples) {
+        TupleMetrics.BulkBuildEvent event = TupleMetrics.ENABLED ? TupleMetrics.beginBuild() : null;
+        long count = 0;
+        List<SortedSet<String>> vocabulary = null;
+        for (Tuple<String> t : tuples) {
+            count++;
+            if (vocabulary == null) {
+                vocabulary = new ArrayList<>(t.fetchSize());
+                for (int pos = 0; pos < t.fetchSize(); pos++) {
+                    vocabulary.add(new TreeSet<>());
+                }
+            } else if (vocabulary.size() != t.fetchSize()) {
+                throw new IllegalArgumentException("All tuples in a dictionary must be of the same size!");
+            }
+            for (int pos = 0; pos < t.fetchSize(); pos++) {
+                vocabulary.get(pos).add(Objects.requireNonNull(t.fetch(pos)));
+            }
+        }
+        TupleDictionary dictionary = new TupleDictionary(vocabulary == null ? List.of() : vocabulary);
+        if (event != null) {
+            TupleMetrics.endBuild(event, "TupleDictionary", count);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Returns the number of positions covered by this dictionary.
+     *
+     * @return the arity of the encoded tuples
+     */
+    public int arity() {
+        return this.values.length;
+    }
+
+    /**
+     * Returns the number of distinct Strings at the given position.
+     *
+     * @param pos the tuple position
+     * @return the number of codes at that position
+     */
+    public int cardinality(int pos) {
+        return this.values[checkPosition(pos)].length;
+    }
+
+    /**
+     * Returns the code of a String at the given position.
+     *
+     * @param pos the tuple position
+     * @param value the String to encode
+     * @return the code of {@code value}
+     * @throws IllegalArgumentException if {@code value} is not in the dictionary
+     */
+    public int encode(int pos, String value) {
+        Integer code = this.codes[checkPosition(pos)].get(value);
+        if (code == null) {
+            throw new IllegalArgumentException("\"" + value + "\" is not in the dictionary at position " + pos + "!");
+        }
+        return code;
+    }
+
+    /**
+     * Returns the String of a code at the given position.
+     *
+     * @param pos the tuple position
+     * @param code the code to decode
+     * @return the original String
+     * @throws IndexOutOfBoundsException if the code or position is out of range
+     */
+    public String decode(int pos, int code) {
+        return this.values[checkPosition(pos)][code];
+    }
+
+    /**
+     * Encodes a tuple against this dictionary.
+     *
+     * @param tuple the tuple to encode
+     * @return the encoded tuple
+     * @throws IllegalArgumentException if the tuple's size does not match or
+     *         one of its Strings is not in the dictionary
+     */
+    public DictionaryTuple encode(Tuple<String> tuple) {
+        if (tuple.fetchSize() != arity()) {
+            throw new IllegalArgumentException("Tuple size does not match the dictionary arity!");
+        }
+        int[] c = new int[arity()];
+        for (int pos = 0; pos < c.length; pos++) {
+            c[pos] = encode(pos, tuple.fetch(pos));
+        }
+        return new DictionaryTuple(this, c);
+    }
+
+    /**
+     * Encodes a tuple given directly as its Strings.
+     *
+     * @param items the Strings of the tuple, in order
+     * @return the encoded tuple
+     * @throws IllegalArgumentException if the number of items does not match
+     *         or one of them is not in the dictionary
+     */
+    public DictionaryTuple encode(String... items) {
+        if (items.length != arity()) {
+            throw new IllegalArgumentException("Tuple size does not match the dictionary arity!");
+        }
+        int[] c = new int[items.length];
+        for (int pos = 0; pos < c.length; pos++) {
+            c[pos] = encode(pos, items[pos]);
+        }
+        return new DictionaryTuple(this, c);
+    }
+
+    /**
+     * Encodes every tuple of a collection against this dictionary.
+     *
+     * @param tuples the tuples to encode
+     * @return the encoded tuples, in iteration order
+     */
+    public List<DictionaryTuple> encodeAll(Collection<? extends Tuple<String>> tuples) {
+        List<DictionaryTuple> encoded = new ArrayList<>(tuples.size());
+        for (Tuple<String> t : tuples) {
+            encoded.add(encode(t));
+        }
+        return encoded;
+    }
+
+    /**
+     * Returns the hash of the String behind a code, as used by
+     * {@link DictionaryTuple#hashCode()}.
+     */
+    int hash(int pos, int code) {
+        return this.hashes[pos][code];
+    }
+
+    private int checkPosition(int pos) {
+        if (pos < 0 || pos >= this.values.length) {
+            throw new IndexOutOfBoundsException("Dictionary position out of bounds!");
+        }
+        return pos;
+    }
+
+    /**
+     * Estimates the heap footprint of the given tuples before and after
+     * encoding against this dictionary.
+     *
+     * @param tuples the plain tuples
+     * @return the memory report
+     */
+    public MemoryReport memoryReport(Collection<? extends Tuple<String>> tuples) {
+        // plain tuples: tuple object, LinkedHashMap with its table and entries,
+        // plus every distinct String instance they reference
+        Set<String> strings = Collections.newSetFromMap(new IdentityHashMap<>());
+        long raw = 0;
+        for (Tuple<String> t : tuples) {
+            int n = t.fetchSize();
+            raw += align(HEADER + 2 * REF) + LINKED_MAP
+                    + align(ARRAY_HEADER + (long) REF * Math.max(16, tableSize((n * 4 + 2) / 3)))
+                    + (long) n * LINKED_ENTRY;
+            for (int pos = 0; pos < n; pos++) {
+                strings.add(t.fetch(pos));
+            }
+        }
+        for (String s : strings) {
+            raw += stringBytes(s);
+        }
+
+        // encoded tuples: tuple object plus its code array
+        long encoded = (long) tuples.size() * (align(HEADER + 4 * REF) + align(ARRAY_HEADER + 4L * arity()));
+
+        // dictionary: sorted values, hashes and the reverse lookup maps
+        long dictionary = 0;
+        int[] distinct = new int[arity()];
+        for (int pos = 0; pos < arity(); pos++) {
+            int n = this.values[pos].length;
+            distinct[pos] = n;
+            dictionary += align(ARRAY_HEADER + (long) REF * n) + align(ARRAY_HEADER + 4L * n);
+            dictionary += HASH_MAP + align(ARRAY_HEADER + (long) REF * tableSize(n * 2))
+                    + (long) n * (HASH_ENTRY + BOXED);
+            for (String s : this.values[pos]) {
+                dictionary += stringBytes(s);
+            }
+        }
+        return new MemoryReport(tuples.size(), distinct, raw, encoded, dictionary);
+    }
+
+    private static long stringBytes(String s) {
+        // compact strings: one byte per Latin-1 char, two otherwise
+        boolean latin1 = s.chars().allMatch(ch -> ch < 256);
+        return align(STRING) + align(ARRAY_HEADER + (long) s.length() * (latin1 ? 1 : 2));
+    }
+
+    private static int tableSize(int capacity) {
+        return Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Estimated heap footprint of a collection of tuples before and after
+     * dictionary encoding. All sizes are in bytes.
+     *
+     * @param tuples the number of tuples measured
+     * @param distinct the number of distinct Strings at each position
+     * @param rawBytes the footprint of the plain tuples and their Strings
+     * @param encodedBytes the footprint of the encoded tuples, excluding the dictionary
+     * @param dictionaryBytes the footprint of the shared dictionary
+     */
+    public record MemoryReport(long tuples, int[] distinct, long rawBytes, long encodedBytes, long dictionaryBytes) {
+
+        /**
+         * Returns the total footprint of the encoded representation.
+         *
+         * @return the encoded tuples plus the dictionary, in bytes
+         */
+        public long totalEncodedBytes() {
+            return encodedBytes + dictionaryBytes;
+        }
+
+        /**
+         * Returns how many times smaller the encoded representation is.
+         *
+         * @return {@code rawBytes / totalEncodedBytes()}
+         */
+        public double compressionRatio() {
+            return totalEncodedBytes() == 0 ? 1.0 : (double) rawBytes / totalEncodedBytes();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d tuples, distinct per position %s: %d bytes raw, %d bytes encoded "
+                            + "(%d tuples + %d dictionary), ratio %.2f",
+                    tuples, Arrays.toString(distinct), rawBytes, totalEncodedBytes(),
+                    encodedBytes, dictionaryBytes, compressionRatio());
+        }
+    }
+}
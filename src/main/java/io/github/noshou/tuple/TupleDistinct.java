@@ -0,0 +1,410 @@
+package io.github.noshou.tuple;
+
+import java.time.Duration;
+import java.time.InstantSource;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.Gatherer;
+
+/**
+ * A streaming deduplication operator for sequences of tuples.
+ * <p>
+ * {@link #test(Tuple)} returns {@code true} the first time a tuple is seen and
+ * {@code false} for a repeat, so a {@code TupleDistinct} can filter a stream
+ * directly, wrap an {@link #iterator(Iterator) iterator}, or be applied as a
+ * {@link #gatherer() Gatherer}:
+ * <pre>{@code
+ * tuples.stream().gather(TupleDistinct.<String>exact().gatherer()).forEach(...);
+ * Iterator<Triad<String>> unique = TupleDistinct.<String>sorted().iterator(sortedTuples);
+ * }</pre>
+ * Four modes trade memory for guarantees:
+ * <ul>
+ *   <li>{@link #exact()} remembers every distinct tuple in an open-addressing
+ *       table of 64-bit element hashes, never calling {@link Tuple#hashCode()};</li>
+ *   <li>{@link #sorted()} compares each tuple to the previous one with
+ *       {@link Tuple#compareTo(Tuple)} and needs constant memory, but requires
+ *       input in ascending order;</li>
+ *   <li>{@link #window(int)} drops a tuple if an equal one was emitted within
+ *       the last {@code n} input tuples;</li>
+ *   <li>{@link #window(Duration)} drops a tuple if an equal one was emitted
+ *       within the given time.</li>
+ * </ul>
+ * Except in sorted mode, tuples are equal when they hold equal elements in
+ * the same order, whatever their class, as in {@link TupleCache}.
+ * <p>
+ * An operator is stateful and not thread-safe. {@link #gatherer()} gives each
+ * stream evaluation its own empty copy, while {@link #test(Tuple)} and
+ * {@link #iterator(Iterator)} share the state of this instance.
+ *
+ * @param <I> the type of the elements of the tuples
+ */
+public final class TupleDistinct<I extends Comparable<I>> implements Predicate<Tuple<I>> {
+
+    private static final long SEED = 0x6469737469L;
+    private static final int EXACT = 0;
+    private static final int SORTED = 1;
+    private static final int COUNT_WINDOW = 2;
+    private static final int TIME_WINDOW = 3;
+
+    private final int mode;
+    private final long window;
+    private final InstantSource clock;
+    private final int expectedSize;
+
+    // open-addressing table with linear probing, for all but the sorted mode
+    private Tuple<I>[] keys;
+    private long[] hashes;
+    private int size;
+
+    // emitted tuples in order of emission, for the windowed modes
+    private Tuple<I>[] ring;
+    private long[] ringHashes;
+    private long[] ringStamps;
+    private int ringHead;
+    private int ringSize;
+    private long sequence;
+
+    private Tuple<I> last;
+
+    private TupleDistinct(int mode, long window, InstantSource clock, int expectedSize) {
+        this.mode = mode;
+        this.window = window;
+        this.clock = clock;
+        this.expectedSize = expectedSize;
+        if (mode != SORTED) {
+            allocate(tableCapacity(expectedSize));
+        }
+        if (mode == COUNT_WINDOW || mode == TIME_WINDOW) {
+            allocateRing(16);
+        }
+    }
+
+    /**
+     * Returns an operator remembering every distinct tuple.
+     *
+     * @param <I> the type of the elements of the tuples
+     * @return a new operator
+     */
+    public static <I extends Comparable<I>> TupleDistinct<I> exact() {
+        return exact(16);
+    }
+
+    /**
+     * Returns an operator remembering every distinct tuple, sized for the
+     * given number of distinct tuples.
+     *
+     * @param expectedSize the expected number of distinct tuples
+     * @param <I> the type of the elements of the tuples
+     * @return a new operator
+     * @throws IllegalArgumentException if {@code expectedSize} is negative
+     */
+    public static <I extends Comparable<I>> TupleDistinct<I> exact(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative!");
+        }
+        return new TupleDistinct<>(EXACT, 0, null, expectedSize);
+    }
+
+    /**
+     * Returns an operator for input sorted in ascending order, which only
+     * remembers the previous tuple.
+     *
+     * @param <I> the type of the elements of the tuples
+     * @return a new operator, whose {@link #test(Tuple)} throws
+     *         {@link IllegalStateException} on a tuple smaller than its predecessor
+     */
+    public static <I extends Comparable<I>> TupleDistinct<I> sorted() {
+        return new TupleDistinct<>(SORTED, 0, null, 0);
+    }
+
+    /**
+     * Returns an operator dropping a tuple if an equal tuple was emitted within
+     * the last {@code size} input tuples, remembering at most {@code size} tuples.
+     *
+     * @param size the length of the window, in input tuples
+     * @param <I> the type of the elements of the tuples
+     * @return a new operator
+     * @throws IllegalArgumentException if {@code size} is not positive
+     */
+    public static <I extends Comparable<I>> TupleDistinct<I> window(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Window size must be positive!");
+        }
+        return new TupleDistinct<>(COUNT_WINDOW, size, null, Math.min(size, 1 << 16));
+    }
+
+    /**
+     * Returns an operator dropping a tuple if an equal tuple was emitted less
+     * than {@code ttl} ago by the system clock.
+     *
+     * @param ttl the length of the window
+     * @param <I> the type of the elements of the tuples
+     * @return a new operator
+     * @throws IllegalArgumentException if {@code ttl} is not positive
+     */
+    public static <I extends Comparable<I>> TupleDistinct<I> window(Duration ttl) {
+        return window(ttl, InstantSource.system());
+    }
+
+    /**
+     * Returns an operator dropping a tuple if an equal tuple was emitted less
+     * than {@code ttl} ago by the given clock.
+     *
+     * @param ttl the length of the window, at millisecond precision
+     * @param clock the source of the current time
+     * @param <I> the type of the elements of the tuples
+     * @return a new operator
+     * @throws IllegalArgumentException if {@code ttl} is not positive
+     */
+    public static <I extends Comparable<I>> TupleDistinct<I> window(Duration ttl, InstantSource clock) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Window length must be positive!");
+        }
+        return new TupleDistinct<>(TIME_WINDOW, ttl.toMillis(), Objects.requireNonNull(clock), 16);
+    }
+
+    /**
+     * Records a tuple and returns whether it is not a repeat.
+     *
+     * @param tuple the next tuple of the sequence
+     * @return {@code true} if the tuple should be emitted
+     * @throws IllegalStateException in sorted mode, if the tuple is smaller than
+     *         the previous one
+     */
+    @Override
+    public boolean test(Tuple<I> tuple) {
+        if (this.mode == SORTED) {
+            if (this.last != null) {
+                int c = tuple.compareTo(this.last);
+                if (c < 0) {
+                    throw new IllegalStateException("Input is not sorted: " + tuple + " follows " + this.last + "!");
+                }
+                if (c == 0) {
+                    return false;
+                }
+            }
+            this.last = tuple;
+            return true;
+        }
+        long now = 0;
+        if (this.mode == COUNT_WINDOW) {
+            // the window holds the previous inputs, sequence - window onwards
+            now = this.sequence++;
+            evict(now - this.window);
+        } else if (this.mode == TIME_WINDOW) {
+            // the window holds what was emitted less than window millis ago
+            now = this.clock.millis();
+            evict(now - this.window + 1);
+        }
+        long hash = Hashing.hash64(SEED, tuple);
+        int slot = find(tuple, hash);
+        if (slot >= 0) {
+            return false;
+        }
+        if (this.size + 1 > this.keys.length / 2) {
+            allocate(this.keys.length * 2);
+            slot = find(tuple, hash);
+        }
+        this.keys[-slot - 1] = tuple;
+        this.hashes[-slot - 1] = hash;
+        this.size++;
+        if (this.mode != EXACT) {
+            push(tuple, hash, now);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of tuples currently remembered.
+     *
+     * @return the number of tuples a repeat is checked against
+     */
+    public int size() {
+        if (this.mode == SORTED) {
+            return this.last == null ? 0 : 1;
+        }
+        return this.size;
+    }
+
+    /**
+     * Forgets every tuple seen so far.
+     */
+    public void clear() {
+        this.last = null;
+        this.sequence = 0;
+        if (this.mode != SORTED) {
+            this.keys = null;
+            this.size = 0;
+            allocate(tableCapacity(this.expectedSize));
+        }
+        if (this.ring != null) {
+            this.ringHead = 0;
+            this.ringSize = 0;
+            allocateRing(16);
+        }
+    }
+
+    /**
+     * Returns an iterator over the tuples of {@code source} that pass
+     * {@link #test(Tuple)}. The iterator shares the state of this operator.
+     *
+     * @param source the tuples to deduplicate
+     * @param <T> the type of the tuples
+     * @return a lazy, deduplicating view of {@code source}
+     */
+    public <T extends Tuple<I>> Iterator<T> iterator(Iterator<T> source) {
+        return new Iterator<>() {
+            private T next;
+
+            @Override
+            public boolean hasNext() {
+                while (this.next == null && source.hasNext()) {
+                    T tuple = source.next();
+                    if (test(tuple)) {
+                        this.next = tuple;
+                    }
+                }
+                return this.next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T tuple = this.next;
+                this.next = null;
+                return tuple;
+            }
+        };
+    }
+
+    /**
+     * Returns a sequential gatherer emitting the tuples that pass
+     * {@link #test(Tuple)}. Each evaluation starts from an empty operator of
+     * the same mode, so this operator's own state is not touched.
+     *
+     * @param <T> the type of the tuples
+     * @return the gatherer
+     */
+    public <T extends Tuple<I>> Gatherer<T, ?, T> gatherer() {
+        return Gatherer.<T, TupleDistinct<I>, T>ofSequential(
+                () -> new TupleDistinct<>(this.mode, this.window, this.clock, this.expectedSize),
+                Gatherer.Integrator.ofGreedy((state, tuple, downstream) -> !state.test(tuple) || downstream.push(tuple)));
+    }
+
+    private static int tableCapacity(int expectedSize) {
+        return Integer.highestOneBit(Math.max(8, Math.min(expectedSize, 1 << 29)) * 2 - 1) * 2;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        Tuple<I>[] oldKeys = this.keys;
+        long[] oldHashes = this.hashes;
+        this.keys = (Tuple<I>[]) new Tuple[capacity];
+        this.hashes = new long[capacity];
+        if (oldKeys == null) {
+            return;
+        }
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int j = (int) oldHashes[i] & mask;
+                while (this.keys[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                this.keys[j] = oldKeys[i];
+                this.hashes[j] = oldHashes[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the slot holding a tuple equal to {@code tuple}, or
+     * {@code -slot - 1} for the empty slot where it would be inserted.
+     */
+    private int find(Tuple<I> tuple, long hash) {
+        int mask = this.keys.length - 1;
+        int i = (int) hash & mask;
+        while (this.keys[i] != null) {
+            if (this.hashes[i] == hash && Hashing.sameItems(this.keys[i], tuple)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -i - 1;
+    }
+
+    /**
+     * Removes the entry of the table at slot {@code i}, shifting back later
+     * entries of its probe sequence so no tombstone is needed.
+     */
+    private void delete(int i) {
+        int mask = this.keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (this.keys[j] == null) {
+                break;
+            }
+            int home = (int) this.hashes[j] & mask;
+            // move the entry at j into the hole unless its home lies cyclically in (i, j]
+            boolean reachable = i <= j ? i < home && home <= j : i < home || home <= j;
+            if (!reachable) {
+                this.keys[i] = this.keys[j];
+                this.hashes[i] = this.hashes[j];
+                i = j;
+            }
+        }
+        this.keys[i] = null;
+        this.size--;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocateRing(int capacity) {
+        Tuple<I>[] ring = (Tuple<I>[]) new Tuple[capacity];
+        long[] ringHashes = new long[capacity];
+        long[] ringStamps = new long[capacity];
+        for (int k = 0; k < this.ringSize; k++) {
+            int from = (this.ringHead + k) & (this.ring.length - 1);
+            ring[k] = this.ring[from];
+            ringHashes[k] = this.ringHashes[from];
+            ringStamps[k] = this.ringStamps[from];
+        }
+        this.ring = ring;
+        this.ringHashes = ringHashes;
+        this.ringStamps = ringStamps;
+        this.ringHead = 0;
+    }
+
+    private void push(Tuple<I> tuple, long hash, long stamp) {
+        if (this.ringSize == this.ring.length) {
+            allocateRing(this.ring.length * 2);
+        }
+        int tail = (this.ringHead + this.ringSize) & (this.ring.length - 1);
+        this.ring[tail] = tuple;
+        this.ringHashes[tail] = hash;
+        this.ringStamps[tail] = stamp;
+        this.ringSize++;
+    }
+
+    /**
+     * Forgets the emitted tuples stamped before {@code oldest}, which have left the window.
+     */
+    private void evict(long oldest) {
+        while (this.ringSize > 0 && this.ringStamps[this.ringHead] < oldest) {
+            Tuple<I> tuple = this.ring[this.ringHead];
+            int mask = this.keys.length - 1;
+            int i = (int) this.ringHashes[this.ringHead] & mask;
+            while (this.keys[i] != tuple) {
+                i = (i + 1) & mask;
+            }
+            delete(i);
+            this.ring[this.ringHead] = null;
+            this.ringHead = (this.ringHead + 1) & (this.ring.length - 1);
+            this.ringSize--;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package io.github.noshou.tuple;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A blocked Bloom filter over tuples, for cheap negative lookups.
+ * <p>
+ * {@link #mightContain(Tuple)} never returns {@code false} for a tuple that was
+ * {@link #put(Tuple) put} into the filter, and returns {@code true} for an absent
+ * tuple with roughly the false-positive probability the filter was created with.
+ * <p>
+ * Tuples are hashed element by element through {@link Tuple#fetch(int)}, not
+ * through {@link Tuple#hashCode()}. The same hash is computed from raw element
+ * values, so a lookup does not need to build a tuple first:
+ * <pre>{@code
+ * TupleFilter filter = TupleFilter.create(1_000_000, 0.01);
+ * filter.put(new Triad<>("EU", "widget", "ACTIVE"));
+ * filter.mightContainItems("EU", "widget", "ACTIVE"); // true
+ * }</pre>
+ * All bits probed for a tuple lie in a single 512-bit block, i.e. one cache
+ * line. {@code Long}, {@code Integer} and {@code Double} elements are hashed on
+ * their value and {@code String}s on their specified {@link String#hashCode()},
+ * so filters over such elements can be persisted with {@link #writeTo(DataOutput)}
+ * and read back by another JVM. Other elements are hashed on their
+ * {@code hashCode()}, which must then be stable across JVMs for a persisted
+ * filter to remain valid.
+ * <p>
+ * A filter is not thread-safe for writes; concurrent lookups are safe once
+ * all puts have been published.
+ */
+public final class TupleFilter {
+
+    private static final int MAGIC = 0x5446494C; // "TFIL"
+    private static final byte VERSION = 1;
+    private static final int BLOCK_WORDS = 8;
+    private static final int BLOCK_BITS = BLOCK_WORDS * Long.SIZE;
+
+    private final long[] words;
+    private final int blocks;
+    private final int hashes;
+    private final long seed;
+
+    private TupleFilter(long[] words, int hashes, long seed) {
+        this.words = words;
+        this.blocks = words.length / BLOCK_WORDS;
+        this.hashes = hashes;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a filter sized for the given number of tuples and false-positive probability.
+     *
+     * @param expectedInsertions the number of tuples expected to be put
+     * @param fpp the desired false-positive probability, between {@code 0} and {@code 1} exclusive
+     * @return a new, empty filter
+     * @throws IllegalArgumentException if an argument is out of range
+     */
+    public static TupleFilter create(long expectedInsertions, double fpp) {
+        return create(expectedInsertions, fpp, 0L);
+    }
+
+    /**
+     * Creates a filter sized for the given number of tuples and false-positive
+     * probability, using the given hash seed. Only filters with equal seeds can be merged.
+     *
+     * @param expectedInsertions the number of tuples expected to be put
+     * @param fpp the desired false-positive probability, between {@code 0} and {@code 1} exclusive
+     * @param seed the hash seed
+     * @return a new, empty filter
+     * @throws IllegalArgumentException if an argument is out of range
+     */
+    public static TupleFilter create(long expectedInsertions, double fpp, long seed) {
+        if (expectedInsertions < 0) {
+            throw new IllegalArgumentException("Expected insertions cannot be negative!");
+        }
+        if (!(fpp > 0.0 && fpp < 1.0)) {
+            throw new IllegalArgumentException("False-positive probability must be between 0 and 1!");
+        }
+        double n = Math.max(1, expectedInsertions);
+        double ln2 = Math.log(2);
+        // blocking costs some accuracy; compensate with ~10% more bits
+        double bits = 1.1 * -n * Math.log(fpp) / (ln2 * ln2);
+        long blocks = Math.max(1, (long) Math.ceil(bits / BLOCK_BITS));
+        if (blocks * BLOCK_WORDS > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Filter would be too large!");
+        }
+        int hashes = (int) Math.max(1, Math.min(16, Math.round(bits / n * ln2)));
+        return new TupleFilter(new long[(int) (blocks * BLOCK_WORDS)], hashes, seed);
+    }
+
+    /**
+     * Adds a tuple to the filter.
+     *
+     * @param tuple the tuple to add
+     */
+    public void put(Tuple<?> tuple) {
+        set(Hashing.hash64(seed, tuple));
+    }
+
+    /**
+     * Adds a tuple given as its raw element values. Unlike an overload of
+     * {@link #put(Tuple)}, a {@code Tuple} passed here, even through a
+     * variable of type {@code Object}, is always a single element.
+     *
+     * @param items the elements of the tuple, in order
+     */
+    public void putItems(Object... items) {
+        set(Hashing.hash64(seed, items));
+    }
+
+    /**
+     * Returns whether the tuple might have been put into this filter.
+     *
+     * @param tuple the tuple to look up
+     * @return {@code false} if the tuple is certainly absent, {@code true} if it might be present
+     */
+    public boolean mightContain(Tuple<?> tuple) {
+        return test(Hashing.hash64(seed, tuple));
+    }
+
+    /**
+     * Returns whether the tuple with the given raw element values might have
+     * been put into this filter; see {@link #putItems(Object...)}.
+     *
+     * @param items the elements of the tuple, in order
+     * @return {@code false} if the tuple is certainly absent, {@code true} if it might be present
+     */
+    public boolean mightContainItems(Object... items) {
+        return test(Hashing.hash64(seed, items));
+    }
+
+    /**
+     * Allocation-free form of {@link #mightContainItems(Object...)} for a
+     * two-element tuple.
+     *
+     * @param item1 the first element
+     * @param item2 the second element
+     * @return {@code false} if the tuple is certainly absent, {@code true} if it might be present
+     */
+    public boolean mightContainItems(Object item1, Object item2) {
+        long h = Hashing.step64(Hashing.step64(Hashing.seed64(seed), item1), item2);
+        return test(Hashing.finish64(h, 2));
+    }
+
+    /**
+     * Allocation-free form of {@link #mightContainItems(Object...)} for a
+     * three-element tuple.
+     *
+     * @param item1 the first element
+     * @param item2 the second element
+     * @param item3 the third element
+     * @return {@code false} if the tuple is certainly absent, {@code true} if it might be present
+     */
+    public boolean mightContainItems(Object item1, Object item2, Object item3) {
+        long h = Hashing.step64(Hashing.step64(Hashing.step64(Hashing.seed64(seed), item1), item2), item3);
+        return test(Hashing.finish64(h, 3));
+    }
+
+    /**
+     * Adds every tuple of another filter to this one. Both filters must have
+     * been created with the same size, false-positive probability and seed.
+     *
+     * @param other the filter to merge into this one
+     * @throws IllegalArgumentException if the filters are not compatible
+     */
+    public void union(TupleFilter other) {
+        if (other.words.length != this.words.length || other.hashes != this.hashes || other.seed != this.seed) {
+            throw new IllegalArgumentException("Only filters of the same shape and seed can be merged!");
+        }
+        for (int i = 0; i < this.words.length; i++) {
+            this.words[i] |= other.words[i];
+        }
+    }
+
+    /**
+     * Estimates the current false-positive probability from the fraction of bits set.
+     *
+     * @return the estimated false-positive probability
+     */
+    public double expectedFpp() {
+        long set = 0;
+        for (long word : this.words) {
+            set += Long.bitCount(word);
+        }
+        return Math.pow((double) set / ((long) this.words.length * Long.SIZE), this.hashes);
+    }
+
+    /**
+     * Returns the size of the bit array.
+     *
+     * @return the number of bits in this filter
+     */
+    public long bitSize() {
+        return (long) this.words.length * Long.SIZE;
+    }
+
+    /**
+     * Writes this filter, so that it can be stored next to the data it describes.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(this.hashes);
+        out.writeLong(this.seed);
+        out.writeInt(this.words.length);
+        for (long word : this.words) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the filter
+     * @throws IOException if reading fails or the input is not a tuple filter
+     */
+    public static TupleFilter readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a tuple filter!");
+        }
+        int hashes = in.readUnsignedByte();
+        long seed = in.readLong();
+        int length = in.readInt();
+        if (hashes < 1 || length <= 0 || length % BLOCK_WORDS != 0) {
+            throw new IOException("Corrupt tuple filter!");
+        }
+        long[] words = new long[length];
+        for (int i = 0; i < length; i++) {
+            words[i] = in.readLong();
+        }
+        return new TupleFilter(words, hashes, seed);
+    }
+
+    private void set(long hash) {
+        int base = block(hash);
+        int h1 = (int) hash;
+        int h2 = (int) (Hashing.mix64(hash) >>> 32) | 1;
+        for (int i = 0; i < this.hashes; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            this.words[base + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean test(long hash) {
+        int base = block(hash);
+        int h1 = (int) hash;
+        int h2 = (int) (Hashing.mix64(hash) >>> 32) | 1;
+        for (int i = 0; i < this.hashes; i++) {
+            int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+            if ((this.words[base + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int block(long hash) {
+        // maps the high half of the hash onto [0, blocks) without a division
+        return (int) (((hash >>> 32) * this.blocks) >>> 32) * BLOCK_WORDS;
+    }
+}
@@ -0,0 +1,600 @@
+package io.github.noshou.tuple;
+
+import java.math.BigInteger;
+import java.util.UUID;
+
+/**
+ * Seedable 64-bit and 128-bit hashes of tuples that are stable across JVMs
+ * and releases, for partitioning tuples between processes and persisted
+ * shards.
+ * <p>
+ * {@link Tuple#hashCode()} depends on the element classes' {@code hashCode}s,
+ * which are only specified for a few types and fold numbers into 32 bits. A
+ * {@code TupleHasher} instead hashes a canonical encoding of the elements, a
+ * sequence of 64-bit words:
+ * <ul>
+ *   <li>{@code null}: the word {@code 1};</li>
+ *   <li>{@code Boolean}: {@code 2}, then {@code 0} or {@code 1};</li>
+ *   <li>{@code Byte}, {@code Short}, {@code Integer} and {@code Long}:
+ *       {@code 3}, then the value sign-extended to 64 bits, so that equal
+ *       numbers hash alike whatever their box;</li>
+ *   <li>{@code Float} and {@code Double}: {@code 4}, then
+ *       {@link Double#doubleToLongBits(double)} of the value widened to
+ *       {@code double};</li>
+ *   <li>{@code Character}: {@code 5}, then the UTF-16 code unit;</li>
+ *   <li>{@code String}: {@code 6}, its length in bytes, then the UTF-8
+ *       encoding packed little-endian into words, the last one zero-padded;
+ *       {@code byte[]}: {@code 7}, then the bytes in the same way; an
+ *       {@code Enum}: {@code 10}, then its name as a string;</li>
+ *   <li>{@code UUID}: {@code 8}, then its most and least significant bits;</li>
+ *   <li>{@code BigInteger}: {@code 9}, then its two's-complement bytes, big-endian,
+ *       as a {@code byte[]};</li>
+ *   <li>a nested {@link Tuple}: {@code 11}, its size, then its elements.</li>
+ * </ul>
+ * followed by the number of elements of the hashed tuple. Every length comes
+ * before the words it counts, so the encoding of an element never begins
+ * with the encoding of another and distinct tuples never share an encoding.
+ * The words are
+ * consumed in pairs by multiply-and-fold rounds in the manner of wyhash,
+ * using {@link Math#unsignedMultiplyHigh(long, long)}; the 128-bit hash runs
+ * a second, independently keyed lane alongside. The encoding and the rounds
+ * are part of this class's contract and only change with a new
+ * {@link #VERSION}. Version {@code 1} wrote lengths and sizes after the
+ * words they counted, which let distinct tuples collide.
+ * <p>
+ * Raw elements, {@link TupleBlock.Cursor cursors} and {@link TupleArrow.Table}
+ * rows hash to the same value as the equal {@code Tuple}, numeric elements
+ * without boxing. Other element types have no canonical encoding and are
+ * rejected. A hasher is immutable and thread-safe.
+ */
+public final class TupleHasher {
+
+    /**
+     * The version of the encoding and hash function.
+     */
+    public static final int VERSION = 2;
+
+    private static final long S0 = 0xa0761d6478bd642fL;
+    private static final long S1 = 0xe7037ed1a0b428dbL;
+    private static final long S2 = 0x8ebc6af09c88c6e3L;
+    private static final long S3 = 0x589965cc75374cc3L;
+
+    private static final long NULL = 1;
+    private static final long BOOLEAN = 2;
+    private static final long INTEGRAL = 3;
+    private static final long FLOATING = 4;
+    private static final long CHAR = 5;
+    private static final long STRING = 6;
+    private static final long BYTES = 7;
+    private static final long UUID_TAG = 8;
+    private static final long BIG_INTEGER = 9;
+    private static final long ENUM = 10;
+    private static final long TUPLE = 11;
+
+    private static final TupleHasher DEFAULT = new TupleHasher(0);
+
+    private final long seed;
+
+    private TupleHasher(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the hasher with seed {@code 0}.
+     *
+     * @return the default hasher
+     */
+    public static TupleHasher create() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a hasher with the given seed. Hashers with different seeds
+     * produce unrelated hashes.
+     *
+     * @param seed the seed
+     * @return a hasher
+     */
+    public static TupleHasher create(long seed) {
+        return seed == 0 ? DEFAULT : new TupleHasher(seed);
+    }
+
+    /**
+     * Returns the seed of this hasher.
+     *
+     * @return the seed
+     */
+    public long seed() {
+        return this.seed;
+    }
+
+    /**
+     * Hashes a tuple into 64 bits.
+     *
+     * @param tuple the tuple
+     * @return the hash
+     * @throws IllegalArgumentException if an element has no canonical encoding
+     */
+    public long hash64(Tuple<?> tuple) {
+        return newState(false).putAll(tuple).hash64();
+    }
+
+    /**
+     * Hashes raw elements into 64 bits, as the tuple of those elements. Unlike
+     * an overload of {@link #hash64(Tuple)}, a {@code Tuple} passed here, even
+     * through a variable of type {@code Object}, is always a nested element.
+     *
+     * @param items the elements, in order
+     * @return the hash
+     * @throws IllegalArgumentException if an element has no canonical encoding
+     */
+    public long hashItems64(Object... items) {
+        State state = newState(false);
+        for (Object item : items) {
+            state.put(item);
+        }
+        return state.hash64();
+    }
+
+    /**
+     * Hashes the tuple {@code (a)} of one integral element, without boxing.
+     *
+     * @param a the element
+     * @return the hash
+     */
+    public long hash64(long a) {
+        return newState(false).putLong(a).hash64();
+    }
+
+    /**
+     * Hashes the tuple {@code (a, b)} of two integral elements, without boxing.
+     *
+     * @param a the first element
+     * @param b the second element
+     * @return the hash
+     */
+    public long hash64(long a, long b) {
+        return newState(false).putLong(a).putLong(b).hash64();
+    }
+
+    /**
+     * Hashes the current tuple of a cursor into 64 bits, reading numeric
+     * positions without boxing.
+     *
+     * @param cursor a cursor positioned on a tuple
+     * @return the hash
+     * @throws IllegalStateException if the cursor is not on a tuple
+     * @throws IllegalArgumentException if an element has no canonical encoding
+     */
+    public long hash64(TupleBlock<?>.Cursor cursor) {
+        return newState(false).putAll(cursor).hash64();
+    }
+
+    /**
+     * Hashes a row of an Arrow table into 64 bits, reading numeric columns
+     * without boxing.
+     *
+     * @param table the table
+     * @param row the index of the row
+     * @return the hash
+     * @throws IndexOutOfBoundsException if {@code row} is out of range
+     */
+    public long hash64(TupleArrow.Table<?> table, int row) {
+        return newState(false).putAll(table, row).hash64();
+    }
+
+    /**
+     * Hashes a tuple into 128 bits.
+     *
+     * @param tuple the tuple
+     * @return the hash
+     * @throws IllegalArgumentException if an element has no canonical encoding
+     */
+    public Hash128 hash128(Tuple<?> tuple) {
+        return newState(true).putAll(tuple).hash128();
+    }
+
+    /**
+     * Hashes raw elements into 128 bits, as the tuple of those elements; see
+     * {@link #hashItems64(Object...)}.
+     *
+     * @param items the elements, in order
+     * @return the hash
+     * @throws IllegalArgumentException if an element has no canonical encoding
+     */
+    public Hash128 hashItems128(Object... items) {
+        State state = newState(true);
+        for (Object item : items) {
+            state.put(item);
+        }
+        return state.hash128();
+    }
+
+    /**
+     * Hashes the current tuple of a cursor into 128 bits.
+     *
+     * @param cursor a cursor positioned on a tuple
+     * @return the hash
+     * @throws IllegalStateException if the cursor is not on a tuple
+     * @throws IllegalArgumentException if an element has no canonical encoding
+     */
+    public Hash128 hash128(TupleBlock<?>.Cursor cursor) {
+        return newState(true).putAll(cursor).hash128();
+    }
+
+    /**
+     * Hashes a row of an Arrow table into 128 bits.
+     *
+     * @param table the table
+     * @param row the index of the row
+     * @return the hash
+     * @throws IndexOutOfBoundsException if {@code row} is out of range
+     */
+    public Hash128 hash128(TupleArrow.Table<?> table, int row) {
+        return newState(true).putAll(table, row).hash128();
+    }
+
+    /**
+     * Returns an empty state for hashing a tuple element by element, e.g.
+     * straight from the fields of a record or a parser.
+     *
+     * @return a new state
+     */
+    public State newState() {
+        return newState(true);
+    }
+
+    private State newState(boolean wide) {
+        return new State(this.seed, wide);
+    }
+
+    /**
+     * Returns a bucket in {@code [0, buckets)} for a hash, spreading hashes
+     * evenly without the bias of a remainder.
+     *
+     * @param hash a 64-bit hash
+     * @param buckets the number of buckets
+     * @return the bucket
+     * @throws IllegalArgumentException if {@code buckets} is not positive
+     */
+    public static int bucket(long hash, int buckets) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("Number of buckets must be positive!");
+        }
+        return (int) Math.unsignedMultiplyHigh(hash, buckets);
+    }
+
+    private static long mum(long a, long b) {
+        return a * b ^ Math.unsignedMultiplyHigh(a, b);
+    }
+
+    /**
+     * The state of a hash being computed, fed one element at a time. The
+     * elements put form a tuple: {@code putLong(1).putString("a")} hashes
+     * like the tuple {@code (1L, "a")}. A state is not thread-safe.
+     */
+    public static final class State {
+        private final boolean wide;
+        private long h1;
+        private long h2;
+        private long pending;
+        private boolean hasPending;
+        private long words;
+        private int elements;
+
+        private State(long seed, boolean wide) {
+            this.wide = wide;
+            this.h1 = seed ^ mum(seed ^ S0, S1);
+            this.h2 = seed ^ mum(seed ^ S2, S3);
+        }
+
+        private void word(long w) {
+            this.words++;
+            if (!this.hasPending) {
+                this.pending = w;
+                this.hasPending = true;
+                return;
+            }
+            this.hasPending = false;
+            long a = this.pending;
+            this.h1 = mum(a ^ S1, w ^ this.h1);
+            if (this.wide) {
+                this.h2 = mum(w ^ S2, a ^ this.h2 ^ S3);
+            }
+        }
+
+        /**
+         * Appends a {@code null} element.
+         *
+         * @return this state
+         */
+        public State putNull() {
+            this.elements++;
+            word(NULL);
+            return this;
+        }
+
+        /**
+         * Appends an integral element; equal to putting the boxed value.
+         *
+         * @param value the element
+         * @return this state
+         */
+        public State putLong(long value) {
+            this.elements++;
+            word(INTEGRAL);
+            word(value);
+            return this;
+        }
+
+        /**
+         * Appends a floating point element; equal to putting the boxed value.
+         *
+         * @param value the element
+         * @return this state
+         */
+        public State putDouble(double value) {
+            this.elements++;
+            word(FLOATING);
+            word(Double.doubleToLongBits(value));
+            return this;
+        }
+
+        /**
+         * Appends a boolean element.
+         *
+         * @param value the element
+         * @return this state
+         */
+        public State putBoolean(boolean value) {
+            this.elements++;
+            word(BOOLEAN);
+            word(value ? 1 : 0);
+            return this;
+        }
+
+        /**
+         * Appends a string element, hashing its UTF-8 encoding without
+         * building it.
+         *
+         * @param value the element
+         * @return this state
+         * @throws NullPointerException if {@code value} is {@code null}
+         */
+        public State putString(CharSequence value) {
+            this.elements++;
+            word(STRING);
+            utf8(value);
+            return this;
+        }
+
+        /**
+         * Appends an element of any type with a canonical encoding.
+         *
+         * @param item the element, possibly {@code null}
+         * @return this state
+         * @throws IllegalArgumentException if the element has no canonical encoding
+         */
+        public State put(Object item) {
+            if (item == null) {
+                return putNull();
+            } else if (item instanceof Long || item instanceof Integer || item instanceof Short || item instanceof Byte) {
+                return putLong(((Number) item).longValue());
+            } else if (item instanceof Double || item instanceof Float) {
+                return putDouble(((Number) item).doubleValue());
+            } else if (item instanceof String s) {
+                return putString(s);
+            } else if (item instanceof Boolean b) {
+                return putBoolean(b);
+            }
+            this.elements++;
+            if (item instanceof Character c) {
+                word(CHAR);
+                word(c);
+            } else if (item instanceof byte[] bytes) {
+                word(BYTES);
+                bytes(bytes);
+            } else if (item instanceof UUID uuid) {
+                word(UUID_TAG);
+                word(uuid.getMostSignificantBits());
+                word(uuid.getLeastSignificantBits());
+            } else if (item instanceof BigInteger big) {
+                word(BIG_INTEGER);
+                bytes(big.toByteArray());
+            } else if (item instanceof Enum<?> e) {
+                word(ENUM);
+                utf8(e.name());
+            } else if (item instanceof Tuple<?> tuple) {
+                word(TUPLE);
+                int outer = this.elements;
+                int n = tuple.fetchSize();
+                word(n);
+                for (int i = 0; i < n; i++) {
+                    put(tuple.fetch(i));
+                }
+                this.elements = outer;
+            } else {
+                throw new IllegalArgumentException("No canonical encoding for " + item.getClass().getName() + "!");
+            }
+            return this;
+        }
+
+        private State putAll(Tuple<?> tuple) {
+            int n = tuple.fetchSize();
+            for (int i = 0; i < n; i++) {
+                put(tuple.fetch(i));
+            }
+            return this;
+        }
+
+        private State putAll(TupleBlock<?>.Cursor cursor) {
+            int n = cursor.arity();
+            for (int i = 0; i < n; i++) {
+                if (cursor.isNumeric(i)) {
+                    putLong(cursor.fetchLong(i));
+                } else {
+                    put(cursor.fetch(i));
+                }
+            }
+            return this;
+        }
+
+        private State putAll(TupleArrow.Table<?> table, int row) {
+            int n = table.arity();
+            for (int i = 0; i < n; i++) {
+                Class<?> type = table.columnType(i);
+                if (table.isNull(row, i)) {
+                    putNull();
+                } else if (type == long.class) {
+                    putLong(table.fetchLong(row, i));
+                } else if (type == int.class) {
+                    putLong(table.fetchInt(row, i));
+                } else if (type == double.class) {
+                    putDouble(table.fetchDouble(row, i));
+                } else {
+                    put(table.fetch(row, i));
+                }
+            }
+            return this;
+        }
+
+        private void utf8(CharSequence s) {
+            int n = s.length();
+            word(utf8Length(s, n));
+            long buffer = 0;
+            int filled = 0;
+            for (int i = 0; i < n; i++) {
+                int c = s.charAt(i);
+                int encoded;
+                int count;
+                if (c < 0x80) {
+                    encoded = c;
+                    count = 1;
+                } else if (c < 0x800) {
+                    encoded = (0xC0 | c >>> 6) | (0x80 | c & 0x3F) << 8;
+                    count = 2;
+                } else if (Character.isHighSurrogate((char) c) && i + 1 < n
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint((char) c, s.charAt(++i));
+                    encoded = (0xF0 | cp >>> 18) | (0x80 | cp >>> 12 & 0x3F) << 8
+                            | (0x80 | cp >>> 6 & 0x3F) << 16 | (0x80 | cp & 0x3F) << 24;
+                    count = 4;
+                } else {
+                    if (Character.isSurrogate((char) c)) {
+                        // a lone surrogate is encoded as '?', like String.getBytes
+                        c = '?';
+                        encoded = c;
+                        count = 1;
+                    } else {
+                        encoded = (0xE0 | c >>> 12) | (0x80 | c >>> 6 & 0x3F) << 8 | (0x80 | c & 0x3F) << 16;
+                        count = 3;
+                    }
+                }
+                for (int k = 0; k < count; k++) {
+                    buffer |= (long) (encoded >>> 8 * k & 0xFF) << 8 * filled;
+                    if (++filled == 8) {
+                        word(buffer);
+                        buffer = 0;
+                        filled = 0;
+                    }
+                }
+            }
+            if (filled > 0) {
+                word(buffer);
+            }
+        }
+
+        /**
+         * Returns the length in bytes of the UTF-8 encoding written by
+         * {@link #utf8(CharSequence)}.
+         */
+        private static long utf8Length(CharSequence s, int n) {
+            long length = n;
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    if (c < 0x800) {
+                        length++;
+                    } else if (Character.isHighSurrogate(c) && i + 1 < n
+                            && Character.isLowSurrogate(s.charAt(i + 1))) {
+                        // four bytes for the two chars of the pair
+                        length += 2;
+                        i++;
+                    } else if (!Character.isSurrogate(c)) {
+                        length += 2;
+                    }
+                }
+            }
+            return length;
+        }
+
+        private void bytes(byte[] bytes) {
+            word(bytes.length);
+            int i = 0;
+            for (; i + 8 <= bytes.length; i += 8) {
+                long w = 0;
+                for (int k = 7; k >= 0; k--) {
+                    w = w << 8 | bytes[i + k] & 0xFF;
+                }
+                word(w);
+            }
+            if (i < bytes.length) {
+                long w = 0;
+                for (int k = bytes.length - 1; k >= i; k--) {
+                    w = w << 8 | bytes[k] & 0xFF;
+                }
+                word(w);
+            }
+        }
+
+        private void finish() {
+            word(this.elements);
+            if (this.hasPending) {
+                word(this.words ^ S0);
+            }
+        }
+
+        /**
+         * Returns the 64-bit hash of the elements put so far. The state
+         * cannot be used afterwards.
+         *
+         * @return the hash
+         */
+        public long hash64() {
+            finish();
+            return mum(mum(this.h1 ^ S0, this.words ^ S1) ^ S2, this.h1 ^ S3);
+        }
+
+        /**
+         * Returns the 128-bit hash of the elements put so far. The state
+         * cannot be used afterwards.
+         *
+         * @return the hash
+         * @throws IllegalStateException if the state was obtained for 64-bit hashing
+         */
+        public Hash128 hash128() {
+            if (!this.wide) {
+                throw new IllegalStateException("State only computes 64-bit hashes!");
+            }
+            finish();
+            long high = mum(mum(this.h1 ^ S0, this.words ^ S1) ^ S2, this.h1 ^ S3);
+            long low = mum(mum(this.h2 ^ S2, this.words ^ S3) ^ S0, this.h2 ^ S1 ^ high);
+            return new Hash128(high, low);
+        }
+    }
+
+    /**
+     * A 128-bit hash. Its {@link #high()} half equals the 64-bit hash of the
+     * same tuple.
+     *
+     * @param high the upper 64 bits
+     * @param low the lower 64 bits
+     */
+    public record Hash128(long high, long low) {
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x", this.high, this.low);
+        }
+    }
+}
@@ -0,0 +1,970 @@
+package io.github.noshou.tuple;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Finds the most frequent tuples of a stream in bounded memory, combining a
+ * Count-Min sketch with a SpaceSaving table.
+ * <p>
+ * Every tuple is hashed element by element, as by
+ * {@link TupleCardinalitySketch}, strings over their contents, and
+ * counted in a Count-Min sketch with conservative update, whose estimates
+ * never undercount. A SpaceSaving table of {@link #capacity()} counters
+ * nominates the candidate heavy hitters, which are then ranked by their
+ * sketch estimates. Tuples holding equal elements count as one, whatever
+ * their classes:
+ * <pre>{@code
+ * TupleHeavyHitters<String> talkers = TupleHeavyHitters.create(1000, 1e-4, 1e-3);
+ * talkers.add(new Dyad<>(source, destination));
+ * for (TupleHeavyHitters.HeavyHitter<String> top : talkers.topK(10)) { ... }
+ * }</pre>
+ * With a total count {@code N}, the answers come with two guarantees:
+ * <ul>
+ *   <li>every tuple counted more than {@code N / capacity} times is a
+ *       candidate, so {@link #topK(int)} and {@link #frequent(double)} never
+ *       miss one;</li>
+ *   <li>an estimate exceeds the true count by at most {@link #errorBound()},
+ *       {@code epsilon * N}, with probability at least {@code 1 - delta};
+ *       {@link HeavyHitter#lowerBound()} carries the bound with every result.</li>
+ * </ul>
+ * A sketch takes {@code 8 * ceil(ln(1 / delta)) * 2^ceil(log2(e / epsilon))}
+ * bytes, e.g. 1.75 MiB for {@code epsilon = 1e-4} and {@code delta = 1e-3}.
+ * <p>
+ * {@link #add(Tuple)} may be called from any number of threads. Writers are
+ * spread by thread over a fixed number of stripes, one per processor rounded
+ * up to a power of two, each a sketch and table behind its own lock; queries
+ * merge the stripes, which is exact for the sketch. A stripe allocates its
+ * sketch on first use, so memory stays within one sketch per stripe plus one
+ * for {@link #merge(TupleHeavyHitters) merged} counts, however many threads
+ * come and go. Counters of other shards or processes are folded in by
+ * {@link #merge(TupleHeavyHitters)}, after a round trip through
+ * {@link #writeTo(DataOutput)} and {@link #readFrom(DataInput)} if need be.
+ * <p>
+ * Besides counting the whole stream, {@link #decaying(int, double, double, Duration)
+ * decaying} counts halve in weight every half-life, and
+ * {@link #windowed(int, double, double, Duration) windowed} counts cover only
+ * the recent past, in eight panes that expire one at a time.
+ *
+ * @param <I> the type of the elements
+ */
+public final class TupleHeavyHitters<I extends Comparable<I>> {
+
+    private static final int MAGIC = 0x54484854; // "THHT"
+    private static final byte VERSION = 1;
+
+    private static final long SEED = 0x5448484954L;
+    private static final int PANES = 8;
+    private static final int MAX_WIDTH = 1 << 26;
+    // forward-decay weights are renormalized before they grow past 2^RESCALE
+    private static final double RESCALE = 256;
+
+    private static final int STREAM = 0;
+    private static final int DECAY = 1;
+    private static final int WINDOW = 2;
+
+    private final int capacity;
+    private final int width;
+    private final int depth;
+    private final int mode;
+    private final long span;
+    private final InstantSource clock;
+    // one partial per stripe, and a last one holding the merged counts
+    private final Partial[] partials;
+
+    private TupleHeavyHitters(int capacity, int width, int depth, int mode, long span, InstantSource clock) {
+        this.capacity = capacity;
+        this.width = width;
+        this.depth = depth;
+        this.mode = mode;
+        this.span = span;
+        this.clock = clock;
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+        long landmark = now();
+        this.partials = new Partial[stripes + 1];
+        for (int i = 0; i < this.partials.length; i++) {
+            this.partials[i] = new Partial(this, landmark);
+        }
+    }
+
+    private static <I extends Comparable<I>> TupleHeavyHitters<I> create(int capacity, double epsilon, double delta,
+                                                                        int mode, long span, InstantSource clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive!");
+        }
+        if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1)) {
+            throw new IllegalArgumentException("Epsilon and delta must be between 0 and 1!");
+        }
+        long width = Long.highestOneBit((long) Math.ceil(Math.E / epsilon) * 2 - 1);
+        if (width > MAX_WIDTH) {
+            throw new IllegalArgumentException("Epsilon is too small!");
+        }
+        int depth = (int) Math.ceil(Math.log(1 / delta));
+        return new TupleHeavyHitters<>(capacity, (int) width, depth, mode, span, clock);
+    }
+
+    /**
+     * Creates a counter of the whole stream.
+     *
+     * @param capacity the number of candidates tracked; tuples more frequent
+     *                 than {@code 1 / capacity} of the stream are never missed
+     * @param epsilon the error of the estimates, as a fraction of the total count
+     * @param delta the probability of an estimate exceeding that error
+     * @param <I> the type of the elements
+     * @return a new, empty counter
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public static <I extends Comparable<I>> TupleHeavyHitters<I> create(int capacity, double epsilon, double delta) {
+        return create(capacity, epsilon, delta, STREAM, 0, null);
+    }
+
+    /**
+     * Creates a counter in which every occurrence loses half its weight per
+     * half-life, on the system clock.
+     *
+     * @param capacity the number of candidates tracked
+     * @param epsilon the error of the estimates, as a fraction of the total count
+     * @param delta the probability of an estimate exceeding that error
+     * @param halfLife the time after which an occurrence counts one half
+     * @param <I> the type of the elements
+     * @return a new, empty counter
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public static <I extends Comparable<I>> TupleHeavyHitters<I> decaying(int capacity, double epsilon, double delta,
+                                                                         Duration halfLife) {
+        return decaying(capacity, epsilon, delta, halfLife, InstantSource.system());
+    }
+
+    /**
+     * Creates a counter in which every occurrence loses half its weight per
+     * half-life.
+     *
+     * @param capacity the number of candidates tracked
+     * @param epsilon the error of the estimates, as a fraction of the total count
+     * @param delta the probability of an estimate exceeding that error
+     * @param halfLife the time after which an occurrence counts one half
+     * @param clock the source of the current time
+     * @param <I> the type of the elements
+     * @return a new, empty counter
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public static <I extends Comparable<I>> TupleHeavyHitters<I> decaying(int capacity, double epsilon, double delta,
+                                                                         Duration halfLife, InstantSource clock) {
+        if (halfLife.toMillis() < 1) {
+            throw new IllegalArgumentException("Half-life must be at least a millisecond!");
+        }
+        return create(capacity, epsilon, delta, DECAY, halfLife.toMillis(), Objects.requireNonNull(clock));
+    }
+
+    /**
+     * Creates a counter of the occurrences within a sliding window, on the
+     * system clock.
+     *
+     * @param capacity the number of candidates tracked
+     * @param epsilon the error of the estimates, as a fraction of the total count
+     * @param delta the probability of an estimate exceeding that error
+     * @param window the length of the window
+     * @param <I> the type of the elements
+     * @return a new, empty counter
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public static <I extends Comparable<I>> TupleHeavyHitters<I> windowed(int capacity, double epsilon, double delta,
+                                                                         Duration window) {
+        return windowed(capacity, epsilon, delta, window, InstantSource.system());
+    }
+
+    /**
+     * Creates a counter of the occurrences within a sliding window. The
+     * window advances in steps of an eighth of its length, so counts cover
+     * between seven and eight eighths of it, and every stripe keeps up to
+     * eight sketches.
+     *
+     * @param capacity the number of candidates tracked
+     * @param epsilon the error of the estimates, as a fraction of the total count
+     * @param delta the probability of an estimate exceeding that error
+     * @param window the length of the window
+     * @param clock the source of the current time
+     * @param <I> the type of the elements
+     * @return a new, empty counter
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public static <I extends Comparable<I>> TupleHeavyHitters<I> windowed(int capacity, double epsilon, double delta,
+                                                                         Duration window, InstantSource clock) {
+        if (window.toMillis() < PANES) {
+            throw new IllegalArgumentException("Window must be at least " + PANES + " milliseconds!");
+        }
+        return create(capacity, epsilon, delta, WINDOW, window.toMillis() / PANES, Objects.requireNonNull(clock));
+    }
+
+    /**
+     * Counts one occurrence of a tuple.
+     *
+     * @param tuple the tuple
+     */
+    public void add(Tuple<I> tuple) {
+        add(tuple, 1);
+    }
+
+    /**
+     * Counts several occurrences of a tuple.
+     *
+     * @param tuple the tuple
+     * @param count the number of occurrences
+     * @throws IllegalArgumentException if {@code count} is not positive
+     */
+    public void add(Tuple<I> tuple, long count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be positive!");
+        }
+        long hash = Hashing.wideHash64(SEED, tuple);
+        int stripes = this.partials.length - 1;
+        Partial partial = this.partials[(int) Hashing.mix64(Thread.currentThread().threadId()) & (stripes - 1)];
+        synchronized (partial) {
+            switch (this.mode) {
+                case STREAM -> partial.pane(0).add(tuple, hash, count);
+                case DECAY -> {
+                    long now = this.clock.millis();
+                    double exponent = (double) (now - partial.landmark) / this.span;
+                    if (exponent > RESCALE) {
+                        partial.rebase(now, this.span);
+                        exponent = 0;
+                    }
+                    partial.pane(0).add(tuple, hash, count * Math.pow(2, exponent));
+                }
+                default -> {
+                    long epoch = this.clock.millis() / this.span;
+                    int slot = (int) Math.floorMod(epoch, (long) PANES);
+                    Summary pane = partial.pane(slot);
+                    if (partial.epochs[slot] != epoch) {
+                        pane.clear();
+                        partial.epochs[slot] = epoch;
+                    }
+                    pane.add(tuple, hash, count);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the weight by which the counts of a pane are multiplied to
+     * answer a query now, {@code 0} if the pane is empty or has expired.
+     */
+    private double weight(Partial partial, int pane, long now) {
+        if (partial.panes[pane] == null) {
+            return 0;
+        }
+        return switch (this.mode) {
+            case STREAM -> 1;
+            case DECAY -> Math.pow(2, -(double) (now - partial.landmark) / this.span);
+            default -> {
+                long epoch = now / this.span;
+                long paneEpoch = partial.epochs[pane];
+                yield paneEpoch > epoch - PANES && paneEpoch <= epoch ? 1 : 0;
+            }
+        };
+    }
+
+    private long now() {
+        return this.clock == null ? 0 : this.clock.millis();
+    }
+
+    /**
+     * Returns the estimated count of a tuple, which is never below the true
+     * count and exceeds it by at most {@link #errorBound()} with probability
+     * at least {@code 1 - delta}.
+     *
+     * @param tuple the tuple
+     * @return the estimated count
+     */
+    public double estimate(Tuple<I> tuple) {
+        long hash = Hashing.wideHash64(SEED, tuple);
+        long now = now();
+        double[] rows = new double[this.depth];
+        for (Partial partial : this.partials) {
+            synchronized (partial) {
+                for (int p = 0; p < partial.panes.length; p++) {
+                    double weight = weight(partial, p, now);
+                    if (weight > 0) {
+                        partial.panes[p].addRows(hash, weight, rows);
+                    }
+                }
+            }
+        }
+        double estimate = Double.MAX_VALUE;
+        for (double row : rows) {
+            estimate = Math.min(estimate, row);
+        }
+        return estimate;
+    }
+
+    /**
+     * Returns the total count of all tuples.
+     *
+     * @return the sum of the counts, decayed or windowed as configured
+     */
+    public double total() {
+        long now = now();
+        double total = 0;
+        for (Partial partial : this.partials) {
+            synchronized (partial) {
+                for (int p = 0; p < partial.panes.length; p++) {
+                    double weight = weight(partial, p, now);
+                    if (weight > 0) {
+                        total += partial.panes[p].total * weight;
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns the {@code k} tuples with the highest estimated counts, most
+     * frequent first.
+     *
+     * @param k the number of tuples
+     * @return at most {@code k} heavy hitters
+     * @throws IllegalArgumentException if {@code k} is negative
+     */
+    public List<HeavyHitter<I>> topK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k cannot be negative!");
+        }
+        List<HeavyHitter<I>> all = candidates();
+        return all.subList(0, Math.min(k, all.size()));
+    }
+
+    /**
+     * Returns the tuples whose estimated count is at least a fraction of the
+     * total, most frequent first. Every tuple whose true count reaches that
+     * fraction is included when {@code phi} is at least {@code 1 / capacity}.
+     *
+     * @param phi the fraction of the total count
+     * @return the frequent tuples
+     * @throws IllegalArgumentException if {@code phi} is not between 0 and 1
+     */
+    public List<HeavyHitter<I>> frequent(double phi) {
+        if (!(phi >= 0 && phi <= 1)) {
+            throw new IllegalArgumentException("Phi must be between 0 and 1!");
+        }
+        List<HeavyHitter<I>> all = candidates();
+        double threshold = phi * total();
+        int n = 0;
+        while (n < all.size() && all.get(n).count() >= threshold) {
+            n++;
+        }
+        return all.subList(0, n);
+    }
+
+    /**
+     * Merges the partials into one sketch, and ranks the union of their
+     * candidates by their merged estimates.
+     */
+    @SuppressWarnings("unchecked")
+    private List<HeavyHitter<I>> candidates() {
+        long now = now();
+        double[] cells = new double[this.width * this.depth];
+        double total = 0;
+        List<Tuple<?>> tuples = new ArrayList<>();
+        List<Long> hashes = new ArrayList<>();
+        Set<Candidate> seen = new HashSet<>();
+        for (Partial partial : this.partials) {
+            synchronized (partial) {
+                for (int p = 0; p < partial.panes.length; p++) {
+                    double weight = weight(partial, p, now);
+                    if (weight == 0) {
+                        continue;
+                    }
+                    Summary pane = partial.panes[p];
+                    total += pane.total * weight;
+                    for (int i = 0; i < cells.length; i++) {
+                        cells[i] += pane.cells[i] * weight;
+                    }
+                    for (int id = 0; id < pane.size; id++) {
+                        if (seen.add(new Candidate(pane.hashes[id], pane.tuples[id]))) {
+                            tuples.add(pane.tuples[id]);
+                            hashes.add(pane.hashes[id]);
+                        }
+                    }
+                }
+            }
+        }
+        double error = epsilon() * total;
+        List<HeavyHitter<I>> result = new ArrayList<>(tuples.size());
+        for (int i = 0; i < tuples.size(); i++) {
+            double estimate = Summary.estimate(cells, this.width, this.depth, hashes.get(i));
+            result.add(new HeavyHitter<>((Tuple<I>) tuples.get(i), estimate, error));
+        }
+        result.sort((a, b) -> Double.compare(b.count(), a.count()));
+        return result;
+    }
+
+    /**
+     * Folds the live counts of every partial into a new one, locking the
+     * partials one at a time.
+     */
+    private Partial snapshot() {
+        long now = now();
+        Partial snapshot = new Partial(this, now);
+        for (Partial partial : this.partials) {
+            synchronized (partial) {
+                fold(partial, snapshot, now);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Adds the live counts of {@code from} into {@code into}, aligning the
+     * decay landmarks or window panes of the two.
+     */
+    private void fold(Partial from, Partial into, long now) {
+        switch (this.mode) {
+            case STREAM -> {
+                if (from.panes[0] != null) {
+                    into.pane(0).merge(from.panes[0], 1);
+                }
+            }
+            case DECAY -> {
+                if (from.panes[0] == null) {
+                    return;
+                }
+                if (from.landmark > into.landmark) {
+                    into.rebase(from.landmark, this.span);
+                }
+                double factor = Math.pow(2, -(double) (into.landmark - from.landmark) / this.span);
+                into.pane(0).merge(from.panes[0], factor);
+            }
+            default -> {
+                for (int p = 0; p < PANES; p++) {
+                    if (weight(from, p, now) == 0) {
+                        continue;
+                    }
+                    long epoch = from.epochs[p];
+                    if (into.epochs[p] > epoch) {
+                        continue;
+                    }
+                    Summary pane = into.pane(p);
+                    if (into.epochs[p] < epoch) {
+                        pane.clear();
+                        into.epochs[p] = epoch;
+                    }
+                    pane.merge(from.panes[p], 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the counts of another counter, e.g. one of another shard or one
+     * read by {@link #readFrom(DataInput)}. The counts are folded into a
+     * single sketch and table, so merging repeatedly takes no more memory;
+     * the guarantees hold for the combined stream. The other counter is left
+     * unchanged.
+     *
+     * @param other a counter created with the same parameters
+     * @throws IllegalArgumentException if the counters are not compatible
+     */
+    public void merge(TupleHeavyHitters<I> other) {
+        if (other.capacity != this.capacity || other.width != this.width || other.depth != this.depth
+                || other.mode != this.mode || other.span != this.span) {
+            throw new IllegalArgumentException("Heavy hitter counters are not compatible!");
+        }
+        Partial snapshot = other.snapshot();
+        Partial merged = this.partials[this.partials.length - 1];
+        synchronized (merged) {
+            fold(snapshot, merged, now());
+        }
+    }
+
+    /**
+     * Resets every count to zero.
+     */
+    public void clear() {
+        long now = now();
+        for (Partial partial : this.partials) {
+            synchronized (partial) {
+                for (Summary pane : partial.panes) {
+                    if (pane != null) {
+                        pane.clear();
+                    }
+                }
+                Arrays.fill(partial.epochs, Long.MIN_VALUE);
+                partial.landmark = now;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of SpaceSaving counters per table.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the error of the estimates as a fraction of the total count,
+     * which may be smaller than requested as the sketch width is rounded up
+     * to a power of two.
+     *
+     * @return epsilon
+     */
+    public double epsilon() {
+        return Math.E / this.width;
+    }
+
+    /**
+     * Returns the probability that an estimate exceeds its error bound.
+     *
+     * @return delta
+     */
+    public double delta() {
+        return Math.exp(-this.depth);
+    }
+
+    /**
+     * Returns the bound on the overestimate of every count, {@code epsilon * total()}.
+     *
+     * @return the error bound
+     */
+    public double errorBound() {
+        return epsilon() * total();
+    }
+
+    /**
+     * Writes the live counts of this counter, e.g. to merge them with the
+     * counters of other processes. Decay landmarks and window panes are
+     * written as wall-clock times, so the clocks of writer and reader should
+     * agree.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if a candidate tuple has an element
+     *         that cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        Partial snapshot = snapshot();
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(this.mode);
+        out.writeInt(this.capacity);
+        out.writeInt(this.width);
+        out.writeInt(this.depth);
+        out.writeLong(this.span);
+        out.writeLong(snapshot.landmark);
+        out.writeInt(snapshot.panes.length);
+        for (int p = 0; p < snapshot.panes.length; p++) {
+            Summary pane = snapshot.panes[p];
+            out.writeBoolean(pane != null);
+            if (pane == null) {
+                continue;
+            }
+            out.writeLong(snapshot.epochs[p]);
+            out.writeDouble(pane.total);
+            for (double cell : pane.cells) {
+                out.writeDouble(cell);
+            }
+            out.writeInt(pane.size);
+            for (int id = 0; id < pane.size; id++) {
+                out.writeDouble(pane.counts[id]);
+                TupleCodec.write(out, pane.tuples[id]);
+            }
+        }
+    }
+
+    /**
+     * Reads a counter written by {@link #writeTo(DataOutput)}, on the system
+     * clock.
+     *
+     * @param in the input to read from
+     * @param <I> the type of the elements
+     * @return the counter
+     * @throws IOException if reading fails or the input is not a heavy hitter counter
+     */
+    public static <I extends Comparable<I>> TupleHeavyHitters<I> readFrom(DataInput in) throws IOException {
+        return readFrom(in, InstantSource.system());
+    }
+
+    /**
+     * Reads a counter written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @param clock the source of the current time, for decaying and windowed counters
+     * @param <I> the type of the elements
+     * @return the counter
+     * @throws IOException if reading fails or the input is not a heavy hitter counter
+     */
+    public static <I extends Comparable<I>> TupleHeavyHitters<I> readFrom(DataInput in, InstantSource clock)
+            throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a tuple heavy hitter counter!");
+        }
+        int mode = in.readByte();
+        int capacity = in.readInt();
+        int width = in.readInt();
+        int depth = in.readInt();
+        long span = in.readLong();
+        long landmark = in.readLong();
+        int panes = in.readInt();
+        if (mode < STREAM || mode > WINDOW || capacity < 1 || width < 1 || width > MAX_WIDTH
+                || Integer.bitCount(width) != 1 || depth < 1 || depth > Long.SIZE
+                || (mode == STREAM ? span != 0 : span < 1) || panes != (mode == WINDOW ? PANES : 1)) {
+            throw new IOException("Corrupt tuple heavy hitter counter!");
+        }
+        TupleHeavyHitters<I> counter = new TupleHeavyHitters<>(capacity, width, depth, mode, span,
+                mode == STREAM ? null : Objects.requireNonNull(clock));
+        Partial merged = counter.partials[counter.partials.length - 1];
+        merged.landmark = landmark;
+        for (int p = 0; p < panes; p++) {
+            if (!in.readBoolean()) {
+                continue;
+            }
+            merged.epochs[p] = in.readLong();
+            Summary pane = merged.pane(p);
+            pane.total = in.readDouble();
+            for (int i = 0; i < pane.cells.length; i++) {
+                pane.cells[i] = in.readDouble();
+            }
+            int size = in.readInt();
+            if (size < 0 || size > capacity || !(pane.total >= 0)) {
+                throw new IOException("Corrupt tuple heavy hitter counter!");
+            }
+            for (int id = 0; id < size; id++) {
+                double count = in.readDouble();
+                Tuple<?> tuple = TupleCodec.read(in);
+                long hash = Hashing.wideHash64(SEED, tuple);
+                if (!(count >= 0) || pane.find(hash, tuple) >= 0) {
+                    throw new IOException("Corrupt tuple heavy hitter counter!");
+                }
+                pane.put(tuple, hash, count);
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * A frequent tuple with its estimated count. The true count lies between
+     * {@link #lowerBound()} and {@link #count()} with probability at least
+     * {@code 1 - delta}, and is never above {@link #count()}.
+     *
+     * @param tuple the tuple
+     * @param count the estimated count, never below the true count
+     * @param error the bound on the overestimate
+     * @param <I> the type of the elements
+     */
+    public record HeavyHitter<I extends Comparable<I>>(Tuple<I> tuple, double count, double error) {
+
+        /**
+         * Returns the smallest count the tuple may have.
+         *
+         * @return {@code count - error}, at least {@code 0}
+         */
+        public double lowerBound() {
+            return Math.max(0, this.count - this.error);
+        }
+    }
+
+    /**
+     * A candidate of a query, identified by its hash and its elements.
+     */
+    private record Candidate(long hash, Tuple<?> tuple) {
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Candidate c && c.hash == this.hash && Hashing.sameItems(c.tuple, this.tuple);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(this.hash);
+        }
+    }
+
+    /**
+     * The counts of one stripe: a single summary, or one per pane of a
+     * window, each allocated on first use.
+     */
+    private static final class Partial {
+        final int width;
+        final int depth;
+        final int capacity;
+        final Summary[] panes;
+        final long[] epochs;
+        long landmark;
+
+        Partial(TupleHeavyHitters<?> owner, long landmark) {
+            this.width = owner.width;
+            this.depth = owner.depth;
+            this.capacity = owner.capacity;
+            this.panes = new Summary[owner.mode == WINDOW ? PANES : 1];
+            this.epochs = new long[this.panes.length];
+            Arrays.fill(this.epochs, Long.MIN_VALUE);
+            this.landmark = landmark;
+        }
+
+        Summary pane(int p) {
+            if (this.panes[p] == null) {
+                this.panes[p] = new Summary(this.width, this.depth, this.capacity);
+            }
+            return this.panes[p];
+        }
+
+        /**
+         * Moves the decay landmark forward, scaling the counts to match.
+         */
+        void rebase(long landmark, long span) {
+            if (this.panes[0] != null) {
+                this.panes[0].scale(Math.pow(2, -(double) (landmark - this.landmark) / span));
+            }
+            this.landmark = landmark;
+        }
+    }
+
+    /**
+     * A Count-Min sketch with conservative update, and a SpaceSaving table
+     * whose minimum counter is found through an indexed min-heap.
+     */
+    private static final class Summary {
+        final int width;
+        final int depth;
+        final double[] cells;
+        double total;
+
+        final Tuple<?>[] tuples;
+        final long[] hashes;
+        final double[] counts;
+        final int[] heap;
+        final int[] heapPos;
+        // open addressing from hash to entry id + 1
+        final int[] slots;
+        int size;
+
+        Summary(int width, int depth, int capacity) {
+            this.width = width;
+            this.depth = depth;
+            this.cells = new double[width * depth];
+            this.tuples = new Tuple<?>[capacity];
+            this.hashes = new long[capacity];
+            this.counts = new double[capacity];
+            this.heap = new int[capacity];
+            this.heapPos = new int[capacity];
+            this.slots = new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+        }
+
+        private static int cell(int width, int row, long hash) {
+            int a = (int) hash;
+            int b = (int) (hash >>> 32) | 1;
+            return row * width + ((a + row * b) & (width - 1));
+        }
+
+        static double estimate(double[] cells, int width, int depth, long hash) {
+            double estimate = Double.MAX_VALUE;
+            for (int r = 0; r < depth; r++) {
+                estimate = Math.min(estimate, cells[cell(width, r, hash)]);
+            }
+            return estimate;
+        }
+
+        void addRows(long hash, double weight, double[] rows) {
+            for (int r = 0; r < this.depth; r++) {
+                rows[r] += this.cells[cell(this.width, r, hash)] * weight;
+            }
+        }
+
+        void add(Tuple<?> tuple, long hash, double weight) {
+            this.total += weight;
+            // conservative update: raise only the cells below the new estimate
+            double target = estimate(this.cells, this.width, this.depth, hash) + weight;
+            for (int r = 0; r < this.depth; r++) {
+                int i = cell(this.width, r, hash);
+                if (this.cells[i] < target) {
+                    this.cells[i] = target;
+                }
+            }
+            int id = find(hash, tuple);
+            if (id >= 0) {
+                this.counts[id] += weight;
+                siftDown(this.heapPos[id]);
+            } else if (this.size < this.tuples.length) {
+                put(tuple, hash, weight);
+            } else {
+                // SpaceSaving: the new tuple takes over the smallest counter
+                id = this.heap[0];
+                removeSlot(id);
+                this.tuples[id] = tuple;
+                this.hashes[id] = hash;
+                this.counts[id] += weight;
+                insertSlot(id);
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Adds the counts of another summary, scaled by {@code factor}. The
+         * tables are merged as mergeable SpaceSaving summaries: a tuple missing
+         * from one side is credited with that side's smallest counter, which
+         * bounds its count there, and the largest counters are kept.
+         */
+        void merge(Summary other, double factor) {
+            for (int i = 0; i < this.cells.length; i++) {
+                this.cells[i] += other.cells[i] * factor;
+            }
+            this.total += other.total * factor;
+            int capacity = this.tuples.length;
+            double thisMin = this.size == capacity ? this.counts[this.heap[0]] : 0;
+            double otherMin = other.size == capacity ? other.counts[other.heap[0]] * factor : 0;
+            int n = this.size;
+            Tuple<?>[] tuples = Arrays.copyOf(this.tuples, n + other.size);
+            long[] hashes = Arrays.copyOf(this.hashes, n + other.size);
+            double[] counts = Arrays.copyOf(this.counts, n + other.size);
+            boolean[] matched = new boolean[n];
+            for (int id = 0; id < other.size; id++) {
+                int mine = find(other.hashes[id], other.tuples[id]);
+                if (mine >= 0) {
+                    counts[mine] += other.counts[id] * factor;
+                    matched[mine] = true;
+                } else {
+                    tuples[n] = other.tuples[id];
+                    hashes[n] = other.hashes[id];
+                    counts[n++] = other.counts[id] * factor + thisMin;
+                }
+            }
+            for (int id = 0; id < this.size; id++) {
+                if (!matched[id]) {
+                    counts[id] += otherMin;
+                }
+            }
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(counts[b], counts[a]));
+            Arrays.fill(this.tuples, null);
+            Arrays.fill(this.slots, 0);
+            this.size = 0;
+            for (int i = 0; i < Math.min(n, capacity); i++) {
+                put(tuples[order[i]], hashes[order[i]], counts[order[i]]);
+            }
+        }
+
+        /**
+         * Adds a tuple missing from a table that is not full.
+         */
+        void put(Tuple<?> tuple, long hash, double count) {
+            int id = this.size++;
+            this.tuples[id] = tuple;
+            this.hashes[id] = hash;
+            this.counts[id] = count;
+            this.heap[id] = id;
+            this.heapPos[id] = id;
+            siftUp(id);
+            insertSlot(id);
+        }
+
+        void scale(double factor) {
+            for (int i = 0; i < this.cells.length; i++) {
+                this.cells[i] *= factor;
+            }
+            for (int id = 0; id < this.size; id++) {
+                this.counts[id] *= factor;
+            }
+            this.total *= factor;
+        }
+
+        void clear() {
+            Arrays.fill(this.cells, 0);
+            Arrays.fill(this.tuples, null);
+            Arrays.fill(this.slots, 0);
+            this.total = 0;
+            this.size = 0;
+        }
+
+        int find(long hash, Tuple<?> tuple) {
+            int mask = this.slots.length - 1;
+            for (int i = (int) hash & mask; this.slots[i] != 0; i = (i + 1) & mask) {
+                int id = this.slots[i] - 1;
+                if (this.hashes[id] == hash && Hashing.sameItems(this.tuples[id], tuple)) {
+                    return id;
+                }
+            }
+            return -1;
+        }
+
+        private void insertSlot(int id) {
+            int mask = this.slots.length - 1;
+            int i = (int) this.hashes[id] & mask;
+            while (this.slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            this.slots[i] = id + 1;
+        }
+
+        private void removeSlot(int id) {
+            int mask = this.slots.length - 1;
+            int i = (int) this.hashes[id] & mask;
+            while (this.slots[i] != id + 1) {
+                i = (i + 1) & mask;
+            }
+            this.slots[i] = 0;
+            // shift back the entries of the run that follows
+            for (int j = (i + 1) & mask; this.slots[j] != 0; j = (j + 1) & mask) {
+                int home = (int) this.hashes[this.slots[j] - 1] & mask;
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    this.slots[i] = this.slots[j];
+                    this.slots[j] = 0;
+                    i = j;
+                }
+            }
+        }
+
+        private void siftUp(int pos) {
+            int id = this.heap[pos];
+            double count = this.counts[id];
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                int pid = this.heap[parent];
+                if (this.counts[pid] <= count) {
+                    break;
+                }
+                this.heap[pos] = pid;
+                this.heapPos[pid] = pos;
+                pos = parent;
+            }
+            this.heap[pos] = id;
+            this.heapPos[id] = pos;
+        }
+
+        private void siftDown(int pos) {
+            int id = this.heap[pos];
+            double count = this.counts[id];
+            while (true) {
+                int child = 2 * pos + 1;
+                if (child >= this.size) {
+                    break;
+                }
+                if (child + 1 < this.size && this.counts[this.heap[child + 1]] < this.counts[this.heap[child]]) {
+                    child++;
+                }
+                int cid = this.heap[child];
+                if (this.counts[cid] >= count) {
+                    break;
+                }
+                this.heap[pos] = cid;
+                this.heapPos[cid] = pos;
+                pos = child;
+            }
+            this.heap[pos] = id;
+            this.heapPos[id] = pos;
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package io.github.noshou.tuple;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Relational joins between two collections of {@link Tuple}s.
+ * <p>
+ * A {@code TupleJoin} matches tuples of a left relation against tuples of a
+ * right relation on one or more key positions, e.g. {@code Triad.fetch(0)}
+ * against {@code Dyad.fetch(1)}:
+ * <pre>{@code
+ * TupleJoin<String> join = TupleJoin.<String>on(0, 1).project(0, 1, 2, 3);
+ * Stream<Polyad<String>> rows = join.hashJoin(triads, dyads);
+ * }</pre>
+ * Two families of algorithms are offered:
+ * <ul>
+ *   <li>hash joins ({@link #hashJoin}, {@link #semiJoin}, {@link #antiJoin}),
+ *       which build a radix-partitioned hash table over the right relation and
+ *       probe it with the left one. Keys are matched with {@link Object#equals(Object)}.</li>
+ *   <li>sort-merge joins ({@link #mergeJoin}, {@link #mergeSemiJoin},
+ *       {@link #mergeAntiJoin}), which walk two inputs already sorted on their
+ *       key positions. Keys are matched with {@link Comparable#compareTo(Object)},
+ *       so the inputs must be ordered consistently with {@link Tuple#compareTo(Tuple)}
+ *       restricted to the key positions.</li>
+ * </ul>
+ * Joined rows are produced lazily, one {@link Polyad} per match, as the
+ * returned {@link Stream} is consumed. A joined row is the concatenation of the
+ * left and right tuples, optionally narrowed by {@link #project(int...)}.
+ * <p>
+ * Instances are immutable; every configuration method returns a new join.
+ *
+ * @param <I> the type of items in the joined tuples; must implement {@link Comparable}
+ */
+public final class TupleJoin<I extends Comparable<I>> {
+
+    private static final int MAX_RADIX_BITS = 16;
+
+    private final int[] leftKeys;
+    private final int[] rightKeys;
+    private final int[] projection;
+    private final int radixBits;
+    private final boolean parallel;
+
+    private TupleJoin(int[] leftKeys, int[] rightKeys, int[] projection, int radixBits, boolean parallel) {
+        this.leftKeys = leftKeys;
+        this.rightKeys = rightKeys;
+        this.projection = projection;
+        this.radixBits = radixBits;
+        this.parallel = parallel;
+    }
+
+    /**
+     * Creates a join matching a single position of the left tuples against a
+     * single position of the right tuples.
+     *
+     * @param leftKey the key position in the left tuples
+     * @param rightKey the key position in the right tuples
+     * @param <I> the type of items in the joined tuples
+     * @return a new join
+     * @throws IndexOutOfBoundsException if a key position is negative
+     */
+    public static <I extends Comparable<I>> TupleJoin<I> on(int leftKey, int rightKey) {
+        return on(new int[]{leftKey}, new int[]{rightKey});
+    }
+
+    /**
+     * Creates a join matching several positions of the left tuples against
+     * the same number of positions of the right tuples, compared pairwise in order.
+     *
+     * @param leftKeys the key positions in the left tuples
+     * @param rightKeys the key positions in the right tuples
+     * @param <I> the type of items in the joined tuples
+     * @return a new join
+     * @throws IllegalArgumentException if the key arrays are empty or differ in length
+     * @throws IndexOutOfBoundsException if a key position is negative
+     */
+    public static <I extends Comparable<I>> TupleJoin<I> on(int[] leftKeys, int[] rightKeys) {
+        if (leftKeys.length == 0 || leftKeys.length != rightKeys.length) {
+            throw new IllegalArgumentException("Join keys must be non-empty and of equal length!");
+        }
+        checkPositions(leftKeys);
+        checkPositions(rightKeys);
+        return new TupleJoin<>(leftKeys.clone(), rightKeys.clone(), null, 8, false);
+    }
+
+    /**
+     * Returns a join emitting only the given columns of each joined row.
+     * Columns index into the concatenation of the left and right tuples:
+     * {@code 0 .. left.fetchSize() - 1} are the left elements and the
+     * following indices are the right elements.
+     *
+     * @param columns the columns to keep, in output order
+     * @return a new join with the given projection
+     * @throws IndexOutOfBoundsException if a column is negative
+     */
+    public TupleJoin<I> project(int... columns) {
+        checkPositions(columns);
+        return new TupleJoin<>(leftKeys, rightKeys, columns.clone(), radixBits, parallel);
+    }
+
+    /**
+     * Returns a join splitting both relations into {@code 2^bits} partitions
+     * on the high bits of the key hash. Smaller partitions keep each hash table
+     * in cache while it is probed; {@code 0} disables partitioning.
+     *
+     * @param bits the number of radix bits, between {@code 0} and {@code 16}
+     * @return a new join with the given partitioning
+     * @throws IllegalArgumentException if {@code bits} is out of range
+     */
+    public TupleJoin<I> partitions(int bits) {
+        if (bits < 0 || bits > MAX_RADIX_BITS) {
+            throw new IllegalArgumentException("Radix bits must be between 0 and " + MAX_RADIX_BITS + "!");
+        }
+        return new TupleJoin<>(leftKeys, rightKeys, projection, bits, parallel);
+    }
+
+    /**
+     * Returns a join that builds its hash tables and emits its partitions in
+     * parallel. Hash joins return parallel streams; merge joins are unaffected.
+     *
+     * @return a new parallel join
+     */
+    public TupleJoin<I> parallel() {
+        return new TupleJoin<>(leftKeys, rightKeys, projection, radixBits, true);
+    }
+
+    /**
+     * Inner hash join of two relations. The right relation is the build side
+     * and should be the smaller one; both relations are radix-partitioned and
+     * joined partition by partition.
+     *
+     * @param left the probe relation
+     * @param right the build relation
+     * @return a lazy stream of joined rows
+     */
+    public Stream<Polyad<I>> hashJoin(Collection<? extends Tuple<I>> left, Collection<? extends Tuple<I>> right) {
+        Table table = build(right, rightKeys, true);
+        Table probe = build(left, leftKeys, false);
+        Stream<Polyad<I>> joined = IntStream.range(0, 1 << radixBits)
+                .mapToObj(p -> IntStream.range(probe.offsets[p], probe.offsets[p + 1])
+                        .mapToObj(i -> table.matches(probe.rows[i], probe.hashes[i])
+                                .map(r -> join(probe.rows[i], r)))
+                        .flatMap(Function.identity()))
+                .flatMap(Function.identity());
+        return parallel ? joined.parallel() : joined;
+    }
+
+    /**
+     * Inner hash join of a stream of tuples against a relation. Only the right
+     * relation is materialized; the left stream is probed as it is consumed,
+     * concurrently if it is parallel.
+     *
+     * @param left the probe stream
+     * @param right the build relation
+     * @return a lazy stream of joined rows
+     */
+    public Stream<Polyad<I>> hashJoin(Stream<? extends Tuple<I>> left, Collection<? extends Tuple<I>> right) {
+        Table table = build(right, rightKeys, true);
+        return left.flatMap(l -> table.matches(l, Hashing.hash(l, leftKeys)).map(r -> join(l, r)));
+    }
+
+    /**
+     * Hash semi-join: keeps the left tuples that have at least one match in
+     * the right relation. Each left tuple is emitted at most once.
+     *
+     * @param left the probe stream
+     * @param right the build relation
+     * @param <T> the type of the left tuples
+     * @return a lazy stream of the matching left tuples
+     */
+    public <T extends Tuple<I>> Stream<T> semiJoin(Stream<T> left, Collection<? extends Tuple<I>> right) {
+        Table table = build(right, rightKeys, true);
+        return left.filter(l -> table.matches(l, Hashing.hash(l, leftKeys)).findAny().isPresent());
+    }
+
+    /**
+     * Hash anti-join: keeps the left tuples that have no match in the right relation.
+     *
+     * @param left the probe stream
+     * @param right the build relation
+     * @param <T> the type of the left tuples
+     * @return a lazy stream of the unmatched left tuples
+     */
+    public <T extends Tuple<I>> Stream<T> antiJoin(Stream<T> left, Collection<? extends Tuple<I>> right) {
+        Table table = build(right, rightKeys, true);
+        return left.filter(l -> table.matches(l, Hashing.hash(l, leftKeys)).findAny().isEmpty());
+    }
+
+    /**
+     * Inner sort-merge join of two inputs sorted ascending on their key positions.
+     * Only one group of equal right keys is buffered at a time.
+     *
+     * @param left the left input, sorted on the left key positions
+     * @param right the right input, sorted on the right key positions
+     * @return a lazy stream of joined rows
+     */
+    public Stream<Polyad<I>> mergeJoin(Iterable<? extends Tuple<I>> left, Iterable<? extends Tuple<I>> right) {
+        return StreamSupport.stream(new MergeJoin<>(left.iterator(), right.iterator()), false);
+    }
+
+    /**
+     * Sort-merge semi-join: keeps the left tuples that have at least one match
+     * in the right input. Both inputs must be sorted ascending on their key positions.
+     *
+     * @param left the left input, sorted on the left key positions
+     * @param right the right input, sorted on the right key positions
+     * @param <T> the type of the left tuples
+     * @return a lazy stream of the matching left tuples
+     */
+    public <T extends Tuple<I>> Stream<T> mergeSemiJoin(Iterable<T> left, Iterable<? extends Tuple<I>> right) {
+        return StreamSupport.stream(new MergeFilter<>(left.iterator(), right.iterator(), true), false);
+    }
+
+    /**
+     * Sort-merge anti-join: keeps the left tuples that have no match in the
+     * right input. Both inputs must be sorted ascending on their key positions.
+     *
+     * @param left the left input, sorted on the left key positions
+     * @param right the right input, sorted on the right key positions
+     * @param <T> the type of the left tuples
+     * @return a lazy stream of the unmatched left tuples
+     */
+    public <T extends Tuple<I>> Stream<T> mergeAntiJoin(Iterable<T> left, Iterable<? extends Tuple<I>> right) {
+        return StreamSupport.stream(new MergeFilter<>(left.iterator(), right.iterator(), false), false);
+    }
+
+    /**
+     * Builds the projected output row for a matching pair.
+     */
+    @SuppressWarnings("unchecked")
+    private Polyad<I> join(Tuple<I> l, Tuple<I> r) {
+        int leftSize = l.fetchSize();
+        I[] row;
+        if (projection == null) {
+            row = (I[]) new Comparable[leftSize + r.fetchSize()];
+            for (int i = 0; i < leftSize; i++) {
+                row[i] = l.fetch(i);
+            }
+            for (int i = leftSize; i < row.length; i++) {
+                row[i] = r.fetch(i - leftSize);
+            }
+        } else {
+            row = (I[]) new Comparable[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                int column = projection[i];
+                row[i] = column < leftSize ? l.fetch(column) : r.fetch(column - leftSize);
+            }
+        }
+        return new Polyad<>(row);
+    }
+
+    /**
+     * Radix-partitions a relation by key hash and, for the build side, chains
+     * each partition into its own bucket table.
+     */
+    @SuppressWarnings("unchecked")
+    private Table build(Collection<? extends Tuple<I>> rows, int[] keys, boolean chained) {
+        int n = rows.size();
+        int parts = 1 << radixBits;
+        int[] rawHashes = new int[n];
+        Tuple<I>[] rawRows = (Tuple<I>[]) new Tuple[n];
+        int[] offsets = new int[parts + 1];
+
+        // pass 1: hash every row and histogram the partitions
+        int i = 0;
+        for (Tuple<I> row : rows) {
+            int h = Hashing.hash(row, keys);
+            rawHashes[i] = h;
+            rawRows[i] = row;
+            offsets[partition(h) + 1]++;
+            i++;
+        }
+        for (int p = 0; p < parts; p++) {
+            offsets[p + 1] += offsets[p];
+        }
+
+        // pass 2: scatter rows into contiguous partitions
+        int[] hashes = new int[n];
+        Tuple<I>[] sorted = (Tuple<I>[]) new Tuple[n];
+        int[] cursor = Arrays.copyOf(offsets, parts);
+        for (i = 0; i < n; i++) {
+            int dst = cursor[partition(rawHashes[i])]++;
+            hashes[dst] = rawHashes[i];
+            sorted[dst] = rawRows[i];
+        }
+
+        Table table = new Table(sorted, hashes, offsets, keys);
+        if (chained) {
+            IntStream partitions = IntStream.range(0, parts);
+            (parallel ? partitions.parallel() : partitions).forEach(table::chain);
+        }
+        return table;
+    }
+
+    private int partition(int hash) {
+        return radixBits == 0 ? 0 : hash >>> (Integer.SIZE - radixBits);
+    }
+
+    private int compareKeys(Tuple<I> a, int[] aKeys, Tuple<I> b, int[] bKeys) {
+        for (int i = 0; i < aKeys.length; i++) {
+            int cmp = a.fetch(aKeys[i]).compareTo(b.fetch(bKeys[i]));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private static void checkPositions(int[] positions) {
+        for (int position : positions) {
+            if (position < 0) {
+                throw new IndexOutOfBoundsException("Tuple positions cannot be negative!");
+            }
+        }
+    }
+
+    /**
+     * A relation split into contiguous radix partitions. For the build side,
+     * each partition also carries a power-of-two bucket array whose chains run
+     * through {@code next}.
+     */
+    private final class Table {
+        final Tuple<I>[] rows;
+        final int[] hashes;
+        final int[] offsets;
+        final int[] keys;
+        final int[][] heads;
+        final int[] next;
+
+        Table(Tuple<I>[] rows, int[] hashes, int[] offsets, int[] keys) {
+            this.rows = rows;
+            this.hashes = hashes;
+            this.offsets = offsets;
+            this.keys = keys;
+            this.heads = new int[offsets.length - 1][];
+            this.next = new int[rows.length];
+        }
+
+        void chain(int p) {
+            int from = offsets[p];
+            int to = offsets[p + 1];
+            int buckets = Integer.highestOneBit(Math.max(1, to - from) * 2 - 1) << 1;
+            int[] head = new int[buckets];
+            Arrays.fill(head, -1);
+            for (int i = from; i < to; i++) {
+                int b = hashes[i] & (buckets - 1);
+                next[i] = head[b];
+                head[b] = i;
+            }
+            heads[p] = head;
+        }
+
+        Stream<Tuple<I>> matches(Tuple<I> probe, int hash) {
+            int[] head = heads[partition(hash)];
+            return IntStream.iterate(head[hash & (head.length - 1)], i -> i >= 0, i -> next[i])
+                    .filter(i -> hashes[i] == hash && keysEqual(probe, rows[i]))
+                    .mapToObj(i -> rows[i]);
+        }
+
+        private boolean keysEqual(Tuple<I> probe, Tuple<I> row) {
+            for (int k = 0; k < keys.length; k++) {
+                if (!Objects.equals(probe.fetch(leftKeys[k]), row.fetch(keys[k]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Shared cursor logic of the sort-merge joins: advances the right input to
+     * the group of tuples whose keys equal the current left key.
+     */
+    private abstract class MergeCursor<T extends Tuple<I>, R> extends Spliterators.AbstractSpliterator<R> {
+        final Iterator<T> left;
+        final Iterator<? extends Tuple<I>> right;
+        final List<Tuple<I>> group = new ArrayList<>();
+        Tuple<I> nextRight;
+
+        MergeCursor(Iterator<T> left, Iterator<? extends Tuple<I>> right) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.left = left;
+            this.right = right;
+            this.nextRight = right.hasNext() ? right.next() : null;
+        }
+
+        /**
+         * Positions {@link #group} on the right tuples matching {@code l};
+         * leaves it empty if there are none.
+         */
+        void seek(T l) {
+            if (!group.isEmpty() && compareKeys(l, leftKeys, group.get(0), rightKeys) == 0) {
+                return;
+            }
+            group.clear();
+            while (nextRight != null && compareKeys(l, leftKeys, nextRight, rightKeys) > 0) {
+                nextRight = right.hasNext() ? right.next() : null;
+            }
+            if (nextRight == null || compareKeys(l, leftKeys, nextRight, rightKeys) < 0) {
+                return;
+            }
+            Tuple<I> first = nextRight;
+            while (nextRight != null && compareKeys(nextRight, rightKeys, first, rightKeys) == 0) {
+                group.add(nextRight);
+                nextRight = right.hasNext() ? right.next() : null;
+            }
+        }
+    }
+
+    /**
+     * Sort-merge inner join emitting every left tuple paired with its right group.
+     */
+    private final class MergeJoin<T extends Tuple<I>> extends MergeCursor<T, Polyad<I>> {
+        private T pending;
+        private int pendingIdx;
+
+        MergeJoin(Iterator<T> left, Iterator<? extends Tuple<I>> right) {
+            super(left, right);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Polyad<I>> action) {
+            while (true) {
+                if (pending != null && pendingIdx < group.size()) {
+                    action.accept(join(pending, group.get(pendingIdx++)));
+                    return true;
+                }
+                if (!left.hasNext()) {
+                    return false;
+                }
+                pending = left.next();
+                pendingIdx = 0;
+                seek(pending);
+            }
+        }
+    }
+
+    /**
+     * Sort-merge semi- or anti-join emitting left tuples by whether they have a match.
+     */
+    private final class MergeFilter<T extends Tuple<I>> extends MergeCursor<T, T> {
+        private final boolean keepMatched;
+
+        MergeFilter(Iterator<T> left, Iterator<? extends Tuple<I>> right, boolean keepMatched) {
+            super(left, right);
+            this.keepMatched = keepMatched;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (left.hasNext()) {
+                T l = left.next();
+                seek(l);
+                if (group.isEmpty() != keepMatched) {
+                    action.accept(l);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,1142 @@
+package io.github.noshou.tuple;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+
+/**
+ * An embedded, log-structured key-value store keyed by tuples, kept in a
+ * local directory and scanned in {@link Tuple#compareTo(Tuple)} order.
+ * <p>
+ * Writes go to a write-ahead log and to an in-memory sorted memtable. A full
+ * memtable is frozen and written, in the background, to an immutable sorted
+ * segment file with a block index and a {@link TupleFilter Bloom filter}; the
+ * log is then discarded. When segments accumulate, the newest ones are merged
+ * in size tiers, and merges that reach the oldest segment drop deleted keys.
+ * <pre>{@code
+ * try (TupleKV<String> kv = TupleKV.open(Path.of("data"))) {
+ *     kv.put(new Dyad<>("EU", "widget"), bytes);
+ *     byte[] value = kv.get(new Dyad<>("EU", "widget"));
+ *     try (Stream<Map.Entry<Tuple<String>, byte[]>> eu = kv.scanPrefix(new Monad<>("EU"))) { ... }
+ * }
+ * }</pre>
+ * Keys are written with the elements supported by the library's binary
+ * codec: {@code Long}, {@code Integer}, {@code Double} and {@code String}.
+ * Keys read back from segments are {@link Polyad}s, and a key is found by any
+ * tuple that compares equal to it. Values are byte arrays; the array passed
+ * to {@link #put(Tuple, byte[])} is copied, and arrays returned by reads must
+ * not be modified.
+ * <p>
+ * The store is thread-safe. Writes are serialized; reads do not lock.
+ * {@link #scan(Tuple, Tuple)} sees writes made while it runs on a
+ * best-effort basis, whereas a {@link #snapshot()} is a consistent view as of
+ * its creation. Scan streams and snapshots pin the segment files they read,
+ * so they must be closed. Every write reaches the operating system before it
+ * returns; {@link #sync()} additionally forces the log to the disk.
+ *
+ * @param <I> the type of the elements of the keys
+ */
+public final class TupleKV<I extends Comparable<I>> implements Closeable {
+
+    /**
+     * The memtable size, in estimated bytes, used by {@link #open(Path)}.
+     */
+    public static final long DEFAULT_MEMTABLE_BYTES = 4L << 20;
+
+    private static final int SEGMENT_MAGIC = 0x544B5653; // "TKVS"
+    private static final int MANIFEST_MAGIC = 0x544B564D; // "TKVM"
+    private static final byte VERSION = 1;
+    private static final int BLOCK_BYTES = 4096;
+    private static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int COMPACTION_TRIGGER = 4;
+    private static final int MAX_FROZEN = 4;
+    private static final double FILTER_FPP = 0.01;
+    private static final byte PUT = 0;
+    private static final byte DELETE = 1;
+    private static final String MANIFEST = "MANIFEST";
+    // marks a deleted key in memtables and merged iterators; compared by identity
+    private static final byte[] TOMBSTONE = new byte[0];
+
+    private final Path dir;
+    private final long memtableBytes;
+    private final Executor background;
+    private final Object backgroundLock = new Object();
+    private volatile State<I> state;
+    private volatile IOException backgroundFailure;
+    private long nextId;
+    private volatile boolean closed;
+    private boolean released;
+
+    /**
+     * The current memtable, the frozen memtables awaiting their flush and the
+     * live segments, each list newest first.
+     */
+    private record State<I extends Comparable<I>>(Memtable<I> active, List<Memtable<I>> frozen,
+                                                  List<Segment<I>> segments) {
+    }
+
+    private TupleKV(Path dir, long memtableBytes, Executor background) {
+        this.dir = dir;
+        this.memtableBytes = memtableBytes;
+        this.background = background;
+    }
+
+    /**
+     * Opens or creates a store with {@link #DEFAULT_MEMTABLE_BYTES}, flushing
+     * and compacting on the common fork-join pool.
+     *
+     * @param dir the directory of the store, created if absent
+     * @param <I> the type of the elements of the keys
+     * @return the open store
+     * @throws IOException if the store cannot be opened or recovered
+     */
+    public static <I extends Comparable<I>> TupleKV<I> open(Path dir) throws IOException {
+        return open(dir, DEFAULT_MEMTABLE_BYTES, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Opens or creates a store. Writes left in the log by a crash are
+     * recovered into a segment before this method returns.
+     *
+     * @param dir the directory of the store, created if absent
+     * @param memtableBytes the estimated size at which a memtable is flushed
+     * @param background the executor running flushes and compactions
+     * @param <I> the type of the elements of the keys
+     * @return the open store
+     * @throws IOException if the store cannot be opened or recovered
+     * @throws IllegalArgumentException if {@code memtableBytes} is not positive
+     */
+    public static <I extends Comparable<I>> TupleKV<I> open(Path dir, long memtableBytes, Executor background)
+            throws IOException {
+        if (memtableBytes <= 0) {
+            throw new IllegalArgumentException("Memtable size must be positive!");
+        }
+        Files.createDirectories(dir);
+        TupleKV<I> kv = new TupleKV<>(dir, memtableBytes, background);
+        kv.recover();
+        if (kv.state.segments.size() >= COMPACTION_TRIGGER) {
+            kv.scheduleBackground();
+        }
+        return kv;
+    }
+
+    private void recover() throws IOException {
+        List<Long> live = new ArrayList<>();
+        Path manifest = this.dir.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(manifest))) {
+                if (in.readInt() != MANIFEST_MAGIC || in.readByte() != VERSION) {
+                    throw new IOException("Not a tuple store manifest!");
+                }
+                this.nextId = in.readLong();
+                int n = in.readInt();
+                for (int i = 0; i < n; i++) {
+                    live.add(in.readLong());
+                }
+            }
+        }
+        TreeSet<Long> logs = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long id = fileId(name);
+                if (id < 0) {
+                    continue;
+                }
+                this.nextId = Math.max(this.nextId, id + 1);
+                if (name.endsWith(".log")) {
+                    logs.add(id);
+                } else if (name.endsWith(".tmp") || !live.contains(id)) {
+                    // left behind by an interrupted flush or compaction
+                    Files.delete(file);
+                }
+            }
+        }
+        List<Segment<I>> segments = new ArrayList<>();
+        for (long id : live) {
+            segments.add(Segment.open(id, segmentPath(id)));
+        }
+        // replay logs of memtables that were not flushed, oldest first
+        TreeMap<Tuple<I>, byte[]> recovered = new TreeMap<>();
+        for (long id : logs) {
+            Wal.replay(walPath(id), recovered);
+        }
+        if (!recovered.isEmpty()) {
+            long id = this.nextId++;
+            segments.add(0, Segment.write(id, segmentPath(id), recovered.entrySet().iterator(), recovered.size()));
+        }
+        long walId = this.nextId++;
+        Memtable<I> active = new Memtable<>(walId, Wal.create(walPath(walId)));
+        writeManifest(segments);
+        for (long id : logs) {
+            Files.delete(walPath(id));
+        }
+        this.state = new State<>(active, List.of(), List.copyOf(segments));
+    }
+
+    private static long fileId(String name) {
+        int dash = name.indexOf('-');
+        int dot = name.indexOf('.');
+        if (dash < 0 || dot < dash || !(name.startsWith("seg-") || name.startsWith("wal-"))) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name, dash + 1, dot, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return this.dir.resolve("seg-" + id + ".tkv");
+    }
+
+    private Path walPath(long id) {
+        return this.dir.resolve("wal-" + id + ".log");
+    }
+
+    /**
+     * Atomically replaces the manifest, which lists the live segments.
+     * Called while holding the store's lock, or before the store is published.
+     */
+    private void writeManifest(List<Segment<I>> segments) throws IOException {
+        Path tmp = this.dir.resolve(MANIFEST + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(this.nextId);
+            out.writeInt(segments.size());
+            for (Segment<I> segment : segments) {
+                out.writeLong(segment.id);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, this.dir.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Associates a value with a key, replacing any previous value.
+     *
+     * @param key the key
+     * @param value the value, copied
+     * @throws IOException if the log cannot be written, or an earlier
+     *         background flush or compaction failed
+     * @throws IllegalArgumentException if the key has an element that cannot be written
+     * @throws IllegalStateException if the store is closed
+     */
+    public void put(Tuple<I> key, byte[] value) throws IOException {
+        write(PUT, key, value.clone());
+    }
+
+    /**
+     * Removes the value of a key, if any.
+     *
+     * @param key the key
+     * @throws IOException if the log cannot be written, or an earlier
+     *         background flush or compaction failed
+     * @throws IllegalArgumentException if the key has an element that cannot be written
+     * @throws IllegalStateException if the store is closed
+     */
+    public void delete(Tuple<I> key) throws IOException {
+        write(DELETE, key, TOMBSTONE);
+    }
+
+    private void write(byte op, Tuple<I> key, byte[] value) throws IOException {
+        boolean rotated = false;
+        synchronized (this) {
+            ensureOpen();
+            IOException failure = this.backgroundFailure;
+            if (failure != null) {
+                throw new IOException("Background flush or compaction failed!", failure);
+            }
+            Memtable<I> memtable = this.state.active;
+            memtable.wal.append(op, key, value);
+            memtable.map.put(key, value);
+            memtable.bytes += estimate(key) + value.length;
+            if (memtable.bytes >= this.memtableBytes) {
+                rotate();
+                rotated = true;
+            }
+        }
+        if (rotated) {
+            scheduleBackground();
+        }
+    }
+
+    private static long estimate(Tuple<?> key) {
+        long bytes = 64;
+        for (int i = 0; i < key.fetchSize(); i++) {
+            bytes += key.fetch(i) instanceof String s ? 40 + 2L * s.length() : 16;
+        }
+        return bytes;
+    }
+
+    /**
+     * Freezes the active memtable and starts a new one with a new log,
+     * waiting while too many frozen memtables await their flush.
+     * Called while holding the store's lock.
+     */
+    private void rotate() throws IOException {
+        while (this.state.frozen.size() >= MAX_FROZEN && this.backgroundFailure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a flush!");
+            }
+        }
+        State<I> s = this.state;
+        long id = this.nextId++;
+        Memtable<I> fresh = new Memtable<>(id, Wal.create(walPath(id)));
+        s.active.wal.close();
+        List<Memtable<I>> frozen = new ArrayList<>(s.frozen.size() + 1);
+        frozen.add(s.active);
+        frozen.addAll(s.frozen);
+        this.state = new State<>(fresh, List.copyOf(frozen), s.segments);
+    }
+
+    private void scheduleBackground() {
+        try {
+            this.background.execute(this::runBackground);
+        } catch (RejectedExecutionException e) {
+            runBackground();
+        }
+    }
+
+    private void runBackground() {
+        synchronized (this.backgroundLock) {
+            if (this.released) {
+                return;
+            }
+            try {
+                flushFrozen();
+                while (this.state.segments.size() >= COMPACTION_TRIGGER) {
+                    compact();
+                }
+            } catch (IOException | UncheckedIOException e) {
+                this.backgroundFailure = e instanceof IOException io ? io : ((UncheckedIOException) e).getCause();
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every frozen memtable to a segment, oldest first. Called while
+     * holding the background lock.
+     */
+    private void flushFrozen() throws IOException {
+        while (true) {
+            List<Memtable<I>> frozen = this.state.frozen;
+            if (frozen.isEmpty()) {
+                return;
+            }
+            Memtable<I> oldest = frozen.get(frozen.size() - 1);
+            long id;
+            synchronized (this) {
+                id = this.nextId++;
+            }
+            Segment<I> segment = Segment.write(id, segmentPath(id), oldest.map.entrySet().iterator(), oldest.map.size());
+            synchronized (this) {
+                State<I> s = this.state;
+                List<Segment<I>> segments = new ArrayList<>(s.segments.size() + 1);
+                segments.add(segment);
+                segments.addAll(s.segments);
+                writeManifest(segments);
+                this.state = new State<>(s.active, List.copyOf(s.frozen.subList(0, s.frozen.size() - 1)),
+                        List.copyOf(segments));
+                notifyAll();
+            }
+            Files.deleteIfExists(walPath(oldest.walId));
+        }
+    }
+
+    /**
+     * Merges the newest segments into one, size-tiered: older segments join
+     * while they are at most twice the size of the newer ones merged so far,
+     * so each entry is rewritten a logarithmic number of times. Deleted keys
+     * are dropped once the merge reaches the oldest segment. Called while
+     * holding the background lock, so no other thread removes segments.
+     */
+    private void compact() throws IOException {
+        List<Segment<I>> segments = this.state.segments;
+        long entries = segments.get(0).entries;
+        int count = 1;
+        while (count < segments.size() && (count < 2 || segments.get(count).entries <= 2 * entries)) {
+            entries += segments.get(count).entries;
+            count++;
+        }
+        List<Segment<I>> victims = segments.subList(0, count);
+        boolean oldest = count == segments.size();
+        List<Iterator<Map.Entry<Tuple<I>, byte[]>>> sources = new ArrayList<>();
+        for (Segment<I> segment : victims) {
+            sources.add(segment.iterator(null));
+        }
+        long id;
+        synchronized (this) {
+            id = this.nextId++;
+        }
+        Segment<I> merged = Segment.write(id, segmentPath(id), merge(sources, !oldest), entries);
+        synchronized (this) {
+            State<I> s = this.state;
+            // segments flushed meanwhile were prepended, before the victims
+            int first = s.segments.indexOf(victims.get(0));
+            List<Segment<I>> live = new ArrayList<>(s.segments.subList(0, first));
+            live.add(merged);
+            live.addAll(s.segments.subList(first + count, s.segments.size()));
+            writeManifest(live);
+            this.state = new State<>(s.active, s.frozen, List.copyOf(live));
+        }
+        for (Segment<I> victim : victims) {
+            victim.obsolete = true;
+            victim.release();
+        }
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key the key
+     * @return the value, or {@code null} if the key is absent
+     * @throws IOException if a segment cannot be read
+     * @throws IllegalStateException if the store is closed
+     */
+    public byte[] get(Tuple<I> key) throws IOException {
+        while (true) {
+            ensureOpen();
+            State<I> s = this.state;
+            byte[] value = s.active.map.get(key);
+            for (int i = 0; value == null && i < s.frozen.size(); i++) {
+                value = s.frozen.get(i).map.get(key);
+            }
+            if (value != null) {
+                return value == TOMBSTONE ? null : value;
+            }
+            boolean stale = false;
+            for (Segment<I> segment : s.segments) {
+                if (!segment.retain()) {
+                    // compacted away since the state was read; retry on the new state
+                    stale = true;
+                    break;
+                }
+                try {
+                    value = segment.get(key);
+                } finally {
+                    segment.release();
+                }
+                if (value != null) {
+                    return value == TOMBSTONE ? null : value;
+                }
+            }
+            if (!stale) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns the entries with keys from {@code from} inclusive to {@code to}
+     * exclusive, in key order. Writes made during the scan may or may not be
+     * seen. The stream must be closed.
+     *
+     * @param from the smallest key, or {@code null} to start at the first key
+     * @param to the key to stop before, or {@code null} to scan to the end
+     * @return the entries; read errors are rethrown as {@link UncheckedIOException}
+     * @throws IllegalStateException if the store is closed
+     */
+    public Stream<Map.Entry<Tuple<I>, byte[]>> scan(Tuple<I> from, Tuple<I> to) {
+        Snapshot view = new Snapshot(false);
+        return view.scan(from, to).onClose(view::close);
+    }
+
+    /**
+     * Returns the entries whose keys start with the elements of
+     * {@code prefix}, in key order. The stream must be closed.
+     *
+     * @param prefix the leading elements of the keys
+     * @return the entries; read errors are rethrown as {@link UncheckedIOException}
+     * @throws IllegalStateException if the store is closed
+     */
+    public Stream<Map.Entry<Tuple<I>, byte[]>> scanPrefix(Tuple<I> prefix) {
+        Snapshot view = new Snapshot(false);
+        return view.scanPrefix(prefix).onClose(view::close);
+    }
+
+    /**
+     * Returns a consistent, read-only view of the store as of now, which
+     * later writes do not affect. The active memtable is copied; segments are
+     * shared and kept until the snapshot is closed.
+     *
+     * @return the snapshot, to be closed after use
+     * @throws IllegalStateException if the store is closed
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(true);
+    }
+
+    /**
+     * A read-only view of the store. See {@link TupleKV#snapshot()}.
+     */
+    public final class Snapshot implements Closeable {
+        private final List<NavigableMap<Tuple<I>, byte[]>> maps = new ArrayList<>();
+        private final List<Segment<I>> segments;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Snapshot(boolean copy) {
+            synchronized (TupleKV.this) {
+                ensureOpen();
+                State<I> s = TupleKV.this.state;
+                this.maps.add(copy ? new TreeMap<>(s.active.map) : s.active.map);
+                for (Memtable<I> memtable : s.frozen) {
+                    this.maps.add(memtable.map);
+                }
+                // segments are only released after a new state is published under this lock
+                for (Segment<I> segment : s.segments) {
+                    if (!segment.retain()) {
+                        throw new AssertionError("Live segment already released!");
+                    }
+                }
+                this.segments = s.segments;
+            }
+        }
+
+        /**
+         * Returns the value of a key in this snapshot.
+         *
+         * @param key the key
+         * @return the value, or {@code null} if the key is absent
+         * @throws IOException if a segment cannot be read
+         * @throws IllegalStateException if the snapshot is closed
+         */
+        public byte[] get(Tuple<I> key) throws IOException {
+            ensureOpenSnapshot();
+            for (NavigableMap<Tuple<I>, byte[]> map : this.maps) {
+                byte[] value = map.get(key);
+                if (value != null) {
+                    return value == TOMBSTONE ? null : value;
+                }
+            }
+            for (Segment<I> segment : this.segments) {
+                byte[] value = segment.get(key);
+                if (value != null) {
+                    return value == TOMBSTONE ? null : value;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the entries of this snapshot with keys from {@code from}
+         * inclusive to {@code to} exclusive, in key order.
+         *
+         * @param from the smallest key, or {@code null} to start at the first key
+         * @param to the key to stop before, or {@code null} to scan to the end
+         * @return the entries; read errors are rethrown as {@link UncheckedIOException}
+         * @throws IllegalStateException if the snapshot is closed
+         */
+        public Stream<Map.Entry<Tuple<I>, byte[]>> scan(Tuple<I> from, Tuple<I> to) {
+            ensureOpenSnapshot();
+            List<Iterator<Map.Entry<Tuple<I>, byte[]>>> sources = new ArrayList<>();
+            for (NavigableMap<Tuple<I>, byte[]> map : this.maps) {
+                sources.add((from == null ? map : map.tailMap(from, true)).entrySet().iterator());
+            }
+            for (Segment<I> segment : this.segments) {
+                sources.add(segment.iterator(from));
+            }
+            Stream<Map.Entry<Tuple<I>, byte[]>> entries = StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                    merge(sources, false), Spliterator.ORDERED | Spliterator.NONNULL), false);
+            return to == null ? entries : entries.takeWhile(e -> e.getKey().compareTo(to) < 0);
+        }
+
+        /**
+         * Returns the entries of this snapshot whose keys start with the
+         * elements of {@code prefix}, in key order.
+         *
+         * @param prefix the leading elements of the keys
+         * @return the entries; read errors are rethrown as {@link UncheckedIOException}
+         * @throws IllegalStateException if the snapshot is closed
+         */
+        public Stream<Map.Entry<Tuple<I>, byte[]>> scanPrefix(Tuple<I> prefix) {
+            // keys extending the prefix follow it directly in tuple order
+            return scan(prefix, null).takeWhile(e -> startsWith(e.getKey(), prefix));
+        }
+
+        private void ensureOpenSnapshot() {
+            if (this.closed.get()) {
+                throw new IllegalStateException("Snapshot is closed!");
+            }
+        }
+
+        /**
+         * Releases the segments held by this snapshot.
+         */
+        @Override
+        public void close() {
+            if (this.closed.compareAndSet(false, true)) {
+                for (Segment<I> segment : this.segments) {
+                    segment.release();
+                }
+            }
+        }
+    }
+
+    private static boolean startsWith(Tuple<?> key, Tuple<?> prefix) {
+        if (key.fetchSize() < prefix.fetchSize()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.fetchSize(); i++) {
+            if (!Objects.equals(key.fetch(i), prefix.fetch(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forces every write made so far to the disk.
+     *
+     * @throws IOException if the log cannot be forced
+     * @throws IllegalStateException if the store is closed
+     */
+    public synchronized void sync() throws IOException {
+        ensureOpen();
+        this.state.active.wal.sync();
+    }
+
+    /**
+     * Writes the active memtable to a segment and waits until every frozen
+     * memtable has been flushed.
+     *
+     * @throws IOException if the flush fails
+     * @throws IllegalStateException if the store is closed
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            ensureOpen();
+            if (!this.state.active.map.isEmpty()) {
+                rotate();
+            }
+        }
+        runBackground();
+        IOException failure = this.backgroundFailure;
+        if (failure != null) {
+            throw new IOException("Background flush or compaction failed!", failure);
+        }
+    }
+
+    /**
+     * Returns the number of segment files of the store.
+     *
+     * @return the number of live segments
+     */
+    public int segmentCount() {
+        return this.state.segments.size();
+    }
+
+    private void ensureOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("Store is closed!");
+        }
+    }
+
+    /**
+     * Flushes the active memtable and closes the store. Segments still read by
+     * open scans or snapshots are closed when those are.
+     *
+     * @throws IOException if the final flush fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            if (!this.state.active.map.isEmpty()) {
+                rotate();
+            }
+            this.closed = true;
+        }
+        synchronized (this.backgroundLock) {
+            IOException failure = null;
+            try {
+                flushFrozen();
+            } catch (IOException e) {
+                failure = e;
+            }
+            State<I> s = this.state;
+            s.active.wal.close();
+            if (failure == null) {
+                Files.deleteIfExists(walPath(s.active.walId));
+            }
+            for (Segment<I> segment : s.segments) {
+                segment.release();
+            }
+            this.released = true;
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Merges sorted sources, the newest first, into one sorted iterator. For
+     * equal keys the newest entry wins; deleted keys are left out unless
+     * {@code keepDeleted}, as older segments may still hold them.
+     */
+    private static <I extends Comparable<I>> Iterator<Map.Entry<Tuple<I>, byte[]>> merge(
+            List<Iterator<Map.Entry<Tuple<I>, byte[]>>> sources, boolean keepDeleted) {
+        PriorityQueue<Cursor<I>> heap = new PriorityQueue<>();
+        for (int rank = 0; rank < sources.size(); rank++) {
+            Cursor<I> cursor = new Cursor<>(rank, sources.get(rank));
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return new Iterator<>() {
+            private Map.Entry<Tuple<I>, byte[]> next;
+
+            @Override
+            public boolean hasNext() {
+                while (this.next == null && !heap.isEmpty()) {
+                    Cursor<I> top = heap.poll();
+                    Map.Entry<Tuple<I>, byte[]> entry = top.head;
+                    if (top.advance()) {
+                        heap.add(top);
+                    }
+                    // older entries of the same key are shadowed
+                    while (!heap.isEmpty() && heap.peek().head.getKey().compareTo(entry.getKey()) == 0) {
+                        Cursor<I> older = heap.poll();
+                        if (older.advance()) {
+                            heap.add(older);
+                        }
+                    }
+                    if (keepDeleted || entry.getValue() != TOMBSTONE) {
+                        this.next = entry;
+                    }
+                }
+                return this.next != null;
+            }
+
+            @Override
+            public Map.Entry<Tuple<I>, byte[]> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<Tuple<I>, byte[]> entry = this.next;
+                this.next = null;
+                return entry;
+            }
+        };
+    }
+
+    private static final class Cursor<I extends Comparable<I>> implements Comparable<Cursor<I>> {
+        private final int rank;
+        private final Iterator<Map.Entry<Tuple<I>, byte[]>> source;
+        private Map.Entry<Tuple<I>, byte[]> head;
+
+        Cursor(int rank, Iterator<Map.Entry<Tuple<I>, byte[]>> source) {
+            this.rank = rank;
+            this.source = source;
+        }
+
+        boolean advance() {
+            this.head = this.source.hasNext() ? this.source.next() : null;
+            return this.head != null;
+        }
+
+        @Override
+        public int compareTo(Cursor<I> other) {
+            int c = this.head.getKey().compareTo(other.head.getKey());
+            return c != 0 ? c : Integer.compare(this.rank, other.rank);
+        }
+    }
+
+    private static final class Memtable<I extends Comparable<I>> {
+        private final ConcurrentSkipListMap<Tuple<I>, byte[]> map = new ConcurrentSkipListMap<>();
+        private final long walId;
+        private final Wal wal;
+        private long bytes;
+
+        Memtable(long walId, Wal wal) {
+            this.walId = walId;
+            this.wal = wal;
+        }
+    }
+
+    /**
+     * An append-only log of writes. Each record is its length, its CRC-32 and
+     * the operation, key and value; a torn or corrupt tail ends the replay.
+     */
+    private static final class Wal implements Closeable {
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        private final DataOutputStream recordOut = new DataOutputStream(this.record);
+        private final CRC32 crc = new CRC32();
+
+        private Wal(FileChannel channel) {
+            this.channel = channel;
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        }
+
+        static Wal create(Path path) throws IOException {
+            return new Wal(FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+        }
+
+        void append(byte op, Tuple<?> key, byte[] value) throws IOException {
+            this.record.reset();
+            this.recordOut.writeByte(op);
+            TupleCodec.write(this.recordOut, key);
+            if (op == PUT) {
+                this.recordOut.writeInt(value.length);
+                this.recordOut.write(value);
+            }
+            byte[] bytes = this.record.toByteArray();
+            this.crc.reset();
+            this.crc.update(bytes);
+            this.out.writeInt(bytes.length);
+            this.out.writeInt((int) this.crc.getValue());
+            this.out.write(bytes);
+            this.out.flush();
+        }
+
+        void sync() throws IOException {
+            this.out.flush();
+            this.channel.force(false);
+        }
+
+        static <I extends Comparable<I>> void replay(Path path, Map<Tuple<I>, byte[]> into) throws IOException {
+            byte[] log = Files.readAllBytes(path);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(log));
+            CRC32 crc = new CRC32();
+            try {
+                while (in.available() >= 2 * Integer.BYTES) {
+                    int length = in.readInt();
+                    int checksum = in.readInt();
+                    if (length < 0 || length > in.available()) {
+                        return;
+                    }
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    crc.reset();
+                    crc.update(bytes);
+                    if ((int) crc.getValue() != checksum) {
+                        return;
+                    }
+                    DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+                    byte op = record.readByte();
+                    Tuple<I> key = TupleCodec.read(record);
+                    if (op == PUT) {
+                        byte[] value = new byte[record.readInt()];
+                        record.readFully(value);
+                        into.put(key, value);
+                    } else {
+                        into.put(key, TOMBSTONE);
+                    }
+                }
+            } catch (EOFException e) {
+                // a record cut short by a crash ends the log
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.flush();
+            this.channel.close();
+        }
+    }
+
+    /**
+     * An immutable sorted file of entries, in blocks of about 4 KiB, followed
+     * by the first key and position of each block, a Bloom filter of the keys
+     * and a footer locating them.
+     * The manifest holds one reference; scans and snapshots hold more.
+     */
+    private static final class Segment<I extends Comparable<I>> {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final List<Tuple<I>> firstKeys;
+        private final long[] offsets;
+        private final int[] lengths;
+        private final long entries;
+        private final TupleFilter filter;
+        private final AtomicInteger refs = new AtomicInteger(1);
+        private volatile boolean obsolete;
+
+        private Segment(long id, Path path, FileChannel channel, List<Tuple<I>> firstKeys, long[] offsets,
+                        int[] lengths, long entries, TupleFilter filter) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.firstKeys = firstKeys;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.entries = entries;
+            this.filter = filter;
+        }
+
+        static <I extends Comparable<I>> Segment<I> write(long id, Path path,
+                Iterator<Map.Entry<Tuple<I>, byte[]>> entries, long expected) throws IOException {
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            TupleFilter filter = TupleFilter.create(Math.max(1, expected), FILTER_FPP);
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            DataOutputStream indexOut = new DataOutputStream(index);
+            ByteArrayOutputStream block = new ByteArrayOutputStream(2 * BLOCK_BYTES);
+            DataOutputStream blockOut = new DataOutputStream(block);
+            long count = 0;
+            int blocks = 0;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputStream file = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+                DataOutputStream fileOut = new DataOutputStream(file);
+                fileOut.writeInt(SEGMENT_MAGIC);
+                fileOut.writeByte(VERSION);
+                long offset = Integer.BYTES + 1;
+                while (entries.hasNext()) {
+                    Map.Entry<Tuple<I>, byte[]> entry = entries.next();
+                    if (block.size() == 0) {
+                        TupleCodec.write(indexOut, entry.getKey());
+                    }
+                    TupleCodec.write(blockOut, entry.getKey());
+                    if (entry.getValue() == TOMBSTONE) {
+                        blockOut.writeByte(DELETE);
+                    } else {
+                        blockOut.writeByte(PUT);
+                        blockOut.writeInt(entry.getValue().length);
+                        blockOut.write(entry.getValue());
+                    }
+                    filter.put(entry.getKey());
+                    count++;
+                    if (block.size() >= BLOCK_BYTES || !entries.hasNext()) {
+                        indexOut.writeLong(offset);
+                        indexOut.writeInt(block.size());
+                        block.writeTo(fileOut);
+                        offset += block.size();
+                        block.reset();
+                        blocks++;
+                    }
+                }
+                fileOut.writeInt(blocks);
+                index.writeTo(fileOut);
+                fileOut.writeLong(count);
+                filter.writeTo(fileOut);
+                fileOut.writeLong(offset);
+                fileOut.writeInt(SEGMENT_MAGIC);
+                fileOut.flush();
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+            return open(id, path);
+        }
+
+        static <I extends Comparable<I>> Segment<I> open(long id, Path path) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < Integer.BYTES + 1 + FOOTER_BYTES) {
+                    throw new IOException("Not a tuple store segment: " + path + "!");
+                }
+                ByteBuffer footer = read(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+                long indexOffset = footer.getLong();
+                if (footer.getInt() != SEGMENT_MAGIC || indexOffset < 0 || indexOffset > size - FOOTER_BYTES) {
+                    throw new IOException("Not a tuple store segment: " + path + "!");
+                }
+                ByteBuffer tail = read(channel, indexOffset, (int) (size - FOOTER_BYTES - indexOffset));
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                        tail.array(), tail.arrayOffset(), tail.remaining()));
+                int blocks = in.readInt();
+                List<Tuple<I>> firstKeys = new ArrayList<>(blocks);
+                long[] offsets = new long[blocks];
+                int[] lengths = new int[blocks];
+                for (int b = 0; b < blocks; b++) {
+                    firstKeys.add(TupleCodec.read(in));
+                    offsets[b] = in.readLong();
+                    lengths[b] = in.readInt();
+                }
+                long entries = in.readLong();
+                TupleFilter filter = TupleFilter.readFrom(in);
+                return new Segment<>(id, path, channel, firstKeys, offsets, lengths, entries, filter);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException();
+                }
+            }
+            return buffer.flip();
+        }
+
+        boolean retain() {
+            int r;
+            do {
+                r = this.refs.get();
+                if (r == 0) {
+                    return false;
+                }
+            } while (!this.refs.compareAndSet(r, r + 1));
+            return true;
+        }
+
+        void release() {
+            if (this.refs.decrementAndGet() == 0) {
+                try {
+                    this.channel.close();
+                    if (this.obsolete) {
+                        Files.deleteIfExists(this.path);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        /**
+         * Returns the index of the block that holds {@code key} if present.
+         */
+        private int block(Tuple<I> key) {
+            int lo = 0;
+            int hi = this.firstKeys.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (this.firstKeys.get(mid).compareTo(key) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo - 1;
+        }
+
+        private DataInputStream readBlock(int b) throws IOException {
+            ByteBuffer bytes = read(this.channel, this.offsets[b], this.lengths[b]);
+            return new DataInputStream(new ByteArrayInputStream(bytes.array(), 0, bytes.limit()));
+        }
+
+        private static <I extends Comparable<I>> Map.Entry<Tuple<I>, byte[]> readEntry(DataInputStream in)
+                throws IOException {
+            Tuple<I> key = TupleCodec.read(in);
+            if (in.readByte() == DELETE) {
+                return new AbstractMap.SimpleImmutableEntry<>(key, TOMBSTONE);
+            }
+            byte[] value = new byte[in.readInt()];
+            in.readFully(value);
+            return new AbstractMap.SimpleImmutableEntry<>(key, value);
+        }
+
+        byte[] get(Tuple<I> key) throws IOException {
+            if (!this.filter.mightContain(key)) {
+                return null;
+            }
+            int b = block(key);
+            if (b < 0) {
+                return null;
+            }
+            DataInputStream in = readBlock(b);
+            while (in.available() > 0) {
+                Map.Entry<Tuple<I>, byte[]> entry = readEntry(in);
+                int c = entry.getKey().compareTo(key);
+                if (c == 0) {
+                    return entry.getValue();
+                }
+                if (c > 0) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Iterates the entries with keys from {@code from}, or all entries,
+         * reading one block at a time.
+         */
+        Iterator<Map.Entry<Tuple<I>, byte[]>> iterator(Tuple<I> from) {
+            int first = from == null ? 0 : Math.max(0, block(from));
+            return new Iterator<>() {
+                private int nextBlock = first;
+                private DataInputStream in;
+                private Map.Entry<Tuple<I>, byte[]> next;
+
+                @Override
+                public boolean hasNext() {
+                    try {
+                        while (this.next == null) {
+                            if (this.in == null || this.in.available() == 0) {
+                                if (this.nextBlock >= offsets.length) {
+                                    return false;
+                                }
+                                this.in = readBlock(this.nextBlock++);
+                                continue;
+                            }
+                            Map.Entry<Tuple<I>, byte[]> entry = readEntry(this.in);
+                            if (from == null || entry.getKey().compareTo(from) >= 0) {
+                                this.next = entry;
+                            }
+                        }
+                        return true;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public Map.Entry<Tuple<I>, byte[]> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Map.Entry<Tuple<I>, byte[]> entry = this.next;
+                    this.next = null;
+                    return entry;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,819 @@
+package io.github.noshou.tuple;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * A list of tuples of one fixed size, stored column by column.
+ * <p>
+ * Each position of the tuples is kept in its own array: a {@code long[]},
+ * {@code int[]} or {@code double[]} when the first tuple added holds a
+ * {@code Long}, {@code Integer} or {@code Double} there, an {@code Object[]}
+ * otherwise. A column falls back to {@code Object[]} if a later tuple holds a
+ * different type or {@code null} at its position. The arrays grow like those
+ * of an {@link java.util.ArrayList}.
+ * <p>
+ * {@link #get(int)} returns a live view of a row rather than a copy: it reads
+ * through to the columns, so it reflects later changes to the list, including
+ * reordering by {@link #sort()}. {@link #toTuple(int)} copies a row instead.
+ * {@link #longColumn(int)} and its siblings expose the column arrays themselves
+ * for scans, e.g. with {@link TupleVectors}.
+ * <p>
+ * {@link #sort()} and {@link #parallelSort()} reorder the rows by
+ * {@link Tuple#compareTo(Tuple)} without creating an object per row: they sort a
+ * permutation of row indices, comparing the columns directly, then permute
+ * every column in place.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <I> the type of items in the tuples
+ */
+public final class TupleList<I extends Comparable<I>> extends AbstractList<Tuple<I>> implements RandomAccess {
+
+    private static final int DEFAULT_CAPACITY = 10;
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+    private final int arity;
+    private final Column[] columns;
+    private int capacity;
+    private int size;
+
+    /**
+     * Constructs an empty list of tuples of the given size.
+     *
+     * @param arity the size of the tuples
+     * @throws IllegalArgumentException if {@code arity} is negative
+     */
+    public TupleList(int arity) {
+        this(arity, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty list of tuples of the given size with room for
+     * {@code initialCapacity} tuples.
+     *
+     * @param arity the size of the tuples
+     * @param initialCapacity the number of tuples to make room for
+     * @throws IllegalArgumentException if {@code arity} or {@code initialCapacity} is negative
+     */
+    public TupleList(int arity, int initialCapacity) {
+        if (arity < 0 || initialCapacity < 0) {
+            throw new IllegalArgumentException("Arity and capacity cannot be negative!");
+        }
+        this.arity = arity;
+        this.columns = new Column[arity];
+        this.capacity = initialCapacity;
+    }
+
+    /**
+     * Returns the size of the stored tuples.
+     *
+     * @return the number of positions
+     */
+    public int arity() {
+        return this.arity;
+    }
+
+    /**
+     * Returns the number of stored tuples.
+     *
+     * @return the number of rows
+     */
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Appends a tuple; its elements are copied into the columns.
+     *
+     * @param tuple the tuple to append
+     * @return {@code true}
+     * @throws IllegalArgumentException if the tuple is not of size {@link #arity()}
+     */
+    @Override
+    public boolean add(Tuple<I> tuple) {
+        add(this.size, tuple);
+        return true;
+    }
+
+    /**
+     * Inserts a tuple, shifting the following rows down.
+     *
+     * @param index the row to insert at
+     * @param tuple the tuple to insert
+     * @throws IllegalArgumentException if the tuple is not of size {@link #arity()}
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    @Override
+    public void add(int index, Tuple<I> tuple) {
+        Objects.checkIndex(index, this.size + 1);
+        checkArity(tuple);
+        ensureCapacity(this.size + 1);
+        for (int pos = 0; pos < this.arity; pos++) {
+            I item = tuple.fetch(pos);
+            Column column = column(pos, item);
+            column.shift(index, index + 1, this.size - index);
+            column.set(index, item);
+        }
+        this.size++;
+        this.modCount++;
+    }
+
+    /**
+     * Returns a live view of a row.
+     *
+     * @param index the row
+     * @return a tuple reading through to the columns of this list
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    @Override
+    public Tuple<I> get(int index) {
+        Objects.checkIndex(index, this.size);
+        return new Row(index);
+    }
+
+    /**
+     * Replaces a row.
+     *
+     * @param index the row
+     * @param tuple the new elements
+     * @return a copy of the replaced row
+     * @throws IllegalArgumentException if the tuple is not of size {@link #arity()}
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    @Override
+    public Tuple<I> set(int index, Tuple<I> tuple) {
+        Polyad<I> previous = toTuple(index);
+        checkArity(tuple);
+        for (int pos = 0; pos < this.arity; pos++) {
+            I item = tuple.fetch(pos);
+            column(pos, item).set(index, item);
+        }
+        return previous;
+    }
+
+    /**
+     * Removes a row, shifting the following rows up.
+     *
+     * @param index the row
+     * @return a copy of the removed row
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    @Override
+    public Tuple<I> remove(int index) {
+        Polyad<I> previous = toTuple(index);
+        for (Column column : this.columns) {
+            column.shift(index + 1, index, this.size - index - 1);
+            column.release(this.size - 1, this.size);
+        }
+        this.size--;
+        this.modCount++;
+        return previous;
+    }
+
+    /**
+     * Removes every row, keeping the column arrays for reuse.
+     */
+    @Override
+    public void clear() {
+        for (Column column : this.columns) {
+            if (column != null) {
+                column.release(0, this.size);
+            }
+        }
+        this.size = 0;
+        this.modCount++;
+    }
+
+    /**
+     * Returns a copy of a row.
+     *
+     * @param index the row
+     * @return the row as a new tuple
+     * @throws IndexOutOfBoundsException if {@code index} is out of range
+     */
+    @SuppressWarnings("unchecked")
+    public Polyad<I> toTuple(int index) {
+        Objects.checkIndex(index, this.size);
+        I[] items = (I[]) new Comparable<?>[this.arity];
+        for (int pos = 0; pos < this.arity; pos++) {
+            items[pos] = fetch(index, pos);
+        }
+        return new Polyad<>(items);
+    }
+
+    /**
+     * Returns one element.
+     *
+     * @param index the row
+     * @param pos the position within the row
+     * @return the element
+     * @throws IndexOutOfBoundsException if {@code index} or {@code pos} is out of range
+     */
+    @SuppressWarnings("unchecked")
+    public I fetch(int index, int pos) {
+        Objects.checkIndex(index, this.size);
+        return (I) this.columns[pos].get(index);
+    }
+
+    /**
+     * Returns the backing array of a {@code long} column. Rows
+     * {@code [0, size())} are valid; the array is replaced when the list grows
+     * and must not be written to.
+     *
+     * @param pos the position
+     * @return the column's array
+     * @throws IllegalStateException if the column does not hold {@code long}s
+     */
+    public long[] longColumn(int pos) {
+        if (!(column(pos) instanceof LongColumn column)) {
+            throw new IllegalStateException("Position " + pos + " is not a long column!");
+        }
+        return column.values;
+    }
+
+    /**
+     * Returns the backing array of an {@code int} column. Rows
+     * {@code [0, size())} are valid; the array is replaced when the list grows
+     * and must not be written to.
+     *
+     * @param pos the position
+     * @return the column's array
+     * @throws IllegalStateException if the column does not hold {@code int}s
+     */
+    public int[] intColumn(int pos) {
+        if (!(column(pos) instanceof IntColumn column)) {
+            throw new IllegalStateException("Position " + pos + " is not an int column!");
+        }
+        return column.values;
+    }
+
+    /**
+     * Returns the backing array of a {@code double} column. Rows
+     * {@code [0, size())} are valid; the array is replaced when the list grows
+     * and must not be written to.
+     *
+     * @param pos the position
+     * @return the column's array
+     * @throws IllegalStateException if the column does not hold {@code double}s
+     */
+    public double[] doubleColumn(int pos) {
+        if (!(column(pos) instanceof DoubleColumn column)) {
+            throw new IllegalStateException("Position " + pos + " is not a double column!");
+        }
+        return column.values;
+    }
+
+    /**
+     * Returns the type a column is stored as.
+     *
+     * @param pos the position
+     * @return {@code long.class}, {@code int.class}, {@code double.class} or
+     *         {@code Object.class}; {@code null} while the list has never held a row
+     */
+    public Class<?> columnType(int pos) {
+        Column column = column(pos);
+        return column == null ? null : column.type();
+    }
+
+    /**
+     * Makes room for at least {@code minCapacity} rows without further growth.
+     *
+     * @param minCapacity the number of rows
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > this.capacity) {
+            this.capacity = Math.max(minCapacity, this.capacity + (this.capacity >> 1));
+            for (Column column : this.columns) {
+                if (column != null) {
+                    column.resize(this.capacity);
+                }
+            }
+        }
+    }
+
+    /**
+     * Shrinks the column arrays to the number of rows.
+     */
+    public void trimToSize() {
+        this.capacity = this.size;
+        for (Column column : this.columns) {
+            if (column != null) {
+                column.resize(this.capacity);
+            }
+        }
+    }
+
+    /**
+     * Sorts the rows in ascending {@link Tuple#compareTo(Tuple)} order. The sort
+     * is stable.
+     */
+    public void sort() {
+        if (this.size < 2) {
+            return;
+        }
+        int[] permutation = sortedPermutation(false);
+        for (Column column : this.columns) {
+            column.permute(permutation, this.size);
+        }
+        this.modCount++;
+    }
+
+    /**
+     * Sorts the rows in ascending {@link Tuple#compareTo(Tuple)} order, sorting
+     * the permutation and then permuting the columns in parallel on the common
+     * {@link ForkJoinPool}. The sort is stable.
+     */
+    public void parallelSort() {
+        if (this.size < 2) {
+            return;
+        }
+        int[] permutation = sortedPermutation(true);
+        IntStream.range(0, this.arity).parallel().forEach(pos -> this.columns[pos].permute(permutation, this.size));
+        this.modCount++;
+    }
+
+    private int[] sortedPermutation(boolean parallel) {
+        int[] permutation = new int[this.size];
+        Arrays.setAll(permutation, i -> i);
+        int[] scratch = new int[this.size];
+        if (this.arity > 0) {
+            Sorter sorter = new Sorter(permutation, scratch, 0, this.size, parallel);
+            if (parallel) {
+                ForkJoinPool.commonPool().invoke(sorter);
+            } else {
+                sorter.compute();
+            }
+        }
+        return permutation;
+    }
+
+    /**
+     * Merge sorts a range of the permutation; halves larger than
+     * {@link #PARALLEL_SORT_THRESHOLD} are sorted as separate tasks.
+     */
+    @SuppressWarnings("serial") // a fork/join task, never serialized
+    private final class Sorter extends RecursiveAction {
+        private final int[] rows;
+        private final int[] scratch;
+        private final int from;
+        private final int to;
+        private final boolean parallel;
+
+        Sorter(int[] rows, int[] scratch, int from, int to, boolean parallel) {
+            this.rows = rows;
+            this.scratch = scratch;
+            this.from = from;
+            this.to = to;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= INSERTION_SORT_THRESHOLD) {
+                insertionSort();
+                return;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            Sorter left = new Sorter(this.rows, this.scratch, this.from, mid, this.parallel);
+            Sorter right = new Sorter(this.rows, this.scratch, mid, this.to, this.parallel);
+            if (this.parallel && this.to - this.from > PARALLEL_SORT_THRESHOLD) {
+                invokeAll(left, right);
+            } else {
+                left.compute();
+                right.compute();
+            }
+            if (compareRows(this.rows[mid - 1], this.rows[mid]) <= 0) {
+                return;
+            }
+            System.arraycopy(this.rows, this.from, this.scratch, this.from, this.to - this.from);
+            int i = this.from;
+            int j = mid;
+            for (int k = this.from; k < this.to; k++) {
+                if (j >= this.to || (i < mid && compareRows(this.scratch[i], this.scratch[j]) <= 0)) {
+                    this.rows[k] = this.scratch[i++];
+                } else {
+                    this.rows[k] = this.scratch[j++];
+                }
+            }
+        }
+
+        private void insertionSort() {
+            for (int i = this.from + 1; i < this.to; i++) {
+                int row = this.rows[i];
+                int j = i - 1;
+                while (j >= this.from && compareRows(this.rows[j], row) > 0) {
+                    this.rows[j + 1] = this.rows[j];
+                    j--;
+                }
+                this.rows[j + 1] = row;
+            }
+        }
+    }
+
+    private int compareRows(int a, int b) {
+        for (Column column : this.columns) {
+            int cmp = column.compare(a, b);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private void checkArity(Tuple<I> tuple) {
+        if (tuple.fetchSize() != this.arity) {
+            throw new IllegalArgumentException("Tuples in this list must contain " + this.arity + " elements!");
+        }
+    }
+
+    private Column column(int pos) {
+        Objects.checkIndex(pos, this.arity);
+        return this.columns[pos];
+    }
+
+    /**
+     * Returns the column at {@code pos}, creating it from the type of
+     * {@code item} or falling back to an object column if it cannot hold it.
+     */
+    private Column column(int pos, Object item) {
+        Column column = this.columns[pos];
+        if (column == null) {
+            column = item instanceof Long ? new LongColumn(this.capacity)
+                    : item instanceof Integer ? new IntColumn(this.capacity)
+                    : item instanceof Double ? new DoubleColumn(this.capacity)
+                    : new ObjectColumn(this.capacity);
+            this.columns[pos] = column;
+        } else if (!column.accepts(item)) {
+            ObjectColumn boxed = new ObjectColumn(this.capacity);
+            for (int i = 0; i < this.size; i++) {
+                boxed.set(i, column.get(i));
+            }
+            column = boxed;
+            this.columns[pos] = column;
+        }
+        return column;
+    }
+
+    /**
+     * One position of every row.
+     */
+    private abstract static class Column {
+        abstract Class<?> type();
+
+        abstract boolean accepts(Object item);
+
+        abstract Object get(int row);
+
+        abstract void set(int row, Object item);
+
+        abstract int compare(int a, int b);
+
+        abstract int hash(int row);
+
+        abstract void resize(int capacity);
+
+        /** Copies {@code length} rows from {@code from} to {@code to}. */
+        abstract void shift(int from, int to, int length);
+
+        /** Drops references held by rows {@code [from, to)}. */
+        void release(int from, int to) {
+        }
+
+        /** Copies row {@code from} to row {@code to}. */
+        abstract void move(int from, int to);
+
+        /** Keeps row {@code row} aside while its slot is overwritten. */
+        abstract void save(int row);
+
+        /** Writes the value kept aside by {@link #save(int)} to {@code row}. */
+        abstract void restore(int row);
+
+        /**
+         * Reorders the rows so that row {@code i} receives the former row
+         * {@code permutation[i]}, following each cycle of the permutation.
+         */
+        final void permute(int[] permutation, int size) {
+            long[] done = new long[(size + 63) >>> 6];
+            for (int start = 0; start < size; start++) {
+                if ((done[start >>> 6] & (1L << start)) != 0 || permutation[start] == start) {
+                    continue;
+                }
+                save(start);
+                int hole = start;
+                while (true) {
+                    done[hole >>> 6] |= 1L << hole;
+                    int source = permutation[hole];
+                    if (source == start) {
+                        restore(hole);
+                        break;
+                    }
+                    move(source, hole);
+                    hole = source;
+                }
+            }
+        }
+    }
+
+    private static final class LongColumn extends Column {
+        private long[] values;
+        private long saved;
+
+        LongColumn(int capacity) {
+            this.values = new long[capacity];
+        }
+
+        @Override
+        Class<?> type() {
+            return long.class;
+        }
+
+        @Override
+        boolean accepts(Object item) {
+            return item instanceof Long;
+        }
+
+        @Override
+        Object get(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        void set(int row, Object item) {
+            this.values[row] = (Long) item;
+        }
+
+        @Override
+        int compare(int a, int b) {
+            return Long.compare(this.values[a], this.values[b]);
+        }
+
+        @Override
+        int hash(int row) {
+            return Long.hashCode(this.values[row]);
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        @Override
+        void shift(int from, int to, int length) {
+            System.arraycopy(this.values, from, this.values, to, length);
+        }
+
+        @Override
+        void move(int from, int to) {
+            this.values[to] = this.values[from];
+        }
+
+        @Override
+        void save(int row) {
+            this.saved = this.values[row];
+        }
+
+        @Override
+        void restore(int row) {
+            this.values[row] = this.saved;
+        }
+    }
+
+    private static final class IntColumn extends Column {
+        private int[] values;
+        private int saved;
+
+        IntColumn(int capacity) {
+            this.values = new int[capacity];
+        }
+
+        @Override
+        Class<?> type() {
+            return int.class;
+        }
+
+        @Override
+        boolean accepts(Object item) {
+            return item instanceof Integer;
+        }
+
+        @Override
+        Object get(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        void set(int row, Object item) {
+            this.values[row] = (Integer) item;
+        }
+
+        @Override
+        int compare(int a, int b) {
+            return Integer.compare(this.values[a], this.values[b]);
+        }
+
+        @Override
+        int hash(int row) {
+            return Integer.hashCode(this.values[row]);
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        @Override
+        void shift(int from, int to, int length) {
+            System.arraycopy(this.values, from, this.values, to, length);
+        }
+
+        @Override
+        void move(int from, int to) {
+            this.values[to] = this.values[from];
+        }
+
+        @Override
+        void save(int row) {
+            this.saved = this.values[row];
+        }
+
+        @Override
+        void restore(int row) {
+            this.values[row] = this.saved;
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+        private double[] values;
+        private double saved;
+
+        DoubleColumn(int capacity) {
+            this.values = new double[capacity];
+        }
+
+        @Override
+        Class<?> type() {
+            return double.class;
+        }
+
+        @Override
+        boolean accepts(Object item) {
+            return item instanceof Double;
+        }
+
+        @Override
+        Object get(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        void set(int row, Object item) {
+            this.values[row] = (Double) item;
+        }
+
+        @Override
+        int compare(int a, int b) {
+            return Double.compare(this.values[a], this.values[b]);
+        }
+
+        @Override
+        int hash(int row) {
+            return Double.hashCode(this.values[row]);
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        @Override
+        void shift(int from, int to, int length) {
+            System.arraycopy(this.values, from, this.values, to, length);
+        }
+
+        @Override
+        void move(int from, int to) {
+            this.values[to] = this.values[from];
+        }
+
+        @Override
+        void save(int row) {
+            this.saved = this.values[row];
+        }
+
+        @Override
+        void restore(int row) {
+            this.values[row] = this.saved;
+        }
+    }
+
+    private static final class ObjectColumn extends Column {
+        private Object[] values;
+        private Object saved;
+
+        ObjectColumn(int capacity) {
+            this.values = new Object[capacity];
+        }
+
+        @Override
+        Class<?> type() {
+            return Object.class;
+        }
+
+        @Override
+        boolean accepts(Object item) {
+            return true;
+        }
+
+        @Override
+        Object get(int row) {
+            return this.values[row];
+        }
+
+        @Override
+        void set(int row, Object item) {
+            this.values[row] = item;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        @Override
+        int compare(int a, int b) {
+            return ((Comparable) this.values[a]).compareTo(this.values[b]);
+        }
+
+        @Override
+        int hash(int row) {
+            return Objects.hashCode(this.values[row]);
+        }
+
+        @Override
+        void resize(int capacity) {
+            this.values = Arrays.copyOf(this.values, capacity);
+        }
+
+        @Override
+        void shift(int from, int to, int length) {
+            System.arraycopy(this.values, from, this.values, to, length);
+        }
+
+        @Override
+        void release(int from, int to) {
+            Arrays.fill(this.values, from, to, null);
+        }
+
+        @Override
+        void move(int from, int to) {
+            this.values[to] = this.values[from];
+        }
+
+        @Override
+        void save(int row) {
+            this.saved = this.values[row];
+        }
+
+        @Override
+        void restore(int row) {
+            this.values[row] = this.saved;
+            this.saved = null;
+        }
+    }
+
+    /**
+     * A live view of one row.
+     */
+    private final class Row extends TupleView<I> {
+        private final int index;
+
+        Row(int index) {
+            super(TupleList.this.arity);
+            this.index = index;
+        }
+
+        @Override
+        public I fetch(int idx) {
+            if (idx < 0 || idx >= TupleList.this.arity) {
+                throw new IndexOutOfBoundsException("Row of a TupleList indexed out of bounds!");
+            }
+            return TupleList.this.fetch(this.index, idx);
+        }
+
+        @Override
+        public int hashCode() {
+            if (TupleMetrics.ENABLED) {
+                TupleMetrics.hashed();
+            }
+            int h = 1;
+            for (Column column : TupleList.this.columns) {
+                h = 31 * h + column.hash(this.index);
+            }
+            return h;
+        }
+    }
+}
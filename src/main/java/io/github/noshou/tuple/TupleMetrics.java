@@ -0,0 +1,253 @@
+package io.github.noshou.tuple;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Opt-in instrumentation of tuple operations.
+ * <p>
+ * Instrumentation is enabled by starting the JVM with
+ * {@code -Dio.github.noshou.tuple.metrics=true}. The switch is read once into a
+ * constant, so when it is off the JIT removes every probe and the library runs
+ * exactly as uninstrumented code. When it is on:
+ * <ul>
+ *   <li>{@link LongAdder} counters track comparisons, hash code computations and
+ *       tuple constructions per arity;</li>
+ *   <li>JDK Flight Recorder events are emitted for sorts
+ *       ({@code io.github.noshou.tuple.Sort}), bulk builds of collections
+ *       ({@code io.github.noshou.tuple.BulkBuild}) and comparisons of tuples of
+ *       at least {@code io.github.noshou.tuple.metrics.largeCompare} elements,
+ *       64 by default ({@code io.github.noshou.tuple.LargeCompare});</li>
+ *   <li>the counters are exposed through a {@link TupleMetricsMXBean} registered
+ *       as {@value #OBJECT_NAME}.</li>
+ * </ul>
+ * The events only cost anything while a recording has them enabled.
+ */
+public final class TupleMetrics {
+
+    /**
+     * The name the {@link TupleMetricsMXBean} is registered under.
+     */
+    public static final String OBJECT_NAME = "io.github.noshou.tuple:type=TupleMetrics";
+
+    /**
+     * The largest arity counted separately; larger tuples share one counter.
+     */
+    public static final int MAX_ARITY = 20;
+
+    static final boolean ENABLED = Boolean.getBoolean("io.github.noshou.tuple.metrics");
+    private static final int LARGE_COMPARE = Integer.getInteger("io.github.noshou.tuple.metrics.largeCompare", 64);
+
+    private static final LongAdder COMPARISONS = new LongAdder();
+    private static final LongAdder HASHES = new LongAdder();
+    private static final LongAdder[] ALLOCATIONS = new LongAdder[MAX_ARITY + 2];
+
+    static {
+        for (int i = 0; i < ALLOCATIONS.length; i++) {
+            ALLOCATIONS[i] = new LongAdder();
+        }
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                // already registered, e.g. by another class loader; the counters still work
+            }
+        }
+    }
+
+    private TupleMetrics() {
+    }
+
+    /**
+     * Returns whether instrumentation is enabled.
+     *
+     * @return {@code true} if the counters and events are recorded
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Returns the number of {@link Tuple#compareTo(Tuple)} calls.
+     *
+     * @return the comparison count, {@code 0} when disabled
+     */
+    public static long comparisons() {
+        return COMPARISONS.sum();
+    }
+
+    /**
+     * Returns the number of tuple hash code computations.
+     *
+     * @return the hash count, {@code 0} when disabled
+     */
+    public static long hashes() {
+        return HASHES.sum();
+    }
+
+    /**
+     * Returns the number of tuples of the given arity constructed.
+     *
+     * @param arity the arity; every arity above {@value #MAX_ARITY} shares one count
+     * @return the allocation count, {@code 0} when disabled
+     */
+    public static long allocations(int arity) {
+        return ALLOCATIONS[Math.min(arity, MAX_ARITY + 1)].sum();
+    }
+
+    /**
+     * Resets every counter to zero.
+     */
+    public static void reset() {
+        COMPARISONS.reset();
+        HASHES.reset();
+        for (LongAdder adder : ALLOCATIONS) {
+            adder.reset();
+        }
+    }
+
+    // probes; callers check ENABLED first so that they fold away when disabled
+
+    static void allocated(int arity) {
+        ALLOCATIONS[Math.min(arity, MAX_ARITY + 1)].increment();
+    }
+
+    static void hashed() {
+        HASHES.increment();
+    }
+
+    static void compared() {
+        COMPARISONS.increment();
+    }
+
+    static CompareEvent beginCompare(int size, int otherSize) {
+        COMPARISONS.increment();
+        if (Math.max(size, otherSize) < LARGE_COMPARE) {
+            return null;
+        }
+        CompareEvent event = new CompareEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endCompare(CompareEvent event, Tuple<?> tuple, int otherSize, int result) {
+        if (event != null && event.shouldCommit()) {
+            event.tupleClass = tuple.getClass().getName();
+            event.size = tuple.fetchSize();
+            event.otherSize = otherSize;
+            event.result = result;
+            event.commit();
+        }
+    }
+
+    static SortEvent beginSort() {
+        SortEvent event = new SortEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endSort(SortEvent event, Tuple<?> tuple, boolean reverse) {
+        if (event.shouldCommit()) {
+            event.tupleClass = tuple.getClass().getName();
+            event.size = tuple.fetchSize();
+            event.reverse = reverse;
+            event.commit();
+        }
+    }
+
+    static BulkBuildEvent beginBuild() {
+        BulkBuildEvent event = new BulkBuildEvent();
+        event.begin();
+        return event;
+    }
+
+    static void endBuild(BulkBuildEvent event, String structure, long tuples) {
+        if (event.shouldCommit()) {
+            event.structure = structure;
+            event.tuples = tuples;
+            event.commit();
+        }
+    }
+
+    @Name("io.github.noshou.tuple.LargeCompare")
+    @Label("Large Tuple Comparison")
+    @Category("Tuple")
+    @Description("Comparison of two tuples at least one of which is large")
+    static final class CompareEvent extends Event {
+        @Label("Tuple Class")
+        String tupleClass;
+        @Label("Size")
+        int size;
+        @Label("Other Size")
+        int otherSize;
+        @Label("Result")
+        int result;
+    }
+
+    @Name("io.github.noshou.tuple.Sort")
+    @Label("Tuple Sort")
+    @Category("Tuple")
+    @Description("In-place sort of the elements of a tuple")
+    static final class SortEvent extends Event {
+        @Label("Tuple Class")
+        String tupleClass;
+        @Label("Size")
+        int size;
+        @Label("Reverse")
+        boolean reverse;
+    }
+
+    @Name("io.github.noshou.tuple.BulkBuild")
+    @Label("Tuple Bulk Build")
+    @Category("Tuple")
+    @Description("Construction of a collection from many tuples at once")
+    static final class BulkBuildEvent extends Event {
+        @Label("Structure")
+        String structure;
+        @Label("Tuples")
+        long tuples;
+    }
+
+    private static final class Bean implements TupleMetricsMXBean {
+
+        @Override
+        public long getComparisons() {
+            return comparisons();
+        }
+
+        @Override
+        public long getHashes() {
+            return hashes();
+        }
+
+        @Override
+        public long[] getAllocationsByArity() {
+            long[] counts = new long[ALLOCATIONS.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = ALLOCATIONS[i].sum();
+            }
+            return counts;
+        }
+
+        @Override
+        public long getAllocations() {
+            long total = 0;
+            for (LongAdder adder : ALLOCATIONS) {
+                total += adder.sum();
+            }
+            return total;
+        }
+
+        @Override
+        public void reset() {
+            TupleMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.noshou.tuple;
+
+/**
+ * Management interface of the library's instrumentation, registered with the
+ * platform MBean server as {@value TupleMetrics#OBJECT_NAME} when
+ * {@link TupleMetrics} is enabled.
+ */
+public interface TupleMetricsMXBean {
+
+    /**
+     * Returns the number of {@link Tuple#compareTo(Tuple)} calls.
+     *
+     * @return the comparison count
+     */
+    long getComparisons();
+
+    /**
+     * Returns the number of tuple hash code computations.
+     *
+     * @return the hash count
+     */
+    long getHashes();
+
+    /**
+     * Returns the number of tuples constructed, indexed by arity. The last
+     * entry counts every tuple larger than {@value TupleMetrics#MAX_ARITY}.
+     *
+     * @return the allocation counts per arity
+     */
+    long[] getAllocationsByArity();
+
+    /**
+     * Returns the total number of tuples constructed.
+     *
+     * @return the allocation count
+     */
+    long getAllocations();
+
+    /**
+     * Resets every counter to zero.
+     */
+    void reset();
+}
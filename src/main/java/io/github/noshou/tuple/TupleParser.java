@@ -0,0 +1,379 @@
+package io.github.noshou.tuple;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Parses the text form of tuples, {@code ⟨elem1, elem2, ...⟩}, as produced by
+ * {@link Tuple#toString()} and {@link #format(Tuple, StringBuilder)}.
+ * <p>
+ * Elements are separated by a comma and an optional single space. Within an
+ * element, a backslash escapes a following {@code ,}, {@code ⟩} or backslash;
+ * any other backslash is taken literally. {@link #format(Tuple, StringBuilder)}
+ * writes that escaped form, so every tuple it formats parses back to an equal
+ * tuple, including tuples nested as elements of other tuples. As {@code ⟨⟩} is
+ * the empty tuple, a tuple of a single empty element is written {@code ⟨,⟩}.
+ * <p>
+ * Each element is converted by an {@link ElementParser} that receives the
+ * element as a range of the input, so numbers are parsed without creating a
+ * String. A parser keeps its working buffers between calls and is therefore not
+ * thread-safe; use one parser per thread.
+ * <pre>{@code
+ * TupleParser<Long> parser = TupleParser.ofLongs();
+ * Polyad<Long> t = parser.parse("⟨1, 2, 3⟩");
+ * try (Stream<Polyad<Long>> tuples = parser.stream(reader)) { ... }
+ * }</pre>
+ *
+ * @param <I> the type of the parsed elements
+ */
+public final class TupleParser<I extends Comparable<I>> {
+
+    private static final char OPEN = '⟨';
+    private static final char CLOSE = '⟩';
+    private static final char SEPARATOR = ',';
+    private static final char ESCAPE = '\\';
+
+    private final ElementParser<I> elements;
+    private final List<I> items = new ArrayList<>();
+    private final StringBuilder unescaped = new StringBuilder();
+    private final StringBuilder record = new StringBuilder();
+
+    private TupleParser(ElementParser<I> elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * Converts the text of one element into a value.
+     *
+     * @param <I> the type of the value
+     */
+    @FunctionalInterface
+    public interface ElementParser<I> {
+
+        /**
+         * Parses the characters {@code [start, end)} of {@code text}. The text is
+         * only valid during the call.
+         *
+         * @param text the characters holding the element, unescaped
+         * @param start the index of the first character
+         * @param end the index after the last character
+         * @return the element
+         */
+        I parse(CharSequence text, int start, int end);
+    }
+
+    /**
+     * Returns a parser with the given element parser.
+     *
+     * @param elements converts the text of each element
+     * @param <I> the type of the elements
+     * @return a new parser
+     */
+    public static <I extends Comparable<I>> TupleParser<I> of(ElementParser<I> elements) {
+        return new TupleParser<>(elements);
+    }
+
+    /**
+     * Returns a parser keeping each element as a String.
+     *
+     * @return a new parser
+     */
+    public static TupleParser<String> ofStrings() {
+        return new TupleParser<>((text, start, end) -> text.subSequence(start, end).toString());
+    }
+
+    /**
+     * Returns a parser of decimal {@code long} elements.
+     *
+     * @return a new parser
+     */
+    public static TupleParser<Long> ofLongs() {
+        return new TupleParser<>((text, start, end) -> Long.parseLong(text, start, end, 10));
+    }
+
+    /**
+     * Returns a parser of decimal {@code int} elements.
+     *
+     * @return a new parser
+     */
+    public static TupleParser<Integer> ofIntegers() {
+        return new TupleParser<>((text, start, end) -> Integer.parseInt(text, start, end, 10));
+    }
+
+    /**
+     * Returns a parser of {@code double} elements, in the syntax of
+     * {@link Double#parseDouble(String)}.
+     *
+     * @return a new parser
+     */
+    public static TupleParser<Double> ofDoubles() {
+        return new TupleParser<>((text, start, end) -> Double.parseDouble(text.subSequence(start, end).toString()));
+    }
+
+    /**
+     * Parses one tuple. Whitespace around the tuple is ignored.
+     *
+     * @param text the text form of the tuple
+     * @return the tuple
+     * @throws IllegalArgumentException if the text is not a single tuple
+     * @throws NumberFormatException if a numeric element is malformed
+     */
+    public Polyad<I> parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parses one tuple from a range of characters. Whitespace around the tuple
+     * is ignored.
+     *
+     * @param text the characters
+     * @param from the index of the first character
+     * @param to the index after the last character
+     * @return the tuple
+     * @throws IllegalArgumentException if the range does not hold a single tuple
+     * @throws NumberFormatException if a numeric element is malformed
+     */
+    public Polyad<I> parse(CharSequence text, int from, int to) {
+        int pos = skipWhitespace(text, from, to);
+        if (pos == to || text.charAt(pos) != OPEN) {
+            throw new IllegalArgumentException("Expected ⟨ at index " + pos + "!");
+        }
+        pos++;
+        this.items.clear();
+        if (pos < to && text.charAt(pos) == CLOSE) {
+            pos++;
+        } else if (pos + 1 < to && text.charAt(pos) == SEPARATOR && text.charAt(pos + 1) == CLOSE) {
+            this.items.add(this.elements.parse(text, pos, pos));
+            pos += 2;
+        } else {
+            while (true) {
+                int start = pos;
+                boolean escaped = false;
+                char c = 0;
+                while (pos < to) {
+                    c = text.charAt(pos);
+                    if (c == ESCAPE && pos + 1 < to) {
+                        escaped = true;
+                        pos += 2;
+                        continue;
+                    }
+                    if (c == SEPARATOR || c == CLOSE) {
+                        break;
+                    }
+                    pos++;
+                }
+                if (pos == to) {
+                    throw new IllegalArgumentException("Expected ⟩ before index " + to + "!");
+                }
+                this.items.add(escaped ? parseEscaped(text, start, pos) : this.elements.parse(text, start, pos));
+                pos++;
+                if (c == CLOSE) {
+                    break;
+                }
+                if (pos < to && text.charAt(pos) == ' ') {
+                    pos++;
+                }
+            }
+        }
+        if (skipWhitespace(text, pos, to) != to) {
+            throw new IllegalArgumentException("Unexpected characters after ⟩ at index " + pos + "!");
+        }
+        @SuppressWarnings("unchecked")
+        I[] array = (I[]) this.items.toArray(new Comparable<?>[0]);
+        return new Polyad<>(array);
+    }
+
+    private I parseEscaped(CharSequence text, int start, int end) {
+        StringBuilder sb = this.unescaped;
+        sb.setLength(0);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == ESCAPE && i + 1 < end) {
+                char next = text.charAt(i + 1);
+                if (next == SEPARATOR || next == CLOSE || next == ESCAPE) {
+                    c = next;
+                    i++;
+                }
+            }
+            sb.append(c);
+        }
+        return this.elements.parse(sb, 0, sb.length());
+    }
+
+    private static int skipWhitespace(CharSequence text, int pos, int to) {
+        while (pos < to && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Lazily parses a sequence of tuples separated by whitespace, such as one
+     * tuple per line. Characters are read in blocks, so the reader need not be
+     * buffered. Closing the stream closes the reader.
+     *
+     * @param in the source of the text
+     * @return the parsed tuples; I/O errors are rethrown as
+     *         {@link UncheckedIOException} and malformed tuples as
+     *         {@link IllegalArgumentException} while the stream is consumed
+     */
+    public Stream<Polyad<I>> stream(Reader in) {
+        Iterator<Polyad<I>> tuples = new ReaderIterator(in);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(tuples, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Reads one tuple at a time into {@link #record}, then parses it.
+     */
+    private final class ReaderIterator implements Iterator<Polyad<I>> {
+        private final Reader in;
+        private final char[] buffer = new char[8192];
+        private int pos;
+        private int limit;
+        private Polyad<I> next;
+        private boolean done;
+
+        ReaderIterator(Reader in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.next == null && !this.done) {
+                this.next = read();
+                this.done = this.next == null;
+            }
+            return this.next != null;
+        }
+
+        @Override
+        public Polyad<I> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Polyad<I> t = this.next;
+            this.next = null;
+            return t;
+        }
+
+        private Polyad<I> read() {
+            StringBuilder sb = TupleParser.this.record;
+            sb.setLength(0);
+            int c;
+            while ((c = read1()) >= 0 && Character.isWhitespace(c)) {
+                // skip the separators between tuples
+            }
+            if (c < 0) {
+                return null;
+            }
+            sb.append((char) c);
+            boolean escape = false;
+            while (true) {
+                c = read1();
+                if (c < 0) {
+                    throw new IllegalArgumentException("Unterminated tuple: " + sb);
+                }
+                sb.append((char) c);
+                if (escape) {
+                    escape = false;
+                } else if (c == ESCAPE) {
+                    escape = true;
+                } else if (c == CLOSE) {
+                    return parse(sb, 0, sb.length());
+                }
+            }
+        }
+
+        private int read1() {
+            if (this.pos == this.limit) {
+                try {
+                    int n;
+                    do {
+                        n = this.in.read(this.buffer);
+                    } while (n == 0);
+                    if (n < 0) {
+                        return -1;
+                    }
+                    this.pos = 0;
+                    this.limit = n;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return this.buffer[this.pos++];
+        }
+    }
+
+    /**
+     * Appends the escaped text form of a tuple, which {@link #parse(CharSequence)}
+     * reads back. Numbers are appended without creating their String.
+     *
+     * @param tuple the tuple
+     * @param out the builder to append to
+     * @return {@code out}
+     */
+    public static StringBuilder format(Tuple<?> tuple, StringBuilder out) {
+        try {
+            format(tuple, (Appendable) out);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return out;
+    }
+
+    /**
+     * Appends the escaped text form of a tuple, which {@link #parse(CharSequence)}
+     * reads back.
+     *
+     * @param tuple the tuple
+     * @param out the destination
+     * @return {@code out}
+     * @throws IOException if {@code out} fails
+     */
+    public static Appendable format(Tuple<?> tuple, Appendable out) throws IOException {
+        out.append(OPEN);
+        for (int i = 0; i < tuple.fetchSize(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            Object item = tuple.fetch(i);
+            if (out instanceof StringBuilder sb && item instanceof Long l) {
+                sb.append(l.longValue());
+            } else if (out instanceof StringBuilder sb && item instanceof Integer n) {
+                sb.append(n.intValue());
+            } else {
+                String text = item instanceof Tuple<?> nested
+                        ? format(nested, new StringBuilder()).toString()
+                        : String.valueOf(item);
+                if (text.isEmpty() && tuple.fetchSize() == 1) {
+                    out.append(SEPARATOR);
+                }
+                for (int k = 0; k < text.length(); k++) {
+                    char c = text.charAt(k);
+                    if (c == SEPARATOR || c == CLOSE || c == ESCAPE) {
+                        out.append(ESCAPE);
+                    }
+                    out.append(c);
+                }
+            }
+        }
+        return out.append(CLOSE);
+    }
+}
@@ -0,0 +1,616 @@
+package io.github.noshou.tuple;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A chain of stages moving batches of tuples between threads, built on
+ * {@link java.util.concurrent.Flow}.
+ * <p>
+ * Items travel in batches: each stage receives a {@link List} and hands a list
+ * on, so queueing and signalling cost is paid once per batch rather than once
+ * per tuple. A batch may be any list, including a column-wise one such as a
+ * {@link TupleArrow.Table} or a list of columnar chunks:
+ * <pre>{@code
+ * TuplePipeline.Execution run = TuplePipeline.from(lines, 4096)
+ *         .map("parse", line -> line.split(","))
+ *         .map("build", f -> new Triad<>(f[0], f[1], f[2])).withParallelism(4)
+ *         .filter("dedupe", TupleDistinct.<String>exact())
+ *         .to("write", batch -> store.putAll(batch));
+ * run.join();
+ * run.stats().forEach(System.out::println);
+ * }</pre>
+ * Every stage is a {@link Flow.Processor} whose output is buffered in a
+ * {@link SubmissionPublisher} holding at most {@link #withBuffer(int) buffer}
+ * batches. When a buffer is full the producing stage blocks, so a slow stage
+ * throttles everything upstream of it instead of letting batches pile up.
+ * Stages run on virtual threads unless an executor, such as a
+ * {@link java.util.concurrent.ForkJoinPool}, is passed to
+ * {@link #to(String, Consumer, Executor)}.
+ * <p>
+ * A stage with a {@link #withParallelism(int) parallelism} of 1, the default,
+ * processes one batch at a time in arrival order, so its function need not be
+ * thread-safe. With a higher parallelism batches are processed concurrently
+ * and may leave the stage out of order. If a function throws, the run stops
+ * and {@link Execution#completion()} completes with the exception.
+ * <p>
+ * A pipeline is an immutable description: every method returns a new
+ * pipeline, and one pipeline can be {@link #to run} several times if its
+ * source can be iterated again.
+ *
+ * @param <T> the type of the items leaving the last stage
+ */
+public final class TuplePipeline<T> {
+
+    /**
+     * The number of items per batch used when none is given.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /**
+     * The number of batches a stage buffers when none is given.
+     */
+    public static final int DEFAULT_BUFFER = 16;
+
+    private static final String SOURCE = "source";
+
+    private final TuplePipeline<?> upstream;
+    private final Object source;
+    private final int batchSize;
+    private final String name;
+    private final Function<List<Object>, List<Object>> function;
+    private final int parallelism;
+    private final int buffer;
+
+    private TuplePipeline(TuplePipeline<?> upstream, Object source, int batchSize, String name,
+                          Function<List<Object>, List<Object>> function, int parallelism, int buffer) {
+        this.upstream = upstream;
+        this.source = source;
+        this.batchSize = batchSize;
+        this.name = name;
+        this.function = function;
+        this.parallelism = parallelism;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Returns a pipeline reading items from an iterable in batches of
+     * {@value #DEFAULT_BATCH_SIZE}.
+     *
+     * @param items the items
+     * @param <T> the type of the items
+     * @return a new pipeline without stages
+     */
+    public static <T> TuplePipeline<T> from(Iterable<? extends T> items) {
+        return from(items, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Returns a pipeline reading items from an iterable in batches.
+     *
+     * @param items the items
+     * @param batchSize the number of items per batch
+     * @param <T> the type of the items
+     * @return a new pipeline without stages
+     * @throws IllegalArgumentException if {@code batchSize} is not positive
+     */
+    public static <T> TuplePipeline<T> from(Iterable<? extends T> items, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive!");
+        }
+        return new TuplePipeline<>(null, Objects.requireNonNull(items), batchSize, SOURCE, null, 1, DEFAULT_BUFFER);
+    }
+
+    /**
+     * Returns a pipeline reading batches from a publisher, such as another
+     * pipeline's {@link SubmissionPublisher} or a columnar reader.
+     *
+     * @param batches the publisher of the batches
+     * @param <T> the type of the items
+     * @return a new pipeline without stages
+     */
+    public static <T> TuplePipeline<T> fromBatches(Flow.Publisher<? extends List<? extends T>> batches) {
+        return new TuplePipeline<>(null, Objects.requireNonNull(batches), 0, SOURCE, null, 1, DEFAULT_BUFFER);
+    }
+
+    /**
+     * Appends a stage applying a function to every item.
+     *
+     * @param name the name of the stage in the {@link Execution#stats() statistics}
+     * @param mapper the function
+     * @param <R> the type of the results
+     * @return a new pipeline
+     */
+    public <R> TuplePipeline<R> map(String name, Function<? super T, ? extends R> mapper) {
+        Objects.requireNonNull(mapper);
+        return mapBatch(name, batch -> {
+            List<R> out = new ArrayList<>(batch.size());
+            for (T item : batch) {
+                out.add(mapper.apply(item));
+            }
+            return out;
+        });
+    }
+
+    /**
+     * Appends a stage keeping the items matching a predicate.
+     *
+     * @param name the name of the stage in the {@link Execution#stats() statistics}
+     * @param predicate the predicate, e.g. a {@link TupleDistinct}
+     * @return a new pipeline
+     */
+    public TuplePipeline<T> filter(String name, Predicate<? super T> predicate) {
+        Objects.requireNonNull(predicate);
+        return mapBatch(name, batch -> {
+            List<T> out = new ArrayList<>(batch.size());
+            for (T item : batch) {
+                if (predicate.test(item)) {
+                    out.add(item);
+                }
+            }
+            return out;
+        });
+    }
+
+    /**
+     * Appends a stage applying a function to whole batches. The function may
+     * return a batch of another size, e.g. one columnar chunk per batch, and
+     * an empty list or {@code null} passes nothing on.
+     *
+     * @param name the name of the stage in the {@link Execution#stats() statistics}
+     * @param mapper the function
+     * @param <R> the type of the results
+     * @return a new pipeline
+     */
+    @SuppressWarnings("unchecked")
+    public <R> TuplePipeline<R> mapBatch(String name, Function<? super List<T>, ? extends List<? extends R>> mapper) {
+        Objects.requireNonNull(name);
+        Objects.requireNonNull(mapper);
+        Function<List<Object>, List<Object>> function = (Function<List<Object>, List<Object>>) (Function<?, ?>) mapper;
+        return new TuplePipeline<>(this, null, 0, name, function, 1, DEFAULT_BUFFER);
+    }
+
+    /**
+     * Returns this pipeline with its last stage processing several batches
+     * at once. Batches may then leave the stage out of order.
+     *
+     * @param parallelism the number of batches processed concurrently
+     * @return a new pipeline
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     * @throws IllegalStateException if the pipeline has no stage yet
+     */
+    public TuplePipeline<T> withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive!");
+        }
+        if (this.upstream == null) {
+            throw new IllegalStateException("The source of a pipeline is not parallel!");
+        }
+        return new TuplePipeline<>(this.upstream, this.source, this.batchSize, this.name, this.function,
+                parallelism, this.buffer);
+    }
+
+    /**
+     * Returns this pipeline with the output of its last stage, or of its
+     * source if it has no stage yet, buffered in at most the given number of
+     * batches. The capacity is rounded up to a power of two.
+     *
+     * @param batches the capacity of the buffer
+     * @return a new pipeline
+     * @throws IllegalArgumentException if {@code batches} is not positive
+     */
+    public TuplePipeline<T> withBuffer(int batches) {
+        if (batches < 1) {
+            throw new IllegalArgumentException("Buffer must hold at least one batch!");
+        }
+        return new TuplePipeline<>(this.upstream, this.source, this.batchSize, this.name, this.function,
+                this.parallelism, batches);
+    }
+
+    /**
+     * Starts the pipeline on virtual threads, ending in a sink.
+     *
+     * @param name the name of the sink in the {@link Execution#stats() statistics}
+     * @param sink the consumer of the batches leaving the last stage
+     * @return the running pipeline
+     */
+    public Execution to(String name, Consumer<? super List<T>> sink) {
+        return start(name, sink, Executors.newVirtualThreadPerTaskExecutor(), true);
+    }
+
+    /**
+     * Starts the pipeline on the given executor, ending in a sink. The
+     * executor should be able to run one task per stage and per concurrent
+     * batch of a parallel stage; it is not shut down by the pipeline.
+     *
+     * @param name the name of the sink in the {@link Execution#stats() statistics}
+     * @param sink the consumer of the batches leaving the last stage
+     * @param executor the executor running the stages
+     * @return the running pipeline
+     */
+    public Execution to(String name, Consumer<? super List<T>> sink, Executor executor) {
+        return start(name, sink, Objects.requireNonNull(executor), false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Execution start(String sinkName, Consumer<? super List<T>> sink, Executor executor, boolean owned) {
+        Objects.requireNonNull(sinkName);
+        Objects.requireNonNull(sink);
+        List<TuplePipeline<?>> chain = new ArrayList<>();
+        for (TuplePipeline<?> p = this; p != null; p = p.upstream) {
+            chain.addFirst(p);
+        }
+        TuplePipeline<?> root = chain.getFirst();
+        Execution execution = new Execution(executor, owned);
+
+        Flow.Publisher<List<Object>> publisher;
+        SubmissionPublisher<List<Object>> feed = null;
+        Counters sourceCounters = null;
+        if (root.source instanceof Iterable<?>) {
+            feed = new SubmissionPublisher<>(executor, root.buffer);
+            sourceCounters = new Counters(SOURCE, 1, feed);
+            execution.counters.add(sourceCounters);
+            publisher = feed;
+        } else {
+            publisher = (Flow.Publisher<List<Object>>) root.source;
+        }
+        for (int i = 1; i < chain.size(); i++) {
+            TuplePipeline<?> p = chain.get(i);
+            Stage stage = new Stage(execution, p.function, p.parallelism, executor, p.buffer,
+                    new Counters(p.name, p.parallelism, publisher));
+            execution.counters.add(stage.counters);
+            execution.stages.add(stage);
+            publisher.subscribe(stage);
+            publisher = stage;
+        }
+        Function<List<Object>, List<Object>> consume = batch -> {
+            sink.accept((List<T>) (List<?>) batch);
+            return null;
+        };
+        Stage last = new Stage(execution, consume, 1, executor, 1, new Counters(sinkName, 1, publisher));
+        execution.counters.add(last.counters);
+        execution.stages.add(last);
+        last.consume(batch -> { }).whenComplete((v, e) -> execution.finish(e));
+        publisher.subscribe(last);
+
+        if (feed != null) {
+            execution.feed = feed;
+            SubmissionPublisher<List<Object>> out = feed;
+            Counters counters = sourceCounters;
+            Iterable<?> items = (Iterable<?>) root.source;
+            int batchSize = root.batchSize;
+            executor.execute(() -> produce(items, batchSize, out, counters, execution));
+        }
+        return execution;
+    }
+
+    private static void produce(Iterable<?> items, int batchSize, SubmissionPublisher<List<Object>> out,
+                                Counters counters, Execution execution) {
+        try {
+            Iterator<?> it = items.iterator();
+            while (!execution.stopped) {
+                long start = System.nanoTime();
+                List<Object> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && it.hasNext()) {
+                    batch.add(it.next());
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                counters.record(batch.size(), batch.size(), System.nanoTime() - start);
+                out.submit(batch);
+            }
+            out.close();
+        } catch (Throwable e) {
+            out.closeExceptionally(e);
+        }
+    }
+
+    /**
+     * A stage: receives batches, applies its function and publishes the results.
+     */
+    private static final class Stage extends SubmissionPublisher<List<Object>>
+            implements Flow.Processor<List<Object>, List<Object>> {
+
+        private final Execution execution;
+        private final Function<List<Object>, List<Object>> function;
+        private final int parallelism;
+        private final Executor executor;
+        final Counters counters;
+        // the upstream and every batch in flight; the stage closes when it drops to zero
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final Queue<List<Object>> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger emitting = new AtomicInteger();
+        private volatile Flow.Subscription subscription;
+        private volatile boolean failed;
+
+        Stage(Execution execution, Function<List<Object>, List<Object>> function, int parallelism,
+              Executor executor, int buffer, Counters counters) {
+            super(executor, buffer);
+            this.execution = execution;
+            this.function = function;
+            this.parallelism = parallelism;
+            this.executor = executor;
+            this.counters = counters;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(this.parallelism);
+        }
+
+        @Override
+        public void onNext(List<Object> batch) {
+            this.pending.incrementAndGet();
+            if (this.parallelism == 1) {
+                process(batch);
+            } else {
+                this.executor.execute(() -> process(batch));
+            }
+        }
+
+        private void process(List<Object> batch) {
+            List<Object> out = null;
+            try {
+                if (!this.failed && !this.execution.stopped) {
+                    long start = System.nanoTime();
+                    out = this.function.apply(batch);
+                    this.counters.record(batch.size(), out == null ? 0 : out.size(), System.nanoTime() - start);
+                }
+            } catch (Throwable e) {
+                onError(e);
+            }
+            this.ready.add(out == null ? List.of() : out);
+            emit();
+        }
+
+        /**
+         * Publishes the processed batches from one thread at a time. Only that
+         * thread blocks when the buffer downstream is full, in a way a
+         * fork-join pool compensates for, and more input is requested only
+         * once a batch has left the stage.
+         */
+        private void emit() {
+            if (this.emitting.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                List<Object> out;
+                while ((out = this.ready.poll()) != null) {
+                    try {
+                        if (!out.isEmpty() && !this.failed) {
+                            submit(out);
+                        }
+                    } catch (Throwable e) {
+                        onError(e);
+                    }
+                    if (!this.failed) {
+                        this.subscription.request(1);
+                    }
+                    done();
+                }
+                missed = this.emitting.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!this.failed) {
+                this.failed = true;
+                this.subscription.cancel();
+                this.execution.stop(throwable);
+                closeExceptionally(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            done();
+        }
+
+        private void done() {
+            if (this.pending.decrementAndGet() == 0 && !this.failed) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * The live counters of one stage.
+     */
+    private static final class Counters {
+        final String name;
+        final int parallelism;
+        final Flow.Publisher<?> input;
+        final LongAdder batches = new LongAdder();
+        final LongAdder itemsIn = new LongAdder();
+        final LongAdder itemsOut = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+        final AtomicLong maxBatchNanos = new AtomicLong();
+
+        Counters(String name, int parallelism, Flow.Publisher<?> input) {
+            this.name = name;
+            this.parallelism = parallelism;
+            this.input = input;
+        }
+
+        void record(int in, int out, long nanos) {
+            this.batches.increment();
+            this.itemsIn.add(in);
+            this.itemsOut.add(out);
+            this.busyNanos.add(nanos);
+            this.maxBatchNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        StageStats snapshot(long elapsedNanos) {
+            int queued = this.input instanceof SubmissionPublisher<?> publisher ? publisher.estimateMaximumLag() : 0;
+            return new StageStats(this.name, this.parallelism, this.batches.sum(), this.itemsIn.sum(),
+                    this.itemsOut.sum(), this.busyNanos.sum(), this.maxBatchNanos.get(), elapsedNanos, queued);
+        }
+    }
+
+    /**
+     * A running pipeline.
+     */
+    public static final class Execution {
+        private final Executor executor;
+        private final boolean owned;
+        private final long started = System.nanoTime();
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private final List<Counters> counters = new ArrayList<>();
+        private final List<Stage> stages = new ArrayList<>();
+        private volatile SubmissionPublisher<List<Object>> feed;
+        private volatile boolean stopped;
+        private volatile long finished;
+
+        private Execution(Executor executor, boolean owned) {
+            this.executor = executor;
+            this.owned = owned;
+        }
+
+        void stop(Throwable cause) {
+            this.stopped = true;
+            SubmissionPublisher<List<Object>> feed = this.feed;
+            if (feed != null) {
+                feed.closeExceptionally(cause);
+            }
+            for (Stage stage : this.stages) {
+                stage.closeExceptionally(cause);
+            }
+            finish(cause);
+        }
+
+        void finish(Throwable cause) {
+            if (this.finished == 0) {
+                this.finished = System.nanoTime();
+            }
+            if (cause != null) {
+                // stages may still be draining, so an owned executor is left to wind down by itself
+                this.completion.completeExceptionally(cause);
+            } else if (this.completion.complete(null) && this.owned) {
+                ((ExecutorService) this.executor).shutdown();
+            }
+        }
+
+        /**
+         * Returns a future completing when the sink has consumed the last
+         * batch, or exceptionally when a stage fails or the run is cancelled.
+         *
+         * @return the completion of the run
+         */
+        public CompletableFuture<Void> completion() {
+            return this.completion;
+        }
+
+        /**
+         * Waits for the run to complete.
+         *
+         * @throws java.util.concurrent.CompletionException if a stage failed
+         * @throws CancellationException if the run was cancelled
+         */
+        public void join() {
+            this.completion.join();
+        }
+
+        /**
+         * Stops the run: batches not yet processed are dropped and
+         * {@link #completion()} completes with a {@link CancellationException}.
+         */
+        public void cancel() {
+            if (!this.completion.isDone()) {
+                stop(new CancellationException("Tuple pipeline cancelled!"));
+            }
+        }
+
+        /**
+         * Returns the statistics of the source, every stage and the sink, in
+         * pipeline order. They can be taken while the pipeline runs.
+         *
+         * @return a snapshot of the statistics
+         */
+        public List<StageStats> stats() {
+            long end = this.finished != 0 ? this.finished : System.nanoTime();
+            List<StageStats> stats = new ArrayList<>(this.counters.size());
+            for (Counters c : this.counters) {
+                stats.add(c.snapshot(end - this.started));
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * Statistics of one stage of a run.
+     * <p>
+     * Latency is the time spent in the stage's function per batch, excluding
+     * the time spent waiting for input or for room downstream. The stage with
+     * the highest {@link #utilization()}, usually with a full input queue,
+     * is the bottleneck.
+     *
+     * @param name the name of the stage
+     * @param parallelism the number of batches the stage processes concurrently
+     * @param batches the number of batches processed
+     * @param itemsIn the number of items received
+     * @param itemsOut the number of items passed on
+     * @param busyNanos the total time spent processing batches
+     * @param maxBatchNanos the longest time spent on one batch
+     * @param elapsedNanos the time since the run started, or its duration once completed
+     * @param queuedBatches the estimated number of batches waiting for the stage
+     */
+    public record StageStats(String name, int parallelism, long batches, long itemsIn, long itemsOut,
+                             long busyNanos, long maxBatchNanos, long elapsedNanos, int queuedBatches) {
+
+        /**
+         * Returns the items received per second of the run.
+         *
+         * @return the throughput, {@code 0} before the run has taken any time
+         */
+        public double throughput() {
+            return this.elapsedNanos == 0 ? 0 : this.itemsIn * 1e9 / this.elapsedNanos;
+        }
+
+        /**
+         * Returns the mean time spent on one batch.
+         *
+         * @return the mean latency in nanoseconds, {@code 0} if no batch was processed
+         */
+        public double meanBatchNanos() {
+            return this.batches == 0 ? 0 : (double) this.busyNanos / this.batches;
+        }
+
+        /**
+         * Returns the fraction of the run the stage spent processing, over all
+         * of its concurrent slots.
+         *
+         * @return the utilization between {@code 0} and {@code 1}
+         */
+        public double utilization() {
+            return this.elapsedNanos == 0 ? 0 : Math.min(1, (double) this.busyNanos / this.elapsedNanos / this.parallelism);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d items in, %d out, %.0f items/s, %.1f us/batch (max %.1f), %.0f%% busy, %d queued",
+                    this.name, this.itemsIn, this.itemsOut, throughput(), meanBatchNanos() / 1e3,
+                    this.maxBatchNanos / 1e3, utilization() * 100, this.queuedBatches);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package io.github.noshou.tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An inverted index from (position, element) pairs to the ordinals of the
+ * tuples holding that element at that position.
+ * <p>
+ * Tuples are numbered in the order they are {@link #add(Tuple) added}, and
+ * each posting list is a {@link TupleBitmap}, so conjunctions, disjunctions
+ * and negations over several positions are bitmap operations:
+ * <pre>{@code
+ * TuplePositionIndex<String> index = TuplePositionIndex.of(orders);
+ * TupleBitmap hits = index.matching(0, "EU")
+ *         .and(index.matchingAny(2, "NEW", "PAID"))
+ *         .andNot(index.matching(3, "TEST"));
+ * List<Tuple<String>> rows = index.select(hits);
+ * }</pre>
+ * Elements are matched by {@link Object#equals(Object)}, and {@code null}
+ * is an ordinary value. A tuple shorter than a position matches nothing
+ * there. {@link #of(Collection)} builds the postings of each position in
+ * parallel, and bitmap operations over many containers run in parallel
+ * too.
+ * <p>
+ * Appends are not thread-safe: a single writer may {@link #add(Tuple) add}
+ * tuples, while queries from other threads need external synchronization.
+ * A bitmap returned by {@link #matching(int, Object)} is the live posting
+ * list and grows with later appends; the results of bitmap operations do
+ * not.
+ *
+ * @param <I> the type of the elements
+ */
+public final class TuplePositionIndex<I extends Comparable<I>> {
+
+    private final int[] positions;
+    private final List<Tuple<I>> tuples = new ArrayList<>();
+    private final List<Map<Object, TupleBitmap>> postings = new ArrayList<>();
+
+    /**
+     * Creates an empty index over every position.
+     */
+    public TuplePositionIndex() {
+        this.positions = null;
+    }
+
+    /**
+     * Creates an empty index over the given positions only.
+     *
+     * @param positions the positions to index (0-based)
+     * @throws IllegalArgumentException if a position is negative
+     */
+    public TuplePositionIndex(int... positions) {
+        for (int position : positions) {
+            if (position < 0) {
+                throw new IllegalArgumentException("Position cannot be negative!");
+            }
+        }
+        this.positions = positions.clone();
+        Arrays.sort(this.positions);
+    }
+
+    /**
+     * Returns an index over every position of the given tuples, numbered in
+     * iteration order. The postings of each position are built in parallel.
+     *
+     * @param tuples the tuples to index
+     * @param <I> the type of the elements
+     * @return a new index
+     */
+    public static <I extends Comparable<I>> TuplePositionIndex<I> of(Collection<? extends Tuple<I>> tuples) {
+        TuplePositionIndex<I> index = new TuplePositionIndex<>();
+        index.tuples.addAll(tuples);
+        int arity = 0;
+        for (Tuple<I> tuple : index.tuples) {
+            arity = Math.max(arity, tuple.fetchSize());
+        }
+        List<Map<Object, TupleBitmap>> built = IntStream.range(0, arity).parallel()
+                .mapToObj(index::build)
+                .toList();
+        index.postings.addAll(built);
+        return index;
+    }
+
+    private Map<Object, TupleBitmap> build(int position) {
+        Map<Object, TupleBitmap> map = new HashMap<>();
+        for (int ordinal = 0; ordinal < this.tuples.size(); ordinal++) {
+            Tuple<I> tuple = this.tuples.get(ordinal);
+            if (position < tuple.fetchSize()) {
+                map.computeIfAbsent(tuple.fetch(position), k -> new TupleBitmap()).add(ordinal);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Appends a tuple to the index.
+     *
+     * @param tuple the tuple
+     * @return the ordinal assigned to the tuple
+     */
+    public int add(Tuple<I> tuple) {
+        int ordinal = this.tuples.size();
+        this.tuples.add(tuple);
+        int size = tuple.fetchSize();
+        if (this.positions == null) {
+            for (int position = 0; position < size; position++) {
+                post(position, tuple.fetch(position), ordinal);
+            }
+        } else {
+            for (int position : this.positions) {
+                if (position >= size) {
+                    break;
+                }
+                post(position, tuple.fetch(position), ordinal);
+            }
+        }
+        return ordinal;
+    }
+
+    /**
+     * Appends tuples to the index, in iteration order.
+     *
+     * @param tuples the tuples
+     */
+    public void addAll(Iterable<? extends Tuple<I>> tuples) {
+        for (Tuple<I> tuple : tuples) {
+            add(tuple);
+        }
+    }
+
+    private void post(int position, I element, int ordinal) {
+        while (this.postings.size() <= position) {
+            this.postings.add(new HashMap<>());
+        }
+        this.postings.get(position).computeIfAbsent(element, k -> new TupleBitmap()).add(ordinal);
+    }
+
+    /**
+     * Returns the number of indexed tuples.
+     *
+     * @return the next ordinal to be assigned
+     */
+    public int size() {
+        return this.tuples.size();
+    }
+
+    /**
+     * Returns the tuple with the given ordinal.
+     *
+     * @param ordinal the ordinal returned by {@link #add(Tuple)}
+     * @return the tuple
+     * @throws IndexOutOfBoundsException if no tuple has that ordinal
+     */
+    public Tuple<I> fetch(int ordinal) {
+        return this.tuples.get(ordinal);
+    }
+
+    /**
+     * Returns the ordinals of the tuples holding an element at a position.
+     *
+     * @param position the position (0-based)
+     * @param element the element, possibly {@code null}
+     * @return the live posting list, or an empty bitmap
+     * @throws IllegalArgumentException if the position is not indexed
+     */
+    public TupleBitmap matching(int position, Object element) {
+        Map<Object, TupleBitmap> map = postings(position);
+        TupleBitmap bitmap = map != null ? map.get(element) : null;
+        return bitmap != null ? bitmap : TupleBitmap.empty();
+    }
+
+    /**
+     * Returns the ordinals of the tuples holding any of the elements at a position.
+     *
+     * @param position the position (0-based)
+     * @param elements the elements
+     * @return a new bitmap of the union
+     * @throws IllegalArgumentException if the position is not indexed
+     */
+    public TupleBitmap matchingAny(int position, Object... elements) {
+        List<TupleBitmap> bitmaps = new ArrayList<>(elements.length);
+        for (Object element : elements) {
+            bitmaps.add(matching(position, element));
+        }
+        return TupleBitmap.or(bitmaps);
+    }
+
+    /**
+     * Returns the ordinals of every indexed tuple.
+     *
+     * @return a new bitmap
+     */
+    public TupleBitmap all() {
+        return TupleBitmap.range(0, this.tuples.size());
+    }
+
+    /**
+     * Returns the ordinals of the indexed tuples not in the given bitmap.
+     *
+     * @param bitmap the ordinals to exclude
+     * @return a new bitmap of the complement
+     */
+    public TupleBitmap not(TupleBitmap bitmap) {
+        return all().andNot(bitmap);
+    }
+
+    /**
+     * Returns the distinct elements indexed at a position.
+     *
+     * @param position the position (0-based)
+     * @return an unmodifiable view of the elements
+     * @throws IllegalArgumentException if the position is not indexed
+     */
+    public Collection<Object> elements(int position) {
+        Map<Object, TupleBitmap> map = postings(position);
+        return map != null ? Collections.unmodifiableSet(map.keySet()) : Collections.emptySet();
+    }
+
+    /**
+     * Returns the tuples with the given ordinals, in ordinal order.
+     *
+     * @param bitmap the ordinals
+     * @return a new list of the tuples
+     * @throws IndexOutOfBoundsException if an ordinal is not assigned
+     */
+    public List<Tuple<I>> select(TupleBitmap bitmap) {
+        List<Tuple<I>> selected = new ArrayList<>(bitmap.cardinality());
+        bitmap.forEach(ordinal -> selected.add(this.tuples.get(ordinal)));
+        return selected;
+    }
+
+    /**
+     * Returns the tuples with the given ordinals, in ordinal order.
+     *
+     * @param bitmap the ordinals
+     * @return a sequential stream of the tuples
+     * @throws IndexOutOfBoundsException if an ordinal is not assigned
+     */
+    public Stream<Tuple<I>> stream(TupleBitmap bitmap) {
+        return bitmap.stream().mapToObj(this.tuples::get);
+    }
+
+    private Map<Object, TupleBitmap> postings(int position) {
+        if (position < 0 || (this.positions != null && Arrays.binarySearch(this.positions, position) < 0)) {
+            throw new IllegalArgumentException("Position " + position + " is not indexed!");
+        }
+        return position < this.postings.size() ? this.postings.get(position) : null;
+    }
+}
@@ -0,0 +1,421 @@
+package io.github.noshou.tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A priority queue of numeric tuples, ordered lexicographically as by
+ * {@link Tuple#compareTo(Tuple)}, smallest first.
+ * <p>
+ * The queue is a 4-ary heap whose keys are copied out of the tuples when they
+ * are offered and kept inline as {@code long}s, {@code arity} per slot, so a sift
+ * compares primitives in one contiguous array instead of calling
+ * {@code compareTo} on boxed elements. A 4-ary heap is half as deep as a binary
+ * one and its four children share a cache line.
+ * <pre>{@code
+ * TuplePriorityQueue<Triad<Long>> queue = new TuplePriorityQueue<>(3);
+ * TuplePriorityQueue.Handle<Triad<Long>> h = queue.offer(new Triad<>(5L, deadline, seq));
+ * queue.decreaseKey(h, new Triad<>(1L, deadline, seq));
+ * Triad<Long> next = queue.poll();
+ * }</pre>
+ * Elements may be {@code Long}, {@code Integer}, {@code Short}, {@code Byte},
+ * {@code Double} or {@code Float}; a given position should always hold the same
+ * type. Every {@code offer} returns a {@link Handle} through which the element
+ * can later be re-prioritized or removed in {@code O(log n)}.
+ * <p>
+ * This class is not thread-safe; see {@link ConcurrentTuplePriorityQueue}.
+ *
+ * @param <T> the type of the queued tuples
+ */
+public final class TuplePriorityQueue<T extends Tuple<? extends Number>> {
+
+    private static final int D = 4;
+
+    private final int arity;
+    private final long[] scratch;
+    private long[] keys;
+    private Handle<T>[] heap;
+    private int size;
+
+    /**
+     * Constructs an empty queue of tuples of the given size.
+     *
+     * @param arity the size of the queued tuples
+     * @throws IllegalArgumentException if {@code arity} is negative
+     */
+    @SuppressWarnings("unchecked")
+    public TuplePriorityQueue(int arity) {
+        if (arity < 0) {
+            throw new IllegalArgumentException("Arity cannot be negative!");
+        }
+        this.arity = arity;
+        this.scratch = new long[arity];
+        this.keys = new long[16 * arity];
+        this.heap = (Handle<T>[]) new Handle[16];
+    }
+
+    /**
+     * Constructs a queue holding the given tuples, heapified in linear time.
+     *
+     * @param arity the size of the queued tuples
+     * @param tuples the initial tuples
+     * @throws IllegalArgumentException if a tuple is not of size {@code arity}
+     */
+    public TuplePriorityQueue(int arity, Collection<? extends T> tuples) {
+        this(arity);
+        offerAll(tuples);
+    }
+
+    /**
+     * Adds a tuple to the queue.
+     *
+     * @param tuple the tuple to add
+     * @return the handle of the queued tuple
+     * @throws IllegalArgumentException if the tuple is not of size {@code arity}
+     * @throws NullPointerException if an element of the tuple is {@code null}
+     */
+    public Handle<T> offer(T tuple) {
+        load(tuple, this.scratch);
+        return insert(tuple);
+    }
+
+    /**
+     * Queues a tuple whose key is in {@link #scratch}.
+     */
+    private Handle<T> insert(T tuple) {
+        grow(this.size + 1);
+        Handle<T> h = new Handle<>(this, tuple);
+        siftUp(this.size++, h);
+        return h;
+    }
+
+    /**
+     * Adds many tuples at once. When the batch is large compared to the queue,
+     * the whole heap is rebuilt in linear time instead of sifting each tuple.
+     *
+     * @param tuples the tuples to add
+     * @return the handles of the queued tuples, in iteration order
+     * @throws IllegalArgumentException if a tuple is not of size {@code arity}
+     * @throws NullPointerException if an element of a tuple is {@code null}
+     */
+    public List<Handle<T>> offerAll(Collection<? extends T> tuples) {
+        // load every key before any tuple is queued, so a bad one rejects the whole batch
+        List<T> batch = new ArrayList<>(tuples);
+        long[] batchKeys = new long[batch.size() * this.arity];
+        for (int j = 0; j < batch.size(); j++) {
+            load(batch.get(j), this.scratch);
+            System.arraycopy(this.scratch, 0, batchKeys, j * this.arity, this.arity);
+        }
+        List<Handle<T>> handles = new ArrayList<>(batch.size());
+        if (batch.size() < this.size) {
+            for (int j = 0; j < batch.size(); j++) {
+                System.arraycopy(batchKeys, j * this.arity, this.scratch, 0, this.arity);
+                handles.add(insert(batch.get(j)));
+            }
+            return handles;
+        }
+        TupleMetrics.BulkBuildEvent event = TupleMetrics.ENABLED ? TupleMetrics.beginBuild() : null;
+        grow(this.size + batch.size());
+        for (int j = 0; j < batch.size(); j++) {
+            Handle<T> h = new Handle<>(this, batch.get(j));
+            System.arraycopy(batchKeys, j * this.arity, this.scratch, 0, this.arity);
+            place(this.size++, h);
+            handles.add(h);
+        }
+        // Floyd's heap construction
+        for (int i = this.size > 1 ? (this.size - 2) / D : -1; i >= 0; i--) {
+            System.arraycopy(this.keys, i * this.arity, this.scratch, 0, this.arity);
+            siftDown(i, this.heap[i]);
+        }
+        if (event != null) {
+            TupleMetrics.endBuild(event, "TuplePriorityQueue", this.size);
+        }
+        return handles;
+    }
+
+    /**
+     * Returns the smallest tuple without removing it.
+     *
+     * @return the smallest tuple, or {@code null} if the queue is empty
+     */
+    public T peek() {
+        return this.size == 0 ? null : this.heap[0].tuple;
+    }
+
+    /**
+     * Removes and returns the smallest tuple.
+     *
+     * @return the smallest tuple, or {@code null} if the queue is empty
+     */
+    public T poll() {
+        if (this.size == 0) {
+            return null;
+        }
+        Handle<T> top = this.heap[0];
+        removeAt(0);
+        return top.tuple;
+    }
+
+    /**
+     * Returns the element at a position of the smallest tuple, as its inline
+     * key, without removing it.
+     *
+     * @param pos the position
+     * @return the key of the smallest tuple at that position
+     * @throws NoSuchElementException if the queue is empty
+     */
+    long peekKey(int pos) {
+        if (this.size == 0) {
+            throw new NoSuchElementException();
+        }
+        return this.keys[pos];
+    }
+
+    /**
+     * Replaces a queued tuple with one that is not greater.
+     *
+     * @param handle the handle of the queued tuple
+     * @param tuple the replacement tuple
+     * @throws IllegalArgumentException if the replacement is greater than the
+     *         queued tuple, or the handle is not queued in this queue
+     */
+    public void decreaseKey(Handle<T> handle, T tuple) {
+        int i = check(handle);
+        load(tuple, this.scratch);
+        if (compareScratch(i) > 0) {
+            throw new IllegalArgumentException("The new key is greater than the current key!");
+        }
+        handle.tuple = tuple;
+        siftUp(i, handle);
+    }
+
+    /**
+     * Replaces a queued tuple with any other tuple, moving it up or down as needed.
+     *
+     * @param handle the handle of the queued tuple
+     * @param tuple the replacement tuple
+     * @throws IllegalArgumentException if the handle is not queued in this queue
+     */
+    public void update(Handle<T> handle, T tuple) {
+        int i = check(handle);
+        load(tuple, this.scratch);
+        handle.tuple = tuple;
+        reposition(i, handle);
+    }
+
+    /**
+     * Removes a queued tuple.
+     *
+     * @param handle the handle of the queued tuple
+     * @return {@code true} if the tuple was removed, {@code false} if it was no longer queued
+     */
+    public boolean remove(Handle<T> handle) {
+        if (handle.owner != this || handle.index < 0) {
+            return false;
+        }
+        removeAt(handle.index);
+        return true;
+    }
+
+    /**
+     * Returns the number of queued tuples.
+     *
+     * @return the number of tuples
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns True if no tuple is queued
+     *
+     * @return True if empty, else False
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes every tuple; their handles are no longer queued afterwards.
+     */
+    public void clear() {
+        for (int i = 0; i < this.size; i++) {
+            this.heap[i].index = -1;
+            this.heap[i] = null;
+        }
+        this.size = 0;
+    }
+
+    private void removeAt(int i) {
+        Handle<T> removed = this.heap[i];
+        int last = --this.size;
+        if (i != last) {
+            Handle<T> moved = this.heap[last];
+            System.arraycopy(this.keys, last * this.arity, this.scratch, 0, this.arity);
+            reposition(i, moved);
+        }
+        this.heap[last] = null;
+        removed.index = -1;
+    }
+
+    /**
+     * Places the element whose key is in {@link #scratch} into hole {@code i}
+     * and restores the heap order around it.
+     */
+    private void reposition(int i, Handle<T> h) {
+        if (i > 0 && compareScratch((i - 1) / D) < 0) {
+            siftUp(i, h);
+        } else {
+            siftDown(i, h);
+        }
+    }
+
+    private void siftUp(int i, Handle<T> h) {
+        while (i > 0) {
+            int parent = (i - 1) / D;
+            if (compareScratch(parent) >= 0) {
+                break;
+            }
+            move(parent, i);
+            i = parent;
+        }
+        place(i, h);
+    }
+
+    private void siftDown(int i, Handle<T> h) {
+        while (true) {
+            int child = D * i + 1;
+            if (child >= this.size) {
+                break;
+            }
+            int best = child;
+            int end = Math.min(child + D, this.size);
+            for (int c = child + 1; c < end; c++) {
+                if (compareSlots(c, best) < 0) {
+                    best = c;
+                }
+            }
+            if (compareScratch(best) <= 0) {
+                break;
+            }
+            move(best, i);
+            i = best;
+        }
+        place(i, h);
+    }
+
+    private void move(int from, int to) {
+        System.arraycopy(this.keys, from * this.arity, this.keys, to * this.arity, this.arity);
+        this.heap[to] = this.heap[from];
+        this.heap[to].index = to;
+    }
+
+    private void place(int i, Handle<T> h) {
+        System.arraycopy(this.scratch, 0, this.keys, i * this.arity, this.arity);
+        this.heap[i] = h;
+        h.index = i;
+    }
+
+    /**
+     * Compares the key in {@link #scratch} with the key of slot {@code slot}.
+     */
+    private int compareScratch(int slot) {
+        int base = slot * this.arity;
+        for (int k = 0; k < this.arity; k++) {
+            int cmp = Long.compare(this.scratch[k], this.keys[base + k]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private int compareSlots(int a, int b) {
+        int baseA = a * this.arity;
+        int baseB = b * this.arity;
+        for (int k = 0; k < this.arity; k++) {
+            int cmp = Long.compare(this.keys[baseA + k], this.keys[baseB + k]);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private int check(Handle<T> handle) {
+        if (handle.owner != this || handle.index < 0) {
+            throw new IllegalArgumentException("The handle is not queued in this queue!");
+        }
+        return handle.index;
+    }
+
+    private void load(T tuple, long[] key) {
+        checkArity(tuple);
+        for (int k = 0; k < this.arity; k++) {
+            key[k] = key(tuple.fetch(k));
+        }
+    }
+
+    private void checkArity(T tuple) {
+        if (tuple.fetchSize() != this.arity) {
+            throw new IllegalArgumentException("Queued tuples must contain " + this.arity + " elements!");
+        }
+    }
+
+    /**
+     * Maps an element to a {@code long} ordered like the element itself;
+     * floating point values are mapped to their sortable bit pattern.
+     */
+    static long key(Number item) {
+        if (item instanceof Double || item instanceof Float) {
+            long bits = Double.doubleToLongBits(item.doubleValue());
+            return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+        return item.longValue();
+    }
+
+    private void grow(int capacity) {
+        if (capacity > this.heap.length) {
+            int length = Math.max(capacity, this.heap.length + (this.heap.length >> 1));
+            this.heap = Arrays.copyOf(this.heap, length);
+            this.keys = Arrays.copyOf(this.keys, length * this.arity);
+        }
+    }
+
+    /**
+     * A reference to a queued tuple, used to re-prioritize or remove it.
+     *
+     * @param <T> the type of the queued tuple
+     */
+    public static final class Handle<T extends Tuple<? extends Number>> {
+        private final TuplePriorityQueue<T> owner;
+        private T tuple;
+        private int index = -1;
+
+        private Handle(TuplePriorityQueue<T> owner, T tuple) {
+            this.owner = owner;
+            this.tuple = tuple;
+        }
+
+        /**
+         * Returns the tuple this handle refers to.
+         *
+         * @return the current tuple
+         */
+        public T fetchTuple() {
+            return this.tuple;
+        }
+
+        /**
+         * Returns whether the tuple is still in its queue.
+         *
+         * @return {@code true} if queued, {@code false} once polled or removed
+         */
+        public boolean isQueued() {
+            return this.index >= 0;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package io.github.noshou.tuple;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A KLL sketch of the distribution of a stream of tuples under their natural
+ * {@link Tuple#compareTo(Tuple) ordering}.
+ * <p>
+ * The sketch answers rank and quantile queries, such as the median or the 99th
+ * percentile tuple, from a bounded sample: each level {@code h} holds tuples of
+ * weight {@code 2^h}, and a full level is compacted by sorting it and promoting
+ * every other tuple to the level above. With the default {@code k} of 200 the
+ * normalized rank error is about 1.3% and the sketch retains a few hundred
+ * tuples regardless of the length of the stream.
+ * <pre>{@code
+ * TupleQuantileSketch<Long> latencies = new TupleQuantileSketch<>();
+ * latencies.update(new Dyad<>(region, micros));
+ * Tuple<Long> p99 = latencies.quantile(0.99);
+ * }</pre>
+ * The minimum and maximum are tracked exactly. All methods are synchronized on
+ * the sketch; under heavy contention, keep one sketch per thread or shard and
+ * {@link #merge(TupleQuantileSketch) merge} them, possibly after
+ * {@link #writeTo(DataOutput) serialization}. Only {@code null}, {@code Long},
+ * {@code Integer}, {@code Double} and {@code String} elements can be written.
+ *
+ * @param <I> the type of the elements of the tuples
+ */
+public final class TupleQuantileSketch<I extends Comparable<I>> {
+
+    /**
+     * The accuracy parameter used by {@link #TupleQuantileSketch()}.
+     */
+    public static final int DEFAULT_K = 200;
+
+    private static final int MAGIC = 0x544B4C4C; // "TKLL"
+    private static final byte VERSION = 1;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+    private final int k;
+    private final List<List<Tuple<I>>> levels = new ArrayList<>();
+    private final SplittableRandom random = new SplittableRandom();
+    private long count;
+    private Tuple<I> min;
+    private Tuple<I> max;
+
+    /**
+     * Creates a sketch with {@link #DEFAULT_K}.
+     */
+    public TupleQuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Creates a sketch with the given accuracy parameter. The rank error
+     * falls roughly as {@code 1 / k}, while the retained tuples grow as
+     * {@code 3k}.
+     *
+     * @param k at least {@code 8}
+     * @throws IllegalArgumentException if {@code k} is too small
+     */
+    public TupleQuantileSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("K must be at least 8!");
+        }
+        this.k = k;
+        this.levels.add(new ArrayList<>());
+    }
+
+    /**
+     * Adds a tuple to the stream.
+     *
+     * @param tuple the tuple
+     */
+    public synchronized void update(Tuple<I> tuple) {
+        if (this.count == 0) {
+            this.min = tuple;
+            this.max = tuple;
+        } else if (tuple.compareTo(this.min) < 0) {
+            this.min = tuple;
+        } else if (tuple.compareTo(this.max) > 0) {
+            this.max = tuple;
+        }
+        this.count++;
+        List<Tuple<I>> level0 = this.levels.get(0);
+        level0.add(tuple);
+        if (level0.size() >= capacity(0)) {
+            compress();
+        }
+    }
+
+    private int capacity(int level) {
+        int depth = this.levels.size() - 1 - level;
+        return Math.max(2, (int) Math.ceil(this.k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    /**
+     * Compacts every level that is at or above its capacity, bottom up.
+     */
+    private void compress() {
+        for (int h = 0; h < this.levels.size(); h++) {
+            List<Tuple<I>> level = this.levels.get(h);
+            if (level.size() < capacity(h)) {
+                continue;
+            }
+            if (h + 1 == this.levels.size()) {
+                this.levels.add(new ArrayList<>());
+            }
+            List<Tuple<I>> above = this.levels.get(h + 1);
+            level.sort(null);
+            // an odd tuple out stays behind so the total weight is preserved
+            Tuple<I> held = level.size() % 2 == 1 ? level.remove(level.size() - 1) : null;
+            for (int i = this.random.nextInt(2); i < level.size(); i += 2) {
+                above.add(level.get(i));
+            }
+            level.clear();
+            if (held != null) {
+                level.add(held);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tuples added, including those of merged sketches.
+     *
+     * @return the length of the stream
+     */
+    public synchronized long count() {
+        return this.count;
+    }
+
+    /**
+     * Returns whether no tuple has been added.
+     *
+     * @return {@code true} if the sketch is empty
+     */
+    public synchronized boolean isEmpty() {
+        return this.count == 0;
+    }
+
+    /**
+     * Returns the smallest tuple added.
+     *
+     * @return the exact minimum
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public synchronized Tuple<I> fetchSmallest() {
+        requireNonEmpty();
+        return this.min;
+    }
+
+    /**
+     * Returns the largest tuple added.
+     *
+     * @return the exact maximum
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public synchronized Tuple<I> fetchLargest() {
+        requireNonEmpty();
+        return this.max;
+    }
+
+    private void requireNonEmpty() {
+        if (this.count == 0) {
+            throw new IllegalStateException("Sketch is empty!");
+        }
+    }
+
+    /**
+     * Returns the approximate fraction of added tuples that are smaller than
+     * the given tuple.
+     *
+     * @param tuple the tuple to rank
+     * @return the normalized rank, between {@code 0} and {@code 1}
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public synchronized double rank(Tuple<I> tuple) {
+        requireNonEmpty();
+        long weight = 0;
+        for (int h = 0; h < this.levels.size(); h++) {
+            for (Tuple<I> item : this.levels.get(h)) {
+                if (item.compareTo(tuple) < 0) {
+                    weight += 1L << h;
+                }
+            }
+        }
+        return (double) weight / this.count;
+    }
+
+    /**
+     * Returns the approximate tuple at the given normalized rank.
+     * {@code quantile(0)} and {@code quantile(1)} are the exact minimum and
+     * maximum.
+     *
+     * @param q the normalized rank, between {@code 0} and {@code 1}
+     * @return the tuple
+     * @throws IllegalArgumentException if {@code q} is out of range
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public Tuple<I> quantile(double q) {
+        return quantiles(q).get(0);
+    }
+
+    /**
+     * Returns the approximate tuples at several normalized ranks, sorting the
+     * retained tuples only once.
+     *
+     * @param qs the normalized ranks, each between {@code 0} and {@code 1}
+     * @return the tuples, in the order of {@code qs}
+     * @throws IllegalArgumentException if a rank is out of range
+     * @throws IllegalStateException if the sketch is empty
+     */
+    public synchronized List<Tuple<I>> quantiles(double... qs) {
+        requireNonEmpty();
+        for (double q : qs) {
+            if (!(q >= 0.0 && q <= 1.0)) {
+                throw new IllegalArgumentException("Quantile must be between 0 and 1!");
+            }
+        }
+        int retained = 0;
+        for (List<Tuple<I>> level : this.levels) {
+            retained += level.size();
+        }
+        Weighted<I>[] sorted = newWeightedArray(retained);
+        int n = 0;
+        for (int h = 0; h < this.levels.size(); h++) {
+            for (Tuple<I> item : this.levels.get(h)) {
+                sorted[n++] = new Weighted<>(item, 1L << h);
+            }
+        }
+        Arrays.sort(sorted, (a, b) -> a.tuple.compareTo(b.tuple));
+        long[] cumulative = new long[retained];
+        long running = 0;
+        for (int i = 0; i < retained; i++) {
+            running += sorted[i].weight;
+            cumulative[i] = running;
+        }
+        List<Tuple<I>> result = new ArrayList<>(qs.length);
+        for (double q : qs) {
+            if (q == 0.0) {
+                result.add(this.min);
+            } else if (q == 1.0) {
+                result.add(this.max);
+            } else {
+                long target = (long) Math.ceil(q * this.count);
+                int i = Arrays.binarySearch(cumulative, target);
+                result.add(sorted[i >= 0 ? i : Math.min(-i - 1, retained - 1)].tuple);
+            }
+        }
+        return result;
+    }
+
+    private record Weighted<I extends Comparable<I>>(Tuple<I> tuple, long weight) {
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <I extends Comparable<I>> Weighted<I>[] newWeightedArray(int length) {
+        return (Weighted<I>[]) new Weighted[length];
+    }
+
+    /**
+     * Returns the approximate normalized rank error of this sketch's queries,
+     * holding with 99% confidence.
+     *
+     * @return the rank error, as a fraction of {@link #count()}
+     */
+    public double normalizedRankError() {
+        return 2.296 / Math.pow(this.k, 0.9723);
+    }
+
+    /**
+     * Returns the number of tuples currently retained by the sketch.
+     *
+     * @return the size of the sample
+     */
+    public synchronized int retained() {
+        int retained = 0;
+        for (List<Tuple<I>> level : this.levels) {
+            retained += level.size();
+        }
+        return retained;
+    }
+
+    /**
+     * Adds the stream summarized by another sketch to this one. The other
+     * sketch is not modified and may be updated concurrently.
+     *
+     * @param other a sketch with the same {@code k}
+     * @throws IllegalArgumentException if the sketches have different {@code k}
+     */
+    public void merge(TupleQuantileSketch<I> other) {
+        if (other == this) {
+            throw new IllegalArgumentException("A sketch cannot be merged with itself!");
+        }
+        if (other.k != this.k) {
+            throw new IllegalArgumentException("Only sketches with the same k can be merged!");
+        }
+        List<List<Tuple<I>>> otherLevels = new ArrayList<>();
+        long otherCount;
+        Tuple<I> otherMin;
+        Tuple<I> otherMax;
+        // copy under the other lock only, so two sketches can merge into each other
+        synchronized (other) {
+            otherCount = other.count;
+            otherMin = other.min;
+            otherMax = other.max;
+            for (List<Tuple<I>> level : other.levels) {
+                otherLevels.add(new ArrayList<>(level));
+            }
+        }
+        if (otherCount == 0) {
+            return;
+        }
+        synchronized (this) {
+            while (this.levels.size() < otherLevels.size()) {
+                this.levels.add(new ArrayList<>());
+            }
+            for (int h = 0; h < otherLevels.size(); h++) {
+                this.levels.get(h).addAll(otherLevels.get(h));
+            }
+            if (this.count == 0 || otherMin.compareTo(this.min) < 0) {
+                this.min = otherMin;
+            }
+            if (this.count == 0 || otherMax.compareTo(this.max) > 0) {
+                this.max = otherMax;
+            }
+            this.count += otherCount;
+            compress();
+        }
+    }
+
+    /**
+     * Writes this sketch, e.g. to merge it with sketches of other shards.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if a retained tuple has an element that
+     *         cannot be written
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeInt(this.k);
+        out.writeLong(this.count);
+        if (this.count == 0) {
+            return;
+        }
+        TupleCodec.write(out, this.min);
+        TupleCodec.write(out, this.max);
+        out.writeInt(this.levels.size());
+        for (List<Tuple<I>> level : this.levels) {
+            out.writeInt(level.size());
+            for (Tuple<I> item : level) {
+                TupleCodec.write(out, item);
+            }
+        }
+    }
+
+    /**
+     * Reads a sketch written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @param <I> the type of the elements of the tuples
+     * @return the sketch
+     * @throws IOException if reading fails or the input is not a quantile sketch
+     */
+    public static <I extends Comparable<I>> TupleQuantileSketch<I> readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a tuple quantile sketch!");
+        }
+        int k = in.readInt();
+        long count = in.readLong();
+        if (k < 8 || count < 0) {
+            throw new IOException("Corrupt tuple quantile sketch!");
+        }
+        TupleQuantileSketch<I> sketch = new TupleQuantileSketch<>(k);
+        if (count == 0) {
+            return sketch;
+        }
+        sketch.count = count;
+        sketch.min = TupleCodec.read(in);
+        sketch.max = TupleCodec.read(in);
+        int height = in.readInt();
+        if (height < 1 || height > Long.SIZE - 1) {
+            throw new IOException("Corrupt tuple quantile sketch!");
+        }
+        sketch.levels.clear();
+        for (int h = 0; h < height; h++) {
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Corrupt tuple quantile sketch!");
+            }
+            List<Tuple<I>> level = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                level.add(TupleCodec.read(in));
+            }
+            sketch.levels.add(level);
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,475 @@
+package io.github.noshou.tuple;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Routes tuples to a fixed number of ranges of the {@link Tuple#compareTo(Tuple)}
+ * order, so that partitions processed independently (by threads, shards or
+ * file writers) concatenate to globally sorted output.
+ * <p>
+ * Split points are chosen from a reservoir {@link Sample} of the input rather
+ * than from a full sort:
+ * <pre>{@code
+ * TupleRangePartitioner.Sample<Long> sample = TupleRangePartitioner.sample(10_000);
+ * input.forEach(sample::add);
+ * TupleRangePartitioner<Long> partitioner = sample.partitioner(16);
+ * int p = partitioner.partition(tuple);   // 0 .. partitions() - 1
+ * }</pre>
+ * Partition {@code p} holds the tuples from split {@code p - 1} inclusive up
+ * to split {@code p} exclusive. When the first elements of the splits are all {@code Long}s,
+ * {@code Integer}s, {@code Double}s or {@code String}s, each split is given a
+ * precomputed {@code long} key of its first element, and routing binary
+ * searches those keys, comparing whole tuples only among splits whose key
+ * ties.
+ * <p>
+ * A tuple that makes up a large share of the sample (a hot tuple) cannot be
+ * split by ranges. {@link Sample#partitioner(int)} isolates each hot tuple in
+ * a partition of its own and spreads the remaining partitions over the rest
+ * of the input, so equal tuples always meet, as a join needs.
+ * {@link Sample#spreadingPartitioner(int)} instead gives a hot tuple as many
+ * partitions as its share calls for and routes its occurrences at random
+ * among them, which keeps sorts and writers balanced but sends equal tuples
+ * to different partitions. {@link #hotTuples()} reports the tuples detected.
+ * <p>
+ * A partitioner is immutable and thread-safe, and can be shipped to other
+ * nodes with {@link #writeTo(DataOutput)}.
+ *
+ * @param <I> the type of the elements of the tuples
+ */
+public final class TupleRangePartitioner<I extends Comparable<I>> {
+
+    private static final int MAGIC = 0x5452414E; // "TRAN"
+    private static final byte VERSION = 1;
+
+    private final List<Tuple<I>> splits;
+    private final boolean spread;
+    private final List<Tuple<I>> hot;
+    // precomputed first-element keys of the splits, or null if they are not keyable
+    private final long[] keys;
+    private final Class<?> keyClass;
+
+    private TupleRangePartitioner(List<Tuple<I>> splits, boolean spread, List<Tuple<I>> hot) {
+        this.splits = splits;
+        this.spread = spread;
+        this.hot = hot;
+        Class<?> keyClass = splits.isEmpty() ? null : keyClass(splits.get(0));
+        for (Tuple<I> split : splits) {
+            if (keyClass == null || keyClass(split) != keyClass) {
+                keyClass = null;
+                break;
+            }
+        }
+        this.keyClass = keyClass;
+        if (keyClass != null) {
+            this.keys = new long[splits.size()];
+            for (int i = 0; i < this.keys.length; i++) {
+                this.keys[i] = key(splits.get(i).fetch(0));
+            }
+        } else {
+            this.keys = null;
+        }
+    }
+
+    /**
+     * Returns a partitioner with the given split points.
+     *
+     * @param splits the split points, in ascending order; partition {@code p}
+     *               holds the tuples from split {@code p - 1} inclusive up to
+     *               split {@code p} exclusive
+     * @param <I> the type of the elements of the tuples
+     * @return a partitioner with {@code splits.size() + 1} partitions
+     * @throws IllegalArgumentException if the splits are not in ascending order
+     */
+    public static <I extends Comparable<I>> TupleRangePartitioner<I> of(List<? extends Tuple<I>> splits) {
+        List<Tuple<I>> copy = List.copyOf(splits);
+        for (int i = 1; i < copy.size(); i++) {
+            if (copy.get(i).compareTo(copy.get(i - 1)) < 0) {
+                throw new IllegalArgumentException("Splits must be in ascending order!");
+            }
+        }
+        return new TupleRangePartitioner<>(copy, false, hotTuples(copy));
+    }
+
+    /**
+     * Returns an empty reservoir sample of at most {@code size} tuples.
+     *
+     * @param size the size of the reservoir, e.g. 100 to 1000 times the
+     *             number of partitions
+     * @param <I> the type of the elements of the tuples
+     * @return a new sample
+     * @throws IllegalArgumentException if {@code size} is not positive
+     */
+    public static <I extends Comparable<I>> Sample<I> sample(int size) {
+        return new Sample<>(size, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Returns an empty reservoir sample with a fixed random seed, so that the
+     * same input yields the same partitioner.
+     *
+     * @param size the size of the reservoir
+     * @param seed the random seed
+     * @param <I> the type of the elements of the tuples
+     * @return a new sample
+     * @throws IllegalArgumentException if {@code size} is not positive
+     */
+    public static <I extends Comparable<I>> Sample<I> sample(int size, long seed) {
+        return new Sample<>(size, seed);
+    }
+
+    /**
+     * A uniform random sample of a stream of tuples of unknown length, kept
+     * with reservoir sampling. After the reservoir fills up, only the tuples
+     * that enter it cost a random number. A sample is not thread-safe.
+     *
+     * @param <I> the type of the elements of the tuples
+     */
+    public static final class Sample<I extends Comparable<I>> {
+        private final List<Tuple<I>> reservoir;
+        private final int size;
+        private final SplittableRandom random;
+        private long seen;
+        private long next;
+        private double w;
+
+        private Sample(int size, long seed) {
+            if (size <= 0) {
+                throw new IllegalArgumentException("Sample size must be positive!");
+            }
+            this.size = size;
+            this.reservoir = new ArrayList<>(Math.min(size, 1 << 16));
+            this.random = new SplittableRandom(seed);
+        }
+
+        /**
+         * Offers a tuple of the input to the sample.
+         *
+         * @param tuple the next tuple
+         */
+        public void add(Tuple<I> tuple) {
+            long i = this.seen++;
+            if (i < this.size) {
+                this.reservoir.add(tuple);
+                if (i + 1 == this.size) {
+                    this.w = Math.exp(Math.log(uniform()) / this.size);
+                    skip();
+                }
+            } else if (i == this.next) {
+                // Li's algorithm L: jump straight to the next tuple that enters the reservoir
+                this.reservoir.set(this.random.nextInt(this.size), tuple);
+                this.w *= Math.exp(Math.log(uniform()) / this.size);
+                skip();
+            }
+        }
+
+        private void skip() {
+            double gap = Math.floor(Math.log(uniform()) / Math.log1p(-this.w));
+            this.next = this.seen + (gap >= Long.MAX_VALUE - this.seen ? Long.MAX_VALUE - this.seen : (long) gap);
+        }
+
+        private double uniform() {
+            double u;
+            do {
+                u = this.random.nextDouble();
+            } while (u == 0.0);
+            return u;
+        }
+
+        /**
+         * Offers every tuple of an input to the sample.
+         *
+         * @param tuples the tuples
+         */
+        public void addAll(Iterable<? extends Tuple<I>> tuples) {
+            for (Tuple<I> tuple : tuples) {
+                add(tuple);
+            }
+        }
+
+        /**
+         * Returns the number of tuples offered so far.
+         *
+         * @return the length of the input seen
+         */
+        public long count() {
+            return this.seen;
+        }
+
+        /**
+         * Returns a partitioner into at most {@code partitions} ranges that
+         * never separates equal tuples. Each hot tuple gets a partition of its
+         * own; there may be fewer partitions than requested when the sample
+         * holds fewer distinct tuples.
+         *
+         * @param partitions the wanted number of partitions
+         * @return the partitioner
+         * @throws IllegalArgumentException if {@code partitions} is not positive
+         */
+        public TupleRangePartitioner<I> partitioner(int partitions) {
+            List<Tuple<I>> sorted = sorted(partitions);
+            List<Tuple<I>> splits = new ArrayList<>();
+            List<Tuple<I>> hot = new ArrayList<>();
+            double ideal = (double) sorted.size() / partitions;
+            int start = 0;
+            int inPartition = 0;
+            while (start < sorted.size()) {
+                int end = runEnd(sorted, start);
+                int run = end - start;
+                int left = partitions - splits.size();
+                double target = (double) (sorted.size() - start + inPartition) / left;
+                // cut before this run if it overshoots the target more than stopping short does
+                if (inPartition > 0 && left > 1 && inPartition + run - target > target - inPartition) {
+                    splits.add(sorted.get(start));
+                    inPartition = 0;
+                    continue;
+                }
+                if (run > ideal) {
+                    hot.add(sorted.get(start));
+                }
+                inPartition += run;
+                start = end;
+                if (inPartition >= target && left > 1 && start < sorted.size()) {
+                    splits.add(sorted.get(start));
+                    inPartition = 0;
+                }
+            }
+            return new TupleRangePartitioner<>(List.copyOf(splits), false, List.copyOf(hot));
+        }
+
+        /**
+         * Returns a partitioner into exactly {@code partitions} ranges of
+         * equal estimated size. A hot tuple spanning several ranges is routed
+         * at random among their partitions, so equal tuples may be separated.
+         *
+         * @param partitions the number of partitions
+         * @return the partitioner
+         * @throws IllegalArgumentException if {@code partitions} is not positive
+         */
+        public TupleRangePartitioner<I> spreadingPartitioner(int partitions) {
+            List<Tuple<I>> sorted = sorted(partitions);
+            List<Tuple<I>> splits = new ArrayList<>(partitions - 1);
+            if (!sorted.isEmpty()) {
+                for (int p = 1; p < partitions; p++) {
+                    splits.add(sorted.get((int) ((long) p * sorted.size() / partitions)));
+                }
+            }
+            return new TupleRangePartitioner<>(List.copyOf(splits), true, hotTuples(splits));
+        }
+
+        private List<Tuple<I>> sorted(int partitions) {
+            if (partitions <= 0) {
+                throw new IllegalArgumentException("Number of partitions must be positive!");
+            }
+            List<Tuple<I>> sorted = new ArrayList<>(this.reservoir);
+            Collections.sort(sorted);
+            return sorted;
+        }
+
+        private static <I extends Comparable<I>> int runEnd(List<Tuple<I>> sorted, int start) {
+            int end = start + 1;
+            while (end < sorted.size() && sorted.get(end).compareTo(sorted.get(start)) == 0) {
+                end++;
+            }
+            return end;
+        }
+    }
+
+    private static <I extends Comparable<I>> List<Tuple<I>> hotTuples(List<Tuple<I>> splits) {
+        List<Tuple<I>> hot = new ArrayList<>();
+        for (int i = 1; i < splits.size(); i++) {
+            if (splits.get(i).compareTo(splits.get(i - 1)) == 0
+                    && (hot.isEmpty() || hot.get(hot.size() - 1).compareTo(splits.get(i)) != 0)) {
+                hot.add(splits.get(i));
+            }
+        }
+        return List.copyOf(hot);
+    }
+
+    /**
+     * Returns the number of partitions.
+     *
+     * @return one more than the number of splits
+     */
+    public int partitions() {
+        return this.splits.size() + 1;
+    }
+
+    /**
+     * Returns the split points, in ascending order.
+     *
+     * @return the unmodifiable list of splits
+     */
+    public List<Tuple<I>> splits() {
+        return this.splits;
+    }
+
+    /**
+     * Returns the tuples found to make up a large share of the sample.
+     *
+     * @return the unmodifiable list of hot tuples, in ascending order
+     */
+    public List<Tuple<I>> hotTuples() {
+        return this.hot;
+    }
+
+    /**
+     * Returns the partition of a tuple.
+     *
+     * @param tuple the tuple to route
+     * @return the partition, between {@code 0} and {@code partitions() - 1}
+     */
+    public int partition(Tuple<I> tuple) {
+        int lo = 0;
+        int hi = this.splits.size();
+        if (this.keys != null && tuple.fetchSize() > 0) {
+            Object first = tuple.fetch(0);
+            if (first != null && first.getClass() == this.keyClass) {
+                long key = key(first);
+                lo = lowerBound(this.keys, key);
+                hi = upperBound(this.keys, key, lo);
+                if (lo == hi) {
+                    return lo;
+                }
+            }
+        }
+        if (!this.spread) {
+            return upperBound(tuple, lo, hi);
+        }
+        int below = lowerBound(tuple, lo, hi);
+        int above = upperBound(tuple, below, hi);
+        // a hot tuple equal to several splits may go to any partition following one of them
+        return above - below < 2 ? above : below + 1 + ThreadLocalRandom.current().nextInt(above - below);
+    }
+
+    private int lowerBound(Tuple<I> tuple, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.splits.get(mid).compareTo(tuple) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int upperBound(Tuple<I> tuple, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (this.splits.get(mid).compareTo(tuple) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int lowerBound(long[] keys, long key) {
+        int lo = 0;
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int upperBound(long[] keys, long key, int lo) {
+        int hi = keys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static Class<?> keyClass(Tuple<?> split) {
+        Object first = split.fetchSize() > 0 ? split.fetch(0) : null;
+        if (first instanceof Long || first instanceof Integer || first instanceof Double || first instanceof String) {
+            return first.getClass();
+        }
+        return null;
+    }
+
+    /**
+     * Maps a first element to a {@code long} that never orders two elements
+     * against their natural order; Strings keep their first four characters.
+     */
+    private static long key(Object item) {
+        if (item instanceof String s) {
+            long key = 0;
+            for (int i = 0; i < 4; i++) {
+                key = (key << 16) | (i < s.length() ? s.charAt(i) : 0);
+            }
+            return key ^ Long.MIN_VALUE;
+        }
+        return TuplePriorityQueue.key((Number) item);
+    }
+
+    /**
+     * Writes this partitioner, e.g. to route tuples identically on other nodes.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if a split has an element that cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeBoolean(this.spread);
+        out.writeInt(this.splits.size());
+        for (Tuple<I> split : this.splits) {
+            TupleCodec.write(out, split);
+        }
+        out.writeInt(this.hot.size());
+        for (Tuple<I> tuple : this.hot) {
+            TupleCodec.write(out, tuple);
+        }
+    }
+
+    /**
+     * Reads a partitioner written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @param <I> the type of the elements of the tuples
+     * @return the partitioner
+     * @throws IOException if reading fails or the input is not a range partitioner
+     */
+    public static <I extends Comparable<I>> TupleRangePartitioner<I> readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a tuple range partitioner!");
+        }
+        boolean spread = in.readBoolean();
+        List<Tuple<I>> splits = readTuples(in);
+        List<Tuple<I>> hot = readTuples(in);
+        return new TupleRangePartitioner<>(splits, spread, hot);
+    }
+
+    private static <I extends Comparable<I>> List<Tuple<I>> readTuples(DataInput in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            throw new IOException("Corrupt tuple range partitioner!");
+        }
+        List<Tuple<I>> tuples = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            tuples.add(TupleCodec.read(in));
+        }
+        return List.copyOf(tuples);
+    }
+}
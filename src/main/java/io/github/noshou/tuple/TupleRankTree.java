@@ -0,0 +1,777 @@
+package io.github.noshou.tuple;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A sorted set of tuples that answers order-statistic queries in
+ * logarithmic time.
+ * <p>
+ * The tuples are kept in a B+-tree, ordered by {@link Tuple#compareTo(Tuple)},
+ * whose inner nodes record how many tuples each child holds. Besides
+ * {@link #add(Tuple)}, {@link #remove(Tuple)} and {@link #contains(Tuple)},
+ * this gives in O(log n):
+ * <ul>
+ *   <li>{@link #rank(Tuple)}, the number of tuples smaller than a tuple;</li>
+ *   <li>{@link #select(int)}, the k-th smallest tuple, and {@link #percentile(double)};</li>
+ *   <li>{@link #count(Tuple, Tuple)}, the number of tuples in a range.</li>
+ * </ul>
+ * {@link #fromSorted(Iterable)} builds a tree from sorted input in linear
+ * time. A tree is not thread-safe; {@link #snapshot()} copies it into an
+ * immutable {@link Snapshot}, a sorted array answering the same queries,
+ * which any number of threads may read while the tree keeps changing.
+ *
+ * @param <I> the type of the elements
+ */
+public final class TupleRankTree<I extends Comparable<I>> implements Iterable<Tuple<I>> {
+
+    private static final int MAX = 64;
+    private static final int MIN = MAX / 2;
+
+    private Node root = new Leaf();
+    private int modCount;
+
+    /**
+     * Creates an empty tree.
+     */
+    public TupleRankTree() {
+    }
+
+    /**
+     * Returns a tree of the given tuples, which must be sorted. Equal
+     * neighbours are kept once.
+     *
+     * @param sorted the tuples in ascending order
+     * @param <I> the type of the elements
+     * @return a new tree
+     * @throws IllegalArgumentException if the tuples are not sorted
+     * @throws NullPointerException if a tuple is {@code null}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <I extends Comparable<I>> TupleRankTree<I> fromSorted(Iterable<? extends Tuple<I>> sorted) {
+        TupleMetrics.BulkBuildEvent event = TupleMetrics.ENABLED ? TupleMetrics.beginBuild() : null;
+        TupleRankTree<I> tree = new TupleRankTree<>();
+        // fill leaves completely, then stack inner levels on top of them
+        ArrayList<Node> level = new ArrayList<>();
+        Leaf leaf = new Leaf();
+        Tuple previous = null;
+        for (Tuple<I> tuple : sorted) {
+            Objects.requireNonNull(tuple, "Tuple cannot be null!");
+            if (previous != null) {
+                int c = previous.compareTo(tuple);
+                if (c > 0) {
+                    throw new IllegalArgumentException("Tuples are not sorted!");
+                } else if (c == 0) {
+                    continue;
+                }
+            }
+            if (leaf.size == MAX) {
+                level.add(leaf);
+                Leaf next = new Leaf();
+                leaf.next = next;
+                leaf = next;
+            }
+            leaf.keys[leaf.size++] = tuple;
+            previous = tuple;
+        }
+        level.add(leaf);
+        if (level.size() > 1 && leaf.size < MIN) {
+            // top up the last leaf from its neighbour so that both are at least half full
+            Leaf prev = (Leaf) level.get(level.size() - 2);
+            int move = MIN - leaf.size;
+            System.arraycopy(leaf.keys, 0, leaf.keys, move, leaf.size);
+            System.arraycopy(prev.keys, prev.size - move, leaf.keys, 0, move);
+            Arrays.fill(prev.keys, prev.size - move, prev.size, null);
+            prev.size -= move;
+            leaf.size += move;
+        }
+        while (level.size() > 1) {
+            ArrayList<Node> parents = new ArrayList<>();
+            Inner inner = new Inner();
+            for (Node child : level) {
+                if (inner.size == MAX) {
+                    parents.add(inner);
+                    inner = new Inner();
+                }
+                inner.append(child);
+            }
+            parents.add(inner);
+            if (parents.size() > 1 && inner.size < MIN) {
+                Inner prev = (Inner) parents.get(parents.size() - 2);
+                int move = MIN - inner.size;
+                Inner fixed = new Inner();
+                for (int i = prev.size - move; i < prev.size; i++) {
+                    fixed.append(prev.children[i]);
+                }
+                for (int i = 0; i < inner.size; i++) {
+                    fixed.append(inner.children[i]);
+                }
+                prev.truncate(prev.size - move);
+                parents.set(parents.size() - 1, fixed);
+            }
+            level = parents;
+        }
+        tree.root = level.getFirst();
+        if (event != null) {
+            TupleMetrics.endBuild(event, "TupleRankTree", tree.size());
+        }
+        return tree;
+    }
+
+    /**
+     * Returns the number of tuples.
+     *
+     * @return the size of the set
+     */
+    public int size() {
+        return this.root.count();
+    }
+
+    /**
+     * Returns whether the tree holds no tuple.
+     *
+     * @return {@code true} if empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns whether the tree holds a tuple equal to the given one.
+     *
+     * @param tuple the tuple
+     * @return {@code true} if present
+     */
+    public boolean contains(Tuple<I> tuple) {
+        Node node = this.root;
+        while (node instanceof Inner inner) {
+            node = inner.children[inner.childFor(tuple)];
+        }
+        return ((Leaf) node).search(tuple) >= 0;
+    }
+
+    /**
+     * Adds a tuple unless an equal one is present.
+     *
+     * @param tuple the tuple
+     * @return {@code true} if the tuple was added
+     * @throws NullPointerException if {@code tuple} is {@code null}
+     */
+    public boolean add(Tuple<I> tuple) {
+        Objects.requireNonNull(tuple, "Tuple cannot be null!");
+        int before = size();
+        Node split = insert(this.root, tuple);
+        if (split != null) {
+            Inner root = new Inner();
+            root.append(this.root);
+            root.append(split);
+            this.root = root;
+        }
+        if (size() == before) {
+            return false;
+        }
+        this.modCount++;
+        return true;
+    }
+
+    /**
+     * Inserts into a subtree, returning the new right sibling if the node split.
+     */
+    private static Node insert(Node node, Tuple<?> tuple) {
+        if (node instanceof Leaf leaf) {
+            int i = leaf.search(tuple);
+            if (i >= 0) {
+                return null;
+            }
+            i = -i - 1;
+            if (leaf.size < MAX) {
+                leaf.insert(i, tuple);
+                return null;
+            }
+            Leaf right = leaf.split();
+            if (i <= leaf.size) {
+                leaf.insert(i, tuple);
+            } else {
+                right.insert(i - leaf.size, tuple);
+            }
+            return right;
+        }
+        Inner inner = (Inner) node;
+        int c = inner.childFor(tuple);
+        Node child = inner.children[c];
+        int before = child.count();
+        Node split = insert(child, tuple);
+        inner.total += child.count() - before;
+        inner.counts[c] = child.count();
+        if (split == null) {
+            return null;
+        }
+        if (inner.size < MAX) {
+            inner.insert(c + 1, split);
+            return null;
+        }
+        Inner right = inner.split();
+        if (c + 1 <= inner.size) {
+            inner.insert(c + 1, split);
+        } else {
+            right.insert(c + 1 - inner.size, split);
+        }
+        return right;
+    }
+
+    /**
+     * Removes the tuple equal to the given one.
+     *
+     * @param tuple the tuple
+     * @return {@code true} if a tuple was removed
+     */
+    public boolean remove(Tuple<I> tuple) {
+        if (!delete(this.root, tuple)) {
+            return false;
+        }
+        if (this.root instanceof Inner inner && inner.size == 1) {
+            this.root = inner.children[0];
+        }
+        this.modCount++;
+        return true;
+    }
+
+    private static boolean delete(Node node, Tuple<?> tuple) {
+        if (node instanceof Leaf leaf) {
+            int i = leaf.search(tuple);
+            if (i < 0) {
+                return false;
+            }
+            leaf.remove(i);
+            return true;
+        }
+        Inner inner = (Inner) node;
+        int c = inner.childFor(tuple);
+        if (!delete(inner.children[c], tuple)) {
+            return false;
+        }
+        inner.counts[c]--;
+        inner.total--;
+        if (inner.children[c].size < MIN) {
+            inner.rebalance(c);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of tuples smaller than the given one, which need
+     * not be in the tree.
+     *
+     * @param tuple the tuple
+     * @return the rank, between {@code 0} and {@link #size()}
+     */
+    public int rank(Tuple<I> tuple) {
+        int rank = 0;
+        Node node = this.root;
+        while (node instanceof Inner inner) {
+            int c = inner.childFor(tuple);
+            for (int i = 0; i < c; i++) {
+                rank += inner.counts[i];
+            }
+            node = inner.children[c];
+        }
+        int i = ((Leaf) node).search(tuple);
+        return rank + (i >= 0 ? i : -i - 1);
+    }
+
+    /**
+     * Returns the k-th smallest tuple.
+     *
+     * @param k the rank of the tuple (0-based)
+     * @return the tuple
+     * @throws IndexOutOfBoundsException if {@code k} is out of range
+     */
+    @SuppressWarnings("unchecked")
+    public Tuple<I> select(int k) {
+        if (k < 0 || k >= size()) {
+            throw new IndexOutOfBoundsException("Rank " + k + " out of bounds for size " + size() + "!");
+        }
+        Node node = this.root;
+        while (node instanceof Inner inner) {
+            int c = 0;
+            while (k >= inner.counts[c]) {
+                k -= inner.counts[c++];
+            }
+            node = inner.children[c];
+        }
+        return (Tuple<I>) ((Leaf) node).keys[k];
+    }
+
+    /**
+     * Returns the number of tuples from {@code from} inclusive to {@code to} exclusive.
+     *
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the count, {@code 0} if {@code to} is not greater than {@code from}
+     */
+    public int count(Tuple<I> from, Tuple<I> to) {
+        return Math.max(0, rank(to) - rank(from));
+    }
+
+    /**
+     * Returns the tuple at a percentile, by the nearest-rank method.
+     *
+     * @param p the percentile, between {@code 0} and {@code 1}
+     * @return the smallest tuple with at least {@code p} of the tuples at or below it
+     * @throws IllegalArgumentException if {@code p} is out of range
+     * @throws NoSuchElementException if the tree is empty
+     */
+    public Tuple<I> percentile(double p) {
+        return select(percentileRank(p, size()));
+    }
+
+    static int percentileRank(double p, int size) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1!");
+        }
+        if (size == 0) {
+            throw new NoSuchElementException("No tuples!");
+        }
+        return Math.max(0, (int) Math.ceil(p * size) - 1);
+    }
+
+    /**
+     * Removes every tuple.
+     */
+    public void clear() {
+        this.root = new Leaf();
+        this.modCount++;
+    }
+
+    /**
+     * Returns an iterator over the tuples in ascending order.
+     *
+     * @return an iterator that fails if the tree is modified during iteration
+     */
+    @Override
+    public Iterator<Tuple<I>> iterator() {
+        Node node = this.root;
+        while (node instanceof Inner inner) {
+            node = inner.children[0];
+        }
+        Leaf first = (Leaf) node;
+        int expected = this.modCount;
+        return new Iterator<>() {
+            private Leaf leaf = first;
+            private int i;
+
+            @Override
+            public boolean hasNext() {
+                while (this.leaf != null && this.i == this.leaf.size) {
+                    this.leaf = this.leaf.next;
+                    this.i = 0;
+                }
+                return this.leaf != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Tuple<I> next() {
+                if (modCount != expected) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (Tuple<I>) this.leaf.keys[this.i++];
+            }
+        };
+    }
+
+    /**
+     * Returns an immutable copy of the tree for concurrent readers.
+     *
+     * @return a new snapshot
+     */
+    @SuppressWarnings("unchecked")
+    public Snapshot<I> snapshot() {
+        Tuple<I>[] sorted = (Tuple<I>[]) new Tuple<?>[size()];
+        int n = 0;
+        for (Tuple<I> tuple : this) {
+            sorted[n++] = tuple;
+        }
+        return new Snapshot<>(sorted);
+    }
+
+    private abstract static class Node {
+        int size;
+
+        abstract int count();
+    }
+
+    private static final class Leaf extends Node {
+        final Tuple<?>[] keys = new Tuple<?>[MAX];
+        Leaf next;
+
+        @Override
+        int count() {
+            return this.size;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        int search(Tuple<?> tuple) {
+            int lo = 0;
+            int hi = this.size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = ((Tuple) this.keys[mid]).compareTo(tuple);
+                if (c < 0) {
+                    lo = mid + 1;
+                } else if (c > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -lo - 1;
+        }
+
+        void insert(int i, Tuple<?> tuple) {
+            System.arraycopy(this.keys, i, this.keys, i + 1, this.size - i);
+            this.keys[i] = tuple;
+            this.size++;
+        }
+
+        void remove(int i) {
+            System.arraycopy(this.keys, i + 1, this.keys, i, this.size - i - 1);
+            this.keys[--this.size] = null;
+        }
+
+        Leaf split() {
+            Leaf right = new Leaf();
+            right.size = this.size - MIN;
+            System.arraycopy(this.keys, MIN, right.keys, 0, right.size);
+            Arrays.fill(this.keys, MIN, this.size, null);
+            this.size = MIN;
+            right.next = this.next;
+            this.next = right;
+            return right;
+        }
+    }
+
+    private static final class Inner extends Node {
+        final Node[] children = new Node[MAX];
+        final int[] counts = new int[MAX];
+        // lows[i] is at most every tuple of children[i] and above every tuple of children[i - 1]
+        final Tuple<?>[] lows = new Tuple<?>[MAX];
+        int total;
+
+        @Override
+        int count() {
+            return this.total;
+        }
+
+        /**
+         * Returns the index of the child whose range holds the tuple.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        int childFor(Tuple<?> tuple) {
+            int lo = 1;
+            int hi = this.size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (((Tuple) this.lows[mid]).compareTo(tuple) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo - 1;
+        }
+
+        void append(Node child) {
+            this.children[this.size] = child;
+            this.counts[this.size] = child.count();
+            this.lows[this.size] = low(child);
+            this.total += child.count();
+            this.size++;
+        }
+
+        void insert(int i, Node child) {
+            System.arraycopy(this.children, i, this.children, i + 1, this.size - i);
+            System.arraycopy(this.counts, i, this.counts, i + 1, this.size - i);
+            System.arraycopy(this.lows, i, this.lows, i + 1, this.size - i);
+            this.children[i] = child;
+            this.counts[i] = child.count();
+            this.lows[i] = low(child);
+            this.total += child.count();
+            this.size++;
+        }
+
+        void removeAt(int i) {
+            System.arraycopy(this.children, i + 1, this.children, i, this.size - i - 1);
+            System.arraycopy(this.counts, i + 1, this.counts, i, this.size - i - 1);
+            System.arraycopy(this.lows, i + 1, this.lows, i, this.size - i - 1);
+            this.size--;
+            this.children[this.size] = null;
+            this.lows[this.size] = null;
+        }
+
+        void truncate(int size) {
+            for (int i = size; i < this.size; i++) {
+                this.total -= this.counts[i];
+                this.children[i] = null;
+                this.lows[i] = null;
+            }
+            this.size = size;
+        }
+
+        Inner split() {
+            Inner right = new Inner();
+            for (int i = MIN; i < this.size; i++) {
+                right.children[i - MIN] = this.children[i];
+                right.counts[i - MIN] = this.counts[i];
+                right.lows[i - MIN] = this.lows[i];
+                right.total += this.counts[i];
+            }
+            right.size = this.size - MIN;
+            truncate(MIN);
+            return right;
+        }
+
+        /**
+         * Restores the minimum size of child {@code c} by borrowing from or
+         * merging with a sibling.
+         */
+        void rebalance(int c) {
+            if (this.size == 1) {
+                return;
+            }
+            int left = c > 0 ? c - 1 : c;
+            Node a = this.children[left];
+            Node b = this.children[left + 1];
+            if (a.size + b.size <= MAX) {
+                merge(a, b);
+                this.counts[left] = a.count();
+                removeAt(left + 1);
+            } else {
+                // share evenly between the two siblings
+                int target = (a.size + b.size) / 2;
+                if (a.size < target) {
+                    shiftLeft(a, b, target - a.size);
+                } else {
+                    shiftRight(a, b, a.size - target);
+                }
+                this.counts[left] = a.count();
+                this.counts[left + 1] = b.count();
+                this.lows[left + 1] = low(b);
+            }
+        }
+
+        private static void merge(Node a, Node b) {
+            if (a instanceof Leaf la) {
+                Leaf lb = (Leaf) b;
+                System.arraycopy(lb.keys, 0, la.keys, la.size, lb.size);
+                la.size += lb.size;
+                la.next = lb.next;
+            } else {
+                Inner ia = (Inner) a;
+                Inner ib = (Inner) b;
+                for (int i = 0; i < ib.size; i++) {
+                    ia.children[ia.size] = ib.children[i];
+                    ia.counts[ia.size] = ib.counts[i];
+                    ia.lows[ia.size] = ib.lows[i];
+                    ia.size++;
+                }
+                ia.total += ib.total;
+            }
+        }
+
+        /**
+         * Moves the first {@code n} entries of {@code b} to the end of {@code a}.
+         */
+        private static void shiftLeft(Node a, Node b, int n) {
+            if (a instanceof Leaf la) {
+                Leaf lb = (Leaf) b;
+                System.arraycopy(lb.keys, 0, la.keys, la.size, n);
+                System.arraycopy(lb.keys, n, lb.keys, 0, lb.size - n);
+                Arrays.fill(lb.keys, lb.size - n, lb.size, null);
+                la.size += n;
+                lb.size -= n;
+            } else {
+                Inner ia = (Inner) a;
+                Inner ib = (Inner) b;
+                for (int i = 0; i < n; i++) {
+                    ia.append(ib.children[i]);
+                    ia.lows[ia.size - 1] = ib.lows[i];
+                }
+                int moved = 0;
+                for (int i = 0; i < n; i++) {
+                    moved += ib.counts[i];
+                }
+                System.arraycopy(ib.children, n, ib.children, 0, ib.size - n);
+                System.arraycopy(ib.counts, n, ib.counts, 0, ib.size - n);
+                System.arraycopy(ib.lows, n, ib.lows, 0, ib.size - n);
+                Arrays.fill(ib.children, ib.size - n, ib.size, null);
+                Arrays.fill(ib.lows, ib.size - n, ib.size, null);
+                ib.size -= n;
+                ib.total -= moved;
+            }
+        }
+
+        /**
+         * Moves the last {@code n} entries of {@code a} to the front of {@code b}.
+         */
+        private static void shiftRight(Node a, Node b, int n) {
+            if (a instanceof Leaf la) {
+                Leaf lb = (Leaf) b;
+                System.arraycopy(lb.keys, 0, lb.keys, n, lb.size);
+                System.arraycopy(la.keys, la.size - n, lb.keys, 0, n);
+                Arrays.fill(la.keys, la.size - n, la.size, null);
+                la.size -= n;
+                lb.size += n;
+            } else {
+                Inner ia = (Inner) a;
+                Inner ib = (Inner) b;
+                System.arraycopy(ib.children, 0, ib.children, n, ib.size);
+                System.arraycopy(ib.counts, 0, ib.counts, n, ib.size);
+                System.arraycopy(ib.lows, 0, ib.lows, n, ib.size);
+                int moved = 0;
+                for (int i = 0; i < n; i++) {
+                    int from = ia.size - n + i;
+                    ib.children[i] = ia.children[from];
+                    ib.counts[i] = ia.counts[from];
+                    ib.lows[i] = ia.lows[from];
+                    moved += ia.counts[from];
+                }
+                ib.size += n;
+                ib.total += moved;
+                ia.truncate(ia.size - n);
+            }
+        }
+
+        /**
+         * Returns a lower bound of a node's tuples: its smallest tuple for a
+         * leaf, or the bound of its first child.
+         */
+        private static Tuple<?> low(Node node) {
+            if (node instanceof Leaf leaf) {
+                return leaf.size > 0 ? leaf.keys[0] : null;
+            }
+            return ((Inner) node).lows[0];
+        }
+    }
+
+    /**
+     * An immutable, sorted copy of a {@link TupleRankTree}, safe to share
+     * between threads. Queries binary search a flat array.
+     *
+     * @param <I> the type of the elements
+     */
+    public static final class Snapshot<I extends Comparable<I>> extends AbstractList<Tuple<I>> implements RandomAccess {
+        private final Tuple<I>[] sorted;
+
+        private Snapshot(Tuple<I>[] sorted) {
+            this.sorted = sorted;
+        }
+
+        /**
+         * Returns the k-th smallest tuple; the same as {@link #select(int)}.
+         *
+         * @param k the rank of the tuple (0-based)
+         * @return the tuple
+         * @throws IndexOutOfBoundsException if {@code k} is out of range
+         */
+        @Override
+        public Tuple<I> get(int k) {
+            return this.sorted[Objects.checkIndex(k, this.sorted.length)];
+        }
+
+        @Override
+        public int size() {
+            return this.sorted.length;
+        }
+
+        /**
+         * Returns the k-th smallest tuple.
+         *
+         * @param k the rank of the tuple (0-based)
+         * @return the tuple
+         * @throws IndexOutOfBoundsException if {@code k} is out of range
+         */
+        public Tuple<I> select(int k) {
+            return get(k);
+        }
+
+        /**
+         * Returns the number of tuples smaller than the given one.
+         *
+         * @param tuple the tuple
+         * @return the rank, between {@code 0} and {@link #size()}
+         */
+        public int rank(Tuple<I> tuple) {
+            int lo = 0;
+            int hi = this.sorted.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = this.sorted[mid].compareTo(tuple);
+                if (c < 0) {
+                    lo = mid + 1;
+                } else if (c > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Returns whether the snapshot holds a tuple equal to the given one.
+         *
+         * @param tuple the tuple
+         * @return {@code true} if present
+         */
+        public boolean contains(Tuple<I> tuple) {
+            int i = rank(tuple);
+            return i < this.sorted.length && this.sorted[i].compareTo(tuple) == 0;
+        }
+
+        /**
+         * Returns the number of tuples from {@code from} inclusive to {@code to} exclusive.
+         *
+         * @param from the lower bound
+         * @param to the upper bound
+         * @return the count, {@code 0} if {@code to} is not greater than {@code from}
+         */
+        public int count(Tuple<I> from, Tuple<I> to) {
+            return Math.max(0, rank(to) - rank(from));
+        }
+
+        /**
+         * Returns the tuple at a percentile, by the nearest-rank method.
+         *
+         * @param p the percentile, between {@code 0} and {@code 1}
+         * @return the smallest tuple with at least {@code p} of the tuples at or below it
+         * @throws IllegalArgumentException if {@code p} is out of range
+         * @throws NoSuchElementException if the snapshot is empty
+         */
+        public Tuple<I> percentile(double p) {
+            return this.sorted[percentileRank(p, this.sorted.length)];
+        }
+
+        /**
+         * Returns the tuples from {@code from} inclusive to {@code to} exclusive.
+         *
+         * @param from the lower bound
+         * @param to the upper bound
+         * @return an unmodifiable view of the range
+         */
+        public List<Tuple<I>> range(Tuple<I> from, Tuple<I> to) {
+            int lo = rank(from);
+            return subList(lo, Math.max(lo, rank(to)));
+        }
+    }
+}
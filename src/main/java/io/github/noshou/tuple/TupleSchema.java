@@ -0,0 +1,70 @@
+package io.github.noshou.tuple;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a tuple of mixed element types, for which a class with unboxed
+ * fields is generated at compile time.
+ * <p>
+ * The {@code Tuple} classes share one element type, so a record such as
+ * {@code (long id, int version, String name)} only fits a
+ * {@code Polyad<Comparable>} of boxed elements. Annotating a type with its
+ * schema instead
+ * <pre>
+ * &#64;TupleSchema(value = {long.class, int.class, String.class}, names = {"id", "version", "name"})
+ * interface Order {}
+ * </pre>
+ * makes {@code io.github.noshou.tuple.processor.TupleSchemaProcessor}
+ * generate a final class {@code OrderTuple} in the same package. Since JDK 23
+ * {@code javac} only runs processors found on the class path with
+ * {@code -proc:full}; alternatively, put this library on the processor path,
+ * e.g. in the {@code annotationProcessorPaths} of the Maven compiler plugin.
+ * The generated class holds one field per position, of exactly the declared
+ * type, and provides:
+ * <ul>
+ *   <li>an accessor per field, and a constructor taking them in order;</li>
+ *   <li>{@code compareTo}, the lexicographic order of {@link Tuple#compareTo(Tuple)},
+ *       comparing the fields with their primitive comparisons;</li>
+ *   <li>{@code equals} consistent with it, and a {@code hashCode} computed
+ *       once and cached;</li>
+ *   <li>{@code writeTo(DataOutput)} and {@code readFrom(DataInput)}, writing
+ *       the fields in order without tags;</li>
+ *   <li>{@code toTuple()} and {@code fromTuple(Tuple)}, converting to and from the
+ *       equal generic tuple of boxed elements.</li>
+ * </ul>
+ * The generated code uses no reflection. Elements may be of the eight
+ * primitive types or {@code String}; strings may not be {@code null}.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface TupleSchema {
+
+    /**
+     * Returns the types of the elements, in order.
+     *
+     * @return the element types
+     */
+    Class<?>[] value();
+
+    /**
+     * Returns the names of the fields, in order; {@code item1}, {@code item2},
+     * ... when empty. A name may not be that of a member of the generated
+     * class or of {@code Object}, such as {@code hashCode} or {@code writeTo}.
+     *
+     * @return the field names
+     */
+    String[] names() default {};
+
+    /**
+     * Returns the simple name of the generated class; the name of the
+     * annotated type followed by {@code Tuple} when empty.
+     *
+     * @return the class name
+     */
+    String className() default "";
+}
@@ -0,0 +1,577 @@
+package io.github.noshou.tuple;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable, bulk-loaded spatial index over numeric tuples.
+ * <p>
+ * Each tuple is read as a point whose coordinates are its elements, e.g. a
+ * {@code Triad<Double>} is a point in three dimensions. Two variants are offered,
+ * both answering the same queries:
+ * <ul>
+ *   <li>{@link #kdTree(Collection, boolean)}: a k-d tree splitting at the median
+ *       of the axis of largest spread; best for point data of few dimensions.</li>
+ *   <li>{@link #rTree(Collection, int, boolean)}: an R-tree packed with the
+ *       Sort-Tile-Recursive algorithm; shallower and with fuller nodes.</li>
+ * </ul>
+ * Queries are k-nearest-neighbour ({@link #nearest}), radius ({@link #within})
+ * and axis-aligned box ({@link #range}) searches. Distances are pluggable
+ * through {@link Distance}; {@link Distance#L1}, {@link Distance#L2} and
+ * {@link Distance#LINF} are provided.
+ * <pre>{@code
+ * TupleSpatialIndex<Triad<Double>> index = TupleSpatialIndex.kdTree(points, true);
+ * List<Triad<Double>> closest = index.nearest(new Triad<>(0.0, 0.0, 0.0), 5, Distance.L2);
+ * }</pre>
+ * An index is thread-safe once built.
+ *
+ * @param <T> the type of the indexed tuples; their elements must be {@link Number}s
+ */
+public abstract class TupleSpatialIndex<T extends Tuple<?>> {
+
+    private static final int KD_LEAF_SIZE = 8;
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    /**
+     * The default number of entries of an R-tree node.
+     */
+    public static final int DEFAULT_NODE_CAPACITY = 16;
+
+    final List<T> items;
+    final double[][] coords;
+    final int dimensions;
+    Node root;
+
+    TupleSpatialIndex(Collection<? extends T> points) {
+        this.items = List.copyOf(points);
+        this.dimensions = this.items.isEmpty() ? 0 : this.items.get(0).fetchSize();
+        this.coords = new double[this.items.size()][];
+        for (int i = 0; i < this.coords.length; i++) {
+            this.coords[i] = coordinates(this.items.get(i), this.dimensions);
+        }
+    }
+
+    /**
+     * Bulk loads a k-d tree.
+     *
+     * @param points the tuples to index; all of the same size
+     * @param parallel whether to build independent subtrees in parallel
+     * @param <T> the type of the indexed tuples
+     * @return the index
+     * @throws IllegalArgumentException if the tuples differ in size
+     * @throws ClassCastException if an element is not a {@link Number}
+     */
+    public static <T extends Tuple<?>> TupleSpatialIndex<T> kdTree(Collection<? extends T> points, boolean parallel) {
+        TupleMetrics.BulkBuildEvent event = TupleMetrics.ENABLED ? TupleMetrics.beginBuild() : null;
+        TupleSpatialIndex<T> index = new KdTree<>(points, parallel);
+        if (event != null) {
+            TupleMetrics.endBuild(event, "TupleSpatialIndex.kdTree", points.size());
+        }
+        return index;
+    }
+
+    /**
+     * Bulk loads an R-tree with {@link #DEFAULT_NODE_CAPACITY} entries per node.
+     *
+     * @param points the tuples to index; all of the same size
+     * @param parallel whether to tile and pack independent slabs in parallel
+     * @param <T> the type of the indexed tuples
+     * @return the index
+     * @throws IllegalArgumentException if the tuples differ in size
+     * @throws ClassCastException if an element is not a {@link Number}
+     */
+    public static <T extends Tuple<?>> TupleSpatialIndex<T> rTree(Collection<? extends T> points, boolean parallel) {
+        return rTree(points, DEFAULT_NODE_CAPACITY, parallel);
+    }
+
+    /**
+     * Bulk loads an R-tree.
+     *
+     * @param points the tuples to index; all of the same size
+     * @param nodeCapacity the maximum number of entries per node, at least {@code 2}
+     * @param parallel whether to tile and pack independent slabs in parallel
+     * @param <T> the type of the indexed tuples
+     * @return the index
+     * @throws IllegalArgumentException if the tuples differ in size or the capacity is too small
+     * @throws ClassCastException if an element is not a {@link Number}
+     */
+    public static <T extends Tuple<?>> TupleSpatialIndex<T> rTree(Collection<? extends T> points, int nodeCapacity,
+                                                                   boolean parallel) {
+        if (nodeCapacity < 2) {
+            throw new IllegalArgumentException("An R-tree node must hold at least 2 entries!");
+        }
+        TupleMetrics.BulkBuildEvent event = TupleMetrics.ENABLED ? TupleMetrics.beginBuild() : null;
+        TupleSpatialIndex<T> index = new RTree<>(points, nodeCapacity, parallel);
+        if (event != null) {
+            TupleMetrics.endBuild(event, "TupleSpatialIndex.rTree", points.size());
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of indexed tuples.
+     *
+     * @return the number of tuples
+     */
+    public int size() {
+        return this.items.size();
+    }
+
+    /**
+     * Returns the number of dimensions, i.e. the size of the indexed tuples;
+     * {@code 0} for an empty index, which answers every query with no tuples.
+     *
+     * @return the number of dimensions
+     */
+    public int dimensions() {
+        return this.dimensions;
+    }
+
+    /**
+     * Finds the {@code k} tuples closest to a query point.
+     *
+     * @param query the query point
+     * @param k the number of tuples to return
+     * @param distance the distance function
+     * @return up to {@code k} tuples, closest first
+     */
+    public List<T> nearest(Tuple<?> query, int k, Distance distance) {
+        if (this.root == null) {
+            return List.of();
+        }
+        return nearest(coordinates(query, this.dimensions), k, distance);
+    }
+
+    /**
+     * Finds the {@code k} tuples closest to a query point given as coordinates.
+     *
+     * @param query the query coordinates
+     * @param k the number of tuples to return
+     * @param distance the distance function
+     * @return up to {@code k} tuples, closest first
+     * @throws IllegalArgumentException if the query has the wrong number of dimensions
+     */
+    public List<T> nearest(double[] query, int k, Distance distance) {
+        if (k <= 0 || this.root == null) {
+            return List.of();
+        }
+        checkDimensions(query);
+        // best-first search: nodes ordered by the distance to their bounding box
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.distance));
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.distance).reversed());
+        frontier.add(new Candidate(distance.toBox(query, this.root.min, this.root.max), this.root, -1));
+        while (!frontier.isEmpty()) {
+            Candidate c = frontier.poll();
+            if (best.size() == k && c.distance > best.peek().distance) {
+                break;
+            }
+            if (c.node.points != null) {
+                for (int p : c.node.points) {
+                    double d = distance.between(query, this.coords[p]);
+                    if (best.size() < k) {
+                        best.add(new Candidate(d, null, p));
+                    } else if (d < best.peek().distance) {
+                        best.poll();
+                        best.add(new Candidate(d, null, p));
+                    }
+                }
+            } else {
+                for (Node child : c.node.children) {
+                    double d = distance.toBox(query, child.min, child.max);
+                    if (best.size() < k || d < best.peek().distance) {
+                        frontier.add(new Candidate(d, child, -1));
+                    }
+                }
+            }
+        }
+        Candidate[] sorted = best.toArray(new Candidate[0]);
+        Arrays.sort(sorted, Comparator.comparingDouble((Candidate c) -> c.distance));
+        List<T> result = new ArrayList<>(sorted.length);
+        for (Candidate c : sorted) {
+            result.add(this.items.get(c.point));
+        }
+        return result;
+    }
+
+    /**
+     * Finds every tuple within {@code radius} of a query point.
+     *
+     * @param query the query point
+     * @param radius the maximum distance, inclusive
+     * @param distance the distance function
+     * @return the matching tuples, in no particular order
+     */
+    public List<T> within(Tuple<?> query, double radius, Distance distance) {
+        List<T> result = new ArrayList<>();
+        if (this.root != null) {
+            within(this.root, coordinates(query, this.dimensions), radius, distance, result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds every tuple inside an axis-aligned box.
+     *
+     * @param min the lower corner of the box, inclusive
+     * @param max the upper corner of the box, inclusive
+     * @return the matching tuples, in no particular order
+     */
+    public List<T> range(Tuple<?> min, Tuple<?> max) {
+        if (this.root == null) {
+            return new ArrayList<>();
+        }
+        return range(coordinates(min, this.dimensions), coordinates(max, this.dimensions));
+    }
+
+    /**
+     * Finds every tuple inside an axis-aligned box given as coordinates.
+     *
+     * @param min the lower corner of the box, inclusive
+     * @param max the upper corner of the box, inclusive
+     * @return the matching tuples, in no particular order
+     * @throws IllegalArgumentException if a corner has the wrong number of dimensions
+     */
+    public List<T> range(double[] min, double[] max) {
+        List<T> result = new ArrayList<>();
+        if (this.root != null) {
+            checkDimensions(min);
+            checkDimensions(max);
+            range(this.root, min, max, result);
+        }
+        return result;
+    }
+
+    private void within(Node node, double[] query, double radius, Distance distance, List<T> result) {
+        if (distance.toBox(query, node.min, node.max) > radius) {
+            return;
+        }
+        if (node.points != null) {
+            for (int p : node.points) {
+                if (distance.between(query, this.coords[p]) <= radius) {
+                    result.add(this.items.get(p));
+                }
+            }
+        } else {
+            for (Node child : node.children) {
+                within(child, query, radius, distance, result);
+            }
+        }
+    }
+
+    private void range(Node node, double[] min, double[] max, List<T> result) {
+        for (int d = 0; d < this.dimensions; d++) {
+            if (node.max[d] < min[d] || node.min[d] > max[d]) {
+                return;
+            }
+        }
+        if (node.points != null) {
+            for (int p : node.points) {
+                if (inside(this.coords[p], min, max)) {
+                    result.add(this.items.get(p));
+                }
+            }
+        } else {
+            for (Node child : node.children) {
+                range(child, min, max, result);
+            }
+        }
+    }
+
+    private boolean inside(double[] point, double[] min, double[] max) {
+        for (int d = 0; d < this.dimensions; d++) {
+            if (point[d] < min[d] || point[d] > max[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkDimensions(double[] point) {
+        if (point.length != this.dimensions) {
+            throw new IllegalArgumentException("Expected " + this.dimensions + " dimensions, got " + point.length + "!");
+        }
+    }
+
+    private static double[] coordinates(Tuple<?> tuple, int dimensions) {
+        if (tuple.fetchSize() != dimensions) {
+            throw new IllegalArgumentException("All tuples in a spatial index must be of the same size!");
+        }
+        double[] point = new double[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+            point[d] = ((Number) tuple.fetch(d)).doubleValue();
+        }
+        return point;
+    }
+
+    /**
+     * Sorts a range of point indices by one coordinate of their points.
+     */
+    static void sortByAxis(int[] idx, int from, int to, double[][] points, int axis) {
+        Integer[] boxed = new Integer[to - from];
+        for (int i = from; i < to; i++) {
+            boxed[i - from] = idx[i];
+        }
+        Arrays.sort(boxed, Comparator.comparingDouble((Integer i) -> points[i][axis]));
+        for (int i = from; i < to; i++) {
+            idx[i] = boxed[i - from];
+        }
+    }
+
+    /**
+     * A distance function between points, together with a lower bound of the
+     * distance from a point to any point of a box, used to prune the search.
+     */
+    public interface Distance {
+
+        /**
+         * Manhattan distance: the sum of absolute coordinate differences.
+         */
+        Distance L1 = new Minkowski(false, false);
+
+        /**
+         * Euclidean distance.
+         */
+        Distance L2 = new Minkowski(true, false);
+
+        /**
+         * Chebyshev distance: the largest absolute coordinate difference.
+         */
+        Distance LINF = new Minkowski(false, true);
+
+        /**
+         * Returns the distance between two points.
+         *
+         * @param a the first point
+         * @param b the second point
+         * @return the distance, non-negative
+         */
+        double between(double[] a, double[] b);
+
+        /**
+         * Returns the smallest distance from a point to any point of a box; zero
+         * if the point is inside. Must never exceed the true distance.
+         *
+         * @param point the point
+         * @param min the lower corner of the box
+         * @param max the upper corner of the box
+         * @return the lower bound of the distance
+         */
+        double toBox(double[] point, double[] min, double[] max);
+    }
+
+    /**
+     * The L1, L2 and L∞ distances.
+     */
+    private record Minkowski(boolean euclidean, boolean chebyshev) implements Distance {
+
+        @Override
+        public double between(double[] a, double[] b) {
+            double acc = 0;
+            for (int d = 0; d < a.length; d++) {
+                acc = accumulate(acc, Math.abs(a[d] - b[d]));
+            }
+            return euclidean ? Math.sqrt(acc) : acc;
+        }
+
+        @Override
+        public double toBox(double[] point, double[] min, double[] max) {
+            double acc = 0;
+            for (int d = 0; d < point.length; d++) {
+                double delta = point[d] < min[d] ? min[d] - point[d] : point[d] > max[d] ? point[d] - max[d] : 0;
+                acc = accumulate(acc, delta);
+            }
+            return euclidean ? Math.sqrt(acc) : acc;
+        }
+
+        private double accumulate(double acc, double delta) {
+            return chebyshev ? Math.max(acc, delta) : acc + (euclidean ? delta * delta : delta);
+        }
+    }
+
+    /**
+     * A tree node: either a leaf holding point indices or an inner node
+     * holding children, with the bounding box of everything below it.
+     */
+    static final class Node {
+        final double[] min;
+        final double[] max;
+        final Node[] children;
+        final int[] points;
+
+        Node(double[] min, double[] max, Node[] children, int[] points) {
+            this.min = min;
+            this.max = max;
+            this.children = children;
+            this.points = points;
+        }
+
+        static Node leaf(int[] points, double[][] coords, int dimensions) {
+            double[] min = new double[dimensions];
+            double[] max = new double[dimensions];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            for (int p : points) {
+                for (int d = 0; d < dimensions; d++) {
+                    min[d] = Math.min(min[d], coords[p][d]);
+                    max[d] = Math.max(max[d], coords[p][d]);
+                }
+            }
+            return new Node(min, max, null, points);
+        }
+
+        static Node inner(Node[] children, int dimensions) {
+            double[] min = children[0].min.clone();
+            double[] max = children[0].max.clone();
+            for (Node child : children) {
+                for (int d = 0; d < dimensions; d++) {
+                    min[d] = Math.min(min[d], child.min[d]);
+                    max[d] = Math.max(max[d], child.max[d]);
+                }
+            }
+            return new Node(min, max, children, null);
+        }
+    }
+
+    private record Candidate(double distance, Node node, int point) {
+    }
+
+    /**
+     * A k-d tree: each inner node splits its points at the median of the axis
+     * with the largest spread.
+     */
+    private static final class KdTree<T extends Tuple<?>> extends TupleSpatialIndex<T> {
+
+        KdTree(Collection<? extends T> points, boolean parallel) {
+            super(points);
+            if (!this.items.isEmpty()) {
+                int[] idx = IntStream.range(0, this.items.size()).toArray();
+                Build build = new Build(idx, 0, idx.length, parallel);
+                if (parallel) {
+                    ForkJoinPool.commonPool().invoke(build);
+                } else {
+                    build.compute();
+                }
+                this.root = build.result;
+            }
+        }
+
+        @SuppressWarnings("serial") // a fork/join task, never serialized
+        private final class Build extends RecursiveAction {
+            private final int[] idx;
+            private final int from;
+            private final int to;
+            private final boolean parallel;
+            Node result;
+
+            Build(int[] idx, int from, int to, boolean parallel) {
+                this.idx = idx;
+                this.from = from;
+                this.to = to;
+                this.parallel = parallel;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= KD_LEAF_SIZE) {
+                    result = Node.leaf(Arrays.copyOfRange(idx, from, to), coords, dimensions);
+                    return;
+                }
+                Node box = Node.leaf(Arrays.copyOfRange(idx, from, to), coords, dimensions);
+                int axis = 0;
+                for (int d = 1; d < dimensions; d++) {
+                    if (box.max[d] - box.min[d] > box.max[axis] - box.min[axis]) {
+                        axis = d;
+                    }
+                }
+                sortByAxis(idx, from, to, coords, axis);
+                int mid = (from + to) >>> 1;
+                Build left = new Build(idx, from, mid, parallel);
+                Build right = new Build(idx, mid, to, parallel);
+                if (parallel && to - from > PARALLEL_THRESHOLD) {
+                    invokeAll(left, right);
+                } else {
+                    left.compute();
+                    right.compute();
+                }
+                result = Node.inner(new Node[]{left.result, right.result}, dimensions);
+            }
+        }
+    }
+
+    /**
+     * An R-tree packed bottom-up with the Sort-Tile-Recursive algorithm.
+     */
+    private static final class RTree<T extends Tuple<?>> extends TupleSpatialIndex<T> {
+        private final int capacity;
+        private final boolean parallel;
+
+        RTree(Collection<? extends T> points, int capacity, boolean parallel) {
+            super(points);
+            this.capacity = capacity;
+            this.parallel = parallel;
+            if (this.items.isEmpty()) {
+                return;
+            }
+
+            // leaves: tile the points themselves
+            int[] idx = IntStream.range(0, this.items.size()).toArray();
+            List<int[]> groups = tile(idx, 0, idx.length, 0, this.coords);
+            Node[] level = new Node[groups.size()];
+            for (int i = 0; i < level.length; i++) {
+                level[i] = Node.leaf(groups.get(i), this.coords, this.dimensions);
+            }
+
+            // upper levels: tile the centers of the level below until one node remains
+            while (level.length > 1) {
+                double[][] centers = new double[level.length][this.dimensions];
+                for (int i = 0; i < level.length; i++) {
+                    for (int d = 0; d < this.dimensions; d++) {
+                        centers[i][d] = (level[i].min[d] + level[i].max[d]) / 2;
+                    }
+                }
+                int[] nodes = IntStream.range(0, level.length).toArray();
+                List<int[]> parents = tile(nodes, 0, nodes.length, 0, centers);
+                Node[] next = new Node[parents.size()];
+                for (int i = 0; i < next.length; i++) {
+                    int[] group = parents.get(i);
+                    Node[] children = new Node[group.length];
+                    for (int c = 0; c < group.length; c++) {
+                        children[c] = level[group[c]];
+                    }
+                    next[i] = Node.inner(children, this.dimensions);
+                }
+                level = next;
+            }
+            this.root = level[0];
+        }
+
+        /**
+         * Splits a range of entries into groups of at most {@link #capacity}
+         * spatially close entries, slicing along one axis at a time.
+         */
+        private List<int[]> tile(int[] idx, int from, int to, int axis, double[][] points) {
+            int n = to - from;
+            sortByAxis(idx, from, to, points, axis);
+            if (axis == this.dimensions - 1 || n <= this.capacity) {
+                List<int[]> groups = new ArrayList<>();
+                for (int i = from; i < to; i += this.capacity) {
+                    groups.add(Arrays.copyOfRange(idx, i, Math.min(to, i + this.capacity)));
+                }
+                return groups;
+            }
+            int pages = (n + this.capacity - 1) / this.capacity;
+            int slabs = (int) Math.ceil(Math.pow(pages, 1.0 / (this.dimensions - axis)));
+            int slabSize = ((pages + slabs - 1) / slabs) * this.capacity;
+            IntStream starts = IntStream.range(0, (n + slabSize - 1) / slabSize).map(i -> from + i * slabSize);
+            if (this.parallel && n > PARALLEL_THRESHOLD) {
+                starts = starts.parallel();
+            }
+            return starts.mapToObj(s -> tile(idx, s, Math.min(to, s + slabSize), axis + 1, points))
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList());
+        }
+    }
+}
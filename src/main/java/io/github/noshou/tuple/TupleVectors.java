@@ -0,0 +1,205 @@
+package io.github.noshou.tuple;
+
+import java.util.Objects;
+
+/**
+ * SIMD kernels for numeric tuples held as primitive arrays.
+ * <p>
+ * A primitive tuple is an array whose positions are the tuple's elements; a
+ * batch of tuples is held column-wise, one array per position. The kernels
+ * follow the conventions of {@link Tuple}: {@link #compare(long[], long[])} is
+ * the lexicographic order of {@link Tuple#compareTo(Tuple)}, and minimum and
+ * maximum report the first position holding the extreme value, like
+ * {@link Tuple#fetchSmallest()} and {@link Tuple#fetchLargest()}.
+ * Minimum and maximum cover {@code long}, {@code int} and {@code double}
+ * tuples; mismatch, comparison and equality cover {@code long} and {@code int}
+ * tuples, and batch comparison {@code long} columns only.
+ * <p>
+ * When the library is built with the {@code vector} Maven profile and the JVM
+ * is started with {@code --add-modules jdk.incubator.vector}, the kernels use
+ * the Vector API; otherwise, or when the system property
+ * {@code io.github.noshou.tuple.scalar} is {@code true}, equivalent scalar loops
+ * are used. Both produce identical results.
+ */
+public final class TupleVectors {
+
+    private static final Kernels KERNELS = Kernels.load();
+
+    private TupleVectors() {
+    }
+
+    /**
+     * Returns whether the Vector API implementations are in use.
+     *
+     * @return {@code true} if the kernels are vectorized, {@code false} for the scalar fallback
+     */
+    public static boolean isAccelerated() {
+        return KERNELS.accelerated();
+    }
+
+    /**
+     * Returns the first position of the smallest element.
+     *
+     * @param tuple the elements
+     * @return the index of the smallest element, {@code -1} if {@code tuple} is empty
+     */
+    public static int indexOfMin(long[] tuple) {
+        return KERNELS.indexOfMin(tuple, 0, tuple.length);
+    }
+
+    /**
+     * Returns the first position of the largest element.
+     *
+     * @param tuple the elements
+     * @return the index of the largest element, {@code -1} if {@code tuple} is empty
+     */
+    public static int indexOfMax(long[] tuple) {
+        return KERNELS.indexOfMax(tuple, 0, tuple.length);
+    }
+
+    /**
+     * Returns the first position of the smallest element.
+     *
+     * @param tuple the elements
+     * @return the index of the smallest element, {@code -1} if {@code tuple} is empty
+     */
+    public static int indexOfMin(int[] tuple) {
+        return KERNELS.indexOfMin(tuple, 0, tuple.length);
+    }
+
+    /**
+     * Returns the first position of the largest element.
+     *
+     * @param tuple the elements
+     * @return the index of the largest element, {@code -1} if {@code tuple} is empty
+     */
+    public static int indexOfMax(int[] tuple) {
+        return KERNELS.indexOfMax(tuple, 0, tuple.length);
+    }
+
+    /**
+     * Returns the first position of the smallest element, ordered as by
+     * {@link Double#compare(double, double)}: {@code -0.0} is smaller than
+     * {@code 0.0} and NaN is larger than every other value.
+     *
+     * @param tuple the elements
+     * @return the index of the smallest element, {@code -1} if {@code tuple} is empty
+     */
+    public static int indexOfMin(double[] tuple) {
+        return KERNELS.indexOfMin(tuple, 0, tuple.length);
+    }
+
+    /**
+     * Returns the first position of the largest element, ordered as by
+     * {@link Double#compare(double, double)}.
+     *
+     * @param tuple the elements
+     * @return the index of the largest element, {@code -1} if {@code tuple} is empty
+     */
+    public static int indexOfMax(double[] tuple) {
+        return KERNELS.indexOfMax(tuple, 0, tuple.length);
+    }
+
+    /**
+     * Returns the first position at which two tuples differ.
+     *
+     * @param a the first tuple
+     * @param b the second tuple
+     * @return the first differing position, the length of the shorter tuple if
+     *         one is a prefix of the other, or {@code -1} if both are equal
+     */
+    public static int mismatch(long[] a, long[] b) {
+        int n = Math.min(a.length, b.length);
+        int i = KERNELS.mismatch(a, b, n);
+        return i >= 0 ? i : a.length == b.length ? -1 : n;
+    }
+
+    /**
+     * Returns the first position at which two tuples differ.
+     *
+     * @param a the first tuple
+     * @param b the second tuple
+     * @return the first differing position, the length of the shorter tuple if
+     *         one is a prefix of the other, or {@code -1} if both are equal
+     */
+    public static int mismatch(int[] a, int[] b) {
+        int n = Math.min(a.length, b.length);
+        int i = KERNELS.mismatch(a, b, n);
+        return i >= 0 ? i : a.length == b.length ? -1 : n;
+    }
+
+    /**
+     * Compares two tuples lexicographically, as {@link Tuple#compareTo(Tuple)} does.
+     *
+     * @param a the first tuple
+     * @param b the second tuple
+     * @return {@code -1}, {@code 0} or {@code 1} as {@code a} is smaller than,
+     *         equal to or greater than {@code b}
+     */
+    public static int compare(long[] a, long[] b) {
+        int n = Math.min(a.length, b.length);
+        int i = KERNELS.mismatch(a, b, n);
+        return i >= 0 ? (a[i] < b[i] ? -1 : 1) : Integer.signum(a.length - b.length);
+    }
+
+    /**
+     * Compares two tuples lexicographically, as {@link Tuple#compareTo(Tuple)} does.
+     *
+     * @param a the first tuple
+     * @param b the second tuple
+     * @return {@code -1}, {@code 0} or {@code 1} as {@code a} is smaller than,
+     *         equal to or greater than {@code b}
+     */
+    public static int compare(int[] a, int[] b) {
+        int n = Math.min(a.length, b.length);
+        int i = KERNELS.mismatch(a, b, n);
+        return i >= 0 ? (a[i] < b[i] ? -1 : 1) : Integer.signum(a.length - b.length);
+    }
+
+    /**
+     * Returns whether two tuples hold the same elements in the same order.
+     *
+     * @param a the first tuple
+     * @param b the second tuple
+     * @return {@code true} if both tuples are equal
+     */
+    public static boolean equals(long[] a, long[] b) {
+        return a.length == b.length && KERNELS.mismatch(a, b, a.length) < 0;
+    }
+
+    /**
+     * Returns whether two tuples hold the same elements in the same order.
+     *
+     * @param a the first tuple
+     * @param b the second tuple
+     * @return {@code true} if both tuples are equal
+     */
+    public static boolean equals(int[] a, int[] b) {
+        return a.length == b.length && KERNELS.mismatch(a, b, a.length) < 0;
+    }
+
+    /**
+     * Compares every tuple of a column-wise batch against a probe tuple of the
+     * same size, storing {@code -1}, {@code 0} or {@code 1} for each row as by
+     * {@link #compare(long[], long[])}.
+     *
+     * @param columns the batch, one array per position, each holding at least {@code count} rows
+     * @param count the number of rows to compare
+     * @param probe the tuple to compare against
+     * @param out receives the result for each row; must hold at least {@code count} entries
+     * @throws IllegalArgumentException if the probe and the batch differ in size
+     * @throws IndexOutOfBoundsException if {@code count} is negative, or a column
+     *         or {@code out} holds fewer than {@code count} entries
+     */
+    public static void compareAll(long[][] columns, int count, long[] probe, int[] out) {
+        if (probe.length != columns.length) {
+            throw new IllegalArgumentException("The probe must have one element per column!");
+        }
+        // checked up front, so a short array fails before any result is written
+        Objects.checkFromIndexSize(0, count, out.length);
+        for (long[] column : columns) {
+            Objects.checkFromIndexSize(0, count, column.length);
+        }
+        KERNELS.compareAll(columns, 0, count, probe, out);
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.noshou.tuple;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Base class of tuples whose elements are not held in the backing map but read
+ * on demand through {@link #fetch(int)}, such as rows of a columnar store.
+ * <p>
+ * Implements the methods of {@link Tuple} that would otherwise read the map in
+ * terms of {@link #fetch(int)}. Views cannot be reordered in place. Two views
+ * are equal if they are of the same class and hold equal elements in the same
+ * order.
+ *
+ * @param <I> the type of items in the tuple
+ */
+abstract class TupleView<I extends Comparable<I>> extends Tuple<I> {
+
+    TupleView(int size) {
+        super(size);
+    }
+
+    @Override
+    public I fetchSmallest() {
+        I smallest = null;
+        for (int i = 0; i < fetchSize(); i++) {
+            I item = fetch(i);
+            if (smallest == null || item.compareTo(smallest) < 0) {
+                smallest = item;
+            }
+        }
+        return smallest;
+    }
+
+    @Override
+    public I fetchLargest() {
+        I largest = null;
+        for (int i = 0; i < fetchSize(); i++) {
+            I item = fetch(i);
+            if (largest == null || item.compareTo(largest) > 0) {
+                largest = item;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Not supported: a view cannot reorder the storage it reads from.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void sortNatural() {
+        throw new UnsupportedOperationException("A tuple view cannot be reordered!");
+    }
+
+    /**
+     * Not supported: a view cannot reorder the storage it reads from.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void sortReverseNatural() {
+        throw new UnsupportedOperationException("A tuple view cannot be reordered!");
+    }
+
+    @Override
+    public Iterator<I> iterator() {
+        return new Iterator<>() {
+            private int idx;
+
+            @Override
+            public boolean hasNext() {
+                return idx < fetchSize();
+            }
+
+            @Override
+            public I next() {
+                if (idx >= fetchSize()) {
+                    throw new NoSuchElementException();
+                }
+                return fetch(idx++);
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        if (TupleMetrics.ENABLED) {
+            TupleMetrics.hashed();
+        }
+        int h = 1;
+        for (int i = 0; i < fetchSize(); i++) {
+            h = 31 * h + Objects.hashCode(fetch(i));
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        Tuple<?> other = (Tuple<?>) obj;
+        if (other.fetchSize() != fetchSize()) return false;
+        for (int i = 0; i < fetchSize(); i++) {
+            if (!Objects.equals(fetch(i), other.fetch(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package io.github.noshou.tuple;
+
+/**
+ * Static helpers operating on {@link Tuple}s, including factories that avoid
+ * needless allocation:
+ * <pre>{@code
+ * Tuple<Long> t = Tuples.of(1L, 2L, 3L);   // a Triad
+ * Nullad<String> empty = Tuples.of();      // shared
+ * Monad<Integer> one = Tuples.of(1);       // cached
+ * }</pre>
+ * Only {@link Nullad}s and {@link Monad}s are shared: their element order cannot
+ * change, whereas {@link Tuple#sortNatural()} reorders longer tuples in place.
+ * Small {@code Integer}, {@code Long} and {@code Boolean} monads are cached
+ * unless the system property {@code io.github.noshou.tuple.monadCache} is
+ * {@code false}.
+ */
+public final class Tuples {
+
+    private static final TupleCurve Z_ORDER = TupleCurve.zOrder(32);
+    private static final TupleCurve HILBERT = TupleCurve.hilbert(32);
+
+    private static final boolean MONAD_CACHE =
+            Boolean.parseBoolean(System.getProperty("io.github.noshou.tuple.monadCache", "true"));
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 127;
+
+    @SuppressWarnings("rawtypes")
+    private static final Nullad NULLAD = new Nullad();
+    // filled lazily; a racing thread at worst builds an equal monad twice
+    @SuppressWarnings("rawtypes")
+    private static final Monad[] INTEGER_MONADS = new Monad[CACHE_HIGH - CACHE_LOW + 1];
+    @SuppressWarnings("rawtypes")
+    private static final Monad[] LONG_MONADS = new Monad[CACHE_HIGH - CACHE_LOW + 1];
+    private static final Monad<Boolean> TRUE = new Monad<>(Boolean.TRUE);
+    private static final Monad<Boolean> FALSE = new Monad<>(Boolean.FALSE);
+
+    private Tuples() {
+    }
+
+    /**
+     * Returns the shared empty tuple.
+     *
+     * @param <I> the (unused) type of the elements
+     * @return the Nullad
+     */
+    @SuppressWarnings("unchecked")
+    public static <I extends Comparable<I>> Nullad<I> of() {
+        return (Nullad<I>) NULLAD;
+    }
+
+    /**
+     * Returns a tuple of one element, shared for small {@code Integer} and
+     * {@code Long} values and for {@code Boolean}s.
+     *
+     * @param item the element
+     * @param <I> the type of the element
+     * @return a Monad holding {@code item}
+     */
+    @SuppressWarnings("unchecked")
+    public static <I extends Comparable<I>> Monad<I> of(I item) {
+        if (MONAD_CACHE) {
+            if (item instanceof Integer n && n >= CACHE_LOW && n <= CACHE_HIGH) {
+                return (Monad<I>) cached(INTEGER_MONADS, n, item);
+            }
+            if (item instanceof Long l && l >= CACHE_LOW && l <= CACHE_HIGH) {
+                return (Monad<I>) cached(LONG_MONADS, (int) (long) l, item);
+            }
+            if (item instanceof Boolean b) {
+                return (Monad<I>) (b ? TRUE : FALSE);
+            }
+        }
+        return new Monad<>(item);
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Monad cached(Monad[] cache, int value, Comparable item) {
+        Monad monad = cache[value - CACHE_LOW];
+        if (monad == null) {
+            monad = new Monad(item);
+            cache[value - CACHE_LOW] = monad;
+        }
+        return monad;
+    }
+
+    /**
+     * Returns a tuple of two elements.
+     *
+     * @param item1 the first element
+     * @param item2 the second element
+     * @param <I> the type of the elements
+     * @return a new Dyad
+     */
+    public static <I extends Comparable<I>> Dyad<I> of(I item1, I item2) {
+        return new Dyad<>(item1, item2);
+    }
+
+    /**
+     * Returns a tuple of three elements.
+     *
+     * @param item1 the first element
+     * @param item2 the second element
+     * @param item3 the third element
+     * @param <I> the type of the elements
+     * @return a new Triad
+     */
+    public static <I extends Comparable<I>> Triad<I> of(I item1, I item2, I item3) {
+        return new Triad<>(item1, item2, item3);
+    }
+
+    /**
+     * Returns a tuple of the given elements, as an instance of the class of
+     * that arity, from {@link Nullad} to {@link Icosad}, or as a {@link Polyad}
+     * beyond twenty elements. The array is copied; use
+     * {@link Polyad#wrap(Comparable[])} to hand an array over instead.
+     *
+     * @param items the elements
+     * @param <I> the type of the elements
+     * @return a tuple equal to {@code new <Arity>(items...)}
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") // items is only read, never stored or exposed
+    public static <I extends Comparable<I>> Tuple<I> of(I... items) {
+        // the fixed arities read the array directly instead of repacking it
+        return switch (items.length) {
+            case 0 -> of();
+            case 1 -> of(items[0]);
+            case 2 -> new Dyad<>(items);
+            case 3 -> new Triad<>(items);
+            case 4 -> new Tetrad<>(items);
+            case 5 -> new Pentad<>(items);
+            case 6 -> new Hexad<>(items);
+            case 7 -> new Heptad<>(items);
+            case 8 -> new Octad<>(items);
+            case 9 -> new Ennead<>(items);
+            case 10 -> new Decad<>(items);
+            case 11 -> new Hendecad<>(items);
+            case 12 -> new Dodecad<>(items);
+            case 13 -> new Triskaidecad<>(items);
+            case 14 -> new Tetrakaidecad<>(items);
+            case 15 -> new Pentakaidecad<>(items);
+            case 16 -> new Hexakaidecad<>(items);
+            case 17 -> new Heptakaidecad<>(items);
+            case 18 -> new Octakaidecad<>(items);
+            case 19 -> new Enneakaidecad<>(items);
+            case 20 -> new Icosad<>(items);
+            default -> new Polyad<>(items);
+        };
+    }
+
+    /**
+     * Returns the Z-order (Morton) key of a tuple of 32-bit integers, obtained
+     * by interleaving the bits of its elements.
+     *
+     * @param tuple the tuple; elements must fit in an {@code int}
+     * @return the Z-order key
+     * @throws IllegalArgumentException if an element is out of range
+     * @see TupleCurve#zOrder(int, int) for other widths and fixed-point elements
+     */
+    public static TupleCurve.Key zOrderKey(Tuple<? extends Number> tuple) {
+        return Z_ORDER.key(tuple);
+    }
+
+    /**
+     * Returns the Hilbert curve key of a tuple of 32-bit integers.
+     *
+     * @param tuple the tuple; elements must fit in an {@code int}
+     * @return the Hilbert key
+     * @throws IllegalArgumentException if an element is out of range
+     * @see TupleCurve#hilbert(int, int) for other widths and fixed-point elements
+     */
+    public static TupleCurve.Key hilbertKey(Tuple<? extends Number> tuple) {
+        return HILBERT.key(tuple);
+    }
+
+    /**
+     * Returns the ordering of tuples of 32-bit integers along the Z-order curve.
+     *
+     * @return the Z-order curve, usable as a {@link java.util.Comparator}
+     */
+    public static TupleCurve zOrder() {
+        return Z_ORDER;
+    }
+
+    /**
+     * Returns the ordering of tuples of 32-bit integers along the Hilbert curve.
+     *
+     * @return the Hilbert curve, usable as a {@link java.util.Comparator}
+     */
+    public static TupleCurve hilbertOrder() {
+        return HILBERT;
+    }
+}
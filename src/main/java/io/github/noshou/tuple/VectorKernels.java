@@ -0,0 +1,235 @@
+package io.github.noshou.tuple;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link Kernels} implemented with the {@code jdk.incubator.vector} API.
+ * <p>
+ * Only loaded reflectively by {@link Kernels#load()}. Inputs shorter than two
+ * vectors are handed to the scalar kernels, which are faster at that size.
+ */
+final class VectorKernels extends Kernels {
+
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final long CANONICAL_NAN = Double.doubleToLongBits(Double.NaN);
+
+    @Override
+    boolean accelerated() {
+        return true;
+    }
+
+    @Override
+    int indexOfMin(long[] a, int from, int to) {
+        return indexOf(a, from, to, VectorOperators.MIN);
+    }
+
+    @Override
+    int indexOfMax(long[] a, int from, int to) {
+        return indexOf(a, from, to, VectorOperators.MAX);
+    }
+
+    private int indexOf(long[] a, int from, int to, VectorOperators.Associative op) {
+        int step = LONGS.length();
+        if (to - from < 2 * step) {
+            return op == VectorOperators.MIN ? super.indexOfMin(a, from, to) : super.indexOfMax(a, from, to);
+        }
+        int bound = from + LONGS.loopBound(to - from);
+        LongVector acc = LongVector.fromArray(LONGS, a, from);
+        int i = from + step;
+        for (; i < bound; i += step) {
+            acc = acc.lanewise(op, LongVector.fromArray(LONGS, a, i));
+        }
+        long best = acc.reduceLanes(op);
+        for (; i < to; i++) {
+            best = op == VectorOperators.MIN ? Math.min(best, a[i]) : Math.max(best, a[i]);
+        }
+
+        // first position holding the extreme value
+        LongVector target = LongVector.broadcast(LONGS, best);
+        for (i = from; i < bound; i += step) {
+            VectorMask<Long> hit = LongVector.fromArray(LONGS, a, i).eq(target);
+            if (hit.anyTrue()) {
+                return i + hit.firstTrue();
+            }
+        }
+        for (; i < to; i++) {
+            if (a[i] == best) {
+                return i;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    int indexOfMin(int[] a, int from, int to) {
+        return indexOf(a, from, to, VectorOperators.MIN);
+    }
+
+    @Override
+    int indexOfMax(int[] a, int from, int to) {
+        return indexOf(a, from, to, VectorOperators.MAX);
+    }
+
+    private int indexOf(int[] a, int from, int to, VectorOperators.Associative op) {
+        int step = INTS.length();
+        if (to - from < 2 * step) {
+            return op == VectorOperators.MIN ? super.indexOfMin(a, from, to) : super.indexOfMax(a, from, to);
+        }
+        int bound = from + INTS.loopBound(to - from);
+        IntVector acc = IntVector.fromArray(INTS, a, from);
+        int i = from + step;
+        for (; i < bound; i += step) {
+            acc = acc.lanewise(op, IntVector.fromArray(INTS, a, i));
+        }
+        int best = acc.reduceLanes(op);
+        for (; i < to; i++) {
+            best = op == VectorOperators.MIN ? Math.min(best, a[i]) : Math.max(best, a[i]);
+        }
+        IntVector target = IntVector.broadcast(INTS, best);
+        for (i = from; i < bound; i += step) {
+            VectorMask<Integer> hit = IntVector.fromArray(INTS, a, i).eq(target);
+            if (hit.anyTrue()) {
+                return i + hit.firstTrue();
+            }
+        }
+        for (; i < to; i++) {
+            if (a[i] == best) {
+                return i;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    int indexOfMin(double[] a, int from, int to) {
+        return indexOf(a, from, to, VectorOperators.MIN);
+    }
+
+    @Override
+    int indexOfMax(double[] a, int from, int to) {
+        return indexOf(a, from, to, VectorOperators.MAX);
+    }
+
+    /**
+     * Doubles are searched as sortable longs, which order exactly like
+     * {@link Double#compare(double, double)}, including {@code -0.0} and NaN.
+     */
+    private int indexOf(double[] a, int from, int to, VectorOperators.Associative op) {
+        int step = DOUBLES.length();
+        if (to - from < 2 * step) {
+            return op == VectorOperators.MIN ? super.indexOfMin(a, from, to) : super.indexOfMax(a, from, to);
+        }
+        int bound = from + DOUBLES.loopBound(to - from);
+        LongVector acc = sortable(DoubleVector.fromArray(DOUBLES, a, from));
+        int i = from + step;
+        for (; i < bound; i += step) {
+            acc = acc.lanewise(op, sortable(DoubleVector.fromArray(DOUBLES, a, i)));
+        }
+        long best = acc.reduceLanes(op);
+        for (; i < to; i++) {
+            long key = sortable(a[i]);
+            best = op == VectorOperators.MIN ? Math.min(best, key) : Math.max(best, key);
+        }
+        LongVector target = LongVector.broadcast(acc.species(), best);
+        for (i = from; i < bound; i += step) {
+            VectorMask<Long> hit = sortable(DoubleVector.fromArray(DOUBLES, a, i)).eq(target);
+            if (hit.anyTrue()) {
+                return i + hit.firstTrue();
+            }
+        }
+        for (; i < to; i++) {
+            if (sortable(a[i]) == best) {
+                return i;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private static LongVector sortable(DoubleVector v) {
+        LongVector bits = v.reinterpretAsLongs().blend(CANONICAL_NAN, v.test(VectorOperators.IS_NAN).cast(LONGS));
+        return bits.lanewise(VectorOperators.XOR,
+                bits.lanewise(VectorOperators.ASHR, 63).lanewise(VectorOperators.AND, Long.MAX_VALUE));
+    }
+
+    private static long sortable(double d) {
+        long bits = Double.doubleToLongBits(d);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    @Override
+    int mismatch(long[] a, long[] b, int length) {
+        int step = LONGS.length();
+        int bound = LONGS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += step) {
+            VectorMask<Long> ne = LongVector.fromArray(LONGS, a, i)
+                    .compare(VectorOperators.NE, LongVector.fromArray(LONGS, b, i));
+            if (ne.anyTrue()) {
+                return i + ne.firstTrue();
+            }
+        }
+        for (; i < length; i++) {
+            if (a[i] != b[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    int mismatch(int[] a, int[] b, int length) {
+        int step = INTS.length();
+        int bound = INTS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += step) {
+            VectorMask<Integer> ne = IntVector.fromArray(INTS, a, i)
+                    .compare(VectorOperators.NE, IntVector.fromArray(INTS, b, i));
+            if (ne.anyTrue()) {
+                return i + ne.firstTrue();
+            }
+        }
+        for (; i < length; i++) {
+            if (a[i] != b[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares a block of rows at a time: each column only updates the lanes
+     * whose rows are still equal to the probe on all previous columns.
+     */
+    @Override
+    void compareAll(long[][] columns, int from, int to, long[] probe, int[] out) {
+        int step = LONGS.length();
+        int bound = from + LONGS.loopBound(to - from);
+        long[] lanes = new long[step];
+        LongVector zero = LongVector.zero(LONGS);
+        int i = from;
+        for (; i < bound; i += step) {
+            LongVector acc = zero;
+            for (int c = 0; c < columns.length; c++) {
+                VectorMask<Long> open = acc.eq(0);
+                if (!open.anyTrue()) {
+                    break;
+                }
+                LongVector v = LongVector.fromArray(LONGS, columns[c], i);
+                LongVector p = LongVector.broadcast(LONGS, probe[c]);
+                acc = acc.blend(-1, v.lt(p).and(open)).blend(1, v.compare(VectorOperators.GT, p).and(open));
+            }
+            acc.intoArray(lanes, 0);
+            for (int l = 0; l < step; l++) {
+                out[i + l] = (int) lanes[l];
+            }
+        }
+        super.compareAll(columns, i, to, probe, out);
+    }
+}
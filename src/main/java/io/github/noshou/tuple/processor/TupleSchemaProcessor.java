@@ -0,0 +1,426 @@
+package io.github.noshou.tuple.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the classes declared by {@link io.github.noshou.tuple.TupleSchema}.
+ * <p>
+ * The processor is registered in {@code META-INF/services}, so {@code javac}
+ * runs it for compilations with this library on the processor path, or on the
+ * class path with {@code -proc:full}. Errors in a schema, such as an unsupported element type or
+ * a field name that is not an identifier or clashes with a generated member, are reported on the
+ * annotated type.
+ */
+@SupportedAnnotationTypes(TupleSchemaProcessor.ANNOTATION)
+public final class TupleSchemaProcessor extends AbstractProcessor {
+
+    static final String ANNOTATION = "io.github.noshou.tuple.TupleSchema";
+
+    // members of the generated class and of Object, which a field or accessor of the same name would clash with
+    private static final Set<String> MEMBERS = Set.of("ARITY", "hash", "hashIsZero", "compareTo", "equals",
+            "hashCode", "toString", "writeTo", "readFrom", "writeString", "readString", "toTuple", "fromTuple",
+            "getClass", "clone", "finalize", "notify", "notifyAll", "wait");
+    // locals and parameters of the generated code, and the classes whose static methods it calls
+    private static final Set<String> RESERVED = Set.of("other", "obj", "in", "out", "tuple", "c", "h",
+            "Objects", "Tuples", "StandardCharsets", "Boolean", "Byte", "Short", "Character", "Integer", "Long",
+            "Float", "Double");
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : round.getElementsAnnotatedWith(annotation)) {
+                if (element instanceof TypeElement type) {
+                    generate(type);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        AnnotationMirror mirror = null;
+        for (AnnotationMirror candidate : type.getAnnotationMirrors()) {
+            if (((TypeElement) candidate.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION)) {
+                mirror = candidate;
+            }
+        }
+        if (mirror == null) {
+            return;
+        }
+        List<Kind> kinds = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<AnnotationValue> nameValues = new ArrayList<>();
+        String className = type.getSimpleName() + "Tuple";
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            String key = entry.getKey().getSimpleName().toString();
+            Object value = entry.getValue().getValue();
+            switch (key) {
+                case "value" -> {
+                    for (AnnotationValue v : values(value)) {
+                        Kind kind = Kind.of((TypeMirror) v.getValue());
+                        if (kind == null) {
+                            error(type, mirror, "Unsupported tuple element type " + v.getValue()
+                                    + "; only primitives and String are supported!");
+                            return;
+                        }
+                        kinds.add(kind);
+                    }
+                }
+                case "names" -> {
+                    for (AnnotationValue v : values(value)) {
+                        names.add((String) v.getValue());
+                        nameValues.add(v);
+                    }
+                }
+                case "className" -> {
+                    if (!((String) value).isEmpty()) {
+                        className = (String) value;
+                    }
+                }
+                default -> { }
+            }
+        }
+        if (names.isEmpty()) {
+            for (int i = 1; i <= kinds.size(); i++) {
+                names.add("item" + i);
+            }
+        }
+        if (names.size() != kinds.size()) {
+            error(type, mirror, "A tuple schema needs one name per element!");
+            return;
+        }
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            String problem = !SourceVersion.isName(name) || name.contains(".") ? "is not an identifier"
+                    : MEMBERS.contains(name) ? "clashes with a member of the generated class"
+                    : RESERVED.contains(name) ? "is used by the generated code"
+                    : !seen.add(name) ? "is a duplicate" : null;
+            if (problem != null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Tuple field name \"" + name + "\" " + problem + "!", type, mirror,
+                        i < nameValues.size() ? nameValues.get(i) : null);
+                return;
+            }
+        }
+        if (!SourceVersion.isName(className) || className.contains(".")) {
+            error(type, mirror, "Invalid tuple class name \"" + className + "\"!");
+            return;
+        }
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+        String source = new Source(packageName, className, type.getQualifiedName().toString(), kinds, names).render();
+        String qualified = packageName.isEmpty() ? className : packageName + "." + className;
+        try (Writer out = processingEnv.getFiler().createSourceFile(qualified, type).openWriter()) {
+            out.write(source);
+        } catch (IOException e) {
+            error(type, mirror, "Cannot write " + qualified + ": " + e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<? extends AnnotationValue> values(Object value) {
+        return (List<? extends AnnotationValue>) value;
+    }
+
+    private void error(Element element, AnnotationMirror mirror, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element, mirror);
+    }
+
+    /**
+     * A supported element type and the code handling it.
+     */
+    enum Kind {
+        BOOLEAN("boolean", "Boolean", "Boolean", "Boolean"),
+        BYTE("byte", "Byte", "Byte", "Byte"),
+        SHORT("short", "Short", "Short", "Short"),
+        CHAR("char", "Character", "Char", "Character"),
+        INT("int", "Integer", "Int", "Integer"),
+        LONG("long", "Long", "Long", "Long"),
+        FLOAT("float", "Float", "Float", "Float"),
+        DOUBLE("double", "Double", "Double", "Double"),
+        STRING("String", "String", null, null);
+
+        final String type;
+        final String boxed;
+        private final String io;
+        private final String helper;
+
+        Kind(String type, String boxed, String io, String helper) {
+            this.type = type;
+            this.boxed = boxed;
+            this.io = io;
+            this.helper = helper;
+        }
+
+        static Kind of(TypeMirror mirror) {
+            String name = mirror.toString();
+            for (Kind kind : values()) {
+                if (kind.type.equals(name) || (kind == STRING && name.equals("java.lang.String"))) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+
+        String compare(String a, String b) {
+            return this == STRING ? a + ".compareTo(" + b + ")" : this.helper + ".compare(" + a + ", " + b + ")";
+        }
+
+        String equal(String a, String b) {
+            return switch (this) {
+                case STRING -> a + ".equals(" + b + ")";
+                // consistent with compare: NaN equals NaN and 0.0 differs from -0.0
+                case FLOAT, DOUBLE -> this.helper + ".compare(" + a + ", " + b + ") == 0";
+                default -> a + " == " + b;
+            };
+        }
+
+        String hash(String a) {
+            return this == STRING ? a + ".hashCode()" : this.helper + ".hashCode(" + a + ")";
+        }
+
+        String write(String a) {
+            return this == STRING ? "writeString(out, " + a + ")" : "out.write" + this.io + "(" + a + ")";
+        }
+
+        String read() {
+            return this == STRING ? "readString(in)" : "in.read" + this.io + "()";
+        }
+    }
+
+    /**
+     * The source of one generated class.
+     */
+    private record Source(String packageName, String className, String schema, List<Kind> kinds, List<String> names) {
+
+        String render() {
+            int n = this.kinds.size();
+            boolean strings = this.kinds.contains(Kind.STRING);
+            StringBuilder s = new StringBuilder();
+            if (!this.packageName.isEmpty()) {
+                s.append("package ").append(this.packageName).append(";\n\n");
+            }
+            s.append("import io.github.noshou.tuple.Tuple;\n");
+            s.append("import io.github.noshou.tuple.Tuples;\n");
+            s.append("import java.io.DataInput;\n");
+            s.append("import java.io.DataOutput;\n");
+            s.append("import java.io.IOException;\n");
+            if (strings) {
+                s.append("import java.nio.charset.StandardCharsets;\n");
+                s.append("import java.util.Objects;\n");
+            }
+            s.append("\n/**\n * A tuple of ").append(signature("{@code ", "}"))
+                    .append(",\n * generated from the {@code @TupleSchema} of {@link ").append(this.schema)
+                    .append("}.\n */\n");
+            s.append("public final class ").append(this.className)
+                    .append(" implements Comparable<").append(this.className).append("> {\n\n");
+            s.append("    /**\n     * The number of elements.\n     */\n");
+            s.append("    public static final int ARITY = ").append(n).append(";\n\n");
+            for (int i = 0; i < n; i++) {
+                s.append("    private final ").append(type(i)).append(' ').append(name(i)).append(";\n");
+            }
+            s.append("    private int hash;\n");
+            s.append("    private boolean hashIsZero;\n\n");
+
+            // constructor
+            s.append("    /**\n     * Constructs a tuple from its elements.\n     *\n");
+            for (int i = 0; i < n; i++) {
+                s.append("     * @param ").append(name(i)).append(" element ").append(i).append("\n");
+            }
+            if (strings) {
+                s.append("     * @throws NullPointerException if a {@code String} element is {@code null}\n");
+            }
+            s.append("     */\n    public ").append(this.className).append('(').append(signature("", "")).append(") {\n");
+            for (int i = 0; i < n; i++) {
+                s.append("        this.").append(name(i)).append(" = ");
+                if (kind(i) == Kind.STRING) {
+                    s.append("Objects.requireNonNull(").append(name(i)).append(", \"")
+                            .append(name(i)).append(" cannot be null!\");\n");
+                } else {
+                    s.append(name(i)).append(";\n");
+                }
+            }
+            s.append("    }\n");
+
+            // accessors
+            for (int i = 0; i < n; i++) {
+                s.append("\n    /**\n     * Returns element ").append(i).append(".\n     *\n     * @return {@code ")
+                        .append(name(i)).append("}\n     */\n");
+                s.append("    public ").append(type(i)).append(' ').append(name(i)).append("() {\n");
+                s.append("        return this.").append(name(i)).append(";\n    }\n");
+            }
+
+            // compareTo
+            s.append("\n    /**\n     * Compares the elements in order, like {@link Tuple#compareTo(Tuple)}.\n");
+            s.append("     *\n     * @param other the tuple to compare to\n");
+            s.append("     * @return a negative number, zero or a positive number as this tuple is smaller, equal or larger\n");
+            s.append("     */\n    @Override\n    public int compareTo(").append(this.className).append(" other) {\n");
+            if (n == 0) {
+                s.append("        return 0;\n");
+            } else {
+                if (n > 1) {
+                    s.append("        int c;\n");
+                }
+                for (int i = 0; i < n - 1; i++) {
+                    s.append("        if ((c = ").append(kind(i).compare("this." + name(i), "other." + name(i)))
+                            .append(") != 0) {\n            return c;\n        }\n");
+                }
+                s.append("        return ").append(kind(n - 1).compare("this." + name(n - 1), "other." + name(n - 1)))
+                        .append(";\n");
+            }
+            s.append("    }\n");
+
+            // equals and hashCode
+            s.append("\n    @Override\n    public boolean equals(Object obj) {\n");
+            s.append("        if (this == obj) return true;\n");
+            s.append("        if (!(obj instanceof ").append(this.className).append(" other)) return false;\n");
+            s.append("        return ");
+            if (n == 0) {
+                s.append("true");
+            }
+            for (int i = 0; i < n; i++) {
+                if (i > 0) {
+                    s.append("\n                && ");
+                }
+                s.append(kind(i).equal("this." + name(i), "other." + name(i)));
+            }
+            s.append(";\n    }\n");
+            s.append("\n    @Override\n    public int hashCode() {\n");
+            s.append("        int h = this.hash;\n");
+            s.append("        if (h == 0 && !this.hashIsZero) {\n");
+            s.append("            h = 1;\n");
+            for (int i = 0; i < n; i++) {
+                s.append("            h = 31 * h + ").append(kind(i).hash("this." + name(i))).append(";\n");
+            }
+            s.append("            if (h == 0) {\n                this.hashIsZero = true;\n");
+            s.append("            } else {\n                this.hash = h;\n            }\n        }\n");
+            s.append("        return h;\n    }\n");
+
+            // toString
+            s.append("\n    @Override\n    public String toString() {\n");
+            // the brackets of Tuple#toString, escaped as the source encoding is unknown
+            s.append("        return new StringBuilder().append('\\u27e8')");
+            for (int i = 0; i < n; i++) {
+                if (i > 0) {
+                    s.append(".append(\", \")");
+                }
+                s.append("\n                .append(this.").append(name(i)).append(')');
+            }
+            s.append(".append('\\u27e9').toString();\n    }\n");
+
+            // codec
+            s.append("\n    /**\n     * Writes the elements in order, without tags.\n     *\n");
+            s.append("     * @param out the output to write to\n     * @throws IOException if writing fails\n     */\n");
+            s.append("    public void writeTo(DataOutput out) throws IOException {\n");
+            for (int i = 0; i < n; i++) {
+                s.append("        ").append(kind(i).write("this." + name(i))).append(";\n");
+            }
+            s.append("    }\n");
+            s.append("\n    /**\n     * Reads a tuple written by {@link #writeTo(DataOutput)}.\n     *\n");
+            s.append("     * @param in the input to read from\n     * @return the tuple\n");
+            s.append("     * @throws IOException if reading fails or the input is corrupt\n     */\n");
+            s.append("    public static ").append(this.className).append(" readFrom(DataInput in) throws IOException {\n");
+            for (int i = 0; i < n; i++) {
+                s.append("        ").append(type(i)).append(' ').append(name(i)).append(" = ")
+                        .append(kind(i).read()).append(";\n");
+            }
+            s.append("        return new ").append(this.className).append('(').append(arguments()).append(");\n    }\n");
+            if (strings) {
+                s.append("""
+
+                            private static void writeString(DataOutput out, String s) throws IOException {
+                                byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                                out.writeInt(utf8.length);
+                                out.write(utf8);
+                            }
+
+                            private static String readString(DataInput in) throws IOException {
+                                int length = in.readInt();
+                                if (length < 0) {
+                                    throw new IOException("Corrupt tuple element!");
+                                }
+                                byte[] utf8 = new byte[length];
+                                in.readFully(utf8);
+                                return new String(utf8, StandardCharsets.UTF_8);
+                            }
+                        """);
+            }
+
+            // conversions
+            s.append("\n    /**\n     * Returns the equal generic tuple, with boxed elements.\n     *\n");
+            s.append("     * @return a new tuple of the arity-specific class\n     */\n");
+            s.append("    @SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+            s.append("    public Tuple<?> toTuple() {\n");
+            s.append("        return Tuples.of(new Comparable[] {");
+            for (int i = 0; i < n; i++) {
+                s.append(i > 0 ? ", " : "").append("this.").append(name(i));
+            }
+            s.append("});\n    }\n");
+            s.append("\n    /**\n     * Returns the tuple holding the elements of a generic tuple.\n     *\n");
+            s.append("     * @param tuple a tuple of ").append(signature("{@code ", "}")).append("\n");
+            s.append("     * @return a new tuple\n");
+            s.append("     * @throws IllegalArgumentException if the tuple does not have ").append(n).append(" elements\n");
+            s.append("     * @throws ClassCastException if an element has the wrong type\n");
+            s.append("     * @throws NullPointerException if an element is {@code null}\n     */\n");
+            s.append("    public static ").append(this.className).append(" fromTuple(Tuple<?> tuple) {\n");
+            s.append("        if (tuple.fetchSize() != ARITY) {\n");
+            s.append("            throw new IllegalArgumentException(\"Tuple does not match the schema!\");\n        }\n");
+            s.append("        return new ").append(this.className).append('(');
+            for (int i = 0; i < n; i++) {
+                s.append(i > 0 ? ",\n                " : "");
+                s.append('(').append(kind(i).boxed).append(") (Object) tuple.fetch(").append(i).append(')');
+            }
+            s.append(");\n    }\n}\n");
+            return s.toString();
+        }
+
+        private Kind kind(int i) {
+            return this.kinds.get(i);
+        }
+
+        private String type(int i) {
+            return kind(i).type;
+        }
+
+        private String name(int i) {
+            return this.names.get(i);
+        }
+
+        private String signature(String open, String close) {
+            StringBuilder s = new StringBuilder();
+            for (int i = 0; i < this.kinds.size(); i++) {
+                s.append(i > 0 ? ", " : "").append(open).append(type(i)).append(' ').append(name(i)).append(close);
+            }
+            return s.toString();
+        }
+
+        private String arguments() {
+            return String.join(", ", this.names);
+        }
+    }
+}
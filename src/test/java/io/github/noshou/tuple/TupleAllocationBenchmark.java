@@ -0,0 +1,76 @@
+package io.github.noshou.tuple;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntFunction;
+
+/**
+ * Allocation benchmark of the tuple construction paths: each public
+ * constructor against its {@link Tuples} factory or {@link Polyad#wrap}
+ * counterpart.
+ * <p>
+ * Every path builds {@code ops} tuples into a small ring of live references,
+ * so escape analysis cannot drop the allocations, and prints the bytes
+ * allocated and the time taken per tuple, read from the allocation counter
+ * of the current thread. Each path is warmed up before it is measured.
+ * <pre>
+ * mvn -q test-compile
+ * java -cp target/classes:target/test-classes io.github.noshou.tuple.TupleAllocationBenchmark [ops]
+ * </pre>
+ */
+public final class TupleAllocationBenchmark {
+
+    private static final Object[] SINK = new Object[1024];
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private TupleAllocationBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int ops = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Integer[] small = new Integer[256];
+        for (int i = 0; i < small.length; i++) {
+            small[i] = i - 128;
+        }
+        Integer[] octet = {1, 2, 3, 4, 5, 6, 7, 8};
+        Integer[] wide = new Integer[32];
+        for (int i = 0; i < wide.length; i++) {
+            wide[i] = i;
+        }
+        System.out.printf("Tuple construction, %,d tuples per path%n", ops);
+        System.out.printf("%-32s %12s %10s%n", "path", "bytes/tuple", "ns/tuple");
+
+        measure("new Nullad<>()", ops, i -> new Nullad<Integer>());
+        measure("Tuples.of()", ops, i -> Tuples.<Integer>of());
+
+        measure("new Monad<>(small int)", ops, i -> new Monad<>(small[i & 255]));
+        measure("Tuples.of(small int)", ops, i -> Tuples.of(small[i & 255]));
+
+        measure("new Dyad<>(a, b)", ops, i -> new Dyad<>(small[i & 255], small[(i >> 8) & 255]));
+        measure("Tuples.of(a, b)", ops, i -> Tuples.of(small[i & 255], small[(i >> 8) & 255]));
+
+        measure("new Octad<>(...)", ops, i -> new Octad<>(octet[0], octet[1], octet[2], octet[3],
+                octet[4], octet[5], octet[6], octet[7]));
+        measure("Tuples.of(Integer[8])", ops, i -> Tuples.of(octet));
+
+        measure("new Polyad<>(Integer[32])", ops, i -> new Polyad<>(wide));
+        measure("Polyad.wrap(Integer[32])", ops, i -> Polyad.wrap(wide));
+    }
+
+    private static void measure(String path, int ops, IntFunction<Tuple<Integer>> construct) {
+        run(ops / 4, construct);
+        long thread = Thread.currentThread().threadId();
+        long bytes = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        run(ops, construct);
+        long elapsed = System.nanoTime() - start;
+        bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+        System.out.printf("%-32s %12.1f %10.1f%n", path, (double) bytes / ops, (double) elapsed / ops);
+    }
+
+    private static void run(int ops, IntFunction<Tuple<Integer>> construct) {
+        for (int i = 0; i < ops; i++) {
+            SINK[i & (SINK.length - 1)] = construct.apply(i);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.noshou.tuple;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TupleCardinalitySketchTest {
+
+    @Test
+    void rawItemsCountAsTheEqualTuple() {
+        TupleCardinalitySketch sketch = TupleCardinalitySketch.create();
+        sketch.add(new Dyad<>("user", "item"));
+        sketch.addItems("user", "item");
+        sketch.addItems(new Object[]{"user", "item"});
+        sketch.add(new Triad<>(1L, 2L, 3L));
+        sketch.addItems(1L, 2L, 3L);
+        assertEquals(2, sketch.estimate());
+
+        // a tuple passed as a raw item is one element of a one-element tuple
+        sketch.addItems(new Object[]{new Dyad<>("user", "item")});
+        assertEquals(3, sketch.estimate());
+    }
+
+    @Test
+    void estimatesManyDistinctStrings() {
+        TupleCardinalitySketch sketch = TupleCardinalitySketch.create(14);
+        int n = 200_000;
+        for (int i = 0; i < n; i++) {
+            sketch.addItems("key-" + i, i % 7);
+            sketch.addItems("key-" + i, i % 7);
+        }
+        double error = Math.abs(sketch.estimate() - n) / (double) n;
+        assertTrue(error < 0.03, "relative error " + error);
+    }
+}
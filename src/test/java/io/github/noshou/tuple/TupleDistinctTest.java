@@ -0,0 +1,67 @@
+package io.github.noshou.tuple;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TupleDistinctTest {
+
+    private static List<Integer> emitted(TupleDistinct<Integer> distinct, int... inputs) {
+        List<Integer> result = new ArrayList<>();
+        for (int input : inputs) {
+            if (distinct.test(new Monad<>(input))) {
+                result.add(input);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void countWindowCoversThePreviousInputs() {
+        assertEquals(List.of(1, 2, 1, 3, 4, 1), emitted(TupleDistinct.window(1), 1, 1, 2, 1, 3, 4, 1));
+        assertEquals(List.of(1, 2, 3, 4, 1), emitted(TupleDistinct.window(3), 1, 1, 2, 1, 3, 4, 1));
+    }
+
+    @Test
+    void countWindowMatchesABruteForceScan() {
+        int[] inputs = new int[2000];
+        Random random = new Random(5);
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = random.nextInt(20);
+        }
+        for (int window : new int[]{1, 2, 7, 40}) {
+            TupleDistinct<Integer> distinct = TupleDistinct.window(window);
+            List<Integer> emittedAt = new ArrayList<>();
+            for (int i = 0; i < inputs.length; i++) {
+                boolean repeat = false;
+                for (int j : emittedAt) {
+                    repeat |= j >= i - window && inputs[j] == inputs[i];
+                }
+                assertEquals(!repeat, distinct.test(new Monad<>(inputs[i])), "window " + window + " at " + i);
+                if (!repeat) {
+                    emittedAt.add(i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void timeWindowForgetsAfterTheTtl() {
+        long[] millis = {0};
+        InstantSource clock = () -> Instant.ofEpochMilli(millis[0]);
+        TupleDistinct<Integer> distinct = TupleDistinct.window(Duration.ofMillis(10), clock);
+        assertTrue(distinct.test(new Monad<>(1)));
+        millis[0] = 9;
+        assertFalse(distinct.test(new Monad<>(1)));
+        millis[0] = 10;
+        assertTrue(distinct.test(new Monad<>(1)));
+    }
+}
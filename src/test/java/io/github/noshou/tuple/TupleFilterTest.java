@@ -0,0 +1,38 @@
+package io.github.noshou.tuple;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TupleFilterTest {
+
+    @Test
+    void rawItemsFindTheEqualTuple() {
+        TupleFilter filter = TupleFilter.create(1_000, 0.01);
+        filter.put(new Triad<>("EU", "widget", "ACTIVE"));
+        filter.putItems("US", "CA");
+        filter.putItems(1L, 2L, 3L, 4L);
+        assertTrue(filter.mightContainItems("EU", "widget", "ACTIVE"));
+        assertTrue(filter.mightContainItems(new Object[]{"EU", "widget", "ACTIVE"}));
+        assertTrue(filter.mightContain(new Dyad<>("US", "CA")));
+        assertTrue(filter.mightContainItems("US", "CA"));
+        assertTrue(filter.mightContain(new Tetrad<>(1L, 2L, 3L, 4L)));
+    }
+
+    @Test
+    void hasNoFalseNegativesAndFewFalsePositives() {
+        int n = 50_000;
+        TupleFilter filter = TupleFilter.create(n, 0.01);
+        for (long i = 0; i < n; i++) {
+            filter.put(new Dyad<>(i, i * 31));
+        }
+        for (long i = 0; i < n; i++) {
+            assertTrue(filter.mightContainItems(i, i * 31), "put " + i);
+        }
+        int falsePositives = 0;
+        for (long i = n; i < 3L * n; i++) {
+            falsePositives += filter.mightContainItems(i, i * 31) ? 1 : 0;
+        }
+        assertTrue(falsePositives < 0.02 * 2 * n, falsePositives + " false positives");
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.noshou.tuple;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class TupleHasherTest {
+
+    private static final long[] SEEDS = {0, 1, 42, -7};
+
+    @Test
+    void lengthsAndTagsDoNotRunTogether() {
+        // under the first encoding, the string payload ran into the tag and size of the nested tuple
+        Object[] flat = {"abcdefgh\b\0\0", "\0"};
+        Object[] nested = {"abcdefgh", new Monad<>("")};
+        for (long seed : SEEDS) {
+            TupleHasher hasher = TupleHasher.create(seed);
+            assertNotEquals(hasher.hashItems64(flat), hasher.hashItems64(nested), "seed " + seed);
+            assertNotEquals(hasher.hashItems128(flat), hasher.hashItems128(nested), "seed " + seed);
+        }
+    }
+
+    @Test
+    void nearbyEncodingsHashApart() {
+        List<Object[]> tuples = List.of(
+                new Object[]{""}, new Object[]{"\0"}, new Object[]{new byte[0]}, new Object[]{new byte[1]},
+                new Object[]{new Nullad<String>()}, new Object[]{new Monad<>("")}, new Object[]{"", ""},
+                new Object[]{"a", "bc"}, new Object[]{"ab", "c"}, new Object[]{"abc"},
+                new Object[]{new Monad<>(1L), 2L}, new Object[]{1L, new Monad<>(2L)},
+                new Object[]{new Dyad<>(1L, 2L)}, new Object[]{null}, new Object[0],
+                new Object[]{6L}, new Object[]{11L});
+        for (long seed : SEEDS) {
+            TupleHasher hasher = TupleHasher.create(seed);
+            Set<Long> hashes = new HashSet<>();
+            for (Object[] items : tuples) {
+                hashes.add(hasher.hashItems64(items));
+            }
+            assertEquals(tuples.size(), hashes.size(), "seed " + seed);
+        }
+    }
+
+    @Test
+    void equalElementsHashAlikeOnEveryPath() {
+        TupleHasher hasher = TupleHasher.create(42);
+        Triad<String> tuple = new Triad<>("a", "h\u00e9llo \ud83d\ude00", "\ud800 lone");
+        long hash = hasher.hash64(tuple);
+        assertEquals(hash, hasher.hashItems64("a", "h\u00e9llo \ud83d\ude00", "\ud800 lone"));
+        assertEquals(hash, hasher.hash128(tuple).high());
+        assertEquals(hash, hasher.newState().putString("a").putString("h\u00e9llo \ud83d\ude00")
+                .putString("\ud800 lone").hash64());
+        assertEquals(hasher.hash64(new Dyad<>(1L, 2L)), hasher.hash64(1, 2));
+        assertEquals(hasher.hash64(new Monad<>(7)), hasher.hash64(new Monad<>(7L)));
+        // a tuple among raw elements is nested, however it is typed
+        Object nested = new Dyad<>(1L, 2L);
+        assertNotEquals(hasher.hash64(new Dyad<>(1L, 2L)), hasher.hashItems64(nested));
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.noshou.tuple;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TupleHeavyHittersTest {
+
+    @Test
+    void stringsWithEqualHashCodesAreCountedApart() throws IOException {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        TupleHeavyHitters<String> counter = TupleHeavyHitters.create(100, 1e-4, 1e-3);
+        counter.add(new Monad<>("Aa"), 1_000_000);
+        counter.add(new Monad<>("BB"));
+        assertEquals(1_000_000, counter.estimate(new Monad<>("Aa")), 0);
+        assertEquals(1, counter.estimate(new Monad<>("BB")), 0);
+
+        List<TupleHeavyHitters.HeavyHitter<String>> top = counter.topK(2);
+        assertEquals(2, top.size());
+        assertEquals(new Monad<>("Aa"), top.get(0).tuple());
+        assertEquals(1, top.get(1).count(), 0);
+        assertEquals(0, top.get(1).lowerBound(), 1);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        counter.writeTo(new DataOutputStream(bytes));
+        TupleHeavyHitters<String> copy = TupleHeavyHitters.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(1, copy.estimate(new Monad<>("BB")), 0);
+    }
+
+    @Test
+    void integersAndLongsHashApart() {
+        assertNotEquals(Hashing.wideHash64(0, new Monad<>(1)), Hashing.wideHash64(0, new Monad<>(1L)));
+        assertNotEquals(Hashing.wideHash64(0, new Dyad<>(-7, 42)), Hashing.wideHash64(0, new Dyad<>(-7L, 42L)));
+        assertNotEquals(Hashing.wideHash64(0, new Monad<>(1.0)), Hashing.wideHash64(0,
+                new Monad<>(Double.doubleToLongBits(1.0))));
+    }
+}
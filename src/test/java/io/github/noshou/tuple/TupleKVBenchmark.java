@@ -0,0 +1,166 @@
+package io.github.noshou.tuple;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Throughput and latency benchmark of {@link TupleKV}.
+ * <p>
+ * Puts {@code keys} two-element keys in random order, flushes, then measures
+ * point gets of present and absent keys, range scans and prefix scans,
+ * printing the throughput of each phase and the percentiles of its
+ * per-operation latency. A warm-up round on a scratch store runs first.
+ * <pre>
+ * mvn -q test-compile
+ * java -cp target/classes:target/test-classes io.github.noshou.tuple.TupleKVBenchmark [keys] [valueBytes] [dir]
+ * </pre>
+ * The store is created in {@code dir}, a temporary directory by default, and
+ * deleted afterwards.
+ */
+public final class TupleKVBenchmark {
+
+    private static final int SCAN_LENGTH = 100;
+
+    private TupleKVBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int valueBytes = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        Path dir = args.length > 2 ? Files.createDirectories(Path.of(args[2])) : Files.createTempDirectory("tuplekv");
+        System.out.printf("TupleKV: %,d keys, %d-byte values, in %s%n", keys, valueBytes, dir);
+        try {
+            run(dir.resolve("warmup"), Math.max(1, keys / 10), valueBytes, false);
+            run(dir.resolve("store"), keys, valueBytes, true);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void run(Path dir, int keys, int valueBytes, boolean report) throws IOException {
+        Random random = new Random(42);
+        long[] ids = new long[keys];
+        for (int i = 0; i < keys; i++) {
+            ids[i] = i;
+        }
+        shuffle(ids, random);
+        byte[] value = new byte[valueBytes];
+        random.nextBytes(value);
+        long[] nanos = new long[keys];
+
+        try (TupleKV<Long> kv = TupleKV.open(dir)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < keys; i++) {
+                long t = System.nanoTime();
+                kv.put(key(ids[i]), value);
+                nanos[i] = System.nanoTime() - t;
+            }
+            long elapsed = System.nanoTime() - start;
+            print(report, "put", nanos, keys, elapsed);
+
+            long t = System.nanoTime();
+            kv.flush();
+            if (report) {
+                System.out.printf("%-12s %,.1f ms, %d segments%n", "flush", (System.nanoTime() - t) / 1e6,
+                        kv.segmentCount());
+            }
+
+            shuffle(ids, random);
+            int found = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < keys; i++) {
+                t = System.nanoTime();
+                found += kv.get(key(ids[i])) != null ? 1 : 0;
+                nanos[i] = System.nanoTime() - t;
+            }
+            elapsed = System.nanoTime() - start;
+            check(found == keys, "missing keys");
+            print(report, "get hit", nanos, keys, elapsed);
+
+            start = System.nanoTime();
+            for (int i = 0; i < keys; i++) {
+                t = System.nanoTime();
+                found += kv.get(key(keys + ids[i])) != null ? 1 : 0;
+                nanos[i] = System.nanoTime() - t;
+            }
+            elapsed = System.nanoTime() - start;
+            check(found == keys, "phantom keys");
+            print(report, "get miss", nanos, keys, elapsed);
+
+            int scans = Math.max(1, keys / SCAN_LENGTH);
+            long entries = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < scans; i++) {
+                long from = ids[i] % Math.max(1, keys - SCAN_LENGTH);
+                t = System.nanoTime();
+                try (Stream<Map.Entry<Tuple<Long>, byte[]>> scan = kv.scan(key(from), key(from + SCAN_LENGTH))) {
+                    entries += scan.count();
+                }
+                nanos[i] = System.nanoTime() - t;
+            }
+            elapsed = System.nanoTime() - start;
+            check(entries == (long) scans * Math.min(SCAN_LENGTH, keys), "short scans");
+            print(report, "scan " + SCAN_LENGTH, nanos, scans, elapsed);
+
+            start = System.nanoTime();
+            for (int i = 0; i < scans; i++) {
+                t = System.nanoTime();
+                try (Stream<Map.Entry<Tuple<Long>, byte[]>> scan = kv.scanPrefix(new Monad<>(ids[i] / 1000))) {
+                    entries += scan.count();
+                }
+                nanos[i] = System.nanoTime() - t;
+            }
+            elapsed = System.nanoTime() - start;
+            print(report, "prefix scan", nanos, scans, elapsed);
+        }
+    }
+
+    private static Dyad<Long> key(long id) {
+        return new Dyad<>(id / 1000, id % 1000);
+    }
+
+    private static void print(boolean report, String phase, long[] nanos, int n, long elapsed) {
+        if (!report) {
+            return;
+        }
+        long[] sorted = Arrays.copyOf(nanos, n);
+        Arrays.sort(sorted);
+        System.out.printf("%-12s %,12.0f ops/s   p50 %,8.1f us   p90 %,8.1f us   p99 %,8.1f us"
+                        + "   p99.9 %,8.1f us   max %,9.1f us%n",
+                phase, n / (elapsed / 1e9), percentile(sorted, 0.5), percentile(sorted, 0.9),
+                percentile(sorted, 0.99), percentile(sorted, 0.999), sorted[n - 1] / 1e3);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, (long) (p * sorted.length))] / 1e3;
+    }
+
+    private static void shuffle(long[] ids, Random random) {
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException("Benchmark run is inconsistent: " + message + "!");
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package io.github.noshou.tuple;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TupleKVTest {
+
+    @TempDir
+    Path dir;
+
+    private static Dyad<Long> key(long id) {
+        return new Dyad<>(id / 100, id % 100);
+    }
+
+    private static byte[] value(long id) {
+        return ("value-" + id).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies the files of a store that is still open, as a crash would leave them.
+     */
+    private Path crashImage(Path store) throws IOException {
+        Path image = this.dir.resolve("image-" + System.nanoTime());
+        Files.createDirectories(image);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(store)) {
+            for (Path file : files) {
+                Files.copy(file, image.resolve(file.getFileName()));
+            }
+        }
+        return image;
+    }
+
+    private static List<Path> files(Path dir, String suffix) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + suffix)) {
+            files.forEach(result::add);
+        }
+        return result;
+    }
+
+    @Test
+    void recoversUnflushedWritesFromTheLog() throws IOException {
+        Path store = this.dir.resolve("store");
+        try (TupleKV<Long> kv = TupleKV.open(store)) {
+            for (long id = 0; id < 500; id++) {
+                kv.put(key(id), value(id));
+            }
+            kv.delete(key(7));
+            Path image = crashImage(store);
+            assertFalse(files(image, ".log").isEmpty());
+
+            List<Path> logs = files(image, ".log");
+            try (TupleKV<Long> recovered = TupleKV.open(image)) {
+                assertEquals(1, recovered.segmentCount());
+                for (Path log : logs) {
+                    assertFalse(Files.exists(log), "replayed log " + log.getFileName() + " is removed");
+                }
+                assertNull(recovered.get(key(7)));
+                for (long id = 0; id < 500; id++) {
+                    if (id != 7) {
+                        assertArrayEquals(value(id), recovered.get(key(id)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void tornLogTailEndsTheReplay() throws IOException {
+        Path store = this.dir.resolve("store");
+        try (TupleKV<Long> kv = TupleKV.open(store)) {
+            kv.put(key(1), value(1));
+            kv.put(key(2), value(2));
+            Path image = crashImage(store);
+            Path log = files(image, ".log").get(0);
+            try (OutputStream out = Files.newOutputStream(log, StandardOpenOption.APPEND)) {
+                // a record header promising more bytes than were written
+                out.write(new byte[]{0, 0, 0, 40, 1, 2, 3, 4, 9, 9});
+            }
+            try (TupleKV<Long> recovered = TupleKV.open(image)) {
+                assertArrayEquals(value(1), recovered.get(key(1)));
+                assertArrayEquals(value(2), recovered.get(key(2)));
+            }
+        }
+    }
+
+    @Test
+    void removesFilesLeftByAnInterruptedFlush() throws IOException {
+        Path store = this.dir.resolve("store");
+        try (TupleKV<Long> kv = TupleKV.open(store)) {
+            kv.put(key(1), value(1));
+        }
+        Files.write(store.resolve("seg-999.tkv.tmp"), new byte[]{1, 2, 3});
+        Files.write(store.resolve("seg-998.tkv"), new byte[]{1, 2, 3});
+        try (TupleKV<Long> kv = TupleKV.open(store)) {
+            assertArrayEquals(value(1), kv.get(key(1)));
+        }
+        assertFalse(Files.exists(store.resolve("seg-999.tkv.tmp")));
+        assertFalse(Files.exists(store.resolve("seg-998.tkv")));
+    }
+
+    @Test
+    void compactionKeepsTheNewestValueAndDropsDeletes() throws IOException {
+        Path store = this.dir.resolve("store");
+        TreeMap<Tuple<Long>, byte[]> model = new TreeMap<>();
+        Random random = new Random(3);
+        // tiny memtables and a synchronous executor: every flush and merge runs inline
+        try (TupleKV<Long> kv = TupleKV.open(store, 2048, Runnable::run)) {
+            for (int round = 0; round < 30; round++) {
+                for (int i = 0; i < 40; i++) {
+                    long id = random.nextInt(300);
+                    if (random.nextInt(5) == 0) {
+                        kv.delete(key(id));
+                        model.remove(key(id));
+                    } else {
+                        byte[] v = value(id * 1000 + round);
+                        kv.put(key(id), v);
+                        model.put(key(id), v);
+                    }
+                }
+                kv.flush();
+            }
+            assertTrue(kv.segmentCount() < 4, "segments are compacted, got " + kv.segmentCount());
+            assertStoreEquals(model, kv);
+        }
+        try (TupleKV<Long> kv = TupleKV.open(store)) {
+            assertStoreEquals(model, kv);
+        }
+    }
+
+    @Test
+    void snapshotPinsCompactedSegments() throws IOException {
+        Path store = this.dir.resolve("store");
+        try (TupleKV<Long> kv = TupleKV.open(store, 1024, Runnable::run)) {
+            for (long id = 0; id < 50; id++) {
+                kv.put(key(id), value(id));
+            }
+            kv.flush();
+            try (TupleKV<Long>.Snapshot snapshot = kv.snapshot()) {
+                for (int round = 0; round < 10; round++) {
+                    for (long id = 0; id < 50; id++) {
+                        kv.put(key(id), value(id + 1000));
+                    }
+                    kv.flush();
+                }
+                try (Stream<Map.Entry<Tuple<Long>, byte[]>> scan = snapshot.scan(null, null)) {
+                    List<Map.Entry<Tuple<Long>, byte[]>> entries = scan.toList();
+                    assertEquals(50, entries.size());
+                    for (Map.Entry<Tuple<Long>, byte[]> entry : entries) {
+                        long id = entry.getKey().fetch(0) * 100 + entry.getKey().fetch(1);
+                        assertArrayEquals(value(id), entry.getValue());
+                    }
+                }
+            }
+            assertArrayEquals(value(1049), kv.get(key(49)));
+        }
+    }
+
+    @Test
+    void prefixAndRangeScansFollowKeyOrder() throws IOException {
+        try (TupleKV<Long> kv = TupleKV.open(this.dir.resolve("store"), 4096, Runnable::run)) {
+            for (long id = 999; id >= 0; id--) {
+                kv.put(key(id), value(id));
+            }
+            try (Stream<Map.Entry<Tuple<Long>, byte[]>> scan = kv.scanPrefix(new Monad<>(3L))) {
+                List<Tuple<Long>> keys = scan.map(Map.Entry::getKey).toList();
+                assertEquals(100, keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    assertEquals(0, key(300 + i).compareTo(keys.get(i)), "key " + keys.get(i));
+                }
+            }
+            try (Stream<Map.Entry<Tuple<Long>, byte[]>> scan = kv.scan(key(250), key(260))) {
+                assertEquals(10, scan.count());
+            }
+        }
+    }
+
+    private static void assertStoreEquals(TreeMap<Tuple<Long>, byte[]> model, TupleKV<Long> kv) throws IOException {
+        for (long id = 0; id < 300; id++) {
+            byte[] expected = model.get(key(id));
+            if (expected == null) {
+                assertNull(kv.get(key(id)), "deleted " + key(id));
+            } else {
+                assertArrayEquals(expected, kv.get(key(id)));
+            }
+        }
+        try (Stream<Map.Entry<Tuple<Long>, byte[]>> scan = kv.scan(null, null)) {
+            List<Tuple<Long>> keys = scan.map(Map.Entry::getKey).toList();
+            assertEquals(model.size(), keys.size());
+            int i = 0;
+            for (Tuple<Long> expected : model.keySet()) {
+                // keys read back from segments are Polyads, equal by comparison
+                assertEquals(0, expected.compareTo(keys.get(i++)), "key " + expected);
+            }
+        }
+    }
+}
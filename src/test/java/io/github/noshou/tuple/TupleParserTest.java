@@ -0,0 +1,49 @@
+package io.github.noshou.tuple;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class TupleParserTest {
+
+    private static void assertRoundTrip(Tuple<String> tuple) {
+        String text = TupleParser.format(tuple, new StringBuilder()).toString();
+        Polyad<String> parsed = TupleParser.ofStrings().parse(text);
+        assertEquals(tuple.fetchSize(), parsed.fetchSize(), text);
+        for (int i = 0; i < tuple.fetchSize(); i++) {
+            assertEquals(tuple.fetch(i), parsed.fetch(i), text);
+        }
+    }
+
+    @Test
+    void emptyElementsRoundTrip() {
+        assertEquals("⟨⟩", TupleParser.format(new Nullad<String>(), new StringBuilder()).toString());
+        assertEquals("⟨,⟩", TupleParser.format(new Monad<>(""), new StringBuilder()).toString());
+        assertRoundTrip(new Nullad<>());
+        assertRoundTrip(new Monad<>(""));
+        assertRoundTrip(new Dyad<>("", ""));
+        assertRoundTrip(new Dyad<>("a", ""));
+        assertRoundTrip(new Triad<>("", "b", ""));
+    }
+
+    @Test
+    void escapedCharactersRoundTrip() {
+        assertRoundTrip(new Monad<>(","));
+        assertRoundTrip(new Monad<>("⟩"));
+        assertRoundTrip(new Dyad<>("a\\", ", ⟨x⟩"));
+        assertRoundTrip(new Monad<>("\\,"));
+    }
+
+    @Test
+    void streamReadsEveryTuple() {
+        String text = "⟨1, 2⟩\n⟨⟩ ⟨,⟩\n⟨3⟩";
+        try (Stream<Polyad<String>> tuples = TupleParser.ofStrings().stream(new StringReader(text))) {
+            List<Integer> sizes = tuples.map(Tuple::fetchSize).toList();
+            assertEquals(List.of(2, 0, 1, 1), sizes);
+        }
+        assertEquals(Long.valueOf(3), TupleParser.ofLongs().parse(" ⟨1, 2, 3⟩ ").fetch(2));
+    }
+}
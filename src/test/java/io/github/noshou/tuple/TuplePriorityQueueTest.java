@@ -0,0 +1,58 @@
+package io.github.noshou.tuple;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TuplePriorityQueueTest {
+
+    @Test
+    void badElementRejectsTheWholeBatch() {
+        TuplePriorityQueue<Monad<Long>> queue = new TuplePriorityQueue<>(1);
+        queue.offer(new Monad<>(7L));
+        assertThrows(NullPointerException.class,
+                () -> queue.offerAll(List.of(new Monad<>(5L), new Monad<>(3L), new Monad<>((Long) null))));
+        assertEquals(1, queue.size());
+        assertThrows(NullPointerException.class, () -> queue.offer(new Monad<>((Long) null)));
+        assertEquals(1, queue.size());
+
+        // the small-batch path sifts each tuple in; it must validate first too
+        queue.offerAll(List.of(new Monad<>(9L), new Monad<>(8L)));
+        assertThrows(NullPointerException.class,
+                () -> queue.offerAll(List.of(new Monad<>(1L), new Monad<>((Long) null))));
+        assertEquals(3, queue.size());
+
+        assertEquals(new Monad<>(7L), queue.poll());
+        assertEquals(new Monad<>(8L), queue.poll());
+        assertEquals(new Monad<>(9L), queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void pollsInTupleOrder() {
+        Random random = new Random(13);
+        TuplePriorityQueue<Dyad<Long>> queue = new TuplePriorityQueue<>(2);
+        PriorityQueue<Dyad<Long>> model = new PriorityQueue<>();
+        for (int round = 0; round < 50; round++) {
+            List<Dyad<Long>> batch = new ArrayList<>();
+            for (int i = random.nextInt(60); i > 0; i--) {
+                batch.add(new Dyad<>((long) random.nextInt(20), random.nextLong()));
+            }
+            queue.offerAll(batch);
+            model.addAll(batch);
+            for (int i = random.nextInt(40); i > 0 && !model.isEmpty(); i--) {
+                assertEquals(model.poll(), queue.poll());
+            }
+            assertEquals(model.size(), queue.size());
+        }
+        while (!model.isEmpty()) {
+            assertEquals(model.poll(), queue.poll());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.noshou.tuple;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertIterableEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class TupleRankTreeTest {
+
+    private static Dyad<Integer> tuple(Random random) {
+        return new Dyad<>(random.nextInt(50), random.nextInt(200));
+    }
+
+    @Test
+    void matchesTreeSetUnderRandomOperations() {
+        Random random = new Random(7);
+        TupleRankTree<Integer> tree = new TupleRankTree<>();
+        TreeSet<Tuple<Integer>> model = new TreeSet<>();
+        for (int step = 0; step < 40_000; step++) {
+            Dyad<Integer> t = tuple(random);
+            if (random.nextInt(3) == 0) {
+                assertEquals(model.remove(t), tree.remove(t), "remove " + t);
+            } else {
+                assertEquals(model.add(t), tree.add(t), "add " + t);
+            }
+            assertEquals(model.size(), tree.size());
+            if (step % 97 == 0) {
+                Dyad<Integer> probe = tuple(random);
+                assertEquals(model.headSet(probe).size(), tree.rank(probe), "rank " + probe);
+                assertEquals(model.contains(probe), tree.contains(probe));
+                Dyad<Integer> to = tuple(random);
+                int expected = probe.compareTo(to) < 0 ? model.subSet(probe, to).size() : 0;
+                assertEquals(expected, tree.count(probe, to), "count " + probe + " " + to);
+                if (!model.isEmpty()) {
+                    int k = random.nextInt(model.size());
+                    assertEquals(new ArrayList<>(model).get(k), tree.select(k), "select " + k);
+                }
+            }
+        }
+        assertIterableEquals(model, tree);
+        assertIterableEquals(model, tree.snapshot());
+    }
+
+    @Test
+    void fromSortedMatchesIncrementalInserts() {
+        Random random = new Random(11);
+        TreeSet<Tuple<Integer>> model = new TreeSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            model.add(tuple(random));
+        }
+        TupleRankTree<Integer> tree = TupleRankTree.fromSorted(model);
+        assertIterableEquals(model, tree);
+        List<Tuple<Integer>> sorted = new ArrayList<>(model);
+        for (int k = 0; k < sorted.size(); k += 37) {
+            assertEquals(sorted.get(k), tree.select(k));
+            assertEquals(k, tree.rank(sorted.get(k)));
+        }
+        for (Tuple<Integer> t : sorted.subList(0, sorted.size() / 2)) {
+            tree.remove(t);
+        }
+        assertIterableEquals(sorted.subList(sorted.size() / 2, sorted.size()), tree);
+    }
+
+    @Test
+    void snapshotIsUnaffectedByLaterWrites() {
+        TupleRankTree<Integer> tree = new TupleRankTree<>();
+        tree.add(new Dyad<>(1, 1));
+        tree.add(new Dyad<>(2, 2));
+        TupleRankTree.Snapshot<Integer> snapshot = tree.snapshot();
+        tree.add(new Dyad<>(0, 0));
+        tree.remove(new Dyad<>(2, 2));
+        assertIterableEquals(List.of(new Dyad<>(1, 1), new Dyad<>(2, 2)), snapshot);
+        assertEquals(1, snapshot.rank(new Dyad<>(2, 2)));
+    }
+
+    @Test
+    void iteratorFailsOnConcurrentModification() {
+        TupleRankTree<Integer> tree = new TupleRankTree<>();
+        tree.add(new Dyad<>(1, 1));
+        tree.add(new Dyad<>(2, 2));
+        Iterator<Tuple<Integer>> it = tree.iterator();
+        it.next();
+        tree.add(new Dyad<>(3, 3));
+        assertThrows(ConcurrentModificationException.class, it::next);
+    }
+
+    @Test
+    void selectOutOfRangeThrows() {
+        TupleRankTree<Integer> tree = new TupleRankTree<>();
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.select(0));
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.noshou.tuple;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class TupleVectorsTest {
+
+    @Test
+    void compareAllMatchesCompare() {
+        long[][] columns = {{1, 2, 2, 3, 2}, {5, 4, 6, 0, 5}};
+        long[] probe = {2, 5};
+        int[] out = new int[5];
+        TupleVectors.compareAll(columns, 5, probe, out);
+        int[] expected = new int[5];
+        for (int row = 0; row < 5; row++) {
+            expected[row] = TupleVectors.compare(new long[]{columns[0][row], columns[1][row]}, probe);
+        }
+        assertArrayEquals(expected, out);
+    }
+
+    @Test
+    void compareAllChecksBoundsBeforeWriting() {
+        long[][] columns = {{1, 2, 3}, {1, 2}};
+        int[] out = new int[3];
+        Arrays.fill(out, 7);
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> TupleVectors.compareAll(columns, 3, new long[]{2, 2}, out));
+        assertArrayEquals(new int[]{7, 7, 7}, out);
+
+        int[] shortOut = {7, 7};
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> TupleVectors.compareAll(new long[][]{{1, 2, 3}}, 3, new long[]{2}, shortOut));
+        assertArrayEquals(new int[]{7, 7}, shortOut);
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> TupleVectors.compareAll(new long[][]{{1}}, -1, new long[]{2}, new int[1]));
+    }
+}
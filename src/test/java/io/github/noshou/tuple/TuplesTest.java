@@ -0,0 +1,44 @@
+package io.github.noshou.tuple;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class TuplesTest {
+
+    private static final Class<?>[] CLASSES = {
+            Nullad.class, Monad.class, Dyad.class, Triad.class, Tetrad.class, Pentad.class, Hexad.class,
+            Heptad.class, Octad.class, Ennead.class, Decad.class, Hendecad.class, Dodecad.class,
+            Triskaidecad.class, Tetrakaidecad.class, Pentakaidecad.class, Hexakaidecad.class,
+            Heptakaidecad.class, Octakaidecad.class, Enneakaidecad.class, Icosad.class};
+
+    @Test
+    void ofPicksTheClassOfEachArity() {
+        for (int n = 0; n <= 24; n++) {
+            Integer[] items = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                items[i] = n - i;
+            }
+            Tuple<Integer> tuple = Tuples.of(items);
+            assertSame(n < CLASSES.length ? CLASSES[n] : Polyad.class, tuple.getClass());
+            assertEquals(n, tuple.fetchSize());
+            for (int i = 0; i < n; i++) {
+                assertEquals(Integer.valueOf(n - i), tuple.fetch(i));
+            }
+            if (n > 0) {
+                // the array is only read; the tuple keeps its own copy
+                items[0] = -1;
+                assertEquals(Integer.valueOf(n), tuple.fetch(0));
+            }
+        }
+    }
+
+    @Test
+    void ofEqualsThePublicConstructors() {
+        assertEquals(new Dyad<>(1, 2), Tuples.of(new Integer[]{1, 2}));
+        assertEquals(new Octad<>(1, 2, 3, 4, 5, 6, 7, 8), Tuples.of(new Integer[]{1, 2, 3, 4, 5, 6, 7, 8}));
+        assertEquals(0, new Icosad<>(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20)
+                .compareTo(Tuples.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20)));
+    }
+}